@@ -0,0 +1,201 @@
+package warehouse_system;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An AsyncSink hands messages to a dedicated writer thread through a fixed-size ring buffer. Senders
+ * only copy a reference into the ring, and the writer thread drains everything that is waiting in
+ * one go and flushes once per drain. If the ring is full, senders wait for the writer to catch up,
+ * so no message is ever dropped.
+ */
+public class AsyncSink implements CommandSink {
+
+  /** The default number of messages the ring can hold; must be a power of two. */
+  private static final int DEFAULT_CAPACITY = 1 << 14;
+
+  /** The ring of messages waiting to be written. */
+  private final String[] ring;
+
+  /** The number of messages ever sent; the next message goes at head & mask. */
+  private long head;
+
+  /** The number of messages ever taken by the writer thread. */
+  private long tail;
+
+  /** Used to turn a message count into an index of the ring. */
+  private final int mask;
+
+  /** Guards head, tail and closed. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Signalled when the writer thread frees space in the ring. */
+  private final Condition notFull = lock.newCondition();
+
+  /** Signalled when a message is sent, or the sink is flushed or closed. */
+  private final Condition notEmpty = lock.newCondition();
+
+  /** Signalled when the writer thread has written everything sent so far. */
+  private final Condition drained = lock.newCondition();
+
+  /** The number of messages the writer thread has finished writing. */
+  private long written;
+
+  /** Whether the sink has been closed. */
+  private boolean closed;
+
+  /** The writer messages are written to. */
+  private final Writer writer;
+
+  /** The thread that writes messages. */
+  private final Thread writerThread;
+
+  /** The line separator written after every message. */
+  private final String newLine = System.getProperty("line.separator");
+
+  /**
+   * Instantiate a sink with the default capacity and start its writer thread.
+   *
+   * @param writer the writer messages are written to
+   */
+  public AsyncSink(Writer writer) {
+    this(writer, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Instantiate a sink and start its writer thread.
+   *
+   * @param writer the writer messages are written to
+   * @param capacity the number of messages the ring can hold; rounded up to a power of two
+   */
+  public AsyncSink(Writer writer, int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.ring = new String[size];
+    this.mask = size - 1;
+    this.writer = writer;
+    this.writerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drainLoop();
+      }
+    }, "command-sink-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void send(String message) {
+    lock.lock();
+    try {
+      while (head - tail == ring.length && !closed) {
+        notFull.awaitUninterruptibly();
+      }
+      if (closed) {
+        return;
+      }
+      ring[(int) (head & mask)] = message;
+      head++;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait until the writer thread has written every message sent before this call.
+   */
+  @Override
+  public void flush() {
+    lock.lock();
+    try {
+      long target = head;
+      notEmpty.signal();
+      while (written < target && writerThread.isAlive()) {
+        drained.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    flush();
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signal();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      writerThread.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The body of the writer thread: take every waiting message, write them all, flush, repeat.
+   */
+  private void drainLoop() {
+    StringBuilder batch = new StringBuilder(8192);
+    while (true) {
+      long from;
+      long to;
+      lock.lock();
+      try {
+        while (tail == head && !closed) {
+          notEmpty.awaitUninterruptibly();
+        }
+        if (tail == head) { // Closed and nothing left to write.
+          break;
+        }
+        from = tail;
+        to = head;
+      } finally {
+        lock.unlock();
+      }
+
+      // Only this thread reads slots between tail and head, and senders
+      // cannot reuse them until tail moves past them.
+      batch.setLength(0);
+      for (long i = from; i < to; i++) {
+        int index = (int) (i & mask);
+        batch.append(ring[index]).append(newLine);
+        ring[index] = null;
+      }
+      try {
+        writer.append(batch);
+        writer.flush();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
+
+      lock.lock();
+      try {
+        tail = to;
+        written = to;
+        notFull.signalAll();
+        drained.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    try {
+      writer.flush();
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+}
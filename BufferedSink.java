@@ -0,0 +1,86 @@
+package warehouse_system;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A BufferedSink collects messages in a buffer and writes them out in batches, so the underlying
+ * writer is only flushed once every batch instead of once per message.
+ */
+public class BufferedSink implements CommandSink {
+
+  /** The number of messages written before the writer is flushed. */
+  private static final int DEFAULT_BATCH_SIZE = 256;
+
+  /** The writer messages are written to. */
+  private Writer writer;
+
+  /** The messages that have not been written yet. */
+  private StringBuilder buffer = new StringBuilder(8192);
+
+  /** The number of messages in the buffer. */
+  private int pending;
+
+  /** The number of messages written before the writer is flushed. */
+  private int batchSize;
+
+  /** The line separator written after every message. */
+  private String newLine = System.getProperty("line.separator");
+
+  /**
+   * Instantiate a sink that writes to a writer in batches of the default size.
+   *
+   * @param writer the writer messages are written to
+   */
+  public BufferedSink(Writer writer) {
+    this(writer, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Instantiate a sink that writes to a writer in batches.
+   *
+   * @param writer the writer messages are written to
+   * @param batchSize the number of messages written before the writer is flushed
+   */
+  public BufferedSink(Writer writer, int batchSize) {
+    this.writer = writer;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public synchronized void send(String message) {
+    buffer.append(message).append(newLine);
+    pending++;
+    if (pending >= batchSize) {
+      flush();
+    }
+  }
+
+  @Override
+  public synchronized void flush() {
+    try {
+      writer.append(buffer);
+      writer.flush();
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+    buffer.setLength(0);
+    pending = 0;
+  }
+
+  @Override
+  public synchronized void close() {
+    flush();
+    try {
+      writer.close();
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+}
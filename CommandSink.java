@@ -0,0 +1,109 @@
+package warehouse_system;
+
+/**
+ * A CommandSink is where the Organizer and the workers send the commands and messages they produce.
+ * Messages are written as templates with "{}" placeholders, and the template is only filled in if
+ * the sink is enabled, so a disabled sink costs no more than a method call.
+ */
+public interface CommandSink {
+
+  /**
+   * Check whether this sink writes its messages anywhere.
+   *
+   * @return true, if messages sent to this sink are written
+   */
+  boolean isEnabled();
+
+  /**
+   * Send a finished message.
+   *
+   * @param message the message
+   */
+  void send(String message);
+
+  /**
+   * Send a message with one placeholder.
+   *
+   * @param template the message, with "{}" where the argument goes
+   * @param arg1 the argument
+   */
+  default void send(String template, Object arg1) {
+    if (isEnabled()) {
+      send(format(template, arg1));
+    }
+  }
+
+  /**
+   * Send a message with two placeholders.
+   *
+   * @param template the message, with "{}" where each argument goes
+   * @param arg1 the first argument
+   * @param arg2 the second argument
+   */
+  default void send(String template, Object arg1, Object arg2) {
+    if (isEnabled()) {
+      send(format(template, arg1, arg2));
+    }
+  }
+
+  /**
+   * Send a message with three placeholders.
+   *
+   * @param template the message, with "{}" where each argument goes
+   * @param arg1 the first argument
+   * @param arg2 the second argument
+   * @param arg3 the third argument
+   */
+  default void send(String template, Object arg1, Object arg2, Object arg3) {
+    if (isEnabled()) {
+      send(format(template, arg1, arg2, arg3));
+    }
+  }
+
+  /**
+   * Send a message with four placeholders.
+   *
+   * @param template the message, with "{}" where each argument goes
+   * @param arg1 the first argument
+   * @param arg2 the second argument
+   * @param arg3 the third argument
+   * @param arg4 the fourth argument
+   */
+  default void send(String template, Object arg1, Object arg2, Object arg3, Object arg4) {
+    if (isEnabled()) {
+      send(format(template, arg1, arg2, arg3, arg4));
+    }
+  }
+
+  /**
+   * Write out any messages this sink is holding on to.
+   */
+  void flush();
+
+  /**
+   * Write out any messages this sink is holding on to and release its resources.
+   */
+  void close();
+
+  /**
+   * Fill in the "{}" placeholders of a template, in order. Extra placeholders are left as they are.
+   *
+   * @param template the message template
+   * @param args the arguments
+   * @return the finished message
+   */
+  static String format(String template, Object... args) {
+    StringBuilder builder = new StringBuilder(template.length() + 16 * args.length);
+    int from = 0;
+    for (Object arg : args) {
+      int index = template.indexOf("{}", from);
+      if (index < 0) {
+        break;
+      }
+      builder.append(template, from, index).append(arg);
+      from = index + 2;
+    }
+    return builder.append(template, from, template.length()).toString();
+  }
+
+}
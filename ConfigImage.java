@@ -0,0 +1,420 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * A ConfigImage is a precompiled copy of the configuration files of a warehouse (its topology,
+ * traversal table, translation table, initial stock and docks) in a single binary file. The CSV
+ * files are parsed once, when the image is compiled; at startup the image is memory-mapped and its
+ * rows are read with their numbers already parsed, so nothing has to be split or converted.
+ *
+ * <p>The image records the length and modification time of every file it was compiled from, and a
+ * CRC32 of its contents. If any of the files has changed since, or the image is damaged or was
+ * written by another version, it is not used and the warehouse reads the CSV files instead.
+ *
+ * <p>Compile an image with {@code java warehouse_system.ConfigImage [config directory]}.
+ */
+public final class ConfigImage {
+
+  /** The name of the image file in the configuration directory. */
+  public static final String FILE_NAME = "warehouse.img";
+
+  /** The section with one row per zone: name, aisles, racks, levels. */
+  public static final int TOPOLOGY = 0;
+
+  /** The section with one row per traversal table line: zone, aisle, rack, level, SKU. */
+  public static final int TRAVERSAL = 1;
+
+  /** The section with one row per minivan: color, model, front SKU, back SKU. */
+  public static final int TRANSLATION = 2;
+
+  /** The section with one row per initial stock line: zone, aisle, rack, level, stock. */
+  public static final int INITIAL = 3;
+
+  /** The section with one row per dock: name, capacity. */
+  public static final int DOCKS = 4;
+
+  /** The files an image is compiled from, one per section. */
+  private static final String[] SOURCES =
+      {"topology.csv", "traversal_table.csv", "translation.csv", "initial.csv", "docks.csv"};
+
+  /** The columns of each section: S for a string, I for an int. */
+  private static final String[] SCHEMAS = {"SIII", "SIIIS", "SSSS", "SIIII", "SI"};
+
+  /** The first bytes of an image file ("WIMG"). */
+  private static final int MAGIC = 0x57494d47;
+
+  /** The version of the image format. */
+  private static final int VERSION = 1;
+
+  /** The mapped contents of the image, after the header. */
+  private final ByteBuffer payload;
+
+  /** The position of each section in the payload. */
+  private final int[] sectionStarts;
+
+  /** The modification time each source file had when the image was compiled. */
+  private final long[] sourceModified;
+
+  /**
+   * Instantiate an image from its mapped, checked payload.
+   *
+   * @param payload the payload
+   * @param sourceModified the modification time of each source file
+   */
+  private ConfigImage(ByteBuffer payload, long[] sourceModified) {
+    this.payload = payload;
+    this.sourceModified = sourceModified;
+
+    // Find where each section starts by skipping over the rows before it.
+    sectionStarts = new int[SCHEMAS.length];
+    ByteBuffer scan = payload.duplicate();
+    for (int section = 0; section < SCHEMAS.length; section++) {
+      sectionStarts[section] = scan.position();
+      int rows = scan.getInt();
+      for (int row = 0; row < rows; row++) {
+        for (int column = 0; column < SCHEMAS[section].length(); column++) {
+          if (SCHEMAS[section].charAt(column) == 'S') {
+            int length = scan.getShort() & 0xffff;
+            scan.position(scan.position() + length);
+          } else {
+            scan.getInt();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Open the image in a configuration directory, if it is up to date.
+   *
+   * @param configDir the configuration directory
+   * @return the image, or null if there is no usable image and the CSV files should be read
+   */
+  public static ConfigImage open(File configDir) {
+    File file = new File(configDir, FILE_NAME);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try (RandomAccessFile input = new RandomAccessFile(file, "r");
+        FileChannel channel = input.getChannel()) {
+      ByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (image.getInt() != MAGIC || image.getInt() != VERSION
+          || image.getInt() != SOURCES.length) {
+        System.err.println(file + " was written by another version; reading the CSV files.");
+        return null;
+      }
+
+      long[] sourceModified = new long[SOURCES.length];
+      for (int source = 0; source < SOURCES.length; source++) {
+        File csv = new File(configDir, SOURCES[source]);
+        long length = image.getLong();
+        sourceModified[source] = image.getLong();
+        if (length != (csv.exists() ? csv.length() : -1)
+            || sourceModified[source] != (csv.exists() ? csv.lastModified() : -1)) {
+          System.err.println(file + " is older than " + csv + "; reading the CSV files.");
+          return null;
+        }
+      }
+
+      int length = image.getInt();
+      int checksum = image.getInt();
+      ByteBuffer payload = image.slice();
+      if (payload.remaining() != length) {
+        System.err.println(file + " is damaged; reading the CSV files.");
+        return null;
+      }
+      CRC32 crc = new CRC32();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        System.err.println(file + " is damaged; reading the CSV files.");
+        return null;
+      }
+      return new ConfigImage(payload, sourceModified);
+    } catch (IOException | RuntimeException ex) {
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Return the rows of a section, to be read one at a time.
+   *
+   * @param section the section, e.g. TRAVERSAL
+   * @return the rows
+   */
+  public Rows rows(int section) {
+    ByteBuffer rows = payload.duplicate();
+    rows.position(sectionStarts[section]);
+    return new Rows(rows, SCHEMAS[section]);
+  }
+
+  /**
+   * Return the modification time the source file of a section had when the image was compiled.
+   *
+   * @param section the section
+   * @return the modification time in milliseconds, or -1 if the file did not exist
+   */
+  public long getLastModified(int section) {
+    return sourceModified[section];
+  }
+
+  /**
+   * Compile the configuration files in a directory into an image in the same directory. The files
+   * are read the same way the warehouse reads them, so the image holds exactly the rows the
+   * warehouse would use.
+   *
+   * @param configDir the configuration directory
+   * @throws IOException if a file cannot be read or the image cannot be written
+   */
+  public static void compile(File configDir) throws IOException {
+    ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(1 << 16);
+    DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+    // Zones, as the topology reads them (the default layout if there is no file).
+    Topology topology = Topology.load(new File(configDir, SOURCES[TOPOLOGY]));
+    payload.writeInt(topology.getZoneCount());
+    for (int zone = 0; zone < topology.getZoneCount(); zone++) {
+      writeText(payload, topology.getNameOfZone(zone));
+      payload.writeInt(topology.getAisles(zone));
+      payload.writeInt(topology.getRacks(zone));
+      payload.writeInt(topology.getLevels(zone));
+    }
+
+    compileLocations(new File(configDir, SOURCES[TRAVERSAL]), payload, true);
+    compileTranslations(new File(configDir, SOURCES[TRANSLATION]), payload);
+    compileLocations(new File(configDir, SOURCES[INITIAL]), payload, false);
+
+    Dock[] docks = Dock.load(new File(configDir, SOURCES[DOCKS]));
+    payload.writeInt(docks.length);
+    for (Dock dock : docks) {
+      writeText(payload, dock.getName());
+      payload.writeInt(dock.getCapacity());
+    }
+    payload.flush();
+
+    ByteArrayOutputStream imageBytes = new ByteArrayOutputStream(payloadBytes.size() + 256);
+    DataOutputStream image = new DataOutputStream(imageBytes);
+    image.writeInt(MAGIC);
+    image.writeInt(VERSION);
+    image.writeInt(SOURCES.length);
+    for (String source : SOURCES) {
+      File csv = new File(configDir, source);
+      image.writeLong(csv.exists() ? csv.length() : -1);
+      image.writeLong(csv.exists() ? csv.lastModified() : -1);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payloadBytes.toByteArray(), 0, payloadBytes.size());
+    image.writeInt(payloadBytes.size());
+    image.writeInt((int) crc.getValue());
+    payloadBytes.writeTo(image);
+    image.flush();
+
+    File temporary = new File(configDir, FILE_NAME + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temporary)) {
+      imageBytes.writeTo(file);
+    }
+    Files.move(temporary.toPath(), new File(configDir, FILE_NAME).toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Compile a file of zone,aisle,rack,level,value lines: the traversal table (whose values are
+   * SKUs) or the initial stock (whose values are amounts). Lines with too few fields are skipped.
+   *
+   * @param file the file
+   * @param payload where the rows are written
+   * @param skus true if the values are SKUs, false if they are amounts
+   * @throws IOException if the file cannot be read
+   */
+  private static void compileLocations(File file, DataOutputStream payload, boolean skus)
+      throws IOException {
+    ByteArrayOutputStream rowBytes = new ByteArrayOutputStream(1 << 16);
+    DataOutputStream rows = new DataOutputStream(rowBytes);
+    int count = 0;
+    if (file.exists()) {
+      try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+          String[] chars = line.split(",");
+          if (chars.length < 5) {
+            continue;
+          }
+          writeText(rows, chars[0]);
+          rows.writeInt(Integer.parseInt(chars[1]));
+          rows.writeInt(Integer.parseInt(chars[2]));
+          rows.writeInt(Integer.parseInt(chars[3]));
+          if (skus) {
+            writeText(rows, chars[4]);
+          } else {
+            rows.writeInt(Integer.parseInt(chars[4]));
+          }
+          count++;
+        }
+      }
+    }
+    payload.writeInt(count);
+    rowBytes.writeTo(payload);
+  }
+
+  /**
+   * Compile the translation table, skipping its line of headings and lines with too few fields.
+   *
+   * @param file the translation table
+   * @param payload where the rows are written
+   * @throws IOException if the file cannot be read
+   */
+  private static void compileTranslations(File file, DataOutputStream payload)
+      throws IOException {
+    ByteArrayOutputStream rowBytes = new ByteArrayOutputStream(1 << 12);
+    DataOutputStream rows = new DataOutputStream(rowBytes);
+    int count = 0;
+    if (file.exists()) {
+      try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+        String line = bufferedReader.readLine(); // Skip the line of headings.
+        while ((line = bufferedReader.readLine()) != null) {
+          String[] chars = line.split(",");
+          if (chars.length < 4) {
+            continue;
+          }
+          for (int i = 0; i < 4; i++) {
+            writeText(rows, chars[i]);
+          }
+          count++;
+        }
+      }
+    }
+    payload.writeInt(count);
+    rowBytes.writeTo(payload);
+  }
+
+  /**
+   * Write a string as its length and UTF-8 bytes.
+   *
+   * @param out where the string is written
+   * @param text the string
+   * @throws IOException if the string cannot be written
+   */
+  private static void writeText(DataOutputStream out, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Compile the configuration files of a warehouse into an image.
+   *
+   * @param args args[0] is the configuration directory; warehouse_config if it is not given
+   * @throws IOException if the image cannot be compiled
+   */
+  public static void main(String[] args) throws IOException {
+    File configDir = new File(args.length > 0 ? args[0] : "warehouse_config");
+    compile(configDir);
+    System.out.println("Compiled " + new File(configDir, FILE_NAME) + ".");
+  }
+
+  /** The rows of one section of an image, read one at a time. */
+  public static final class Rows {
+
+    /** The section, positioned at the next row. */
+    private final ByteBuffer buffer;
+
+    /** The columns of the section: S for a string, I for an int. */
+    private final String schema;
+
+    /** The number of rows not read yet. */
+    private int remaining;
+
+    /** The strings of the current row, by column. */
+    private final String[] texts;
+
+    /** The ints of the current row, by column. */
+    private final int[] numbers;
+
+    /** Decodes strings; reused for every string. */
+    private byte[] bytes = new byte[64];
+
+    /**
+     * Instantiate the rows of a section.
+     *
+     * @param buffer the section, positioned at its row count
+     * @param schema the columns of the section
+     */
+    private Rows(ByteBuffer buffer, String schema) {
+      this.buffer = buffer;
+      this.schema = schema;
+      this.remaining = buffer.getInt();
+      this.texts = new String[schema.length()];
+      this.numbers = new int[schema.length()];
+    }
+
+    /**
+     * Move on to the next row.
+     *
+     * @return true, if there was another row
+     */
+    public boolean next() {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      for (int column = 0; column < schema.length(); column++) {
+        if (schema.charAt(column) == 'S') {
+          int length = buffer.getShort() & 0xffff;
+          if (bytes.length < length) {
+            bytes = new byte[length];
+          }
+          buffer.get(bytes, 0, length);
+          texts[column] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        } else {
+          numbers[column] = buffer.getInt();
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Return the number of rows not read yet.
+     *
+     * @return the number of rows
+     */
+    public int remaining() {
+      return remaining;
+    }
+
+    /**
+     * Return a string column of the current row.
+     *
+     * @param column the column
+     * @return the string
+     */
+    public String text(int column) {
+      return texts[column];
+    }
+
+    /**
+     * Return an int column of the current row.
+     *
+     * @param column the column
+     * @return the int
+     */
+    public int number(int column) {
+      return numbers[column];
+    }
+  }
+
+}
@@ -0,0 +1,532 @@
+package warehouse_system;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * DispatchLanes runs an Organizer with one thread (lane) per type of worker. Every event belongs to
+ * exactly one lane (orders, picks and trips to marshalling belong to the picker lane, loads and
+ * unloads to the loader lane, and so on), and every queue of the Organizer is read and written by
+ * one lane only. When an event in one lane has an effect on another lane (a picker drops pallets in
+ * the marshalling area, a sequencer sends pallets to loading or back to be picked again, a level
+ * runs low or is replenished) the effect is posted to that lane as a message stamped with the
+ * number of the event that caused it.
+ *
+ * <p>Each event is numbered as it is submitted. A lane only starts its event n once every lane it
+ * hears from has finished those of its events and messages before n that can reach it, and it
+ * applies the messages stamped before n first. What can reach a lane is known from the type of
+ * the event: picks and orders can post low levels to the replenishers, but only trips to
+ * marshalling post pallets to the sequencers, and only scans (not a sequencer coming back from a
+ * break) post to the loaders and pickers. Applying a message may post another message (a pick
+ * request that comes back to the pickers may need a level replenished), which is stamped with the
+ * same event, so an event can also reach the lanes its messages post to. A lane may hear from
+ * several lanes (pickers hear from sequencers and replenishers), so messages are applied in the
+ * order of their stamps, and only once every lane that could still post an earlier one has moved
+ * past it. The only state lanes share is the stock of the levels, which pickers take and
+ * replenishers refill, and every event that changes it reaches the other of the two lanes. So
+ * every lane sees exactly the state the sequential engine would have had at event n, and the
+ * commands sent to each worker come out in the same order as they do when the events are handled
+ * one at a time. The sequencers scan while the pickers pick, and the pickers only wait for the
+ * sequencers at a scan, not the other way round; loaders and replenishers run alongside both.
+ */
+final class DispatchLanes {
+
+  /** How many times a waiting lane yields before it starts to sleep between checks. */
+  private static final int SPINS = 200;
+
+  /** How long (in nanoseconds) an idle lane sleeps between checks. */
+  private static final long PARK_NANOS = 20_000;
+
+  /** The organizer whose events are handled. */
+  private final Organizer organizer;
+
+  /** The lanes, indexed by the ordinal of their worker type. */
+  private final Lane[] lanes;
+
+  /** Splits submitted events so they can be handed to the right lane. */
+  private final EventTokenizer tokens = new EventTokenizer();
+
+  /** The number of messages posted so far, by any lane. */
+  private final AtomicLong posted = new AtomicLong();
+
+  /** The time of the event handled by the submitting thread, for events outside the lanes. */
+  private volatile long submitTime;
+
+  /** The number of events submitted so far; the next event gets this number. */
+  private volatile long submitted;
+
+  /** Set when the lanes should stop once they are idle. */
+  private volatile boolean stopping;
+
+  /**
+   * Instantiate the lanes of an organizer and start their threads.
+   *
+   * @param organizer the organizer whose events are handled
+   */
+  DispatchLanes(Organizer organizer) {
+    this.organizer = organizer;
+    WorkerType[] types = WorkerType.values();
+    lanes = new Lane[types.length];
+    for (WorkerType type : types) {
+      lanes[type.ordinal()] = new Lane(type);
+    }
+
+    // Pickers wait for re-picks from sequencers and replenished levels from replenishers;
+    // sequencers wait for pallets from pickers, loaders for pallets from sequencers, and
+    // replenishers for low levels from pickers. A re-pick can make the pickers post a low level, so
+    // replenishers also wait for sequencers. Each lane only waits for the events that can reach it
+    // (see reachOf()).
+    lane(WorkerType.PICKER).dependsOn(lane(WorkerType.SEQUENCER), lane(WorkerType.REPLENISHER));
+    lane(WorkerType.SEQUENCER).dependsOn(lane(WorkerType.PICKER));
+    lane(WorkerType.LOADER).dependsOn(lane(WorkerType.SEQUENCER));
+    lane(WorkerType.REPLENISHER).dependsOn(lane(WorkerType.SEQUENCER), lane(WorkerType.PICKER));
+
+    for (Lane lane : lanes) {
+      lane.start();
+    }
+  }
+
+  /**
+   * Return the lane of a type of worker.
+   *
+   * @param type the type of worker
+   * @return the lane
+   */
+  private Lane lane(WorkerType type) {
+    return lanes[type.ordinal()];
+  }
+
+  /**
+   * Hand an event to the lane it belongs to. Must be called from one thread at a time.
+   *
+   * @param event a line of input from the input file
+   */
+  void submit(CharSequence event) {
+    tokens.reset(event);
+    EventType type = EventType.of(tokens);
+    if (type == EventType.BLANK) {
+      return;
+    }
+
+    WorkerType owner = ownerOf(type, tokens);
+    if (owner == null) {
+      // The event does not belong to a lane, so it is handled here once every lane has caught up.
+      awaitIdle();
+      submitTime = organizer.timeOf(tokens);
+      organizer.dispatch(type, tokens);
+      return;
+    }
+
+    long number = submitted;
+    Lane lane = lane(owner);
+    Event next = new Event(number, type, event.toString(), reachOf(owner, type));
+    // The event is listed under the lanes it can reach before the lane can take it, so it is
+    // never taken off a list it is not on yet.
+    for (WorkerType target : WorkerType.values()) {
+      if ((next.reach & bit(target)) != 0) {
+        lane.reaching.get(target.ordinal()).offer(next);
+      }
+    }
+    lane.input.offer(next);
+    submitted = number + 1;
+  }
+
+  /**
+   * Return the lanes, other than its own, that an event can post to, directly or through the
+   * messages it causes. Every event that changes the stock of a level reaches both the pickers and
+   * the replenishers.
+   *
+   * @param owner the type of worker whose lane handles the event
+   * @param type the type of the event
+   * @return a bit for the ordinal of each type of worker whose lane the event can reach
+   */
+  static int reachOf(WorkerType owner, EventType type) {
+    switch (owner) {
+      case PICKER:
+        // Orders, picks and ready pickers queue requests or take stock, which can post low levels;
+        // a trip to marshalling also posts pallets to the sequencers. A break posts nothing.
+        if (type == EventType.TAKES) {
+          return 0;
+        }
+        return type == EventType.GOES
+            ? bit(WorkerType.SEQUENCER) | bit(WorkerType.REPLENISHER)
+            : bit(WorkerType.REPLENISHER);
+      case SEQUENCER:
+        // A scan sends pallets to the loaders, or back to the pickers, who may post low levels.
+        return type == EventType.SCANS
+            ? bit(WorkerType.LOADER) | bit(WorkerType.PICKER) | bit(WorkerType.REPLENISHER)
+            : 0;
+      case REPLENISHER:
+        // A refilled level goes to the pickers; the requests it unblocks are posted back to this
+        // lane by the pickers.
+        return type == EventType.REPLENISHES ? bit(WorkerType.PICKER) : 0;
+      default:
+        // Loaders post nothing.
+        return 0;
+    }
+  }
+
+  /**
+   * Return the lanes, other than its own, that applying a message can post to. Pickers queue the
+   * pick requests they are handed, which can post low levels; the other lanes post nothing.
+   *
+   * @param owner the type of worker whose lane applies the message
+   * @return a bit for the ordinal of each type of worker whose lane the message can reach
+   */
+  static int inboxReachOf(WorkerType owner) {
+    return owner == WorkerType.PICKER ? bit(WorkerType.REPLENISHER) : 0;
+  }
+
+  /**
+   * Return the bit of a type of worker in a set of lanes.
+   *
+   * @param type the type of worker
+   * @return the bit
+   */
+  private static int bit(WorkerType type) {
+    return 1 << type.ordinal();
+  }
+
+  /**
+   * Return the type of worker whose lane an event belongs to.
+   *
+   * @param type the type of the event
+   * @param tokens the tokens of the event
+   * @return the type of worker, or null if the event does not belong to a lane
+   */
+  static WorkerType ownerOf(EventType type, EventTokenizer tokens) {
+    switch (type) {
+      case ORDER:
+      case PICKS:
+      case GOES:
+        return WorkerType.PICKER;
+      case LOADS:
+      case UNLOADS:
+        return WorkerType.LOADER;
+      case REPLENISHES:
+        return WorkerType.REPLENISHER;
+      case READY:
+      case SCANS:
+      case TAKES:
+        return WorkerType.of(tokens, 0);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Return the time of the event the calling thread is handling, or of the event that caused the
+   * message it is applying.
+   *
+   * @return the time in milliseconds
+   */
+  long currentTime() {
+    Thread thread = Thread.currentThread();
+    return thread instanceof Lane ? ((Lane) thread).time : submitTime;
+  }
+
+  /**
+   * Post an effect of the event a lane is handling to another lane. Must be called from a lane.
+   *
+   * @param target the type of worker whose lane receives the message
+   * @param payload what is handed over
+   */
+  void post(WorkerType target, Object payload) {
+    Lane from = (Lane) Thread.currentThread();
+    Lane to = lane(target);
+    // Count the message before it can be applied, so the lane is never seen applying more than it
+    // received.
+    long order = to.received.getAndIncrement();
+    to.inbox.offer(new Message(from.current, from.time, order, payload));
+    posted.incrementAndGet();
+  }
+
+  /**
+   * Wait until every lane has handled every event submitted so far, and applied every message.
+   */
+  void awaitIdle() {
+    int spins = 0;
+    while (!isIdle()) {
+      spins = pause(spins);
+    }
+  }
+
+  /**
+   * Wait for the lanes to finish every event submitted so far, then stop their threads.
+   */
+  void stop() {
+    awaitIdle();
+    stopping = true;
+    for (Lane lane : lanes) {
+      LockSupport.unpark(lane);
+      try {
+        lane.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Check whether every lane has handled every event and message it was given.
+   *
+   * @return true, if there is nothing left to do
+   */
+  private boolean isIdle() {
+    // Messages are only posted while events are handled, so once every input is empty the message
+    // counts can no longer grow.
+    for (Lane lane : lanes) {
+      if (!lane.input.isEmpty()) {
+        return false;
+      }
+    }
+    for (Lane lane : lanes) {
+      if (lane.applied != lane.received.get()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Wait a little before checking again: yield for a while, then sleep.
+   *
+   * @param spins how many times the caller has waited so far
+   * @return the new number of times waited
+   */
+  private static int pause(int spins) {
+    if (spins < SPINS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+    return spins + 1;
+  }
+
+  /** An event waiting in a lane, with its number. */
+  private static final class Event {
+
+    /** The number of the event, in the order events were submitted. */
+    final long number;
+
+    /** The type of the event. */
+    final EventType type;
+
+    /** The text of the event. */
+    final String text;
+
+    /** The lanes the event can reach, as bits by the ordinal of their type of worker. */
+    final int reach;
+
+    /**
+     * Instantiate an event.
+     *
+     * @param number the number of the event
+     * @param type the type of the event
+     * @param text the text of the event
+     * @param reach the lanes the event can reach
+     */
+    Event(long number, EventType type, String text, int reach) {
+      this.number = number;
+      this.type = type;
+      this.text = text;
+      this.reach = reach;
+    }
+  }
+
+  /** An effect of one lane's event on another lane. */
+  private static final class Message {
+
+    /** Orders messages by stamp, and messages of the same event in the order they were posted. */
+    static final Comparator<Message> ORDER = new Comparator<Message>() {
+      @Override
+      public int compare(Message a, Message b) {
+        int byStamp = Long.compare(a.stamp, b.stamp);
+        return byStamp != 0 ? byStamp : Long.compare(a.order, b.order);
+      }
+    };
+
+    /** The number of the event that caused this message. */
+    final long stamp;
+
+    /** The time of the event that caused this message. */
+    final long time;
+
+    /** The number of messages posted to the same lane before this one. */
+    final long order;
+
+    /** What is handed over: a pick request ID, a pick request, a SKU or a replenishment task. */
+    final Object payload;
+
+    /**
+     * Instantiate a message.
+     *
+     * @param stamp the number of the event that caused the message
+     * @param time the time of the event that caused the message
+     * @param order the number of messages posted to the same lane before this one
+     * @param payload what is handed over
+     */
+    Message(long stamp, long time, long order, Object payload) {
+      this.stamp = stamp;
+      this.time = time;
+      this.order = order;
+      this.payload = payload;
+    }
+  }
+
+  /** The thread that handles the events of one type of worker. */
+  private final class Lane extends Thread {
+
+    /** The type of worker this lane handles. */
+    final WorkerType type;
+
+    /** The events of this lane that have not been handled yet; the head is the next one. */
+    final Queue<Event> input = new ConcurrentLinkedQueue<Event>();
+
+    /**
+     * The events of this lane that have not been handled yet and can reach another lane, by the
+     * ordinal of that lane's type of worker; the head of each is the next one.
+     */
+    final List<Queue<Event>> reaching;
+
+    /** Messages from other lanes; the head is the one caused by the earliest event. */
+    final Queue<Message> inbox = new PriorityBlockingQueue<Message>(16, Message.ORDER);
+
+    /** The lanes applying a message can reach, as bits by the ordinal of their type of worker. */
+    final int inboxReach;
+
+    /** The number of messages posted to this lane, by any lane. */
+    final AtomicLong received = new AtomicLong();
+
+    /** The number of messages this lane has applied. */
+    volatile long applied;
+
+    /** The number of the event this lane is handling, or that caused the message it is applying. */
+    long current;
+
+    /** The time of the event this lane is handling, or that caused the message it is applying. */
+    long time;
+
+    /** The lanes that must be caught up before this lane handles an event. */
+    Lane[] dependencies = new Lane[0];
+
+    /** This lane's own tokenizer, since events are tokenized again on this thread. */
+    final EventTokenizer laneTokens = new EventTokenizer();
+
+    /**
+     * Instantiate the lane of a type of worker.
+     *
+     * @param type the type of worker
+     */
+    Lane(WorkerType type) {
+      super("organizer-" + type.getLabel().toLowerCase());
+      this.type = type;
+      this.inboxReach = inboxReachOf(type);
+      this.reaching = new ArrayList<Queue<Event>>(WorkerType.values().length);
+      for (int i = 0; i < WorkerType.values().length; i++) {
+        reaching.add(new ConcurrentLinkedQueue<Event>());
+      }
+      setDaemon(true);
+    }
+
+    /**
+     * Set the lanes that must be caught up before this lane handles an event.
+     *
+     * @param others the lanes
+     */
+    void dependsOn(Lane... others) {
+      this.dependencies = others;
+    }
+
+    /**
+     * Return the number of events before which this lane has handled everything that can reach
+     * another lane, including the messages caused by those events.
+     *
+     * @param target the lane that may be reached
+     * @return every event and message of this lane numbered below this that can reach the target
+     *     has been handled
+     */
+    long handledBefore(Lane target) {
+      // Read the count first: any event of this lane numbered below it that can reach the target
+      // is either still listed (and seen by peek) or already handled. A message stays in the inbox
+      // until it has been applied.
+      long count = submitted;
+      Event next = reaching.get(target.type.ordinal()).peek();
+      long before = next == null ? count : next.number;
+      if ((inboxReach & bit(target.type)) == 0) {
+        return before;
+      }
+      Message message = inbox.peek();
+      return message == null ? before : Math.min(before, message.stamp);
+    }
+
+    @Override
+    public void run() {
+      int spins = 0;
+      while (true) {
+        // The inbox is read before the input, so no event numbered below a message can still be on
+        // its way to the input.
+        Message message = inbox.peek();
+        Event next = input.peek();
+
+        if (message != null && (next == null || message.stamp < next.number)
+            && caughtUp(message.stamp)) {
+          // Messages posted while applying this one belong to the same event. The message is only
+          // taken out once applied, so other lanes wait for what it posts.
+          current = message.stamp;
+          time = message.time;
+          organizer.deliver(type, message.payload);
+          inbox.remove(message);
+          applied++;
+          spins = 0;
+        } else if (next != null && caughtUp(next.number)) {
+          // Messages stamped before this event may have arrived while waiting; apply them first.
+          message = inbox.peek();
+          if (message != null && message.stamp < next.number) {
+            continue;
+          }
+          current = next.number;
+          laneTokens.reset(next.text);
+          time = organizer.timeOf(laneTokens);
+          organizer.dispatch(next.type, laneTokens);
+          for (WorkerType target : WorkerType.values()) {
+            if ((next.reach & bit(target)) != 0) {
+              reaching.get(target.ordinal()).poll();
+            }
+          }
+          input.poll();
+          spins = 0;
+        } else if (next == null && stopping) {
+          return;
+        } else {
+          spins = pause(spins);
+        }
+      }
+    }
+
+    /**
+     * Check whether every lane this one depends on has handled all its events before an event.
+     *
+     * @param number the number of the event
+     * @return true, if the event can be handled
+     */
+    private boolean caughtUp(long number) {
+      // A lane may post to a lane that was already checked; if anything was posted meanwhile,
+      // check again later.
+      long before = posted.get();
+      for (Lane other : dependencies) {
+        if (other.handledBefore(this) < number) {
+          return false;
+        }
+      }
+      return posted.get() == before;
+    }
+  }
+
+}
@@ -0,0 +1,330 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Dock is where pallets are loaded onto trucks. A warehouse may have several docks, each with its
+ * own truck and its own loading sequence, so a slow pallet at one dock does not hold up the others.
+ * Pick requests are spread over the docks round-robin by number as they are created: with three
+ * docks, requests 1, 4, 7... go to the first dock, 2, 5, 8... to the second, and so on. Within a dock
+ * the requests are loaded in that order, and they are numbered by their position in it.
+ *
+ * <p>A dock also keeps track of how many pallets it has loaded and when its trucks left.
+ */
+public class Dock {
+
+  /** The number of pick requests a truck holds when the docks file does not say. */
+  public static final int DEFAULT_CAPACITY = 20;
+
+  /** The name of the dock. */
+  private final String name;
+
+  /** The index of the dock among the warehouse's docks. */
+  private final int index;
+
+  /** The number of docks in the warehouse. */
+  private final int dockCount;
+
+  /** The number of pick requests that fill a truck at this dock. */
+  private final int capacity;
+
+  /** The pallets waiting at this dock, by their position in its loading sequence. */
+  private final LoadingArea loadingArea = new LoadingArea(1);
+
+  /** The pick requests on the truck that is being loaded. */
+  private final List<PickRequest> truck = new ArrayList<PickRequest>();
+
+  /** The number of pick requests loaded at this dock (less those unloaded again). */
+  private int loaded;
+
+  /** The number of trucks that have left this dock. */
+  private int departures;
+
+  /** When (System.nanoTime) the first pallets were loaded at this dock, or 0. */
+  private long firstLoadNanos;
+
+  /** When (System.nanoTime) the last pallets were loaded at this dock, or 0. */
+  private long lastLoadNanos;
+
+  /** When (System.nanoTime) the current truck started to be loaded, or 0 if it is empty. */
+  private long truckStartNanos;
+
+  /** When (System.nanoTime) the last truck left, or 0. */
+  private long lastDepartureNanos;
+
+  /** The total time (in nanoseconds) the trucks that have left took to be loaded. */
+  private long truckNanos;
+
+  /**
+   * Instantiate a dock.
+   *
+   * @param name the name of the dock
+   * @param index the index of the dock among the warehouse's docks
+   * @param dockCount the number of docks in the warehouse
+   * @param capacity the number of pick requests that fill a truck
+   */
+  public Dock(String name, int index, int dockCount, int capacity) {
+    this.name = name;
+    this.index = index;
+    this.dockCount = dockCount;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Read the docks of a warehouse from a file with one "name,capacity" line per dock. If the file
+   * does not exist or cannot be read, the warehouse has one dock, named "1", whose trucks hold
+   * DEFAULT_CAPACITY pick requests.
+   *
+   * @param file the docks file
+   * @return the docks
+   */
+  public static Dock[] load(File file) {
+    List<String> names = new ArrayList<String>();
+    List<Integer> capacities = new ArrayList<Integer>();
+
+    if (file.exists()) {
+      try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+          String[] fields = line.split(",");
+          if (fields.length < 2) {
+            continue;
+          }
+          int capacity = Integer.parseInt(fields[1].trim());
+          if (capacity > 0) {
+            names.add(fields[0].trim());
+            capacities.add(capacity);
+          }
+        }
+      } catch (IOException | NumberFormatException ex) {
+        ex.printStackTrace();
+        names.clear();
+      }
+    }
+
+    if (names.isEmpty()) {
+      return new Dock[] {new Dock("1", 0, 1, DEFAULT_CAPACITY)};
+    }
+    Dock[] docks = new Dock[names.size()];
+    for (int i = 0; i < docks.length; i++) {
+      docks[i] = new Dock(names.get(i), i, docks.length, capacities.get(i));
+    }
+    return docks;
+  }
+
+  /**
+   * Return the position of a pick request in the loading sequence of its dock.
+   *
+   * @param number the pick request number
+   * @return the position, counting from 1
+   */
+  public int positionOf(int number) {
+    return (number - 1) / dockCount + 1;
+  }
+
+  /**
+   * Return the number of the pick request at a position in this dock's loading sequence.
+   *
+   * @param position the position, counting from 1
+   * @return the pick request number
+   */
+  public int numberAt(int position) {
+    return (position - 1) * dockCount + index + 1;
+  }
+
+  /**
+   * Record that pallets were loaded onto the truck at this dock.
+   *
+   * @param request the pick request of the pallets, or null if it is not known
+   */
+  public synchronized void recordLoad(PickRequest request) {
+    if (request != null) {
+      truck.add(request);
+    }
+    long now = System.nanoTime();
+    if (firstLoadNanos == 0) {
+      firstLoadNanos = now;
+    }
+    if (truckStartNanos == 0) {
+      truckStartNanos = now;
+    }
+    lastLoadNanos = now;
+    loaded++;
+  }
+
+  /**
+   * Check whether the pick request at a position of the loading sequence is the last one to fit on
+   * a truck, so the truck leaves once it has been loaded.
+   *
+   * @param position the position of the pick request
+   * @return true, if the truck is full after this pick request
+   */
+  public boolean fillsTruck(int position) {
+    return position % capacity == 0;
+  }
+
+  /**
+   * Record that the truck at this dock has left, and a new one has pulled in.
+   *
+   * @return the pick requests that left on the truck
+   */
+  public synchronized List<PickRequest> recordDeparture() {
+    long now = System.nanoTime();
+    departures++;
+    if (truckStartNanos != 0) {
+      truckNanos += now - truckStartNanos;
+    }
+    lastDepartureNanos = now;
+    truckStartNanos = 0;
+
+    List<PickRequest> departed = new ArrayList<PickRequest>(truck);
+    truck.clear();
+    return departed;
+  }
+
+  /**
+   * Record that pallets were taken off the truck again.
+   *
+   * @param request the pick request of the pallets, or null if it is not known
+   */
+  public synchronized void recordUnload(PickRequest request) {
+    truck.remove(request);
+    if (loaded > 0) {
+      loaded--;
+    }
+  }
+
+  /**
+   * Return the name of the dock.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Return the index of the dock among the warehouse's docks.
+   *
+   * @return the index
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Return the number of pick requests that fill a truck at this dock.
+   *
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Return the pallets waiting at this dock.
+   *
+   * @return the loading area
+   */
+  public LoadingArea getLoadingArea() {
+    return loadingArea;
+  }
+
+  /**
+   * Return the number of pick requests loaded at this dock.
+   *
+   * @return the number of pick requests
+   */
+  public synchronized int getLoadedCount() {
+    return loaded;
+  }
+
+  /**
+   * Return the number of trucks that have left this dock.
+   *
+   * @return the number of trucks
+   */
+  public synchronized int getDepartures() {
+    return departures;
+  }
+
+  /**
+   * Return when the last truck left this dock.
+   *
+   * @return the System.nanoTime of the last departure, or 0 if no truck has left
+   */
+  public synchronized long getLastDepartureNanos() {
+    return lastDepartureNanos;
+  }
+
+  /**
+   * Write the state of the dock to a snapshot: its loading area, the pick requests on its truck and
+   * its counts. Timings are not written; they start again from the snapshot.
+   *
+   * @param out where the state is written
+   * @throws IOException if the state cannot be written
+   */
+  synchronized void writeState(DataOutput out) throws IOException {
+    loadingArea.writeState(out);
+    out.writeInt(truck.size());
+    for (PickRequest request : truck) {
+      Snapshot.writeRequest(out, request);
+    }
+    out.writeInt(loaded);
+    out.writeInt(departures);
+  }
+
+  /**
+   * Read the state of the dock written by writeState().
+   *
+   * @param in where the state is read from
+   * @param requests the pick requests of the snapshot, by number
+   * @throws IOException if the state cannot be read
+   */
+  synchronized void readState(DataInput in, Map<Integer, PickRequest> requests)
+      throws IOException {
+    loadingArea.readState(in);
+    truck.clear();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      truck.add(Snapshot.readRequest(in, requests));
+    }
+    loaded = in.readInt();
+    departures = in.readInt();
+  }
+
+  /**
+   * Add the pick requests on the truck at this dock to a map, by number.
+   *
+   * @param requests the map
+   */
+  synchronized void collectRequests(Map<Integer, PickRequest> requests) {
+    for (PickRequest request : truck) {
+      Snapshot.collect(requests, request);
+    }
+  }
+
+  /**
+   * Return a summary of how much this dock has loaded and how fast its trucks left.
+   *
+   * @return the summary
+   */
+  public synchronized String report() {
+    double seconds = Math.max(lastLoadNanos - firstLoadNanos, 1) / 1e9;
+    double perTruck = departures == 0 ? 0 : truckNanos / 1e6 / departures;
+    return String.format(
+        "Dock %s: %d pick requests loaded, %d trucks departed (%.3f ms per truck), %.0f pick"
+            + " requests/sec, %d waiting.",
+        name, loaded, departures, perTruck, loaded / seconds,
+        loadingArea.size());
+  }
+
+}
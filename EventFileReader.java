@@ -0,0 +1,212 @@
+package warehouse_system;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An EventFileReader replays an events file into an Organizer. The file is memory-mapped a window
+ * at a time, line boundaries are found directly in the mapped bytes, and each line is decoded into
+ * a single reused CharBuffer that is handed to the Organizer. No String is created per line, so
+ * very large event logs can be replayed without producing garbage for every event.
+ */
+public class EventFileReader {
+
+  /** The number of bytes mapped at a time. */
+  private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * The most bytes mapped at a time, for a line longer than WINDOW_SIZE. A longer line is not an
+   * event, so the replay stops there rather than mapping ever larger windows.
+   */
+  private static final int MAX_WINDOW_SIZE = 256 * 1024 * 1024;
+
+  /** The events file. */
+  private File file;
+
+  /** The line currently being handled; reused for every line. */
+  private CharBuffer line = CharBuffer.allocate(256);
+
+  /** Decodes lines that are not plain ASCII. */
+  private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /** The number of lines at the start of the file that are not handled. */
+  private long skip;
+
+  /** The number of lines seen by the current replay. */
+  private long lineCount;
+
+  /** The number of bytes read by the last replay. */
+  private long bytesRead;
+
+  /** The number of events (lines) handled by the last replay. */
+  private long eventCount;
+
+  /** How long the last replay took, in nanoseconds. */
+  private long elapsedNanos;
+
+  /**
+   * Instantiate a reader for an events file.
+   *
+   * @param file the events file
+   */
+  public EventFileReader(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Pass every line of the events file to the organizer, in order.
+   *
+   * @param organizer the organizer that handles the events
+   * @throws IOException if the file cannot be read, or has a line longer than MAX_WINDOW_SIZE
+   */
+  public void replay(Organizer organizer) throws IOException {
+    long startTime = System.nanoTime();
+    bytesRead = 0;
+    eventCount = 0;
+    lineCount = 0;
+
+    try (RandomAccessFile input = new RandomAccessFile(file, "r");
+        FileChannel channel = input.getChannel()) {
+
+      long size = channel.size();
+      long position = 0;
+      long windowSize = WINDOW_SIZE;
+
+      while (position < size) {
+        int length = (int) Math.min(windowSize, size - position);
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        boolean lastWindow = position + length == size;
+
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+          if (window.get(i) == '\n') {
+            handleLine(organizer, window, lineStart, i);
+            lineStart = i + 1;
+          }
+        }
+
+        if (lastWindow) {
+          if (lineStart < length) { // The file does not end with a newline.
+            handleLine(organizer, window, lineStart, length);
+          }
+          lineStart = length;
+        } else if (lineStart == 0) {
+          // A single line is longer than the window, so map a bigger one, up to the limit.
+          if (windowSize >= MAX_WINDOW_SIZE) {
+            throw new IOException("Line " + (lineCount + 1) + " of " + file + " is longer than "
+                + MAX_WINDOW_SIZE + " bytes.");
+          }
+          windowSize = Math.min(windowSize * 2, MAX_WINDOW_SIZE);
+        }
+
+        // The next window starts at the first line that was not finished.
+        position += lineStart;
+        bytesRead = position;
+      }
+    }
+
+    organizer.awaitHandled();
+    elapsedNanos = System.nanoTime() - startTime;
+  }
+
+  /**
+   * Decode the bytes of one line into the reused line buffer and pass it to the organizer.
+   *
+   * @param organizer the organizer that handles the event
+   * @param window the mapped bytes
+   * @param start the index of the first byte of the line
+   * @param end the index of the newline that ends the line
+   */
+  private void handleLine(Organizer organizer, ByteBuffer window, int start, int end) {
+    if (lineCount++ < skip) {
+      return;
+    }
+    int length = end - start;
+    if (line.capacity() < length) {
+      line = CharBuffer.allocate(Math.max(length, line.capacity() * 2));
+    }
+    line.clear();
+
+    // Plain ASCII (the usual case) is copied byte for byte; anything else is decoded as UTF-8.
+    boolean ascii = true;
+    for (int i = start; i < end; i++) {
+      byte b = window.get(i);
+      if (b < 0) {
+        ascii = false;
+        break;
+      }
+      line.put((char) b);
+    }
+
+    if (!ascii) {
+      ByteBuffer bytes = window.duplicate();
+      bytes.limit(end).position(start);
+      line.clear();
+      decoder.reset();
+      decoder.decode(bytes, line, true);
+      decoder.flush(line);
+    }
+
+    line.flip();
+    organizer.handle(line);
+    eventCount++;
+  }
+
+  /**
+   * Skip lines at the start of the file, e.g. because they were recovered from a journal.
+   *
+   * @param lines the number of lines not to handle
+   */
+  public void setSkip(long lines) {
+    this.skip = lines;
+  }
+
+  /**
+   * Return the number of bytes read by the last replay.
+   *
+   * @return the number of bytes
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Return the number of events handled by the last replay.
+   *
+   * @return the number of events
+   */
+  public long getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Return how long the last replay took.
+   *
+   * @return the elapsed time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Return a summary of the throughput of the last replay.
+   *
+   * @return the summary
+   */
+  public String report() {
+    double seconds = Math.max(elapsedNanos, 1) / 1e9;
+    return String.format("Read %d events (%d bytes) in %.3f s: %.0f events/sec, %.0f bytes/sec.",
+        eventCount, bytesRead, seconds, eventCount / seconds, bytesRead / seconds);
+  }
+
+}
@@ -0,0 +1,348 @@
+package warehouse_system;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An EventJournal is a write-ahead log of the events an Organizer has accepted, so the state of the
+ * warehouse can be rebuilt after a crash. Each event is appended as a binary record (its length, a
+ * CRC32 of its bytes and its UTF-8 bytes) before it is handled.
+ *
+ * <p>Forcing the file to disk after every event would make each event wait for the disk, so
+ * records are forced in groups: once a number of events have been appended, or once some time has
+ * passed since the last force, whichever comes first. A background thread forces the last group
+ * when events stop coming in. A crash loses at most the events of the group that was not forced
+ * yet; a record that was only half written is recognised by its CRC and ignored.
+ *
+ * <p>The journal is split into segments, each named after the number of its first event. When a
+ * snapshot has been taken the journal moves on to a new segment and the older ones are deleted,
+ * so the journal only holds the events since the latest snapshot.
+ */
+public class EventJournal {
+
+  /** The first bytes of a segment ("WJRN"). */
+  private static final int MAGIC = 0x574a524e;
+
+  /** The size of the buffer records are collected in before they are written. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** The largest record that is read back; a larger length means the header is damaged. */
+  private static final int MAX_RECORD_SIZE = 1 << 24;
+
+  /** The length of a record header: the length and the CRC of the event. */
+  private static final int HEADER_SIZE = 8;
+
+  /** The directory the segments are kept in. */
+  private final File dir;
+
+  /** The number of events after which a group is forced to disk. */
+  private final int groupSize;
+
+  /** How long (in nanoseconds) a group may wait before it is forced to disk. */
+  private final long groupNanos;
+
+  /** The segment events are appended to. */
+  private FileChannel channel;
+
+  /** Records that have not been written to the segment yet. */
+  private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+  /** Computes the CRC of each record. */
+  private final CRC32 crc = new CRC32();
+
+  /** The number of events journaled so far, counting those before the first segment. */
+  private long eventCount;
+
+  /** The number of events appended since the journal was last forced to disk. */
+  private int unforced;
+
+  /** When (System.nanoTime) the journal was last forced to disk. */
+  private long lastForceNanos;
+
+  /** Set once the journal is closed. */
+  private boolean closed;
+
+  /**
+   * Open a journal in a directory, starting a new segment.
+   *
+   * @param dir the directory the segments are kept in
+   * @param eventCount the number of events handled before the first event of the new segment
+   * @param groupSize the number of events after which a group is forced to disk
+   * @param groupMillis how long (in milliseconds) a group may wait before it is forced to disk
+   * @throws IOException if the segment cannot be created
+   */
+  public EventJournal(File dir, long eventCount, int groupSize, long groupMillis)
+      throws IOException {
+    this.dir = dir;
+    this.eventCount = eventCount;
+    this.groupSize = Math.max(groupSize, 1);
+    this.groupNanos = Math.max(groupMillis, 1) * 1_000_000L;
+    openSegment();
+
+    Thread forcer = new Thread("journal-force") {
+      @Override
+      public void run() {
+        forceIdleGroups(Math.max(groupMillis, 1));
+      }
+    };
+    forcer.setDaemon(true);
+    forcer.start();
+  }
+
+  /**
+   * Append an event to the journal. The event is durable once its group has been forced.
+   *
+   * @param event the event
+   * @throws IOException if the record cannot be written
+   */
+  public synchronized void append(CharSequence event) throws IOException {
+    int length = event.length();
+    ensureRoom(HEADER_SIZE + length * 3);
+    int start = buffer.position();
+    buffer.position(start + HEADER_SIZE);
+
+    // Plain ASCII (the usual case) is copied char by char; anything else is encoded as UTF-8.
+    for (int i = 0; i < length; i++) {
+      char c = event.charAt(i);
+      if (c >= 0x80) {
+        buffer.position(start + HEADER_SIZE);
+        buffer.put(event.toString().getBytes(StandardCharsets.UTF_8));
+        break;
+      }
+      buffer.put((byte) c);
+    }
+
+    int size = buffer.position() - start - HEADER_SIZE;
+    crc.reset();
+    crc.update(buffer.array(), start + HEADER_SIZE, size);
+    buffer.putInt(start, size);
+    buffer.putInt(start + 4, (int) crc.getValue());
+
+    eventCount++;
+    unforced++;
+    if (unforced >= groupSize || System.nanoTime() - lastForceNanos >= groupNanos) {
+      force();
+    }
+  }
+
+  /**
+   * Write every appended record and force the segment to disk.
+   *
+   * @throws IOException if the records cannot be written
+   */
+  public synchronized void force() throws IOException {
+    writeBuffer();
+    channel.force(false);
+    unforced = 0;
+    lastForceNanos = System.nanoTime();
+  }
+
+  /**
+   * Start a new segment and delete the older ones, once a snapshot covers every event journaled
+   * so far.
+   *
+   * @throws IOException if the new segment cannot be created
+   */
+  public synchronized void rotate() throws IOException {
+    force();
+    channel.close();
+    openSegment();
+    for (File segment : segments(dir)) {
+      if (baseOf(segment) < eventCount) {
+        if (!segment.delete()) {
+          System.err.println("Could not delete journal segment " + segment + ".");
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the number of events journaled so far.
+   *
+   * @return the number of events
+   */
+  public synchronized long getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Force the journal to disk and close it.
+   *
+   * @throws IOException if the records cannot be written
+   */
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      force();
+      channel.close();
+      closed = true;
+    }
+  }
+
+  /**
+   * Pass the journaled events from a number onwards to an organizer, in order. Replay stops at the
+   * first record that is damaged or missing, unless a later segment starts right there.
+   *
+   * @param dir the directory the segments are kept in
+   * @param from the number of the first event to pass on; earlier ones are skipped
+   * @param organizer the organizer that handles the events
+   * @return the number of events handled before the end of the journal, counting those before from
+   * @throws IOException if a segment cannot be read
+   */
+  public static long replay(File dir, long from, Organizer organizer) throws IOException {
+    long expected = from;
+    CRC32 check = new CRC32();
+    byte[] bytes = new byte[256];
+
+    for (File segment : segments(dir)) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(segment), BUFFER_SIZE))) {
+        if (in.readInt() != MAGIC) {
+          continue;
+        }
+        long number = in.readLong();
+        if (number > expected) {
+          break; // Events are missing before this segment.
+        }
+
+        while (true) {
+          int size = in.readInt();
+          int stored = in.readInt();
+          if (size < 0 || size > MAX_RECORD_SIZE) {
+            break; // The header was only partly written.
+          }
+          if (bytes.length < size) {
+            bytes = new byte[Math.max(size, bytes.length * 2)];
+          }
+          in.readFully(bytes, 0, size);
+          check.reset();
+          check.update(bytes, 0, size);
+          if ((int) check.getValue() != stored) {
+            break; // The record was only partly written.
+          }
+          if (number >= expected) {
+            organizer.handle(new String(bytes, 0, size, StandardCharsets.UTF_8));
+            expected = number + 1;
+          }
+          number++;
+        }
+      } catch (EOFException ex) {
+        // The end of the segment, or a record that was only partly written.
+      }
+    }
+    return expected;
+  }
+
+  /**
+   * Make room for a record in the buffer, writing out what is already there if needed.
+   *
+   * @param size the largest size the record can have
+   * @throws IOException if the buffer cannot be written
+   */
+  private void ensureRoom(int size) throws IOException {
+    if (buffer.remaining() < size) {
+      writeBuffer();
+      if (buffer.capacity() < size) {
+        buffer = ByteBuffer.allocate(size);
+      }
+    }
+  }
+
+  /**
+   * Write the records in the buffer to the segment.
+   *
+   * @throws IOException if the records cannot be written
+   */
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Create a segment whose first event is the next one to be journaled, and write its header.
+   *
+   * @throws IOException if the segment cannot be created
+   */
+  private void openSegment() throws IOException {
+    File segment = new File(dir, String.format("journal-%016d.wal", eventCount));
+    channel = new FileOutputStream(segment).getChannel();
+    buffer.putInt(MAGIC);
+    buffer.putLong(eventCount);
+    force();
+  }
+
+  /**
+   * Force groups that have waited long enough, because no more events came in to fill them. Runs
+   * on the journal's own thread until the journal is closed.
+   *
+   * @param groupMillis how long (in milliseconds) a group may wait
+   */
+  private void forceIdleGroups(long groupMillis) {
+    while (true) {
+      try {
+        Thread.sleep(groupMillis);
+      } catch (InterruptedException ex) {
+        return;
+      }
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (unforced > 0 && System.nanoTime() - lastForceNanos >= groupNanos) {
+          try {
+            force();
+          } catch (IOException ex) {
+            ex.printStackTrace();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the segments in a directory, in the order of their first events.
+   *
+   * @param dir the directory
+   * @return the segments
+   */
+  private static List<File> segments(File dir) {
+    List<File> segments = new ArrayList<File>();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith("journal-") && file.getName().endsWith(".wal")) {
+          segments.add(file);
+        }
+      }
+    }
+    // The numbers are zero-padded, so the names sort in order.
+    Collections.sort(segments);
+    return segments;
+  }
+
+  /**
+   * Return the number of the first event of a segment, from its name.
+   *
+   * @param segment the segment
+   * @return the number of its first event
+   */
+  private static long baseOf(File segment) {
+    String name = segment.getName();
+    return Long.parseLong(name.substring("journal-".length(), name.length() - ".wal".length()));
+  }
+
+}
@@ -0,0 +1,208 @@
+package warehouse_system;
+
+import java.util.Arrays;
+
+/**
+ * An EventTokenizer splits a line of the events file into space separated tokens without copying
+ * it. Only the start and end of each token are recorded, in arrays that are reused from one event
+ * to the next, so tokenizing and classifying an event allocates nothing. Tokens that have to be
+ * kept as Strings (worker names, SKUs, IDs) are interned in a small table, so a name that has been
+ * seen before is returned as the same String instead of a new copy.
+ *
+ * <p>An event may start with a time stamp: a number of milliseconds, e.g. "1200 Picker Alice picks
+ * 1". The time stamp is not a token; it is returned by getTime().
+ */
+public class EventTokenizer {
+
+  /** The largest number of distinct strings the intern table will hold. */
+  private static final int INTERN_CAPACITY = 1 << 14;
+
+  /** The event currently being tokenized. */
+  private CharSequence event;
+
+  /** The index of the first character of each token. */
+  private int[] starts = new int[16];
+
+  /** The index just past the last character of each token. */
+  private int[] ends = new int[16];
+
+  /** The number of tokens in the current event. */
+  private int count;
+
+  /** The time stamp of the current event, in milliseconds, or -1 if it has none. */
+  private long time;
+
+  /** Strings that have been handed out by text(), stored by hash with linear probing. */
+  private String[] interned = new String[2 * INTERN_CAPACITY];
+
+  /** The number of strings in the intern table. */
+  private int internedCount;
+
+  /**
+   * Tokenize a new event, replacing the previous one. Runs of spaces separate tokens, a trailing
+   * carriage return is ignored, and a leading time stamp is taken off.
+   *
+   * @param line the event; it must not change while its tokens are being read
+   */
+  public void reset(CharSequence line) {
+    event = line;
+    count = 0;
+
+    int length = line.length();
+    if (length > 0 && line.charAt(length - 1) == '\r') {
+      length--;
+    }
+
+    int index = 0;
+    while (index < length) {
+      while (index < length && line.charAt(index) == ' ') {
+        index++;
+      }
+      if (index == length) {
+        break;
+      }
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+        ends = Arrays.copyOf(ends, count * 2);
+      }
+      starts[count] = index;
+      while (index < length && line.charAt(index) != ' ') {
+        index++;
+      }
+      ends[count] = index;
+      count++;
+    }
+
+    time = -1;
+    if (count > 0 && isNumber(0)) {
+      long stamp = 0;
+      for (int i = starts[0]; i < ends[0]; i++) {
+        stamp = stamp * 10 + (line.charAt(i) - '0');
+      }
+      time = stamp;
+      count--;
+      System.arraycopy(starts, 1, starts, 0, count);
+      System.arraycopy(ends, 1, ends, 0, count);
+    }
+  }
+
+  /**
+   * Check whether a token is made of digits only, and short enough to be a time stamp.
+   *
+   * @param index the index of the token
+   * @return true, if the token is a number
+   */
+  private boolean isNumber(int index) {
+    if (length(index) > 18) {
+      return false;
+    }
+    for (int i = starts[index]; i < ends[index]; i++) {
+      char c = event.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return the time stamp the current event started with.
+   *
+   * @return the time stamp in milliseconds, or -1 if the event has none
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Return the number of tokens in the current event.
+   *
+   * @return the number of tokens
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Return the length of a token.
+   *
+   * @param index the index of the token
+   * @return the number of characters in the token
+   */
+  public int length(int index) {
+    return ends[index] - starts[index];
+  }
+
+  /**
+   * Check whether a token is exactly the given word.
+   *
+   * @param index the index of the token
+   * @param word the word to compare with
+   * @return true, if the token and the word are the same
+   */
+  public boolean matches(int index, String word) {
+    if (index >= count || length(index) != word.length()) {
+      return false;
+    }
+    int start = starts[index];
+    for (int i = 0; i < word.length(); i++) {
+      if (event.charAt(start + i) != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return a token as a String. Tokens are interned, so asking for the same text again (in this or
+   * any later event) returns the same String without allocating.
+   *
+   * @param index the index of the token
+   * @return the text of the token
+   */
+  public String text(int index) {
+    int start = starts[index];
+    int end = ends[index];
+
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + event.charAt(i);
+    }
+
+    int mask = interned.length - 1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    String candidate;
+    while ((candidate = interned[slot]) != null) {
+      if (candidate.hashCode() == hash && matches(index, candidate)) {
+        return candidate;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    String text = event.subSequence(start, end).toString();
+    if (internedCount < INTERN_CAPACITY) {
+      interned[slot] = text;
+      internedCount++;
+    }
+    return text;
+  }
+
+  /**
+   * Return the text of several consecutive tokens joined by single spaces, e.g. a location.
+   *
+   * @param from the index of the first token
+   * @param to the index just past the last token
+   * @return the joined text
+   */
+  public String join(int from, int to) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      if (i > from) {
+        builder.append(' ');
+      }
+      builder.append(event, starts[i], ends[i]);
+    }
+    return builder.toString();
+  }
+
+}
@@ -0,0 +1,83 @@
+package warehouse_system;
+
+/**
+ * The kinds of events that can appear in the events file. Apart from ORDER (which is named by the
+ * first word of an event) and BLANK, each type is named by the third word of the event.
+ */
+public enum EventType {
+
+  /** A blank line. */
+  BLANK(null),
+  /** A new order came in by fax: "Order model color". */
+  ORDER("Order"),
+  /** A worker is ready for work: "Type name ready". */
+  READY("ready"),
+  /** A picker picked a fascia: "Picker name picks sku". */
+  PICKS("picks"),
+  /** A picker went to marshalling: "Picker name goes to marshalling". */
+  GOES("goes"),
+  /** A sequencer or loader scanned pallets: "Type name scans sku...". */
+  SCANS("scans"),
+  /** A loader loaded pallets onto a truck: "Loader name loads id". */
+  LOADS("loads"),
+  /** A loader unloaded pallets from a truck: "Loader name unloads id". */
+  UNLOADS("unloads"),
+  /** A replenisher refilled a level: "Replenisher name replenishes zone aisle rack level". */
+  REPLENISHES("replenishes"),
+  /** A worker takes a break: "Type name takes a break". */
+  TAKES("takes"),
+  /** Anything else. */
+  UNKNOWN(null);
+
+  /** The word that names this type of event, or null if it is not named by a word. */
+  private final String keyword;
+
+  /** Every value, kept so that classifying an event does not copy the values array. */
+  private static final EventType[] VALUES = values();
+
+  /**
+   * Instantiate an event type.
+   *
+   * @param keyword the word that names this type of event
+   */
+  private EventType(String keyword) {
+    this.keyword = keyword;
+  }
+
+  /**
+   * Return the word that names this type of event.
+   *
+   * @return the keyword, or null for BLANK and UNKNOWN
+   */
+  public String getKeyword() {
+    return keyword;
+  }
+
+  /**
+   * Classify a tokenized event.
+   *
+   * @param tokens the tokenized event
+   * @return the type of the event
+   */
+  public static EventType of(EventTokenizer tokens) {
+    if (tokens.count() == 0) {
+      return BLANK;
+    }
+    if (tokens.matches(0, ORDER.keyword)) {
+      return ORDER;
+    }
+    if (tokens.count() < 3) {
+      return UNKNOWN;
+    }
+    if (tokens.matches(2, READY.keyword)) {
+      return tokens.count() == 3 ? READY : UNKNOWN;
+    }
+    for (int i = PICKS.ordinal(); i < UNKNOWN.ordinal(); i++) {
+      if (tokens.matches(2, VALUES[i].keyword)) {
+        return VALUES[i];
+      }
+    }
+    return UNKNOWN;
+  }
+
+}
@@ -0,0 +1,228 @@
+package warehouse_system;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * FlightEvents holds the Java Flight Recorder events of the warehouse: a pick request created, a
+ * picker assigned, a pick (correct or not), the result of a scan, pallets loaded and unloaded, and
+ * a replenishment dispatched and completed. Each event is begun when the Organizer or worker starts
+ * on the operation and committed when it is done, so its duration is the time the operation took
+ * to handle, and it carries the IDs, worker names and SKUs involved. A recording of a run
+ * (java -XX:StartFlightRecording=filename=warehouse.jfr ...) shows them next to the garbage
+ * collections and CPU samples of the same moments, under the "Warehouse System" category.
+ *
+ * <p>Loading the first event class makes the JVM set up Flight Recorder, which takes a good part
+ * of a second. So events are only created once Flight Recorder has been started in this JVM, from
+ * the command line or later on with jcmd; until then, emitting an event costs one check.
+ */
+final class FlightEvents {
+
+  /** FlightEvents only holds the event classes. */
+  private FlightEvents() {}
+
+  /**
+   * Check whether Flight Recorder has been started in this JVM, so events can be created without
+   * setting it up.
+   *
+   * @return true, if events should be created
+   */
+  static boolean isAvailable() {
+    return FlightRecorder.isInitialized();
+  }
+
+  /** A new pick request was created from a batch of orders. */
+  @Name("warehouse_system.PickRequestCreated")
+  @Label("Pick Request Created")
+  @Category({"Warehouse System", "Picking"})
+  @Description("A batch of orders was turned into a pick request")
+  static final class PickRequestCreated extends Event {
+
+    /** The ID of the pick request. */
+    @Label("Request ID")
+    String requestId;
+
+    /** The number of orders in the pick request. */
+    @Label("Orders")
+    int orders;
+
+    /** The number of fascia to pick. */
+    @Label("Fascia")
+    int fascia;
+
+    /** The expected length of the pick path. */
+    @Label("Path Length")
+    double pathLength;
+  }
+
+  /** A picker was assigned a pick request. */
+  @Name("warehouse_system.PickerAssigned")
+  @Label("Picker Assigned")
+  @Category({"Warehouse System", "Picking"})
+  @Description("A ready picker was handed a pick request")
+  static final class PickerAssigned extends Event {
+
+    /** The name of the picker. */
+    @Label("Picker")
+    String picker;
+
+    /** The ID of the pick request. */
+    @Label("Request ID")
+    String requestId;
+
+    /** The pick requests still waiting for a picker. */
+    @Label("Queued Requests")
+    int queued;
+  }
+
+  /** A picker picked a fascia, either the right one or not. */
+  @Name("warehouse_system.PickExecuted")
+  @Label("Pick Executed")
+  @Category({"Warehouse System", "Picking"})
+  @Description("A picker picked a fascia from a level")
+  static final class PickExecuted extends Event {
+
+    /** The name of the picker. */
+    @Label("Picker")
+    String picker;
+
+    /** The ID of the pick request being picked. */
+    @Label("Request ID")
+    String requestId;
+
+    /** The SKU that was picked. */
+    @Label("SKU")
+    String sku;
+
+    /** The SKU that should have been picked. */
+    @Label("Expected SKU")
+    String expectedSku;
+
+    /** The location the picker picked from. */
+    @Label("Location")
+    String location;
+
+    /** Whether the picker picked the SKU it was supposed to. */
+    @Label("Correct")
+    boolean correct;
+  }
+
+  /** A sequencer or loader scanned pallets. */
+  @Name("warehouse_system.ScanResult")
+  @Label("Scan Result")
+  @Category({"Warehouse System", "Sequencing"})
+  @Description("A sequencer or loader scanned the fascia of a pick request")
+  static final class ScanResult extends Event {
+
+    /** The name of the worker. */
+    @Label("Worker")
+    String worker;
+
+    /** The type of the worker: Sequencer or Loader. */
+    @Label("Worker Type")
+    String workerType;
+
+    /** The ID of the pick request scanned. */
+    @Label("Request ID")
+    String requestId;
+
+    /** Whether the fascia were in the right order. */
+    @Label("Correct")
+    boolean correct;
+
+    /** What happens next: "loading", "load", "rescan" or "discard". */
+    @Label("Outcome")
+    String outcome;
+  }
+
+  /** A loader loaded pallets onto a truck. */
+  @Name("warehouse_system.PalletsLoaded")
+  @Label("Pallets Loaded")
+  @Category({"Warehouse System", "Loading"})
+  @Description("A loader loaded the pallets of a pick request onto a truck")
+  static final class PalletsLoaded extends Event {
+
+    /** The name of the loader. */
+    @Label("Loader")
+    String loader;
+
+    /** The ID of the pick request loaded. */
+    @Label("Request ID")
+    String requestId;
+
+    /** Whether these were the pallets the loader was assigned. */
+    @Label("Assigned")
+    boolean assigned;
+  }
+
+  /** A loader unloaded pallets from a truck. */
+  @Name("warehouse_system.PalletsUnloaded")
+  @Label("Pallets Unloaded")
+  @Category({"Warehouse System", "Loading"})
+  @Description("A loader unloaded the pallets of a pick request from a truck")
+  static final class PalletsUnloaded extends Event {
+
+    /** The name of the loader. */
+    @Label("Loader")
+    String loader;
+
+    /** The ID of the pick request unloaded. */
+    @Label("Request ID")
+    String requestId;
+  }
+
+  /** A replenisher was sent on a trip to refill levels. */
+  @Name("warehouse_system.ReplenishmentDispatched")
+  @Label("Replenishment Dispatched")
+  @Category({"Warehouse System", "Replenishment"})
+  @Description("A replenisher was sent to refill one or more levels")
+  static final class ReplenishmentDispatched extends Event {
+
+    /** The name of the replenisher. */
+    @Label("Replenisher")
+    String replenisher;
+
+    /** The SKUs of the levels on the trip, separated by spaces. */
+    @Label("SKUs")
+    String skus;
+
+    /** The number of levels on the trip. */
+    @Label("Stops")
+    int stops;
+  }
+
+  /** A replenisher refilled a level. */
+  @Name("warehouse_system.ReplenishmentCompleted")
+  @Label("Replenishment Completed")
+  @Category({"Warehouse System", "Replenishment"})
+  @Description("A replenisher refilled a level")
+  static final class ReplenishmentCompleted extends Event {
+
+    /** The name of the replenisher. */
+    @Label("Replenisher")
+    String replenisher;
+
+    /** The SKU of the level. */
+    @Label("SKU")
+    String sku;
+
+    /** The location of the level. */
+    @Label("Location")
+    String location;
+
+    /** The stock on the level once refilled. */
+    @Label("Stock")
+    int stock;
+
+    /** The time since the replenisher was sent on its trip. */
+    @Label("Trip Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long tripTime;
+  }
+
+}
@@ -0,0 +1,165 @@
+package warehouse_system;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Histogram counts values (latencies, queue depths) in log-linear buckets: one bucket per value
+ * below 16, then eight buckets per power of two, so a percentile is known to within an eighth of
+ * its value whatever the range. Recording a value is a few atomic increments and never allocates,
+ * so several threads may record into the same histogram while another reads it.
+ */
+public class Histogram implements HistogramMBean {
+
+  /** Values below this have a bucket each. */
+  private static final int LINEAR = 16;
+
+  /** The number of bits of a value, after its highest bit, that pick its bucket. */
+  private static final int SUB_BITS = 3;
+
+  /** The number of buckets: enough for every non-negative long. */
+  private static final int BUCKETS = LINEAR + (63 - 4) * (1 << SUB_BITS);
+
+  /** The unit of the recorded values. */
+  private final String unit;
+
+  /** The number of values in each bucket. */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  /** The number of values recorded. */
+  private final AtomicLong count = new AtomicLong();
+
+  /** The sum of the values recorded. */
+  private final AtomicLong sum = new AtomicLong();
+
+  /** The largest value recorded. */
+  private final AtomicLong max = new AtomicLong();
+
+  /** The value recorded last. */
+  private volatile long last;
+
+  /**
+   * Instantiate an empty histogram.
+   *
+   * @param unit the unit of the values, e.g. "ns"
+   */
+  public Histogram(String unit) {
+    this.unit = unit;
+  }
+
+  /**
+   * Record a value. Negative values count as 0.
+   *
+   * @param value the value
+   * @return the number of values recorded so far, including this one
+   */
+  public long record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(bucketOf(value));
+    sum.addAndGet(value);
+    last = value;
+    long largest;
+    do {
+      largest = max.get();
+    } while (value > largest && !max.compareAndSet(largest, value));
+    return count.incrementAndGet();
+  }
+
+  /**
+   * Return the value below which a share of the recorded values fall.
+   *
+   * @param share the share, from 0 to 1
+   * @return the middle of the bucket the value is in, or 0 if nothing was recorded
+   */
+  public long getPercentile(double share) {
+    long total = 0;
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(share * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        long low = lowerBound(i);
+        long high = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+        return Math.min(low + (high - low) / 2, max.get());
+      }
+    }
+    return max.get();
+  }
+
+  @Override
+  public String getUnit() {
+    return unit;
+  }
+
+  @Override
+  public long getCount() {
+    return count.get();
+  }
+
+  @Override
+  public double getMean() {
+    long values = count.get();
+    return values == 0 ? 0 : sum.get() / (double) values;
+  }
+
+  @Override
+  public long getP50() {
+    return getPercentile(0.50);
+  }
+
+  @Override
+  public long getP99() {
+    return getPercentile(0.99);
+  }
+
+  @Override
+  public long getMax() {
+    return max.get();
+  }
+
+  @Override
+  public long getLast() {
+    return last;
+  }
+
+  /**
+   * Return the bucket of a value.
+   *
+   * @param value the value; not negative
+   * @return the index of its bucket
+   */
+  private static int bucketOf(long value) {
+    if (value < LINEAR) {
+      return (int) value;
+    }
+    int highest = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (highest - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+    return LINEAR + ((highest - 4) << SUB_BITS) + sub;
+  }
+
+  /**
+   * Return the smallest value of a bucket.
+   *
+   * @param bucket the index of the bucket
+   * @return the smallest value that goes in it
+   */
+  private static long lowerBound(int bucket) {
+    if (bucket < LINEAR) {
+      return bucket;
+    }
+    int highest = 4 + ((bucket - LINEAR) >> SUB_BITS);
+    long sub = (bucket - LINEAR) & ((1 << SUB_BITS) - 1);
+    return ((1L << SUB_BITS) + sub) << (highest - SUB_BITS);
+  }
+
+}
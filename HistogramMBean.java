@@ -0,0 +1,57 @@
+package warehouse_system;
+
+/**
+ * The attributes of a Histogram that are published through JMX.
+ */
+public interface HistogramMBean {
+
+  /**
+   * Return the unit of the recorded values.
+   *
+   * @return the unit, e.g. "ns"
+   */
+  String getUnit();
+
+  /**
+   * Return the number of values recorded.
+   *
+   * @return the number of values
+   */
+  long getCount();
+
+  /**
+   * Return the mean of the values recorded.
+   *
+   * @return the mean, or 0 if nothing was recorded
+   */
+  double getMean();
+
+  /**
+   * Return the median of the values recorded.
+   *
+   * @return the median, to within an eighth
+   */
+  long getP50();
+
+  /**
+   * Return the 99th percentile of the values recorded.
+   *
+   * @return the 99th percentile, to within an eighth
+   */
+  long getP99();
+
+  /**
+   * Return the largest value recorded.
+   *
+   * @return the largest value
+   */
+  long getMax();
+
+  /**
+   * Return the value recorded last.
+   *
+   * @return the last value
+   */
+  long getLast();
+
+}
@@ -1,10 +1,23 @@
 package warehouse_system;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * The Class Level.
+ * The Class Level. The stock of a level may be taken from and refilled by several threads at once:
+ * the stock is an atomic counter, and the level is flagged for restocking exactly once each time it
+ * runs low. Pick requests reserve fascia of a level before pickers are sent to it; a reservation
+ * only succeeds while the stock that is not reserved yet covers it, and each fascia taken uses up
+ * one reservation.
  */
 public class Level {
 
+  /** The stock at or below which a level needs to be restocked. */
+  public static final int RESTOCK_THRESHOLD = 5;
+
+  /** The stock of a full level. */
+  public static final int FULL_STOCK = 30;
+
   /** The sku of the fascia held by this level. */
   private String sku;
 
@@ -15,10 +28,19 @@ public class Level {
   private String model;
 
   /** The current stock of this level. */
-  private int currentStock;
+  private final AtomicInteger currentStock;
+
+  /**
+   * Whether or not this level needs to be restocked (currentStock <= 5). Raised once by the take
+   * that brings the stock down to the threshold, and lowered when the level is replenished.
+   */
+  private final AtomicBoolean needRestock = new AtomicBoolean(false);
 
-  /** Whether or not this level needs to be restocked (currentStock <= 5). */
-  private boolean needRestock;
+  /** Whether a restock has been requested since the level last ran low. */
+  private final AtomicBoolean restockRequested = new AtomicBoolean(false);
+
+  /** The number of fascia reserved by pick requests and not taken yet. */
+  private final AtomicInteger reserved = new AtomicInteger();
 
   /**
    * Instantiate a Level.
@@ -33,8 +55,7 @@ public class Level {
     this.sku = sku;
     this.color = color;
     this.model = model;
-    this.currentStock = currentStock;
-    this.needRestock = false;
+    this.currentStock = new AtomicInteger(currentStock);
   }
 
   /**
@@ -43,29 +64,101 @@ public class Level {
    * @param currentStock the new stock
    */
   public void setStock(int currentStock) {
-    this.currentStock = currentStock;
+    this.currentStock.set(currentStock);
   }
 
   /**
-   * Takes a fascia from this level (pickers would do this in the events file). If the stock is 5,
-   * then change this.needRestock to True. Organizer should check this immediately after running
-   * takeFascia, and if it's true, then add this level to a queue replenishQueue.
+   * Takes a fascia from this level (pickers would do this in the events file), unless the level is
+   * empty. The take that brings the stock down to RESTOCK_THRESHOLD flags the level as needing a
+   * restock; the Organizer should call requestRestock() right after, and have the level
+   * replenished if it returns true.
    *
-   * @return the string
+   * @return true, if a fascia was taken; false, if the level was empty
    */
-  public String takeFascia() {
-    currentStock -= 1;
-    if (currentStock <= 5) {
-      needRestock = true;
+  public boolean takeFascia() {
+    int stock;
+    do {
+      stock = currentStock.get();
+      if (stock <= 0) {
+        return false;
+      }
+    } while (!currentStock.compareAndSet(stock, stock - 1));
+    if (stock - 1 <= RESTOCK_THRESHOLD) {
+      needRestock.compareAndSet(false, true);
     }
-    return sku;
+    // The stock goes down before the reservation, so a concurrent reserve() never sees more
+    // unreserved stock than there is.
+    int current;
+    do {
+      current = reserved.get();
+    } while (current > 0 && !reserved.compareAndSet(current, current - 1));
+    return true;
+  }
+
+  /**
+   * Reserve fascia of this level for a pick request, if enough of the stock is not reserved yet.
+   *
+   * @param count the number of fascia
+   * @return true, if the fascia were reserved
+   */
+  public boolean reserve(int count) {
+    while (true) {
+      int current = reserved.get();
+      if (currentStock.get() - current < count) {
+        return false;
+      }
+      if (reserved.compareAndSet(current, current + count)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Give back fascia reserved by reserve() that will not be taken.
+   *
+   * @param count the number of fascia
+   */
+  public void unreserve(int count) {
+    reserved.addAndGet(-count);
+  }
+
+  /**
+   * Gets the number of fascia reserved by pick requests and not taken yet.
+   *
+   * @return the reserved stock
+   */
+  public int getReserved() {
+    return reserved.get();
+  }
+
+  /**
+   * Claim the restock of this level. Once the level has run low, this returns true for exactly one
+   * caller, so the level is queued for replenishment only once until it has been replenished.
+   *
+   * @return true, if the caller should have this level replenished
+   */
+  public boolean requestRestock() {
+    return needRestock.get() && claimRestock();
+  }
+
+  /**
+   * Claim the restock of this level whether or not it has run low yet, e.g. because a
+   * ReplenishmentPlanner expects it to run out soon. This returns true for exactly one caller until
+   * the level has been replenished.
+   *
+   * @return true, if the caller should have this level replenished
+   */
+  public boolean claimRestock() {
+    return restockRequested.compareAndSet(false, true);
   }
 
   /**
    * Replenish the level back to its original amount in this model: 30.
    */
   public void replenish() {
-    currentStock = 30;
+    currentStock.set(FULL_STOCK);
+    needRestock.set(false);
+    restockRequested.set(false);
   }
 
   /**
@@ -101,7 +194,7 @@ public class Level {
    * @return the current stock
    */
   public int getCurrentStock() {
-    return currentStock;
+    return currentStock.get();
   }
 
   /**
@@ -110,7 +203,31 @@ public class Level {
    * @return true, if the level needs to be restocked
    */
   public boolean isNeedRestock() {
-    return needRestock;
+    return needRestock.get();
+  }
+
+  /**
+   * Checks if a restock has been requested since the level last ran low.
+   *
+   * @return true, if a replenisher has been asked for
+   */
+  public boolean isRestockRequested() {
+    return restockRequested.get();
+  }
+
+  /**
+   * Put the level back in a state read from a snapshot.
+   *
+   * @param stock the stock of the level
+   * @param needsRestock whether the level needs to be restocked
+   * @param requested whether a restock has been requested
+   * @param reservations the number of fascia reserved
+   */
+  void restore(int stock, boolean needsRestock, boolean requested, int reservations) {
+    currentStock.set(stock);
+    reserved.set(reservations);
+    needRestock.set(needsRestock);
+    restockRequested.set(requested);
   }
 
 }
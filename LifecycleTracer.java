@@ -0,0 +1,196 @@
+package warehouse_system;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A LifecycleTracer measures how long pick requests spend in each stage, from the first of their
+ * orders being received to their pallets being loaded onto a truck. The Organizer stamps each
+ * request as it reaches a stage (see RequestStage) with the time of the event that moved it on:
+ * the time stamp the event started with, or else the time the event was handled, counted from
+ * when the tracer was created. Once a request is loaded, the time between each pair of stages is
+ * recorded in a histogram, in milliseconds:
+ *
+ * <ul>
+ *   <li>batching: from the first order to the pick request (waiting in the order batcher),
+ *   <li>queued: from the pick request to its picker (waiting in the queue, or for stock),
+ *   <li>picking: from its picker to the marshalling area,
+ *   <li>marshalling: from the marshalling area to being sequenced,
+ *   <li>loading: from being sequenced to being loaded, and
+ *   <li>lead time: from the first order to being loaded.
+ * </ul>
+ *
+ * <p>A request that was picked again is measured from its last attempt. The histograms can be
+ * published as JMX MBeans (warehouse_system:type=StageTime,name=queued, ...) and reported at any
+ * time.
+ */
+public class LifecycleTracer {
+
+  /** The spans between two stages that are measured. */
+  public enum Span {
+
+    /** From the first order to the pick request. */
+    BATCHING("batching", RequestStage.ORDERED, RequestStage.CREATED),
+
+    /** From the pick request to its picker. */
+    QUEUED("queued", RequestStage.CREATED, RequestStage.ASSIGNED),
+
+    /** From its picker to the marshalling area. */
+    PICKING("picking", RequestStage.ASSIGNED, RequestStage.PICKED),
+
+    /** From the marshalling area to being sequenced. */
+    MARSHALLING("marshalling", RequestStage.PICKED, RequestStage.SEQUENCED),
+
+    /** From being sequenced to being loaded. */
+    LOADING("loading", RequestStage.SEQUENCED, RequestStage.LOADED),
+
+    /** From the first order to being loaded. */
+    LEAD_TIME("leadTime", RequestStage.ORDERED, RequestStage.LOADED);
+
+    /** The name of the span. */
+    private final String label;
+
+    /** The stage the span starts at. */
+    private final RequestStage from;
+
+    /** The stage the span ends at. */
+    private final RequestStage to;
+
+    /**
+     * Instantiate a span.
+     *
+     * @param label the name of the span
+     * @param from the stage it starts at
+     * @param to the stage it ends at
+     */
+    Span(String label, RequestStage from, RequestStage to) {
+      this.label = label;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * Return the name of the span.
+     *
+     * @return the name
+     */
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /** The time spent in each span, by ordinal. */
+  private final Histogram[] spans = new Histogram[Span.values().length];
+
+  /** When this tracer was created, in nanoseconds. */
+  private final long startNanos = System.nanoTime();
+
+  /** The names the histograms were published under, so they can be taken back. */
+  private final List<ObjectName> published = new ArrayList<ObjectName>();
+
+  /**
+   * Instantiate a tracer with empty histograms.
+   */
+  public LifecycleTracer() {
+    for (Span span : Span.values()) {
+      spans[span.ordinal()] = new Histogram("ms");
+    }
+  }
+
+  /**
+   * Return the time to stamp an event with that has no time stamp of its own: the milliseconds
+   * since this tracer was created.
+   *
+   * @return the time in milliseconds
+   */
+  public long clock() {
+    return (System.nanoTime() - startNanos) / 1_000_000;
+  }
+
+  /**
+   * Record that a pick request reached a stage. Once it is loaded, the time it spent in each span
+   * is recorded.
+   *
+   * @param request the pick request
+   * @param stage the stage
+   * @param time the time in milliseconds
+   */
+  public void stamp(PickRequest request, RequestStage stage, long time) {
+    request.stamp(stage, time);
+    if (stage != RequestStage.LOADED) {
+      return;
+    }
+    for (Span span : Span.values()) {
+      long from = request.getStamp(span.from);
+      long to = request.getStamp(span.to);
+      if (from >= 0 && to >= 0) {
+        spans[span.ordinal()].record(to - from);
+      }
+    }
+  }
+
+  /**
+   * Return the histogram of the time spent in a span.
+   *
+   * @param span the span
+   * @return the histogram, in milliseconds
+   */
+  public Histogram getSpan(Span span) {
+    return spans[span.ordinal()];
+  }
+
+  /**
+   * Publish the histograms as MBeans on the platform MBean server. Histograms that cannot be
+   * published are skipped.
+   */
+  public void register() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (Span span : Span.values()) {
+      try {
+        ObjectName name = new ObjectName("warehouse_system:type=StageTime,name=" + span.label);
+        server.registerMBean(spans[span.ordinal()], name);
+        published.add(name);
+      } catch (JMException ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Take back the MBeans published by register().
+   */
+  public void unregister() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName name : published) {
+      try {
+        server.unregisterMBean(name);
+      } catch (JMException ex) {
+        ex.printStackTrace();
+      }
+    }
+    published.clear();
+  }
+
+  /**
+   * Return a report of the time pick requests spent in each span so far, one line per span.
+   *
+   * @return the report
+   */
+  public String report() {
+    StringBuilder report = new StringBuilder("Pick request stages (ms):");
+    for (Span span : Span.values()) {
+      Histogram histogram = spans[span.ordinal()];
+      report.append(String.format(Locale.ROOT,
+          "%n  %-12s %8d requests, mean %10.1f, p50 %8d, p99 %8d, max %8d", span.label,
+          histogram.getCount(), histogram.getMean(), histogram.getP50(), histogram.getP99(),
+          histogram.getMax()));
+    }
+    return report.toString();
+  }
+
+}
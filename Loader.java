@@ -19,61 +19,94 @@ public class Loader extends ScanningWorker {
   }
 
   /**
-   * When a loader actually loads something, check if the right pick request was loaded and return
+   * When a loader actually loads something, check if the right pick request was loaded and send
    * an appropriate message.
    *
    * @param id the id of the pick request loaded
-   * @return the message to be printed by the Organizer
    */
-  public String loads(String id) {
+  public void loads(String id) {
+    FlightEvents.PalletsLoaded event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.PalletsLoaded();
+      event.begin();
+    }
 
     // Print what the loader has done.
-    String msg = toString() + " loaded " + id + ".";
+    out.send("{} loaded {}.", this, id);
 
     // Remove the loaded request from the loading area model.
-    warehouse.loadingIds.remove(id);
+    warehouse.removeLoadingId(id);
 
     // This pick-request is now on the truck, so it is put in the list of
     // loaded PRs.
-    warehouse.loadPickRequest(warehouse.getPickRequest(id));
-    warehouse.loadingCounter += 1;
+    PickRequest request = warehouse.getPickRequest(id);
+    warehouse.loadPickRequest(request);
 
-    // Turn String id into its int representation.
-    int intId = Integer.parseInt(id.substring(0, id.length() - 2));
+    // The pallets were loaded at their own dock, whose loading sequence
+    // moves on.
+    int number = PickRequest.parseNumber(id);
+    Dock dock = warehouse.getDockFor(number);
+    if (dock != null) {
+      dock.getLoadingArea().advance();
+      dock.recordLoad(request);
+    }
 
     // Tell the organizer that the loader loaded pallets that it was not
     // assigned to load, or if the truck has now departed.
-    if (!this.getPrId().equals(id)) {
-      msg = msg + "\nLoaded wrong pick request. " + toString() + " Unload pallets with ID " + id
-          + ".";
-    } else if (intId % 20 == 0) {
-      msg = msg + "\nTruck has departed.";
+    boolean assigned = this.getPrId().equals(id);
+    if (!assigned) {
+      out.send("Loaded wrong pick request. {} Unload pallets with ID {}.", this, id);
+    } else if (dock != null && dock.fillsTruck(dock.positionOf(number))) {
+      warehouse.truckDeparted(dock);
+      if (warehouse.getDocks().length == 1) {
+        out.send("Truck has departed.");
+      } else {
+        out.send("Truck at dock {} has departed.", dock.getName());
+      }
     }
 
-    return msg;
+    if (event != null && event.shouldCommit()) {
+      event.loader = getName();
+      event.requestId = id;
+      event.assigned = assigned;
+      event.commit();
+    }
   }
 
   /**
-   * When a loader unloads something, update the model and return an appropriate message for the
-   * Organizer to print.
+   * When a loader unloads something, update the model and send an appropriate message.
    * 
    * @param id id of the pick request
-   * @return message to be printed
    */
-  public String unloads(String id) {
+  public void unloads(String id) {
+    FlightEvents.PalletsUnloaded event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.PalletsUnloaded();
+      event.begin();
+    }
 
     // Add the loaded request back into the warehouse system model.
     PickRequest currRequest = warehouse.getPickRequest(id);
 
-    warehouse.loadingCounter -= 1;
+    // The pallets go back to the front of their dock's loading sequence.
+    Dock dock = warehouse.getDockFor(PickRequest.parseNumber(id));
+    if (dock != null) {
+      dock.getLoadingArea().rewind();
+      dock.recordUnload(currRequest);
+    }
 
     // Update warehouse model
-    warehouse.loadingIds.add(id);
+    warehouse.addLoadingId(id);
     warehouse.addPickRequest(currRequest);
     warehouse.unloadPickRequest(currRequest);
 
     // Tell the organizer what the loader did.
-    return toString() + " unloaded " + id + " from truck.";
+    out.send("{} unloaded {} from truck.", this, id);
+    if (event != null && event.shouldCommit()) {
+      event.loader = getName();
+      event.requestId = id;
+      event.commit();
+    }
   }
 
 }
@@ -0,0 +1,282 @@
+package warehouse_system;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The LoadingArea keeps track of which pallets have been sequenced and are waiting to be loaded,
+ * keyed by the number of their pick request. Pallets must go onto the truck in order, so the area
+ * also holds the number of the next pick request to be loaded, and waiting pallets are stored as
+ * bits of a window that starts a little before that number. Checking whether the next pallets are
+ * waiting is a single bit test, and no objects are created while pallets come and go.
+ *
+ * <p>All methods are synchronized, so pallets may be staged and loaded from different threads.
+ */
+public class LoadingArea {
+
+  /** The number of pick requests the window covers to begin with. */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** One bit per pick request number, set if its pallets are waiting to be loaded. */
+  private long[] bits = new long[INITIAL_CAPACITY / 64];
+
+  /** The pick request number of the first bit of the window; always a multiple of 64. */
+  private int base;
+
+  /** The number of the next pick request to be loaded. */
+  private int next;
+
+  /** The number of pick requests whose pallets are waiting to be loaded. */
+  private int staged;
+
+  /**
+   * Instantiate an empty loading area.
+   *
+   * @param first the number of the first pick request to be loaded
+   */
+  public LoadingArea(int first) {
+    this.next = first;
+    this.base = first & ~63;
+  }
+
+  /**
+   * Record that the pallets of a pick request have reached the loading area.
+   *
+   * @param number the pick request number
+   */
+  public synchronized void stage(int number) {
+    if (number < 0) {
+      return;
+    }
+    ensureCovers(number);
+    int bit = number - base;
+    long mask = 1L << bit;
+    if ((bits[bit >>> 6] & mask) == 0) {
+      bits[bit >>> 6] |= mask;
+      staged++;
+    }
+  }
+
+  /**
+   * Take the pallets of a pick request out of the loading area.
+   *
+   * @param number the pick request number
+   * @return true, if the pallets were in the loading area
+   */
+  public synchronized boolean unstage(int number) {
+    if (!covers(number)) {
+      return false;
+    }
+    int bit = number - base;
+    long mask = 1L << bit;
+    if ((bits[bit >>> 6] & mask) == 0) {
+      return false;
+    }
+    bits[bit >>> 6] &= ~mask;
+    staged--;
+    return true;
+  }
+
+  /**
+   * Check whether the pallets of a pick request are in the loading area.
+   *
+   * @param number the pick request number
+   * @return true, if the pallets are waiting to be loaded
+   */
+  public synchronized boolean isStaged(int number) {
+    return covers(number) && isSet(number - base);
+  }
+
+  /**
+   * Check whether the pallets of the next pick request to be loaded are in the loading area.
+   *
+   * @return true, if the next pallets are waiting to be loaded
+   */
+  public synchronized boolean isNextStaged() {
+    return covers(next) && isSet(next - base);
+  }
+
+  /**
+   * Count the pick requests, starting with the next one to be loaded, whose pallets are all waiting
+   * in the loading area one after the other.
+   *
+   * @param limit the largest count of interest
+   * @return the length of the run of waiting pallets, at most limit
+   */
+  public synchronized int countReady(int limit) {
+    if (!covers(next)) {
+      return 0;
+    }
+    int bit = next - base;
+    int count = 0;
+    while (count < limit && bit < bits.length * 64) {
+      // Count the set bits from here up to the first clear one in this word.
+      int offset = bit & 63;
+      int run = Math.min(Long.numberOfTrailingZeros(~(bits[bit >>> 6] >>> offset)), 64 - offset);
+      count += run;
+      bit += run;
+      if (run < 64 - offset) { // The run ended inside this word.
+        break;
+      }
+    }
+    return Math.min(count, limit);
+  }
+
+  /**
+   * Take a batch of consecutive pallets out of the loading area: the pallets of the next pick
+   * request to be loaded and of as many following ones as are waiting, up to a limit. The next
+   * number to be loaded does not change until the pallets are actually loaded.
+   *
+   * @param limit the largest number of pick requests to take
+   * @return the number of pick requests taken; they are numbered getNext() onwards
+   */
+  public synchronized int takeReady(int limit) {
+    int count = countReady(limit);
+    for (int number = next; number < next + count; number++) {
+      int bit = number - base;
+      bits[bit >>> 6] &= ~(1L << bit);
+    }
+    staged -= count;
+    return count;
+  }
+
+  /**
+   * Return the number of the next pick request to be loaded.
+   *
+   * @return the pick request number
+   */
+  public synchronized int getNext() {
+    return next;
+  }
+
+  /**
+   * Move on to the next pick request, once pallets have been loaded.
+   *
+   * @return the number of the next pick request to be loaded
+   */
+  public synchronized int advance() {
+    next++;
+    if (next - base >= bits.length * 64 / 2) {
+      compact();
+    }
+    return next;
+  }
+
+  /**
+   * Go back to the previous pick request, once pallets have been unloaded.
+   *
+   * @return the number of the next pick request to be loaded
+   */
+  public synchronized int rewind() {
+    next--;
+    return next;
+  }
+
+  /**
+   * Return the number of pick requests whose pallets are waiting to be loaded.
+   *
+   * @return the number of pick requests
+   */
+  public synchronized int size() {
+    return staged;
+  }
+
+  /**
+   * Write the loading area to a snapshot: the next number to be loaded and the numbers of the
+   * waiting pallets.
+   *
+   * @param out where the loading area is written
+   * @throws IOException if it cannot be written
+   */
+  synchronized void writeState(DataOutput out) throws IOException {
+    out.writeInt(next);
+    out.writeInt(staged);
+    for (int word = 0; word < bits.length; word++) {
+      long bitsLeft = bits[word];
+      while (bitsLeft != 0) {
+        out.writeInt(base + word * 64 + Long.numberOfTrailingZeros(bitsLeft));
+        bitsLeft &= bitsLeft - 1;
+      }
+    }
+  }
+
+  /**
+   * Replace the contents of the loading area with a state written by writeState().
+   *
+   * @param in where the loading area is read from
+   * @throws IOException if it cannot be read
+   */
+  synchronized void readState(DataInput in) throws IOException {
+    next = in.readInt();
+    base = next & ~63;
+    bits = new long[INITIAL_CAPACITY / 64];
+    staged = 0;
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      stage(in.readInt());
+    }
+  }
+
+  /**
+   * Check whether a pick request number falls inside the window.
+   *
+   * @param number the pick request number
+   * @return true, if the number has a bit
+   */
+  private boolean covers(int number) {
+    return number >= base && number - base < bits.length * 64;
+  }
+
+  /**
+   * Check whether a bit of the window is set.
+   *
+   * @param bit the index of the bit
+   * @return true, if the bit is set
+   */
+  private boolean isSet(int bit) {
+    return (bits[bit >>> 6] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Move or grow the window so it covers a pick request number.
+   *
+   * @param number the pick request number
+   */
+  private void ensureCovers(int number) {
+    if (number < base) { // Pallets of a request before the window, e.g. after an unload.
+      int newBase = number & ~63;
+      int shift = (base - newBase) >>> 6;
+      long[] moved = new long[bits.length + shift];
+      System.arraycopy(bits, 0, moved, shift, bits.length);
+      bits = moved;
+      base = newBase;
+    }
+    if (number - base >= bits.length * 64) {
+      int words = bits.length;
+      while ((number - base) >>> 6 >= words) {
+        words *= 2;
+      }
+      bits = Arrays.copyOf(bits, words);
+    }
+  }
+
+  /**
+   * Drop the empty words of the window before the next pick request to be loaded, so the window
+   * keeps up with loading instead of growing.
+   */
+  private void compact() {
+    int limit = (next - base) >>> 6;
+    int drop = 0;
+    while (drop < limit && bits[drop] == 0) {
+      drop++;
+    }
+    if (drop > 0) {
+      System.arraycopy(bits, drop, bits, 0, bits.length - drop);
+      Arrays.fill(bits, bits.length - drop, bits.length, 0L);
+      base += drop * 64;
+    }
+  }
+
+}
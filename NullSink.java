@@ -0,0 +1,26 @@
+package warehouse_system;
+
+/**
+ * A NullSink discards every message. It is used to measure the warehouse system without the cost
+ * of writing its output.
+ */
+public class NullSink implements CommandSink {
+
+  /** The only instance needed, since a NullSink has no state. */
+  public static final NullSink INSTANCE = new NullSink();
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public void send(String message) {}
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public void close() {}
+
+}
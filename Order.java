@@ -19,6 +19,9 @@ public class Order {
    */
   private boolean loaded;
 
+  /** When the order was received, in milliseconds, or -1 if it was not traced. */
+  private long received = -1;
+
   /**
    * Instantiates a new order.
    *
@@ -73,6 +76,24 @@ public class Order {
     return this.skuDouble;
   }
 
+  /**
+   * Gets when the order was received.
+   *
+   * @return the time in milliseconds, or -1 if it was not traced
+   */
+  public long getReceived() {
+    return this.received;
+  }
+
+  /**
+   * Sets when the order was received, for tracing.
+   *
+   * @param received the time in milliseconds
+   */
+  public void setReceived(long received) {
+    this.received = received;
+  }
+
   /**
    * Load this order onto a truck signifying that it's done being handled by the warehouse.
    */
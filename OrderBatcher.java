@@ -0,0 +1,432 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An OrderBatcher decides which orders go into each pick request, and when. Orders wait in a pool
+ * as they come in by fax. A pick request holds four orders, since its fascia travel on one front
+ * pallet and one back pallet of four; a batch of four is taken out of the pool when:
+ *
+ * <ul>
+ *   <li>the pool is full,
+ *   <li>a picker is waiting for work and no pick request is queued for it, or
+ *   <li>the oldest order has waited longer than the time window, counted in events or in
+ *       milliseconds.
+ * </ul>
+ *
+ * <p>Once the oldest order has waited longer than the window, the orders in the pool are taken out
+ * even if there are fewer than four, and their pallets travel part empty; otherwise the last orders
+ * of a shift would never be picked. Without a window, fewer than four orders wait for more to come
+ * in, and the report counts them as waiting.
+ *
+ * <p>Each batch starts with the oldest order in the pool, so no order waits forever, and is filled
+ * up with the orders whose fascia are stored in the zones and aisles the batch already visits.
+ * Orders stay in the order they came in within a batch. The length of the batch's pick path is
+ * measured with the warehouse's route optimizer, or with the traversal order if there is
+ * none, and kept on the pick request.
+ *
+ * <p>With the default pool of four orders every batch is simply the next four orders, as before.
+ * A larger pool gives better clusters at the cost of orders waiting longer, and of minivans no
+ * longer being loaded strictly in the order they were faxed. The settings are read from
+ * batching.csv in the configuration directory, one "key,value" pair per line: pool_size,
+ * window_events and window_ms. The window in events only counts the events the batcher sees
+ * (orders, picks, trips to the marshalling area and pickers becoming ready), so it gives the same
+ * batches every time the same events are handled; a window in milliseconds depends on how fast the
+ * events arrive, so it is off unless it is configured.
+ */
+public class OrderBatcher {
+
+  /** The number of orders in a pick request. */
+  public static final int BATCH_SIZE = 4;
+
+  /** The warehouse the orders are picked in. */
+  private final Warehouse warehouse;
+
+  /** Measures pick paths when the warehouse has no route optimizer. */
+  private final RouteOptimizer traversal;
+
+  /** The number of orders the pool holds before a batch must be taken out. */
+  private int poolSize = BATCH_SIZE;
+
+  /** The number of events the oldest order may wait, or 0 for no limit. */
+  private long windowEvents;
+
+  /** How long (in nanoseconds) the oldest order may wait, or 0 for no limit. */
+  private long windowNanos;
+
+  /** The orders waiting for a batch, oldest first. */
+  private List<Pending> pool = new ArrayList<Pending>();
+
+  /** The number of events the batcher has seen. */
+  private long clock;
+
+  /** The number of batches taken out of the pool. */
+  private long batches;
+
+  /** The number of batches of fewer than four orders taken out of the pool. */
+  private long shortBatches;
+
+  /** The number of orders taken out of the pool. */
+  private long batched;
+
+  /** The total number of events the orders of every batch waited. */
+  private long totalWait;
+
+  /** The total length of the pick paths of every batch. */
+  private double totalLength;
+
+  /**
+   * Instantiate a batcher with the default settings: every batch is the next four orders.
+   *
+   * @param warehouse the warehouse the orders are picked in
+   */
+  public OrderBatcher(Warehouse warehouse) {
+    this.warehouse = warehouse;
+    this.traversal = new RouteOptimizer(warehouse.getTopology(), RouteOptimizer.Strategy.TRAVERSAL);
+  }
+
+  /**
+   * Read the settings of a batcher from a batching file. Lines that cannot be read are skipped.
+   *
+   * @param file the batching file
+   * @param warehouse the warehouse the orders are picked in
+   * @return the batcher, with the default settings if the file does not exist
+   */
+  public static OrderBatcher load(File file, Warehouse warehouse) {
+    OrderBatcher batcher = new OrderBatcher(warehouse);
+    if (!file.exists()) {
+      return batcher;
+    }
+
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] chars = line.split(",");
+        if (chars.length < 2) {
+          continue;
+        }
+        String value = chars[1].trim();
+        try {
+          switch (chars[0].trim()) {
+            case "pool_size":
+              batcher.setPoolSize(Integer.parseInt(value));
+              break;
+            case "window_events":
+              batcher.setWindowEvents(Long.parseLong(value));
+              break;
+            case "window_ms":
+              batcher.setWindowNanos((long) (Double.parseDouble(value) * 1e6));
+              break;
+            default:
+              break;
+          }
+        } catch (NumberFormatException ex) {
+          ex.printStackTrace();
+        }
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+    return batcher;
+  }
+
+  /**
+   * Set the number of orders the pool holds before a batch must be taken out. Pools smaller than
+   * one batch are not possible.
+   *
+   * @param poolSize the number of orders
+   */
+  public void setPoolSize(int poolSize) {
+    this.poolSize = Math.max(poolSize, BATCH_SIZE);
+  }
+
+  /**
+   * Set the number of events the oldest order may wait before a batch is taken out.
+   *
+   * @param windowEvents the number of events, or 0 for no limit
+   */
+  public void setWindowEvents(long windowEvents) {
+    this.windowEvents = windowEvents;
+  }
+
+  /**
+   * Set how long the oldest order may wait before a batch is taken out.
+   *
+   * @param windowNanos the time in nanoseconds, or 0 for no limit
+   */
+  public void setWindowNanos(long windowNanos) {
+    this.windowNanos = windowNanos;
+  }
+
+  /**
+   * Return the number of orders waiting for a batch.
+   *
+   * @return the number of orders
+   */
+  public int size() {
+    return pool.size();
+  }
+
+  /**
+   * Add an order to the pool.
+   *
+   * @param order the order
+   */
+  public void add(Order order) {
+    Pending pending = new Pending(order, clock, windowNanos > 0 ? System.nanoTime() : 0);
+    if (poolSize > BATCH_SIZE) {
+      pending.aisles = aislesOf(order);
+    }
+    pool.add(pending);
+  }
+
+  /** Count an event for the window. */
+  public void tick() {
+    clock++;
+  }
+
+  /**
+   * Take the next batch out of the pool if one is due. The batch has four orders, or every order in
+   * the pool if there are fewer and the window has expired.
+   *
+   * @param wanted whether a picker is waiting for work
+   * @return the orders of the batch, in the order they came in, or null if no batch is due
+   */
+  public Order[] poll(boolean wanted) {
+    boolean expired = !pool.isEmpty() && expired();
+    if (pool.size() < (expired ? 1 : BATCH_SIZE)
+        || !(wanted || pool.size() >= poolSize || expired)) {
+      return null;
+    }
+
+    int[] chosen = new int[Math.min(pool.size(), BATCH_SIZE)];
+    if (poolSize > BATCH_SIZE) {
+      cluster(chosen);
+    } else {
+      for (int i = 0; i < chosen.length; i++) {
+        chosen[i] = i;
+      }
+    }
+
+    Order[] orders = new Order[chosen.length];
+    for (int i = chosen.length - 1; i >= 0; i--) {
+      Pending pending = pool.remove(chosen[i]);
+      orders[i] = pending.order;
+      totalWait += clock - pending.arrived;
+    }
+    batches++;
+    batched += orders.length;
+    if (orders.length < BATCH_SIZE) {
+      shortBatches++;
+    }
+    return orders;
+  }
+
+  /**
+   * Measure the pick path of a batch's pick request and keep its length on the request.
+   *
+   * @param request the pick request
+   * @return the length of its pick path
+   */
+  public double measure(PickRequest request) {
+    RouteOptimizer router = warehouse.getPicking().getRouteOptimizer();
+    double length = (router != null ? router : traversal).length(request.getLocations());
+    request.setPathLength(length);
+    totalLength += length;
+    return length;
+  }
+
+  /**
+   * Return a one-line report of the batches taken out so far.
+   *
+   * @return the report
+   */
+  public String report() {
+    return String.format("Batching: %d pick requests (%d short), %.1f events waited per order, "
+        + "%.1f expected path length per request, %d orders waiting.", batches, shortBatches,
+        batched == 0 ? 0.0 : totalWait / (double) batched,
+        batches == 0 ? 0.0 : totalLength / batches, pool.size());
+  }
+
+  /**
+   * Return whether the oldest order has waited longer than the window.
+   *
+   * @return true if a batch is due because of the window
+   */
+  private boolean expired() {
+    Pending oldest = pool.get(0);
+    return (windowEvents > 0 && clock - oldest.arrived >= windowEvents)
+        || (windowNanos > 0 && System.nanoTime() - oldest.arrivedNanos >= windowNanos);
+  }
+
+  /**
+   * Choose the orders of a batch: the oldest order, then again and again the order that adds the
+   * fewest zones and aisles the batch does not visit yet. Ties go to the older order.
+   *
+   * @param chosen the indices of the chosen orders in the pool, filled in ascending order
+   */
+  private void cluster(int[] chosen) {
+    List<Integer> visited = new ArrayList<Integer>();
+    boolean[] taken = new boolean[pool.size()];
+    taken[0] = true;
+    addAisles(visited, pool.get(0).aisles);
+
+    for (int i = 1; i < chosen.length; i++) {
+      int best = -1;
+      int bestCost = Integer.MAX_VALUE;
+      for (int candidate = 1; candidate < pool.size(); candidate++) {
+        if (!taken[candidate]) {
+          int cost = cost(visited, pool.get(candidate).aisles);
+          if (cost < bestCost) {
+            best = candidate;
+            bestCost = cost;
+          }
+        }
+      }
+      taken[best] = true;
+      addAisles(visited, pool.get(best).aisles);
+    }
+
+    int count = 0;
+    for (int index = 0; index < taken.length; index++) {
+      if (taken[index]) {
+        chosen[count++] = index;
+      }
+    }
+  }
+
+  /**
+   * Return how many zones and aisles an order would add to those a batch visits.
+   *
+   * @param visited the zones and aisles the batch visits
+   * @param aisles the zones and aisles of the order
+   * @return the number of new zones plus the number of new aisles
+   */
+  private static int cost(List<Integer> visited, int[] aisles) {
+    int cost = 0;
+    for (int i = 0; i < aisles.length; i++) {
+      if (!visited.contains(aisles[i])) {
+        boolean zoneVisited = false;
+        for (int key : visited) {
+          zoneVisited |= key >>> 16 == aisles[i] >>> 16;
+        }
+        cost += zoneVisited ? 1 : 2;
+      }
+    }
+    return cost;
+  }
+
+  /**
+   * Add the zones and aisles of an order to those a batch visits.
+   *
+   * @param visited the zones and aisles the batch visits
+   * @param aisles the zones and aisles of the order
+   */
+  private static void addAisles(List<Integer> visited, int[] aisles) {
+    for (int key : aisles) {
+      if (!visited.contains(key)) {
+        visited.add(key);
+      }
+    }
+  }
+
+  /**
+   * Return the aisles an order's fascia are stored in, each as its zone times 65536 plus its
+   * aisle. Fascia that are not stored anywhere are left out.
+   *
+   * @param order the order
+   * @return the aisles
+   */
+  private int[] aislesOf(Order order) {
+    Topology topology = warehouse.getTopology();
+    String[] skus = order.getSkus();
+    int[] aisles = new int[skus.length];
+    int count = 0;
+    for (String sku : skus) {
+      String location = sku == null ? null : warehouse.getLocation(sku);
+      int slot = location == null ? -1 : topology.getSlot(location);
+      if (slot >= 0) {
+        aisles[count++] = (topology.getZone(slot) << 16) | topology.getAisle(slot);
+      }
+    }
+    return Arrays.copyOf(aisles, count);
+  }
+
+  /**
+   * Write the orders in the pool, with when they were received, and the clock to a snapshot. The
+   * statistics are not written.
+   *
+   * @param out where the state is written
+   * @throws IOException if the state cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeLong(clock);
+    out.writeInt(pool.size());
+    for (Pending pending : pool) {
+      out.writeUTF(pending.order.getModel());
+      out.writeUTF(pending.order.getColor());
+      out.writeLong(pending.arrived);
+      out.writeLong(pending.order.getReceived());
+    }
+  }
+
+  /**
+   * Replace the orders in the pool with those written by writeState(). Orders read back count as
+   * having arrived now for a window in milliseconds.
+   *
+   * @param in where the state is read from
+   * @throws IOException if the state cannot be read
+   */
+  void readState(DataInput in) throws IOException {
+    clock = in.readLong();
+    pool.clear();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      String model = in.readUTF();
+      String color = in.readUTF();
+      Order order = new Order(model, color, warehouse.getSkus(model, color));
+      long arrived = in.readLong();
+      order.setReceived(in.readLong());
+      add(order);
+      pool.get(i).arrived = arrived;
+    }
+  }
+
+  /** An order waiting in the pool. */
+  private static final class Pending {
+
+    /** The order. */
+    private final Order order;
+
+    /** The value of the clock when the order came in. */
+    private long arrived;
+
+    /** When (System.nanoTime) the order came in, if there is a window in milliseconds. */
+    private final long arrivedNanos;
+
+    /** The aisles the order's fascia are stored in, if the pool is larger than one batch. */
+    private int[] aisles;
+
+    /**
+     * Instantiate a waiting order.
+     *
+     * @param order the order
+     * @param arrived the value of the clock when it came in
+     * @param arrivedNanos when (System.nanoTime) it came in
+     */
+    private Pending(Order order, long arrived, long arrivedNanos) {
+      this.order = order;
+      this.arrived = arrived;
+      this.arrivedNanos = arrivedNanos;
+    }
+  }
+
+}
@@ -1,16 +1,18 @@
 package warehouse_system;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.Arrays;
-import java.util.LinkedList;
-
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 /**
@@ -21,41 +23,88 @@ import java.util.Queue;
 public class Organizer {
 
   /** The warehouse models the real warehouse system. */
-  private Warehouse warehouse = new Warehouse();
+  private Warehouse warehouse;
 
   /**
    * The readyPickers is a queue of the workers who are ready to process orders.
    */
-  private Queue<Picker> readyPickers = new LinkedList<Picker>();
+  private Queue<Picker> readyPickers = new ArrayDeque<Picker>();
   /**
    * The readySequenceres is a queue of the workers who are ready to sequence orders and throw them
    * out if necessary.
    */
-  private Queue<Sequencer> readySequencers = new LinkedList<Sequencer>();
+  private Queue<Sequencer> readySequencers = new ArrayDeque<Sequencer>();
   /**
    * The readyLoaders is a queue of the workers who are ready to load pallets in order.
    */
-  private Queue<Loader> readyLoaders = new LinkedList<Loader>();
+  private Queue<Loader> readyLoaders = new ArrayDeque<Loader>();
   /**
    * The readyReplenishers is a queue of the workers who are ready to refill levels in the warehouse
    * that are low in fascia.
    */
-  private Queue<Replenisher> readyReplenishers = new LinkedList<Replenisher>();
+  private Queue<Replenisher> readyReplenishers = new ArrayDeque<Replenisher>();
 
   /**
-   * The backlog of orders stored as a string array. Order needs to be preserved, so a Queue is
-   * used. Once four orders come in, the orders are removed from the queue and a PickRequest is
-   * created.
+   * The backlog of orders. The batcher decides which four orders make up each PickRequest, and
+   * when.
    */
-  private Queue<String[]> ordersBacklog = new LinkedList<String[]>();
+  private OrderBatcher batcher;
+
+  /** Decides which ready picker gets which pick request. */
+  private PickerScheduler scheduler;
   /** The queue of the pickRequests that still need to be processed. */
-  private Queue<PickRequest> pickRequests = new LinkedList<PickRequest>();
+  private Queue<PickRequest> pickRequests = new ArrayDeque<PickRequest>();
+
+  /**
+   * Reserves the fascia of each pick request before it is queued, and holds the requests that are
+   * waiting for stock.
+   */
+  private StockLedger ledger;
 
   /**
-   * The lowLevels is a a queue of the SKUs of the fascia that need are low in stock and need to get
-   * replenished.
+   * The lowLevels are the levels that are low in stock, or will be soon, and need to get
+   * replenished; each level at most once, the most urgent level first.
    */
-  private Queue<String> lowLevels = new LinkedList<String>();
+  private ReplenishmentTasks lowLevels;
+
+  /** Decides which levels need to be replenished, from their pick rates and committed demand. */
+  private ReplenishmentPlanner planner;
+
+  /** The dock tryToAssignLoader() looks at first, so the docks take turns. */
+  private int nextDock;
+
+  /** Where commands and messages for the workers are sent. */
+  private CommandSink out;
+
+  /** Splits each event into tokens; reused for every event. */
+  private EventTokenizer tokens = new EventTokenizer();
+
+  /**
+   * The lanes that handle events in parallel, one per type of worker, or null if events are handled
+   * one at a time on the caller's thread.
+   */
+  private DispatchLanes lanes;
+
+  /** Where accepted events are journaled before they are handled, or null. */
+  private EventJournal journal;
+
+  /** The directory of the journal and its snapshots. */
+  private File journalDir;
+
+  /** The number of events between two snapshots. */
+  private long snapshotInterval;
+
+  /** The number of events handled since the last snapshot. */
+  private long sinceSnapshot;
+
+  /** Records the latency of each event and the depth of the queues, or null to record nothing. */
+  private OrganizerMetrics metrics;
+
+  /** Records how long pick requests spend in each stage, or null to record nothing. */
+  private LifecycleTracer tracer;
+
+  /** The time of the event being handled, when events are handled one at a time. */
+  private long eventTime;
 
   /**
    * Instantiate an Organizer for a warehouse w.
@@ -64,7 +113,107 @@ public class Organizer {
    */
   public Organizer(Warehouse war) {
 
+    this(war, PrintStreamSink.STDOUT);
+  }
+
+  /**
+   * Instantiate an Organizer for a warehouse w that sends its commands to a sink.
+   *
+   * @param war the warehouse of the Organizer
+   * @param out where commands and messages are sent
+   */
+  public Organizer(Warehouse war, CommandSink out) {
+
     this.warehouse = war;
+    this.out = out;
+    this.batcher = OrderBatcher.load(new File(war.getConfigDir(), "batching.csv"), war);
+    this.scheduler = new PickerScheduler(war);
+    this.ledger = new StockLedger(war);
+    File replenishment = new File(war.getConfigDir(), "replenishment.csv");
+    this.planner = ReplenishmentPlanner.load(replenishment, war);
+    this.lowLevels = ReplenishmentTasks.load(replenishment, war);
+  }
+
+  /**
+   * Return the sink this Organizer sends its commands to.
+   *
+   * @return the command sink
+   */
+  public CommandSink getCommandSink() {
+    return out;
+  }
+
+  /**
+   * Return the batcher that turns orders into pick requests.
+   *
+   * @return the order batcher
+   */
+  public OrderBatcher getOrderBatcher() {
+    return batcher;
+  }
+
+  /**
+   * Record the latency of each event and the depth of the queues from now on.
+   *
+   * @param metrics where they are recorded, or null to stop recording
+   */
+  public void setMetrics(OrganizerMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Return where the latency of each event and the depth of the queues are recorded.
+   *
+   * @return the metrics, or null if nothing is recorded
+   */
+  public OrganizerMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Record how long pick requests spend in each stage from now on.
+   *
+   * @param tracer where the stages are recorded, or null to stop recording
+   */
+  public void setTracer(LifecycleTracer tracer) {
+    this.tracer = tracer;
+  }
+
+  /**
+   * Return where the time pick requests spend in each stage is recorded.
+   *
+   * @return the tracer, or null if nothing is recorded
+   */
+  public LifecycleTracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Return the ledger that reserves stock for pick requests.
+   *
+   * @return the stock ledger
+   */
+  public StockLedger getStockLedger() {
+    return ledger;
+  }
+
+  /**
+   * Return the planner that decides when levels are replenished.
+   *
+   * @return the replenishment planner
+   */
+  public ReplenishmentPlanner getReplenishmentPlanner() {
+    return planner;
+  }
+
+  /**
+   * Replace the batcher that turns orders into pick requests. Must be called before the first
+   * order is handled.
+   *
+   * @param batcher the order batcher
+   */
+  public void setOrderBatcher(OrderBatcher batcher) {
+    this.batcher = batcher;
   }
 
   /**
@@ -72,57 +221,555 @@ public class Organizer {
    * Blank line: do nothing. 2) "Order" as the first word: create a new order. 3) "ready" as the
    * third word: initialise a worker. 4) Otherwise: check if a worker did something.
    *
-   * @param event : a line of input from the input file in the form of an array.
+   * @param event : a line of input from the input file.
    */
-  public void handle(String event) {
+  public void handle(CharSequence event) {
+
+    if (journal != null) {
+      journal(event);
+    }
 
-    // Events will be passed to event-handlers in the form of string arrays.
-    String[] eventArray = event.split(" ");
+    if (lanes != null) {
+      lanes.submit(event);
+    } else {
+      // Events are tokenized in place; handlers read the tokens they need.
+      tokens.reset(event);
+      eventTime = timeOf(tokens);
+      dispatch(EventType.of(tokens), tokens);
+    }
 
-    if (eventArray[0].equals("")) {
+    if (journal != null && ++sinceSnapshot >= snapshotInterval) {
+      takeSnapshot();
+    }
+
+  }
+
+  /**
+   * Pass a tokenized event to its event handler, and time it if metrics are recorded.
+   *
+   * @param type the type of the event
+   * @param tokens the tokens of the event
+   */
+  void dispatch(EventType type, EventTokenizer tokens) {
+    if (metrics == null) {
+      handleEvent(type, tokens);
       return;
+    }
+
+    long start = System.nanoTime();
+    handleEvent(type, tokens);
+    if (metrics.recordLatency(type, System.nanoTime() - start)) {
+      sampleQueues(DispatchLanes.ownerOf(type, tokens));
+    }
+  }
+
+  /**
+   * Return the time of an event: the time stamp it starts with, or else the tracer's clock.
+   *
+   * @param tokens the tokens of the event
+   * @return the time in milliseconds, or 0 if no tracer is set
+   */
+  long timeOf(EventTokenizer tokens) {
+    if (tracer == null) {
+      return 0;
+    }
+    long time = tokens.getTime();
+    return time >= 0 ? time : tracer.clock();
+  }
+
+  /**
+   * Return the time of the event being handled, or of the event that caused the effect being
+   * applied.
+   *
+   * @return the time in milliseconds
+   */
+  private long now() {
+    return lanes != null ? lanes.currentTime() : eventTime;
+  }
+
+  /**
+   * Record that a pick request reached a stage at the time of the current event, if a tracer is
+   * set.
+   *
+   * @param request the pick request, or null
+   * @param stage the stage it reached
+   */
+  private void trace(PickRequest request, RequestStage stage) {
+    if (tracer != null && request != null) {
+      tracer.stamp(request, stage, now());
+    }
+  }
+
+  /**
+   * Record the depth of the queues of a type of worker. With lanes, only the lane of that type may
+   * read them, so an event samples the queues of its own lane.
+   *
+   * @param owner the type of worker, or null for every queue
+   */
+  private void sampleQueues(WorkerType owner) {
+    if (owner == null || owner == WorkerType.PICKER) {
+      metrics.sample(OrganizerMetrics.Gauge.PICK_REQUESTS, pickRequests.size());
+      metrics.sample(OrganizerMetrics.Gauge.BLOCKED_REQUESTS, ledger.getWaiting());
+      metrics.sample(OrganizerMetrics.Gauge.READY_PICKERS, readyPickers.size());
+    }
+    if (owner == null || owner == WorkerType.SEQUENCER) {
+      metrics.sample(OrganizerMetrics.Gauge.MARSHALLING_IDS, warehouse.getMarshallingCount());
+      metrics.sample(OrganizerMetrics.Gauge.READY_SEQUENCERS, readySequencers.size());
+    }
+    if (owner == null || owner == WorkerType.LOADER) {
+      int staged = 0;
+      for (Dock dock : warehouse.getDocks()) {
+        staged += dock.getLoadingArea().size();
+      }
+      metrics.sample(OrganizerMetrics.Gauge.LOADING_IDS, staged);
+      metrics.sample(OrganizerMetrics.Gauge.READY_LOADERS, readyLoaders.size());
+    }
+    if (owner == null || owner == WorkerType.REPLENISHER) {
+      metrics.sample(OrganizerMetrics.Gauge.LOW_LEVELS, lowLevels.size());
+      metrics.sample(OrganizerMetrics.Gauge.READY_REPLENISHERS, readyReplenishers.size());
+    }
+  }
+
+  /**
+   * Pass a tokenized event to its event handler.
+   *
+   * @param type the type of the event
+   * @param tokens the tokens of the event
+   */
+  private void handleEvent(EventType type, EventTokenizer tokens) {
+
+    switch (type) {
+      case BLANK:
+        return;
+      case ORDER:
+        newOrder(tokens);
+        break;
+      case READY:
+        readyWorker(tokens);
+        break;
+      case PICKS: // Respond once a picker picks something.
+        pickingAct(tokens);
+        break;
+      case GOES: // Respond once a picker goes to the marshalling area.
+        goesToMarshallingAct(tokens);
+        break;
+      case SCANS: // Respond once a sequencer or loader scans.
+        scanningAct(tokens);
+        break;
+      case LOADS: // Respond once a loader loads.
+        loadingAct(tokens);
+        break;
+      case UNLOADS: // Respond once a loader unloads.
+        unloadingAct(tokens);
+        break;
+      case REPLENISHES: // Respond once a replenisher replenishes.
+        replenishingAct(tokens);
+        break;
+      case TAKES: // Respond once a worker decides to take a break.
+        retiresAct(tokens);
+        break;
+      default:
+        if (tokens.count() < 3) {
+          out.send("Incorrect input.");
+        }
+        break;
+    }
 
-    } else if (eventArray[0].equals("Order")) {
-      newOrder(eventArray);
+  }
 
-    } else if (eventArray.length == 3 && eventArray[2].equals("ready")) {
-      readyWorker(eventArray);
+  /**
+   * Handle events on one thread per type of worker from now on. Each type of worker gets its own
+   * lane, so e.g. loaders and replenishers are served at the same time as pickers, while every
+   * worker still gets its commands in the same order as when events are handled one at a time.
+   * handle() must still be called from one thread at a time.
+   */
+  public void startLanes() {
+    if (lanes == null) {
+      lanes = new DispatchLanes(this);
+    }
+  }
 
+  /**
+   * Wait for the lanes to handle every event passed to handle() so far, and handle events on the
+   * caller's thread from now on.
+   */
+  public void stopLanes() {
+    if (lanes != null) {
+      lanes.stop();
+      lanes = null;
+    }
+  }
+
+  /**
+   * Wait until every event passed to handle() so far has been handled. Without lanes, events are
+   * handled before handle() returns, so there is nothing to wait for.
+   */
+  public void awaitHandled() {
+    if (lanes != null) {
+      lanes.awaitIdle();
+    }
+  }
+
+  /**
+   * Journal accepted events from now on, so the state of the warehouse can be recovered after a
+   * crash. If the directory already holds a journal, the state is recovered first: the latest
+   * snapshot is read and the events journaled after it are handled again, without sending their
+   * commands a second time. The organizer must not have handled any events yet, and lanes must not
+   * be started until this returns.
+   *
+   * @param dir the directory of the journal and its snapshots
+   * @param groupSize the number of events after which the journal is forced to disk
+   * @param groupMillis how long (in milliseconds) events may wait before they are forced to disk
+   * @param interval the number of events between two snapshots
+   * @return the number of events recovered; the next event handled follows them
+   * @throws IOException if the journal cannot be read or written
+   */
+  public long openJournal(File dir, int groupSize, long groupMillis, long interval)
+      throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create the journal directory " + dir + ".");
+    }
+
+    // The commands of recovered events were sent before the crash.
+    CommandSink sink = out;
+    setCommandSink(NullSink.INSTANCE);
+    long recovered;
+    try {
+      recovered = EventJournal.replay(dir, Snapshot.read(dir, this), this);
+    } finally {
+      setCommandSink(sink);
+    }
+
+    journalDir = dir;
+    snapshotInterval = Math.max(interval, 1);
+    sinceSnapshot = 0;
+    journal = new EventJournal(dir, recovered, groupSize, groupMillis);
+    return recovered;
+  }
+
+  /**
+   * Force the journal to disk and stop journaling events.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  public void closeJournal() throws IOException {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+  }
+
+  /**
+   * Append an event to the journal. If it cannot be written, the event is still handled.
+   *
+   * @param event the event
+   */
+  private void journal(CharSequence event) {
+    try {
+      journal.append(event);
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Write a snapshot of the warehouse once every event so far has been handled, and start a new
+   * journal segment after it.
+   */
+  private void takeSnapshot() {
+    sinceSnapshot = 0;
+    awaitHandled();
+    try {
+      Snapshot.write(journalDir, this, journal.getEventCount());
+      journal.rotate();
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Send commands and messages to a different sink, including those of the workers.
+   *
+   * @param sink the command sink
+   */
+  private void setCommandSink(CommandSink sink) {
+    out = sink;
+    for (Worker worker : warehouse.getWorkers()) {
+      worker.setCommandSink(sink);
+    }
+  }
+
+  /**
+   * Write the state of this organizer and its warehouse to a snapshot: a table of every pick
+   * request they refer to, the state of the warehouse, and the organizer's queues.
+   *
+   * @param out where the state is written
+   * @throws IOException if the state cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    Map<Integer, PickRequest> table = Snapshot.newTable();
+    warehouse.collectRequests(table);
+    for (PickRequest request : pickRequests) {
+      Snapshot.collect(table, request);
+    }
+    ledger.collectRequests(table);
+    Snapshot.writeTable(out, table);
+    warehouse.writeState(out);
+
+    writeNames(out, readyPickers);
+    writeNames(out, readySequencers);
+    writeNames(out, readyLoaders);
+    writeNames(out, readyReplenishers);
+    batcher.writeState(out);
+    out.writeInt(pickRequests.size());
+    for (PickRequest request : pickRequests) {
+      Snapshot.writeRequest(out, request);
+    }
+    ledger.writeState(out);
+    lowLevels.writeState(out);
+    planner.writeState(out);
+    out.writeInt(nextDock);
+  }
+
+  /**
+   * Replace the state of this organizer and its warehouse with a state written by writeState().
+   *
+   * @param in where the state is read from
+   * @throws IOException if the state cannot be read
+   */
+  void readState(DataInput in) throws IOException {
+    Map<Integer, PickRequest> table = Snapshot.readTable(in, warehouse);
+    warehouse.readState(in, table, out);
+
+    readyPickers.clear();
+    for (String name : readNames(in)) {
+      readyPickers.add((Picker) warehouse.getWorker(name));
+    }
+    readySequencers.clear();
+    for (String name : readNames(in)) {
+      readySequencers.add((Sequencer) warehouse.getWorker(name));
+    }
+    readyLoaders.clear();
+    for (String name : readNames(in)) {
+      readyLoaders.add((Loader) warehouse.getWorker(name));
+    }
+    readyReplenishers.clear();
+    for (String name : readNames(in)) {
+      readyReplenishers.add((Replenisher) warehouse.getWorker(name));
+    }
+    batcher.readState(in);
+    pickRequests.clear();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      pickRequests.add(Snapshot.readRequest(in, table));
+    }
+    ledger.readState(in, table);
+    lowLevels.readState(in);
+    planner.readState(in);
+    nextDock = in.readInt();
+  }
+
+  /**
+   * Write the names of the workers in a queue, in order.
+   *
+   * @param out where the names are written
+   * @param queue the workers
+   * @throws IOException if the names cannot be written
+   */
+  private static void writeNames(DataOutput out, Queue<? extends Worker> queue)
+      throws IOException {
+    List<String> names = new ArrayList<String>(queue.size());
+    for (Worker worker : queue) {
+      names.add(worker.getName());
+    }
+    Snapshot.writeStrings(out, names);
+  }
+
+  /**
+   * Read names written by writeNames().
+   *
+   * @param in where the names are read from
+   * @return the names, in order
+   * @throws IOException if the names cannot be read
+   */
+  private static List<String> readNames(DataInput in) throws IOException {
+    List<String> names = new ArrayList<String>();
+    Snapshot.readStrings(in, names);
+    return names;
+  }
+
+  /**
+   * Hand an effect of the current event to the workers of another type: the ID of pallets that
+   * reached the marshalling area (sequencers), the ID of pallets that reached the loading area
+   * (loaders), a pick request that has to be picked again or the SKU of a level that was
+   * replenished (pickers), or a level that is low (replenishers). With lanes, the effect is posted
+   * to that type's lane.
+   *
+   * @param type the type of worker the effect is for
+   * @param payload the ID, pick request, SKU or task
+   */
+  private void forward(WorkerType type, Object payload) {
+    if (lanes != null) {
+      lanes.post(type, payload);
     } else {
-      workerActs(eventArray);
+      deliver(type, payload);
     }
+  }
 
+  /**
+   * Apply an effect handed to the workers of a type by forward(), and see if they can be assigned
+   * any work.
+   *
+   * @param type the type of worker the effect is for
+   * @param payload the ID, pick request, SKU or task
+   */
+  void deliver(WorkerType type, Object payload) {
+    switch (type) {
+      case PICKER:
+        if (payload instanceof PickRequest) {
+          queueRequest((PickRequest) payload);
+        } else {
+          // A level was replenished; the requests waiting for it can be reserved again.
+          for (PickRequest request : ledger.unblock((String) payload)) {
+            queueRequest(request);
+          }
+        }
+        tryToAssignPicker(); // Check if any pickers are free to process
+        // this new request.
+        break;
+      case SEQUENCER:
+        warehouse.addMarshallingId((String) payload);
+        // Try to assign a Sequencer to the new package in the marshalling area.
+        tryToAssignSequencer();
+        break;
+      case LOADER:
+        warehouse.addLoadingId((String) payload);
+        // Try to assign a loader.
+        tryToAssignLoader();
+        break;
+      case REPLENISHER:
+        lowLevels.add((ReplenishmentPlanner.Task) payload);
+        tryToAssignReplenisher();
+        break;
+      default:
+        break;
+    }
   }
 
   /**
-   * Create a new minivan order. If there are 4 in the orderBacklog, create a new PickRequest by
-   * invoking newRequest().
+   * Create a new minivan order and add it to the batcher's backlog. If a batch of orders is due,
+   * create a new PickRequest for it by invoking newRequest().
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void newOrder(String[] event) {
+  private void newOrder(EventTokenizer tokens) {
+
+    // Extract the front and back fascia SKUs of the minivan.
+    String model = tokens.text(1);
+    String color = tokens.text(2);
+    Order order = new Order(model, color, warehouse.getSkus(model, color));
+    if (tracer != null) {
+      order.setReceived(now());
+    }
+    batcher.add(order);
+    out.send("New order for a {} minivan {} added to queue.", color, model);
 
-    ordersBacklog.add((String[]) event);
-    System.out.println("New order for a " + event[2] + " minivan " + event[1] + " added to queue.");
+    // Create a PickRequest if a batch of orders is due.
+    batchOrders();
 
-    // Create a PickRequest if there are enough orders in the queue
-    if (ordersBacklog.size() >= 4) {
+  }
 
-      Order[] orders = new Order[4];
+  /**
+   * Count an event that concerns pickers, and create a PickRequest for every batch of orders that
+   * is due: because the backlog is full, because its oldest order has waited long enough, or
+   * because a picker is waiting for work.
+   */
+  private void batchOrders() {
+    batcher.tick();
+    Order[] orders;
+    while ((orders = batcher.poll(!readyPickers.isEmpty() && pickRequests.isEmpty())) != null) {
+      newRequest(orders);
+    }
+  }
 
-      // Go through the orders in the backlog and extract their front and
-      // back fascia SKUs.
-      String[] currOrder;
-      String[] currSkus;
-      for (int i = 0; i < 4; i++) {
-        currOrder = ordersBacklog.poll();
-        currSkus = warehouse.getSkus(currOrder[1], currOrder[2]);
-        orders[i] = new Order(currOrder[1], currOrder[2], currSkus);
+  /**
+   * Reserve the fascia of a pick request and add it to the end of the queue. If it is within the
+   * planner's lookahead, its fascia count as committed demand right away. A request that cannot be
+   * reserved waits in the ledger until the level it is short of has been replenished.
+   *
+   * @param request the pick request that was created, has to be picked again, or was unblocked
+   */
+  private void queueRequest(PickRequest request) {
+    String shortOf = ledger.reserve(request);
+    if (shortOf != null) {
+      expedite(shortOf);
+      return;
+    }
+    pickRequests.add(request);
+    if (pickRequests.size() <= planner.getLookahead()) {
+      planRestocks(request);
+    }
+  }
+
+  /**
+   * Count the fascia of the pick requests that came within the planner's lookahead after requests
+   * were taken from the head of the queue.
+   *
+   * @param polled the number of requests taken from the head of the queue
+   */
+  private void planLookahead(int polled) {
+    int lookahead = planner.getLookahead();
+    int index = 0;
+    for (PickRequest request : pickRequests) {
+      if (index >= lookahead) {
+        break;
+      }
+      if (index >= lookahead - polled) {
+        planRestocks(request);
       }
+      index++;
+    }
+  }
 
-      newRequest(orders);
+  /**
+   * Count the fascia of a pick request as committed demand, and have the levels it will pick from
+   * replenished if they will run low.
+   *
+   * @param request the pick request that came within the lookahead
+   */
+  private void planRestocks(PickRequest request) {
+    planner.commit(request);
+    for (String sku : request.getFaxOrder()) {
+      planRestock(warehouse.getSkuId(sku));
     }
+  }
 
+  /**
+   * Hand a level to the replenishers ahead of the others if a blocked pick request is waiting for
+   * it and replenishing it now would let the request be reserved.
+   *
+   * @param sku the SKU of the level
+   */
+  private void expedite(String sku) {
+    if (!ledger.needsRefill(sku)) {
+      return;
+    }
+    ReplenishmentPlanner.Task task = planner.expedite(warehouse.getSkuId(sku));
+    if (task != null) {
+      forward(WorkerType.REPLENISHER, task);
+    }
+  }
+
+  /**
+   * Hand a level to the replenishers if the planner says it is due.
+   *
+   * @param skuId the id of the SKU of the level
+   */
+  private void planRestock(int skuId) {
+    ReplenishmentPlanner.Task task = planner.check(skuId);
+    if (task != null) {
+      forward(WorkerType.REPLENISHER, task);
+    }
   }
 
   /**
@@ -132,129 +779,229 @@ public class Organizer {
    * @param orders a line of input from the input file in the form of an array.
    */
   private void newRequest(Order[] orders) {
-    PickRequest pickRequest = new PickRequest(orders);
+    FlightEvents.PickRequestCreated event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.PickRequestCreated();
+      event.begin();
+    }
+    PickRequest pickRequest = new PickRequest(orders, warehouse.nextRequestNumber(), warehouse);
+    batcher.measure(pickRequest);
+    if (tracer != null) {
+      traceOrders(pickRequest, orders);
+    }
     warehouse.addPickRequest(pickRequest);
-    pickRequests.add(pickRequest);
-    System.out.println("A new request with ID '" + pickRequest.getId() + "' has been created.");
+    queueRequest(pickRequest);
+    out.send("A new request with ID '{}' has been created.", pickRequest.getId());
+    if (event != null && event.shouldCommit()) {
+      event.requestId = pickRequest.getId();
+      event.orders = orders.length;
+      event.fascia = pickRequest.getFaxOrder().size();
+      event.pathLength = pickRequest.getPathLength();
+      event.commit();
+    }
     tryToAssignPicker();
   }
 
+  /**
+   * Record that a new pick request was created, and when the first of its orders was received.
+   *
+   * @param request the pick request
+   * @param orders the orders batched into it
+   */
+  private void traceOrders(PickRequest request, Order[] orders) {
+    long first = -1;
+    for (Order order : orders) {
+      long received = order.getReceived();
+      if (received >= 0 && (first < 0 || received < first)) {
+        first = received;
+      }
+    }
+    if (first >= 0) {
+      request.stamp(RequestStage.ORDERED, first);
+    }
+    trace(request, RequestStage.CREATED);
+  }
+
   /**
    * Create a new worker and add it to the warehouse. Set the worker's status to ready and add it to
    * the appropriate ready-queues. Also, check if the worker can be assigned any work.
-   * 
-   * @param event a line of input from the input file in the form of an array.
+   *
+   * @param tokens the tokens of the event
    */
-  private void readyWorker(String[] event) {
+  private void readyWorker(EventTokenizer tokens) {
 
-    // The first index of the event array specifies the type of the worker.
-    if (event[0].equals("Picker")) {
+    // The first token of the event specifies the type of the worker.
+    WorkerType type = WorkerType.of(tokens, 0);
+    if (type == null) {
+      out.send("Incorrect input."); // Should not get called if
+                                              // input format is correct.
+      return;
+    }
 
-      Picker worker;
+    String name = tokens.text(1);
+    switch (type) {
+      case PICKER: {
+
+        Picker worker;
+
+        if (warehouse.getWorker(name) == null) { // New worker.
+          worker = new Picker(name, warehouse, true);
+          worker.setCommandSink(out);
+          warehouse.addWorker(worker);
+          out.send("Welcome to the warehouse {}.", worker.getName());
+        } else { // Worker off break.
+          worker = (Picker) warehouse.getWorker(name);
+          worker.setReady(true);
+          out.send("Hope you had a refreshing break {}.", worker.getName());
+        }
 
-      if (warehouse.getWorker(event[1]) == null) { // New worker.
-        worker = new Picker(event[1], warehouse, true);
-        warehouse.addWorker(worker);
-        System.out.println("Welcome to the warehouse " + worker.getName() + ".");
-      } else { // Worker off break.
-        worker = (Picker) warehouse.getWorker(event[1]);
-        worker.setReady(true);
-        System.out.println("Hope you had a refreshing break " + worker.getName() + ".");
+        // Add the worker to the ready queue and see if work can be
+        // assigned.
+        readyPickers.add(worker);
+        tryToAssignPicker();
+        batchOrders();
+        break;
       }
+      case SEQUENCER: {
+
+        Sequencer worker;
+
+        if (warehouse.getWorker(name) == null) { // New worker.
+          worker = new Sequencer(name, warehouse, true);
+          worker.setCommandSink(out);
+          warehouse.addWorker(worker);
+          out.send("Welcome to the warehouse {}.", worker.getName());
+        } else { // Worker off break.
+          worker = (Sequencer) warehouse.getWorker(name);
+          worker.setReady(true);
+          out.send("Hope you had a refreshing break {}.", worker.getName());
+        }
 
-      // Add the worker to the ready queue and see if work can be
-      // assigned.
-      readyPickers.add(worker);
-      tryToAssignPicker();
-
-    } else if (event[0].equals("Sequencer")) {
-
-      Sequencer worker;
-
-      if (warehouse.getWorker(event[1]) == null) { // New worker.
-        worker = new Sequencer(event[1], warehouse, true);
-        warehouse.addWorker(worker);
-        System.out.println("Welcome to the warehouse " + worker.getName() + ".");
-      } else { // Worker off break.
-        worker = (Sequencer) warehouse.getWorker(event[1]);
-        worker.setReady(true);
-        System.out.println("Hope you had a refreshing break " + worker.getName() + ".");
+        // Add the worker to the ready queue and see if work can be
+        // assigned.
+        readySequencers.add(worker);
+        tryToAssignSequencer();
+        break;
       }
+      case LOADER: {
+
+        Loader worker;
+
+        if (warehouse.getWorker(name) == null) { // New worker.
+          worker = new Loader(name, warehouse, true);
+          worker.setCommandSink(out);
+          warehouse.addWorker(worker);
+          out.send("Welcome to the warehouse {}.", worker.getName());
+        } else { // Worker off break.
+          worker = (Loader) warehouse.getWorker(name);
+          worker.setReady(true);
+          out.send("Hope you had a refreshing break {}.", worker.getName());
+        }
 
-      // Add the worker to the ready queue and see if work can be
-      // assigned.
-      readySequencers.add(worker);
-      tryToAssignSequencer();
-
-    } else if (event[0].equals("Loader")) {
-
-      Loader worker;
-
-      if (warehouse.getWorker(event[1]) == null) { // New worker.
-        worker = new Loader(event[1], warehouse, true);
-        warehouse.addWorker(worker);
-        System.out.println("Welcome to the warehouse " + worker.getName() + ".");
-      } else { // Worker off break.
-        worker = (Loader) warehouse.getWorker(event[1]);
-        worker.setReady(true);
-        System.out.println("Hope you had a refreshing break " + worker.getName() + ".");
+        // Add the worker to the ready queue and see if work can be
+        // assigned.
+        readyLoaders.add(worker);
+        tryToAssignLoader();
+        break;
       }
+      case REPLENISHER: {
+
+        Replenisher worker;
+
+        if (warehouse.getWorker(name) == null) { // New worker.
+          worker = new Replenisher(name, warehouse, true);
+          worker.setCommandSink(out);
+          warehouse.addWorker(worker);
+          out.send("Welcome to the warehouse {}.", worker.getName());
+        } else { // Worker off break.
+          worker = (Replenisher) warehouse.getWorker(name);
+          worker.setReady(true);
+          out.send("Hope you had a refreshing break {}.", worker.getName());
+          // Levels left on its last trip go back to the other replenishers.
+          for (String location : worker.abandonRoute()) {
+            String sku = warehouse.getSkuFromLocation(location);
+            if (sku != null) {
+              lowLevels.requeue(sku);
+            }
+          }
+        }
 
-      // Add the worker to the ready queue and see if work can be
-      // assigned.
-      readyLoaders.add(worker);
-      tryToAssignLoader();
-
-    } else if (event[0].equals("Replenisher")) {
+        // Add the worker to the ready queue and see if work can be
+        // assigned.
+        readyReplenishers.add(worker);
+        tryToAssignReplenisher();
+        break;
+      }
+      default:
+        break;
+    }
 
-      Replenisher worker;
+  }
 
-      if (warehouse.getWorker(event[1]) == null) { // New worker.
-        worker = new Replenisher(event[1], warehouse, true);
-        warehouse.addWorker(worker);
-        System.out.println("Welcome to the warehouse " + worker.getName() + ".");
-      } else { // Worker off break.
-        worker = (Replenisher) warehouse.getWorker(event[1]);
-        worker.setReady(true);
-        System.out.println("Hope you had a refreshing break " + worker.getName() + ".");
-      }
+  /**
+   * Check to see if pickers are available to be assigned to pick-requests. If so, assign as many
+   * as possible, letting the scheduler pair them so pickers walk as little as possible.
+   */
+  private void tryToAssignPicker() {
 
-      // Add the worker to the ready queue and see if work can be
-      // assigned.
-      readyReplenishers.add(worker);
-      tryToAssignReplenisher();
+    if (readyPickers.isEmpty() || pickRequests.isEmpty()) {
+      return;
+    }
 
-    } else {
-      System.out.println("Incorrect input."); // Should not get called if
-                                              // input format is correct.
+    if (readyPickers.size() == 1) {
+      // Only the oldest request can be assigned, and only to this picker.
+      assignPicker(readyPickers.poll(), pickRequests.poll());
+      planLookahead(1);
+      return;
+    }
 
+    // Only the oldest requests are assigned, one per picker, so requests
+    // still start in the order they were created.
+    List<Picker> pickers = new ArrayList<Picker>(readyPickers);
+    int count = Math.min(pickers.size(), pickRequests.size());
+    List<PickRequest> requests = new ArrayList<PickRequest>(count);
+    for (int i = 0; i < count; i++) {
+      requests.add(pickRequests.poll());
     }
+    int[] assignment = scheduler.assign(pickers, requests);
+    for (int i = 0; i < count; i++) {
+      Picker readyPicker = pickers.get(assignment[i]);
+      readyPickers.remove(readyPicker);
+      assignPicker(readyPicker, requests.get(i));
+    }
+    planLookahead(count);
 
   }
 
   /**
-   * Check to see if a picker is available to be assigned to a pick-request. If so, assign it.
+   * Hand a pick request to a ready picker and tell it where to start picking.
+   *
+   * @param readyPicker the picker, already taken out of the ready queue
+   * @param pick the pick request, already taken out of the queue
    */
-  private void tryToAssignPicker() {
-
-    if (!(readyPickers.isEmpty()) && !(pickRequests.isEmpty())) {
+  private void assignPicker(Picker readyPicker, PickRequest pick) {
+    FlightEvents.PickerAssigned event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.PickerAssigned();
+      event.begin();
+    }
 
-      // Take a picker out of the queue and set its ready attribute to
-      // false.
-      Picker readyPicker = readyPickers.poll();
-      readyPicker.setReady(false);
+    readyPicker.setReady(false);
+    readyPicker.setCurrentRequest(pick);
+    trace(pick, RequestStage.ASSIGNED);
 
-      // Take a pick request out of the queue and hand it to a picker.
-      PickRequest pick = pickRequests.poll();
-      readyPicker.setCurrentRequest(pick);
+    // Tell the picker / system that the picker has been assigned.
+    String id = pick.getId();
+    out.send("{} has been assigned pick request with ID {}.", readyPicker, id);
 
-      // Tell the picker / system that the picker has been assigned.
-      String id = pick.getId();
-      System.out
-          .println(readyPicker.toString() + " has been assigned pick request with ID " + id + ".");
+    // Tell the picker to start picking the fascia of this request.
+    commandPicker(readyPicker);
 
-      // Tell the picker to start picking the fascia of this request.
-      commandPicker(readyPicker);
+    if (event != null && event.shouldCommit()) {
+      event.picker = readyPicker.getName();
+      event.requestId = id;
+      event.queued = pickRequests.size();
+      event.commit();
     }
 
   }
@@ -272,18 +1019,14 @@ public class Organizer {
     String sku = warehouse.getSkuFromLocation(location);
     Level level = warehouse.getLevel(sku);
 
-    String toPrint;
     if (currRequest.isDone()) {
-      toPrint = "Picker " + name + " go to Marshalling Area.";
+      out.send("Picker {} go to Marshalling Area.", name);
     } else if (level.getCurrentStock() > 0) {
-      toPrint = "Picker " + name + " go to '" + location + "' and pick " + sku + ".";
+      out.send("Picker {} go to '{}' and pick {}.", name, location, sku);
     } else {
-      toPrint = "Picker " + name + " go to '" + location + "' and pick " + sku
-          + " once it has been restocked.";
+      out.send("Picker {} go to '{}' and pick {} once it has been restocked.", name, location, sku);
     }
 
-    System.out.println(toPrint);
-
   }
 
   /**
@@ -291,7 +1034,7 @@ public class Organizer {
    */
   private void tryToAssignSequencer() {
 
-    if (!(readySequencers.isEmpty()) && !(warehouse.marshallingIds.isEmpty())) {
+    if (!(readySequencers.isEmpty()) && warehouse.hasMarshallingIds()) {
 
       // Take a sequencer out of the queue and set its ready attribute to
       // false.
@@ -300,98 +1043,91 @@ public class Organizer {
 
       // Take a pick request ID out of the queue and hand it to a
       // sequencer.
-      String id = warehouse.marshallingIds.poll();
+      String id = warehouse.pollMarshallingId();
       PickRequest request = warehouse.getPickRequest(id);
       readySequencer.setCurrentRequest(request);
 
       // Tell the sequencer to sequence the fascia for that request.
       String name = readySequencer.getName();
-      System.out.println("Sequencer " + name + " sequence pallets with ID " + id + ".");
+      out.send("Sequencer {} sequence pallets with ID {}.", name, id);
     }
 
   }
 
   /**
-   * Check if a loader can be assigned to pallets in need of loading.
+   * Check if loaders can be assigned to pallets in need of loading. Each dock loads its own
+   * sequence, so ready loaders are handed out across the docks whose next pallets are waiting,
+   * taking turns between docks.
    */
   private void tryToAssignLoader() {
 
-    // Translate loadingCounter to its corresponding pick request ID string.
-    String id = warehouse.loadingCounter + "pr";
-
-    // Check if a loader is ready and if the next pallets to be loaded have
-    // been sequenced (whether they're in the loading area).
-    if (!(readyLoaders.isEmpty()) && warehouse.loadingIds.contains(id)) {
+    Dock[] docks = warehouse.getDocks();
+    int checked = 0;
+    while (!(readyLoaders.isEmpty()) && checked < docks.length) {
+
+      // Check if the next pallets to be loaded at this dock have been
+      // sequenced (whether they're in the loading area).
+      Dock dock = docks[nextDock];
+      nextDock = (nextDock + 1) % docks.length;
+      LoadingArea loadingArea = dock.getLoadingArea();
+      if (loadingArea.takeReady(1) != 1) {
+        checked++;
+        continue;
+      }
+      checked = 0;
 
       // Take a loader out of the queue and set its ready attribute to
       // false.
       Loader readyLoader = readyLoaders.poll();
       readyLoader.setReady(false);
 
-      // Take a pick request ID out of the queue and hand it to a loader.
-      warehouse.loadingIds.remove(id);
+      // The pallets have been taken out of the loading area; hand them to a
+      // loader.
+      String id = dock.numberAt(loadingArea.getNext()) + "pr";
       PickRequest request = warehouse.getPickRequest(id);
       readyLoader.setCurrentRequest(request);
 
       // Tell the loader to load the pallets with the given id.
       String name = readyLoader.getName();
-      System.out.println("Loader " + name + " load pallets with ID " + id + ".");
+      if (docks.length == 1) {
+        out.send("Loader {} load pallets with ID {}.", name, id);
+      } else {
+        out.send("Loader {} load pallets with ID {} at dock {}.", name, id, dock.getName());
+      }
     }
   }
 
   /**
-   * Check if a replenisher can be assigned to a level in need of replenishment.
+   * Check if replenishers can be assigned to levels in need of replenishment. Each ready
+   * replenisher is sent on a trip to the most urgent level and the waiting levels near it.
    */
   private void tryToAssignReplenisher() {
 
-    if (!(readyReplenishers.isEmpty()) && !(lowLevels.isEmpty())) {
+    while (!(readyReplenishers.isEmpty()) && !(lowLevels.isEmpty())) {
 
-      // Get the SKU, the ready replenisher, and the location.
-      String sku = lowLevels.poll();
+      // Get the SKUs of the next trip, the ready replenisher, and the locations.
+      List<String> locations = new ArrayList<String>();
+      FlightEvents.ReplenishmentDispatched event = null;
+      if (FlightEvents.isAvailable()) {
+        event = new FlightEvents.ReplenishmentDispatched();
+        event.begin();
+      }
+      List<String> skus = lowLevels.pollTrip();
+      for (String sku : skus) {
+        locations.add(warehouse.getLocation(sku));
+      }
       Replenisher readyReplenisher = readyReplenishers.poll();
-      String location = warehouse.getLocation(sku);
-
-      // Command the worker to replenish fascia at the given location.
-      System.out.println(readyReplenisher.setTargetLocation(location));
-
-    }
-
-  }
-
-  /**
-   * Change the state of the system based on what the input says a particular worker picked. Through
-   * this event, order the worker to do something if needed.
-   *
-   * @param event a line of input from the input file in the form of an array.
-   */
-  private void workerActs(String[] event) {
-
-    if (event.length < 3) {
-      System.out.println("Incorrect input.");
-    } else if (event[2].equals("picks")) { // Respond once a picker picks
-                                           // something.
 
-      pickingAct(event);
-    } else if (event[2].equals("goes")) { // Respond once a picker goes to
-                                          // the marshalling area.
+      // Command the worker to replenish fascia at the given locations.
+      readyReplenisher.setRoute(locations);
 
-      goesToMarshallingAct(event);
-    } else if (event[2].equals("scans")) { // Respond once a sequencer
-                                           // sequences
-      scanningAct(event);
-    } else if (event[2].equals("loads")) { // Respond once a loader loads
-      loadingAct(event);
-    } else if (event[2].equals("unloads")) { // Respond once a loader
-                                             // unloads
-      unloadingAct(event);
-    } else if (event[2].equals("replenishes")) { // Respond once a
-                                                 // replenisher
-                                                 // replenishes
+      if (event != null && event.shouldCommit()) {
+        event.replenisher = readyReplenisher.getName();
+        event.skus = String.join(" ", skus);
+        event.stops = skus.size();
+        event.commit();
+      }
 
-      replenishingAct(event);
-    } else if (event[2].equals("takes")) { // Respond once a worker decides
-                                           // to take a break.
-      retiresAct(event);
     }
 
   }
@@ -399,93 +1135,107 @@ public class Organizer {
   /**
    * Handle the event of a picker actually picking a fascia.
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void pickingAct(String[] event) {
+  private void pickingAct(EventTokenizer tokens) {
 
     // Update the warehouse system model and print to the console.
-    Picker currPicker = (Picker) warehouse.getWorker(event[1]);
-    String sku = event[3];
+    Picker currPicker = (Picker) warehouse.getWorker(tokens.text(1));
+    String sku = tokens.text(3);
     String location = warehouse.getLocation(sku);
-    System.out.println(currPicker.picks(sku, location));
-
-    // Check if the level the picker picked from needs replenishing.
-    // If so, try to assign a replenisher to replenish.
-    Level level = warehouse.getLevel(event[3]);
-    if (level.isNeedRestock()) {
-      lowLevels.add(event[3]);
-      tryToAssignReplenisher();
+    if (currPicker.picks(sku, location)) {
+
+      // Check if the level the picker picked from needs replenishing.
+      // If so, try to assign a replenisher to replenish.
+      int skuId = warehouse.getSkuId(sku);
+      planner.picked(skuId);
+      planRestock(skuId);
+      // A pick frees up room on the level for requests blocked on it.
+      expedite(sku);
     }
 
     // Give the picker its next instructions.
     commandPicker(currPicker);
+    batchOrders();
 
   }
 
   /**
    * Handle the event of a picker actually going to marshalling.
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void goesToMarshallingAct(String[] event) {
+  private void goesToMarshallingAct(EventTokenizer tokens) {
 
     // Update the warehouse system model and print to the console.
-    Picker currPicker = (Picker) warehouse.getWorker(event[1]);
+    Picker currPicker = (Picker) warehouse.getWorker(tokens.text(1));
     String id = currPicker.getCurrentRequest().getId();
-    warehouse.marshallingIds.add(id);
-    System.out.println("Picker " + currPicker.getName()
-        + " went to the marshalling station with packet ID " + id + ".");
+    trace(currPicker.getCurrentRequest(), RequestStage.PICKED);
+    out.send("Picker {} went to the marshalling station with packet ID {}.", currPicker.getName(),
+        id);
     currPicker.setReady(true);
 
-    // Try to assign a Sequencer to the new package in the marshalling area.
-    tryToAssignSequencer();
+    // Hand the new package in the marshalling area to the sequencers.
+    forward(WorkerType.SEQUENCER, id);
 
     // Free up the picker from its current request.
     currPicker.setReady(true);
+    currPicker.atMarshalling();
     readyPickers.add(currPicker);
     // Try to assign the picker to another request.
     tryToAssignPicker();
+    batchOrders();
 
   }
 
   /**
    * Handle the event of SKUs getting scanned by a ScanningWorker.
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void scanningAct(String[] event) {
+  private void scanningAct(EventTokenizer tokens) {
 
     // Only a sequencer or a loader can scan to the organizer.
     // So, break out of the function if another worker scanned.
-    if (!event[0].equals("Sequencer") && !event[0].equals("Loader")) {
-      System.out.print("Incorrect input.");
+    WorkerType type = WorkerType.of(tokens, 0);
+    if (type != WorkerType.SEQUENCER && type != WorkerType.LOADER) {
+      out.send("Incorrect input.");
       return;
     }
 
-    // Get an array of the scanned items and an array of what should have
-    // been scanned.
-    ScanningWorker currScanner = (ScanningWorker) warehouse.getWorker(event[1]);
-    String[] scanned = Arrays.copyOfRange(event, 3, event.length);
+    // The scanned items are the tokens from index 3 onwards; they are
+    // compared in place with what should have been scanned.
+    ScanningWorker currScanner = (ScanningWorker) warehouse.getWorker(tokens.text(1));
+    FlightEvents.ScanResult event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.ScanResult();
+      event.begin();
+    }
 
     String id = currScanner.getPrId();
     String name = currScanner.getName();
+    String outcome;
 
     // Check to see if the scanned items were in the correct order.
-    if (currScanner.scans(scanned)) { // Correct order.
+    boolean correct = currScanner.scans(tokens, 3);
+    if (correct) { // Correct order.
 
-      if (event[0].equals("Sequencer")) { // Worker is a sequencer.
+      if (type == WorkerType.SEQUENCER) { // Worker is a sequencer.
 
         // Send pallets to the loading area.
-        System.out.println(((Sequencer) currScanner).sendToLoading());
-
-        // Try to assign a loader.
-        tryToAssignLoader();
+        outcome = "loading";
+        ((Sequencer) currScanner).sendToLoading();
+        if (tracer != null) {
+          trace(warehouse.getPickRequest(id), RequestStage.SEQUENCED);
+        }
+        forward(WorkerType.LOADER, id);
 
-      } else if (event[0].equals("Loader")) { // Worker is a loader.
+      } else { // Worker is a loader.
 
         // Command the loader to now load package onto truck.
-        System.out.println(event[0] + event[1] + " load pallets with ID " + currScanner.getPrId()
-            + " onto the truck.");
+        outcome = "load";
+        out.send("{}{} load pallets with ID {} onto the truck.", type.getLabel(), name,
+            currScanner.getPrId());
 
       }
 
@@ -493,28 +1243,37 @@ public class Organizer {
                                              // double checked.
 
       // Command sequencer or loader to throw away the package.
-      System.out.println("Pallet of ID " + id + " was picked incorrectly.\n" + name
-          + " discard package with ID " + id);
+      outcome = "discard";
+      out.send("Pallet of ID {} was picked incorrectly.", id);
+      out.send("{} discard package with ID {}", name, id);
 
       // Add the current request back to the pick request queue.
       PickRequest currRequest = warehouse.getPickRequest(id);
       currRequest.reset();
-      pickRequests.add(currRequest);
-      tryToAssignPicker(); // Check if any pickers are free to process
-      // this new request.
+      forward(WorkerType.PICKER, currRequest);
 
       currScanner.setTriedOnce(false);
 
     } else { // Incorrect order but first scan
 
       currScanner.setTriedOnce(true);
+      outcome = "rescan";
+
+      out.send("Scan of pallet of ID {} gave a bad result.", id);
+      out.send("{} rescan package of {} to double check", name, id);
+    }
 
-      System.out.println("Scan of pallet of ID " + id + " gave a bad result.\n" + name
-          + " rescan package of " + id + " to double check");
+    if (event != null && event.shouldCommit()) {
+      event.worker = name;
+      event.workerType = type.getLabel();
+      event.requestId = id;
+      event.correct = correct;
+      event.outcome = outcome;
+      event.commit();
     }
 
     // Free up the sequencer in the model from its current PickRequest.
-    if (event[0].equals("Sequencer")) {
+    if (type == WorkerType.SEQUENCER) {
       currScanner.setReady(true);
       readySequencers.add((Sequencer) currScanner);
       tryToAssignSequencer();
@@ -527,17 +1286,24 @@ public class Organizer {
   /**
    * Handle the event of pallets being loaded onto a truck.
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void loadingAct(String[] event) {
+  private void loadingAct(EventTokenizer tokens) {
 
     // Get a reference to the loader.
-    Loader currLoader = (Loader) warehouse.getWorker(event[1]);
+    Loader currLoader = (Loader) warehouse.getWorker(tokens.text(1));
 
     // Update the model to reflect the loading act.
-    String id = event[3];
-    String msg = currLoader.loads(id);
-    System.out.println(msg);
+    String id = tokens.text(3);
+    // Pallets loaded by mistake are unloaded again, so only the assigned load counts.
+    PickRequest loaded = null;
+    if (tracer != null && id.equals(currLoader.getPrId())) {
+      loaded = warehouse.getPickRequest(id);
+    }
+    currLoader.loads(id);
+    if (loaded != null) {
+      trace(loaded, RequestStage.LOADED);
+    }
 
     // Make the loader ready for work, and try to assign it some.
     currLoader.setReady(true);
@@ -548,14 +1314,14 @@ public class Organizer {
   /**
    * Handle the event of pallets actually being unloaded from a truck.
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void unloadingAct(String[] event) {
+  private void unloadingAct(EventTokenizer tokens) {
     // Get a reference to the loader.
-    Loader currLoader = (Loader) warehouse.getWorker(event[1]);
+    Loader currLoader = (Loader) warehouse.getWorker(tokens.text(1));
     // Update the model to reflect the unloading act.
-    String id = event[3];
-    System.out.println(currLoader.unloads(id));
+    String id = tokens.text(3);
+    currLoader.unloads(id);
 
     // An unloading act does not affect a loader's readiness;
     // it can unload anytime, even when assigned pallets to load.
@@ -567,42 +1333,56 @@ public class Organizer {
   /**
    * Handle the event of a replenisher actually restocking a shelf.
    *
-   * @param event a line of input from the input file in the form of an array.
+   * @param tokens the tokens of the event
    */
-  private void replenishingAct(String[] event) {
+  private void replenishingAct(EventTokenizer tokens) {
 
     // Get a reference to the replenisher.
-    Replenisher currReplenisher = (Replenisher) warehouse.getWorker(event[1]);
+    Replenisher currReplenisher = (Replenisher) warehouse.getWorker(tokens.text(1));
 
     // Update warehouse model to reflect replenishment and print to console.
-    // event[3] is a location
-    String location = event[3] + " " + event[4] + " " + event[5] + " " + event[6];
-    System.out.println(currReplenisher.replenishes(location));
+    // Tokens 3 to 6 are a location
+    String location = tokens.join(3, 7);
+    currReplenisher.replenishes(location);
+
+    // Let the pickers reserve the new stock for the requests waiting for it.
+    forward(WorkerType.PICKER, warehouse.getSkuFromLocation(location));
 
   }
 
   /**
    * Workers can only take breaks if they are idle.
-   * 
-   * @param event the input event
+   *
+   * @param tokens the tokens of the event
    */
-  private void retiresAct(String[] event) {
+  private void retiresAct(EventTokenizer tokens) {
 
     // Get a reference to the worker.
-    Worker currWorker = (Worker) warehouse.getWorker(event[1]);
+    Worker currWorker = (Worker) warehouse.getWorker(tokens.text(1));
 
     // Set the worker's ready attribute to false.
     currWorker.setReady(false);
 
     // Remove the worker from its appropriate queue
-    if (event[0].equals("Picker")) {
-      readyPickers.remove(currWorker);
-    } else if (event[0].equals("Sequencer")) {
-      readySequencers.remove(currWorker);
-    } else if (event[0].equals("Loader")) {
-      readyLoaders.remove(currWorker);
-    } else if (event[0].equals("Replenisher")) {
-      readyReplenishers.remove(currWorker);
+    WorkerType type = WorkerType.of(tokens, 0);
+    if (type == null) {
+      return;
+    }
+    switch (type) {
+      case PICKER:
+        readyPickers.remove(currWorker);
+        break;
+      case SEQUENCER:
+        readySequencers.remove(currWorker);
+        break;
+      case LOADER:
+        readyLoaders.remove(currWorker);
+        break;
+      case REPLENISHER:
+        readyReplenishers.remove(currWorker);
+        break;
+      default:
+        break;
     }
   }
 
@@ -614,30 +1394,17 @@ public class Organizer {
     String newLineChar = System.getProperty("line.separator");
     try (Writer writer =
         new BufferedWriter(new OutputStreamWriter(new FileOutputStream("final.csv"), "utf-8"))) {
-      for (int zone = 0; zone < 2; zone++) {
-        for (int aisle = 0; aisle < 2; aisle++) {
-          for (int rack = 0; rack < 3; rack++) {
-            for (int level = 0; level < 4; level++) {
-
-              String zoneStr;
-              if (zone == 0) {
-                zoneStr = "A";
-              } else {
-                zoneStr = "B";
-              }
-
-              String currSku =
-                  warehouse.getSkuFromLocation(zoneStr + " " + aisle + " " + rack + " " + level);
-              Level currLevel = warehouse.getLevel(currSku);
-
-              if (currLevel.getCurrentStock() < 30) {
-                writer.write(zoneStr + "," + aisle + "," + rack + "," + level + ","
-                    + currLevel.getCurrentStock() + newLineChar);
-              }
+      Topology topology = warehouse.getTopology();
+      for (int slot = 0; slot < topology.size(); slot++) {
 
-            }
-          }
+        Level currLevel = warehouse.getLevelAt(slot);
+
+        if (currLevel != null && currLevel.getCurrentStock() < Level.FULL_STOCK) {
+          writer.write(topology.getZoneName(slot) + "," + topology.getAisle(slot) + ","
+              + topology.getRack(slot) + "," + topology.getLevel(slot) + ","
+              + currLevel.getCurrentStock() + newLineChar);
         }
+
       }
     } catch (IOException ex) {
       ex.printStackTrace();
@@ -654,6 +1421,18 @@ public class Organizer {
     String newLineChar = System.getProperty("line.separator");
     try (Writer writer =
         new BufferedWriter(new OutputStreamWriter(new FileOutputStream("orders.csv"), "utf-8"))) {
+
+      // Pick requests whose truck has left may have been archived; they come first.
+      RequestArchive archive = warehouse.getArchive();
+      if (archive != null) {
+        archive.forEachOrder(new RequestArchive.OrderVisitor() {
+          @Override
+          public void visit(Order order) throws IOException {
+            writer.write(order.toString() + newLineChar);
+          }
+        });
+      }
+
       for (PickRequest pr : warehouse.getLoadedRequests()) {
         for (Order o : pr.getOrders()) {
 
@@ -664,6 +1443,27 @@ public class Organizer {
     }
   }
 
+  /**
+   * Create the command sink named by the warehouse.output property: "console" prints every command
+   * as it is sent, "buffered" prints them in batches, "async" prints them from a separate thread and
+   * "none" discards them.
+   *
+   * @param kind the kind of sink
+   * @return the sink
+   */
+  private static CommandSink createCommandSink(String kind) {
+    switch (kind) {
+      case "buffered":
+        return new BufferedSink(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      case "async":
+        return new AsyncSink(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      case "none":
+        return NullSink.INSTANCE;
+      default:
+        return PrintStreamSink.STDOUT;
+    }
+  }
+
   /**
    * Entry point of program. Read the input file and call handle(event: String) method on each line.
    *
@@ -674,28 +1474,95 @@ public class Organizer {
 
     // Instantiate a warehouse and it's organizer
     Warehouse warehouse = new Warehouse();
-    Organizer organizer = new Organizer(warehouse);
+    CommandSink out = createCommandSink(System.getProperty("warehouse.output", "console"));
+    Organizer organizer = new Organizer(warehouse, out);
+    // -Dwarehouse.archive=<file> moves pick requests to an archive file once
+    // their truck has left, so memory use stays bounded.
+    String archiveFile = System.getProperty("warehouse.archive");
+    if (archiveFile != null) {
+      warehouse.setArchive(new RequestArchive(new File(archiveFile)));
+    }
+    // -Dwarehouse.trace=true records how long pick requests spend in each stage, by the time
+    // stamps the events start with, or else by when they are handled. Events recovered from a
+    // journal are traced too.
+    LifecycleTracer tracer = null;
+    if (Boolean.getBoolean("warehouse.trace")) {
+      tracer = new LifecycleTracer();
+      tracer.register();
+      organizer.setTracer(tracer);
+    }
+    // -Dwarehouse.journal=<dir> journals events and takes snapshots in a
+    // directory; after a crash, the state is recovered from it and the events
+    // file carries on after the events that were recovered.
+    long recovered = 0;
+    String journalDir = System.getProperty("warehouse.journal");
+    if (journalDir != null) {
+      recovered = organizer.openJournal(new File(journalDir),
+          Integer.getInteger("warehouse.journal.group", 256),
+          Long.getLong("warehouse.journal.millis", 5L),
+          Long.getLong("warehouse.snapshot.interval", 100_000L));
+    }
+    // -Dwarehouse.lanes=true handles events on one thread per type of worker.
+    if (Boolean.getBoolean("warehouse.lanes")) {
+      organizer.startLanes();
+    }
 
-    // Read the input from the provided text file, and pass them to the
-    // handle method.
-    String line = null;
-    try {
-      System.out.println(args[0]);
-      BufferedReader reader = new BufferedReader(new FileReader(args[0]));
-      while ((line = reader.readLine()) != null) {
-        organizer.handle(line);
+    // Record latencies and queue depths if asked to; they are published through JMX, and written
+    // to a CSV file every so often if one is named.
+    OrganizerMetrics metrics = null;
+    if (Boolean.getBoolean("warehouse.metrics")) {
+      metrics = new OrganizerMetrics(Integer.getInteger("warehouse.metrics.sample", 64));
+      metrics.register();
+      String metricsFile = System.getProperty("warehouse.metrics.file");
+      if (metricsFile != null) {
+        metrics.startDump(new File(metricsFile), Long.getLong("warehouse.metrics.millis", 1000L));
       }
-      reader.close();
-    } catch (FileNotFoundException ex) {
-      System.out.println("File not found.");
-    } catch (IOException ex) {
-      System.out.println("Finished reading input file.");
+      organizer.setMetrics(metrics);
+    }
+
+    // Replay the input from the provided events file, passing each line to
+    // the handle method.
+    out.send(args[0]);
+    File eventsFile = new File(args[0]);
+    EventFileReader reader = null;
+    if (eventsFile.isFile()) {
+      reader = new EventFileReader(eventsFile);
+      reader.setSkip(recovered);
+      reader.replay(organizer);
+    } else {
+      out.send("File not found.");
+    }
+    // With lanes, the events are handled on the lanes' threads. Stop them before the commands are
+    // flushed and anything the lanes change is reported.
+    organizer.stopLanes();
+    out.flush();
+    if (reader != null) {
+      System.err.println(reader.report());
+      for (Dock dock : warehouse.getDocks()) {
+        System.err.println(dock.report());
+      }
+      System.err.println(organizer.getOrderBatcher().report());
+      System.err.println(organizer.getStockLedger().report());
+    }
+    organizer.closeJournal();
+    if (metrics != null) {
+      System.err.println(metrics.report());
+      metrics.close();
+    }
+    if (tracer != null) {
+      System.err.println(tracer.report());
+      tracer.unregister();
     }
 
     // Write the levels that are not full to a .csv file with their stock.
     organizer.createInventoryLeftFile();
     // Write the orders that were loaded into trucks to a .csv file.
     organizer.createOrdersTxt();
+    if (warehouse.getArchive() != null) {
+      warehouse.getArchive().close();
+    }
+
+    out.close();
 
   }
 
@@ -0,0 +1,323 @@
+package warehouse_system;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * OrganizerMetrics records where an Organizer spends its time and how deep its queues get: a
+ * latency histogram (in nanoseconds) per type of event, whose counts are also the number of events
+ * of each type, and a histogram per queue of its depth, sampled every so many events of a type. An
+ * Organizer without metrics does not time anything, so metrics cost nothing unless they are turned
+ * on.
+ *
+ * <p>The histograms can be published as JMX MBeans (warehouse_system:type=EventLatency,name=PICKS
+ * and warehouse_system:type=QueueDepth,name=pickRequests, ...) and written to a CSV file every so
+ * often, one line per histogram.
+ */
+public class OrganizerMetrics {
+
+  /** The queues of an Organizer whose depth is sampled. */
+  public enum Gauge {
+
+    /** The pick requests waiting for a picker. */
+    PICK_REQUESTS("pickRequests"),
+
+    /** The pick requests waiting for stock. */
+    BLOCKED_REQUESTS("blockedRequests"),
+
+    /** The pickers waiting for a pick request. */
+    READY_PICKERS("readyPickers"),
+
+    /** The pallets in the marshalling area waiting for a sequencer. */
+    MARSHALLING_IDS("marshallingIds"),
+
+    /** The sequencers waiting for pallets. */
+    READY_SEQUENCERS("readySequencers"),
+
+    /** The pallets in the loading areas waiting for a loader. */
+    LOADING_IDS("loadingIds"),
+
+    /** The loaders waiting for pallets. */
+    READY_LOADERS("readyLoaders"),
+
+    /** The levels waiting for a replenisher. */
+    LOW_LEVELS("lowLevels"),
+
+    /** The replenishers waiting for a level. */
+    READY_REPLENISHERS("readyReplenishers");
+
+    /** The name of the queue. */
+    private final String label;
+
+    /**
+     * Instantiate a gauge.
+     *
+     * @param label the name of the queue
+     */
+    Gauge(String label) {
+      this.label = label;
+    }
+
+    /**
+     * Return the name of the queue.
+     *
+     * @return the name
+     */
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /** The latency of each type of event, by ordinal. */
+  private final Histogram[] latencies = new Histogram[EventType.values().length];
+
+  /** The depth of each queue, by ordinal. */
+  private final Histogram[] depths = new Histogram[Gauge.values().length];
+
+  /** The number of events of a type between two samples of the queues. */
+  private final int sampleInterval;
+
+  /** When these metrics were created, in nanoseconds. */
+  private final long startNanos = System.nanoTime();
+
+  /** The names the histograms were published under, so they can be taken back. */
+  private final List<ObjectName> published = new ArrayList<ObjectName>();
+
+  /** The thread that writes the CSV file, or null. */
+  private Thread dumper;
+
+  /** Where the CSV file is written, or null. */
+  private Writer dump;
+
+  /**
+   * Instantiate empty metrics.
+   *
+   * @param sampleInterval the number of events of a type between two samples of the queues
+   */
+  public OrganizerMetrics(int sampleInterval) {
+    this.sampleInterval = Math.max(sampleInterval, 1);
+    for (EventType type : EventType.values()) {
+      latencies[type.ordinal()] = new Histogram("ns");
+    }
+    for (Gauge gauge : Gauge.values()) {
+      depths[gauge.ordinal()] = new Histogram("entries");
+    }
+  }
+
+  /**
+   * Record how long an event took to handle.
+   *
+   * @param type the type of the event
+   * @param nanos the time it took, in nanoseconds
+   * @return true, if the queues should be sampled now
+   */
+  public boolean recordLatency(EventType type, long nanos) {
+    return latencies[type.ordinal()].record(nanos) % sampleInterval == 0;
+  }
+
+  /**
+   * Record the depth of a queue.
+   *
+   * @param gauge the queue
+   * @param depth the number of entries in it
+   */
+  public void sample(Gauge gauge, int depth) {
+    depths[gauge.ordinal()].record(depth);
+  }
+
+  /**
+   * Return the latency histogram of a type of event.
+   *
+   * @param type the type of event
+   * @return the histogram, in nanoseconds
+   */
+  public Histogram getLatency(EventType type) {
+    return latencies[type.ordinal()];
+  }
+
+  /**
+   * Return the depth histogram of a queue.
+   *
+   * @param gauge the queue
+   * @return the histogram
+   */
+  public Histogram getDepth(Gauge gauge) {
+    return depths[gauge.ordinal()];
+  }
+
+  /**
+   * Publish the histograms as MBeans on the platform MBean server. Histograms that cannot be
+   * published are skipped.
+   */
+  public void register() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (EventType type : EventType.values()) {
+      register(server, "EventLatency", type.name(), latencies[type.ordinal()]);
+    }
+    for (Gauge gauge : Gauge.values()) {
+      register(server, "QueueDepth", gauge.getLabel(), depths[gauge.ordinal()]);
+    }
+  }
+
+  /**
+   * Publish one histogram as an MBean.
+   *
+   * @param server the MBean server
+   * @param kind the type key of its name
+   * @param name the name key of its name
+   * @param histogram the histogram
+   */
+  private void register(MBeanServer server, String kind, String name, Histogram histogram) {
+    try {
+      ObjectName objectName = new ObjectName("warehouse_system:type=" + kind + ",name=" + name);
+      server.registerMBean(histogram, objectName);
+      published.add(objectName);
+    } catch (JMException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Write the histograms to a CSV file now, and then every interval until close() is called.
+   *
+   * @param file the CSV file; overwritten
+   * @param intervalMillis the time between two dumps, in milliseconds
+   * @throws IOException if the file cannot be created
+   */
+  public void startDump(File file, final long intervalMillis) throws IOException {
+    dump = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    dump.write(String.format("elapsed_ms,metric,unit,count,mean,p50,p99,max%n"));
+    writeCsv();
+    dumper = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (true) {
+          try {
+            Thread.sleep(Math.max(intervalMillis, 1));
+          } catch (InterruptedException ex) {
+            return;
+          }
+          writeCsv();
+        }
+      }
+    }, "organizer-metrics");
+    dumper.setDaemon(true);
+    dumper.start();
+  }
+
+  /**
+   * Write one line per histogram that has values to the CSV file.
+   */
+  private synchronized void writeCsv() {
+    if (dump == null) {
+      return;
+    }
+    long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+    try {
+      for (EventType type : EventType.values()) {
+        writeCsvLine(elapsed, "latency." + type.name(), latencies[type.ordinal()]);
+      }
+      for (Gauge gauge : Gauge.values()) {
+        writeCsvLine(elapsed, "queue." + gauge.getLabel(), depths[gauge.ordinal()]);
+      }
+      dump.flush();
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Write the line of one histogram to the CSV file, unless it has no values.
+   *
+   * @param elapsed the time since these metrics were created, in milliseconds
+   * @param metric the name of the histogram
+   * @param histogram the histogram
+   * @throws IOException if the line cannot be written
+   */
+  private void writeCsvLine(long elapsed, String metric, Histogram histogram) throws IOException {
+    if (histogram.getCount() == 0) {
+      return;
+    }
+    dump.write(String.format(Locale.ROOT, "%d,%s,%s,%d,%.1f,%d,%d,%d%n", elapsed, metric,
+        histogram.getUnit(), histogram.getCount(), histogram.getMean(), histogram.getP50(),
+        histogram.getP99(), histogram.getMax()));
+  }
+
+  /**
+   * Return a report of the histograms that have values, one line each: latencies in microseconds,
+   * then queue depths.
+   *
+   * @return the report
+   */
+  public String report() {
+    StringBuilder report = new StringBuilder("Latency (us):");
+    for (EventType type : EventType.values()) {
+      Histogram latency = latencies[type.ordinal()];
+      if (latency.getCount() > 0) {
+        report.append(String.format(Locale.ROOT,
+            "%n  %-12s %9d events, mean %8.2f, p50 %8.2f, p99 %8.2f, max %10.2f", type.name(),
+            latency.getCount(), latency.getMean() / 1e3, latency.getP50() / 1e3,
+            latency.getP99() / 1e3, latency.getMax() / 1e3));
+      }
+    }
+    report.append(String.format("%nQueue depth:"));
+    for (Gauge gauge : Gauge.values()) {
+      Histogram depth = depths[gauge.ordinal()];
+      if (depth.getCount() > 0) {
+        report.append(String.format(Locale.ROOT,
+            "%n  %-18s %7d samples, mean %8.1f, p50 %6d, p99 %6d, max %6d", gauge.getLabel(),
+            depth.getCount(), depth.getMean(), depth.getP50(), depth.getP99(), depth.getMax()));
+      }
+    }
+    return report.toString();
+  }
+
+  /**
+   * Write a last dump, stop the thread that writes the CSV file, and take back the MBeans.
+   */
+  public void close() {
+    if (dumper != null) {
+      dumper.interrupt();
+      try {
+        dumper.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      dumper = null;
+    }
+    synchronized (this) {
+      if (dump != null) {
+        writeCsv();
+        try {
+          dump.close();
+        } catch (IOException ex) {
+          ex.printStackTrace();
+        }
+        dump = null;
+      }
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName objectName : published) {
+      try {
+        server.unregisterMBean(objectName);
+      } catch (JMException ex) {
+        ex.printStackTrace();
+      }
+    }
+    published.clear();
+  }
+
+}
@@ -1,19 +1,18 @@
 package warehouse_system;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * PickRequest represents a request for the front and back fascia of 4 minivans.
+ * PickRequest represents a request for the front and back fascia of 4 minivans, or of fewer when
+ * the OrderBatcher's window expired before 4 orders came in.
  */
 public class PickRequest {
 
-  /**
-   * globalID is a static variable used to assign an id to a PickRequest upon construction. It is
-   * then incremented by 1 to ensure that all PickRequest ids are unique.
-   */
-  private static int globalID = 1;
-
   /** The unique id of a PickRequest instance. */
   private String id;
 
@@ -34,14 +33,38 @@ public class PickRequest {
   /** A list of SKUs in the order they came in by fax. */
   private ArrayList<String> faxOrder;
 
+  /** The expected length of the pick path, as measured by the OrderBatcher. */
+  private double pathLength;
+
   /**
-   * Instantiate a new pick request by extracting information from the 4 orders that comprise a pick
+   * When this request reached each stage, in milliseconds, by ordinal; -1 for stages it has not
+   * reached. Null until the request is first traced.
+   */
+  private long[] stamps;
+
+  /**
+   * Instantiate a new pick request by extracting information from the orders that comprise a pick
    * request.
    *
-   * @param orders an Order array of length 4 that contains the 4 orders that this pick-request
-   *        contains.
+   * @param orders an Order array of (usually) length 4 that contains the orders that this
+   *        pick-request contains.
+   * @param number the number of this request, unique within its warehouse; its id is number + "pr"
+   * @param warehouse the warehouse the request is picked in, which builds its pick path
    */
-  public PickRequest(Order[] orders) {
+  public PickRequest(Order[] orders, int number, Warehouse warehouse) {
+    this(orders, number, (List<String>) null);
+    locations = warehouse.getPicking().optimize(faxOrder);
+  }
+
+  /**
+   * Instantiate a pick request whose pick path was built before, e.g. one read back from a
+   * RequestArchive, so the path is not built again.
+   *
+   * @param orders the orders that this pick-request contains
+   * @param number the number of this request; its id is number + "pr"
+   * @param locations the pick path
+   */
+  PickRequest(Order[] orders, int number, List<String> locations) {
 
     this.orders = orders;
 
@@ -53,14 +76,34 @@ public class PickRequest {
       }
     }
 
-    locations = WarehousePicking.optimize(faxOrder);
+    this.locations = locations;
 
-    id = globalID + "pr";
-    globalID += 1;
+    id = number + "pr";
 
     counter = 0;
   }
 
+  /**
+   * Return the number of a pick request from its id, e.g. 12 for "12pr", without creating any
+   * objects.
+   *
+   * @param id the id of a pick request
+   * @return the number, or -1 if the id does not start with a number
+   */
+  public static int parseNumber(String id) {
+    int number = 0;
+    int length = 0;
+    while (length < id.length() && length < 9) {
+      char digit = id.charAt(length);
+      if (digit < '0' || digit > '9') {
+        break;
+      }
+      number = number * 10 + (digit - '0');
+      length++;
+    }
+    return length == 0 ? -1 : number;
+  }
+
   /**
    * Return the location that should be picked from the optimized order.
    *
@@ -70,18 +113,70 @@ public class PickRequest {
     return locations.get(counter);
   }
 
+  /**
+   * Return the locations of the pick path, in the order they are picked.
+   *
+   * @return the locations
+   */
+  public List<String> getLocations() {
+    return locations;
+  }
+
+  /**
+   * Return the expected length of the pick path.
+   *
+   * @return the length, or 0 if it was not measured
+   */
+  public double getPathLength() {
+    return pathLength;
+  }
+
+  /**
+   * Set the expected length of the pick path.
+   *
+   * @param pathLength the length
+   */
+  public void setPathLength(double pathLength) {
+    this.pathLength = pathLength;
+  }
+
   /**
    * Increment the counter by one, to simulate the Picker picking an SKU from the request. When all
-   * fascia for this request have been picked (counter reaches 8), reset the counter.
+   * fascia for this request have been picked (counter reaches 8 for 4 orders), reset the counter.
    */
   public void next() {
     counter++;
-    if (counter >= 8) {
+    if (counter >= faxOrder.size()) {
       donePicking = true;
       counter = 0;
     }
   }
 
+  /**
+   * Record when this request reached a stage. A request that is picked again reaches the stages
+   * after CREATED again, and keeps the latest times.
+   *
+   * @param stage the stage
+   * @param time the time in milliseconds
+   */
+  public void stamp(RequestStage stage, long time) {
+    if (stamps == null) {
+      stamps = new long[RequestStage.values().length];
+      Arrays.fill(stamps, -1);
+    }
+    stamps[stage.ordinal()] = time;
+  }
+
+  /**
+   * Return when this request reached a stage.
+   *
+   * @param stage the stage
+   * @return the time in milliseconds, or -1 if it was not recorded
+   */
+  public long getStamp(RequestStage stage) {
+    return stamps == null ? -1 : stamps[stage.ordinal()];
+  }
+
   /**
    * Return the id of this instantiated PickRequest object.
    *
@@ -126,4 +221,68 @@ public class PickRequest {
     return faxOrder;
   }
 
+  /**
+   * Write this pick request to a snapshot: its number, its orders, how far it has been picked, the
+   * length of its pick path and the times of its stages. The pick path itself is not written, since
+   * it is rebuilt from the orders.
+   *
+   * @param out where the request is written
+   * @throws IOException if the request cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(parseNumber(id));
+    out.writeByte(orders.length);
+    for (Order order : orders) {
+      out.writeUTF(order.getModel());
+      out.writeUTF(order.getColor());
+      String[] skus = order.getSkus();
+      out.writeByte(skus.length);
+      for (String sku : skus) {
+        out.writeUTF(sku);
+      }
+    }
+    out.writeInt(counter);
+    out.writeBoolean(donePicking);
+    out.writeDouble(pathLength);
+    out.writeBoolean(stamps != null);
+    if (stamps != null) {
+      for (long stamp : stamps) {
+        out.writeLong(stamp);
+      }
+    }
+  }
+
+  /**
+   * Read a pick request written by writeState().
+   *
+   * @param in where the request is read from
+   * @param warehouse the warehouse the request is picked in
+   * @return the pick request
+   * @throws IOException if the request cannot be read
+   */
+  static PickRequest readState(DataInput in, Warehouse warehouse) throws IOException {
+    int number = in.readInt();
+    Order[] orders = new Order[in.readUnsignedByte()];
+    for (int i = 0; i < orders.length; i++) {
+      String model = in.readUTF();
+      String color = in.readUTF();
+      String[] skus = new String[in.readUnsignedByte()];
+      for (int j = 0; j < skus.length; j++) {
+        skus[j] = in.readUTF();
+      }
+      orders[i] = new Order(model, color, skus);
+    }
+    PickRequest request = new PickRequest(orders, number, warehouse);
+    request.counter = in.readInt();
+    request.donePicking = in.readBoolean();
+    request.pathLength = in.readDouble();
+    if (in.readBoolean()) {
+      request.stamps = new long[RequestStage.values().length];
+      for (int i = 0; i < request.stamps.length; i++) {
+        request.stamps[i] = in.readLong();
+      }
+    }
+    return request;
+  }
+
 }
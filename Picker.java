@@ -1,6 +1,10 @@
 package warehouse_system;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * The Class Picker is a worker in the warehouse that picks fascia from the racks and drops them off
@@ -17,7 +21,8 @@ public class Picker extends Worker {
   /** An ArrayList of what the picker has put on the fork-lift. */
   private ArrayList<String> actuallyPicked = new ArrayList<String>();
 
-  /** current location of the worker. **/
+  /** current location of the worker, or null at the marshalling area. **/
+  private String location;
 
   /**
    * Instantiates a new picker, and calls the worker superclass constructor.
@@ -36,23 +41,59 @@ public class Picker extends Worker {
    *
    * @param sku is the SKU number of the fascia
    * @param location the location of the picker
-   * @return the message to be printed
+   * @return true, if the picker picked the SKU it was supposed to
    */
-  public String picks(String sku, String location) {
-    String msg = this.toString() + " went to '" + location + "' and picked " + sku + ".";
+  public boolean picks(String sku, String location) {
+    FlightEvents.PickExecuted event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.PickExecuted();
+      event.begin();
+    }
+    this.location = location;
+    out.send("{} went to '{}' and picked {}.", this, location, sku);
 
-    if (!(warehouse.getSkuFromLocation(currentRequest.getLocation()).equals(sku))) {
-      return msg + "\nIncorrect sku picked. " + this.toString() + " return fascia with SKU " + sku
-          + ".";
+    String expected = warehouse.getSkuFromLocation(currentRequest.getLocation());
+    boolean correct = expected.equals(sku);
+    if (!correct) {
+      out.send("Incorrect sku picked. {} return fascia with SKU {}.", this, sku);
     } else {
 
-      // Remove the fascia from the level and add it to the fork-lift.
-      actuallyPicked.add(warehouse.getLevel(sku).takeFascia());
+      // Remove the fascia from the level and add it to the fork-lift. A level the model already
+      // has as empty stays at 0.
+      warehouse.getLevel(sku).takeFascia();
+      actuallyPicked.add(sku);
 
       needsPicking.remove(sku);
       currentRequest.next();
-      return msg;
     }
+
+    if (event != null && event.shouldCommit()) {
+      event.picker = getName();
+      event.requestId = currentRequest.getId();
+      event.sku = sku;
+      event.expectedSku = expected;
+      event.location = location;
+      event.correct = correct;
+      event.commit();
+    }
+    return correct;
+  }
+
+  /**
+   * Return where the picker was last seen: the location of its last pick, or null if it is at the
+   * marshalling area.
+   *
+   * @return the location
+   */
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * Record that the picker has arrived at the marshalling area.
+   */
+  public void atMarshalling() {
+    location = null;
   }
 
   /**
@@ -74,7 +115,29 @@ public class Picker extends Worker {
     needsPicking.clear();
     ArrayList<String> xen = currentRequest.getFaxOrder();
     needsPicking.addAll(xen);
+    // The fascia of the last request were dropped off at marshalling.
+    actuallyPicked.clear();
+
+  }
+
+  @Override
+  void writeState(DataOutput out) throws IOException {
+    super.writeState(out);
+    Snapshot.writeRequest(out, currentRequest);
+    Snapshot.writeStrings(out, needsPicking);
+    Snapshot.writeStrings(out, actuallyPicked);
+    Snapshot.writeString(out, location);
+  }
 
+  @Override
+  void readState(DataInput in, Map<Integer, PickRequest> requests) throws IOException {
+    super.readState(in, requests);
+    currentRequest = Snapshot.readRequest(in, requests);
+    needsPicking.clear();
+    Snapshot.readStrings(in, needsPicking);
+    actuallyPicked.clear();
+    Snapshot.readStrings(in, actuallyPicked);
+    location = Snapshot.readString(in);
   }
 
 }
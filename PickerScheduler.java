@@ -0,0 +1,149 @@
+package warehouse_system;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A PickerScheduler decides which ready picker gets which pick request, so pickers walk as little
+ * as possible to the first fascia of their requests. Each picker is assumed to be where it was
+ * last seen: at the location of its last pick, or at the marshalling area (the depot) once it has
+ * dropped off its fascia or before it has picked anything.
+ *
+ * <p>The cost of an assignment is the walking distance from the picker to the first location of
+ * the request's pick path, measured with the warehouse's route optimizer, or with the
+ * default distances if there is none. When one request or one picker is waiting the cheapest
+ * picker is chosen directly; otherwise the assignment with the lowest total cost is found with the
+ * Hungarian method. Among equally short assignments, requests go to pickers in the order the
+ * pickers became ready.
+ */
+public class PickerScheduler {
+
+  /**
+   * The weight of the tie-break: (picker index - request index) squared times this is added to
+   * each cost, so among equally short assignments the i-th request goes to the i-th picker.
+   */
+  private static final double TIE_BREAK = 1e-6;
+
+  /** The warehouse the pickers work in. */
+  private final Warehouse warehouse;
+
+  /** Measures distances when the warehouse has no route optimizer. */
+  private final RouteOptimizer traversal;
+
+  /**
+   * Instantiate a scheduler for a warehouse.
+   *
+   * @param warehouse the warehouse the pickers work in
+   */
+  public PickerScheduler(Warehouse warehouse) {
+    this.warehouse = warehouse;
+    this.traversal = new RouteOptimizer(warehouse.getTopology(), RouteOptimizer.Strategy.TRAVERSAL);
+  }
+
+  /**
+   * Assign a picker to each pick request. There must be at least as many pickers as requests.
+   *
+   * @param pickers the ready pickers, the one that has been ready the longest first
+   * @param requests the pick requests
+   * @return for each request, the index of its picker in pickers
+   */
+  public int[] assign(List<Picker> pickers, List<PickRequest> requests) {
+    RouteOptimizer router = warehouse.getPicking().getRouteOptimizer();
+    if (router == null) {
+      router = traversal;
+    }
+
+    int rows = requests.size();
+    int columns = pickers.size();
+    double[][] cost = new double[rows][columns];
+    for (int row = 0; row < rows; row++) {
+      String first = requests.get(row).getLocation();
+      for (int column = 0; column < columns; column++) {
+        double offset = column - row;
+        cost[row][column] = router.distance(pickers.get(column).getLocation(), first)
+            + TIE_BREAK * offset * offset;
+      }
+    }
+
+    if (rows == 1) {
+      int best = 0;
+      for (int column = 1; column < columns; column++) {
+        if (cost[0][column] < cost[0][best]) {
+          best = column;
+        }
+      }
+      return new int[] {best};
+    }
+    return hungarian(cost, rows, columns);
+  }
+
+  /**
+   * Find the assignment of rows to distinct columns with the lowest total cost (the Hungarian
+   * method with potentials, in O(rows * rows * columns) time).
+   *
+   * @param cost the cost of assigning each row to each column
+   * @param rows the number of rows
+   * @param columns the number of columns; at least the number of rows
+   * @return for each row, its column
+   */
+  static int[] hungarian(double[][] cost, int rows, int columns) {
+    // Rows and columns are numbered from 1; column 0 is where each new row starts its search.
+    double[] rowPotential = new double[rows + 1];
+    double[] columnPotential = new double[columns + 1];
+    int[] rowOf = new int[columns + 1];
+    int[] previous = new int[columns + 1];
+    double[] slack = new double[columns + 1];
+    boolean[] used = new boolean[columns + 1];
+
+    for (int row = 1; row <= rows; row++) {
+      rowOf[0] = row;
+      int column = 0;
+      Arrays.fill(slack, Double.POSITIVE_INFINITY);
+      Arrays.fill(used, false);
+      do {
+        used[column] = true;
+        int current = rowOf[column];
+        double delta = Double.POSITIVE_INFINITY;
+        int next = 0;
+        for (int j = 1; j <= columns; j++) {
+          if (!used[j]) {
+            double reduced = cost[current - 1][j - 1] - rowPotential[current] - columnPotential[j];
+            if (reduced < slack[j]) {
+              slack[j] = reduced;
+              previous[j] = column;
+            }
+            if (slack[j] < delta) {
+              delta = slack[j];
+              next = j;
+            }
+          }
+        }
+        for (int j = 0; j <= columns; j++) {
+          if (used[j]) {
+            rowPotential[rowOf[j]] += delta;
+            columnPotential[j] -= delta;
+          } else {
+            slack[j] -= delta;
+          }
+        }
+        column = next;
+      } while (rowOf[column] != 0);
+
+      // Flip the augmenting path back to the start.
+      do {
+        int before = previous[column];
+        rowOf[column] = rowOf[before];
+        column = before;
+      } while (column != 0);
+    }
+
+    int[] assignment = new int[rows];
+    for (int column = 1; column <= columns; column++) {
+      if (rowOf[column] != 0) {
+        assignment[rowOf[column] - 1] = column - 1;
+      }
+    }
+    return assignment;
+  }
+
+}
@@ -0,0 +1,46 @@
+package warehouse_system;
+
+import java.io.PrintStream;
+
+/**
+ * A PrintStreamSink prints every message to a stream as soon as it is sent. This is how the
+ * warehouse system has always written its output.
+ */
+public class PrintStreamSink implements CommandSink {
+
+  /** A sink that prints to standard output. */
+  public static final PrintStreamSink STDOUT = new PrintStreamSink(System.out);
+
+  /** The stream messages are printed to. */
+  private PrintStream stream;
+
+  /**
+   * Instantiate a sink that prints to a stream.
+   *
+   * @param stream the stream messages are printed to
+   */
+  public PrintStreamSink(PrintStream stream) {
+    this.stream = stream;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void send(String message) {
+    stream.println(message);
+  }
+
+  @Override
+  public void flush() {
+    stream.flush();
+  }
+
+  @Override
+  public void close() {
+    stream.flush();
+  }
+
+}
@@ -1,5 +1,13 @@
 package warehouse_system;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * A Replenisher in the warehouse.
  */
@@ -8,6 +16,12 @@ public class Replenisher extends Worker {
   /** stores the location of the level that needs to be refilled. */
   private String targetLocation;
 
+  /** The locations of the trip that have not been refilled yet, in order, starting at the target. */
+  private List<String> route = new ArrayList<String>();
+
+  /** When the replenisher was sent on its trip, in nanoseconds, or 0 if it is not known. */
+  private long routeNanos;
+
   /**
    * Instantiates a new replenisher.
    *
@@ -20,14 +34,53 @@ public class Replenisher extends Worker {
   }
 
   /**
-   * Sets the target location. and returns a message to be printed
+   * Sets the target location. and sends the replenisher there
    *
    * @param targetLocation the location to be replenished
-   * @return the string
    */
-  public String setTargetLocation(String targetLocation) {
-    this.targetLocation = targetLocation;
-    return this.toString() + " go to " + targetLocation + ".";
+  public void setTargetLocation(String targetLocation) {
+    setRoute(Collections.singletonList(targetLocation));
+  }
+
+  /**
+   * Sets a trip of several locations to be refilled in order, and sends the replenisher on it.
+   *
+   * @param locations the locations to be replenished, in the order they should be visited
+   */
+  public void setRoute(List<String> locations) {
+    route.clear();
+    route.addAll(locations);
+    routeNanos = System.nanoTime();
+    targetLocation = route.get(0);
+    if (route.size() == 1) {
+      out.send("{} go to {}.", this, targetLocation);
+    } else {
+      StringBuilder rest = new StringBuilder();
+      for (int i = 1; i < route.size(); i++) {
+        rest.append(i > 1 ? ", " : "").append(route.get(i));
+      }
+      out.send("{} go to {}, then {}.", this, targetLocation, rest);
+    }
+  }
+
+  /**
+   * Returns the locations of the trip that have not been refilled yet, in order.
+   *
+   * @return the locations left on the trip
+   */
+  public List<String> getRoute() {
+    return Collections.unmodifiableList(route);
+  }
+
+  /**
+   * Ends the trip, returning the locations that were not refilled.
+   *
+   * @return the locations left on the trip
+   */
+  public List<String> abandonRoute() {
+    List<String> left = new ArrayList<String>(route);
+    route.clear();
+    return left;
   }
 
   /**
@@ -41,16 +94,53 @@ public class Replenisher extends Worker {
   }
 
   /**
-   * Refills the rack target location and returns the appropriate message.
+   * Refills the rack at a location of the trip and sends the appropriate message. The target moves
+   * on to the next location of the trip.
    *
    * @param location the location of the fascia that got replenished.
-   * @return the message the organizer will print
    */
-  public String replenishes(String location) {
+  public void replenishes(String location) {
+    FlightEvents.ReplenishmentCompleted event = null;
+    if (FlightEvents.isAvailable()) {
+      event = new FlightEvents.ReplenishmentCompleted();
+      event.begin();
+    }
     String sku = warehouse.getSkuFromLocation(location);
     Level level = warehouse.getLevel(sku);
     level.replenish();
-    return this.toString() + " refilled " + targetLocation + ".";
+
+    int stop = route.indexOf(location);
+    out.send("{} refilled {}.", this, stop < 0 ? targetLocation : location);
+    if (!route.isEmpty()) {
+      route.remove(Math.max(stop, 0));
+    }
+    if (!route.isEmpty()) {
+      targetLocation = route.get(0);
+    }
+
+    if (event != null && event.shouldCommit()) {
+      event.replenisher = getName();
+      event.sku = sku;
+      event.location = location;
+      event.stock = level.getCurrentStock();
+      event.tripTime = routeNanos == 0 ? 0 : System.nanoTime() - routeNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  void writeState(DataOutput out) throws IOException {
+    super.writeState(out);
+    Snapshot.writeString(out, targetLocation);
+    Snapshot.writeStrings(out, route);
+  }
+
+  @Override
+  void readState(DataInput in, Map<Integer, PickRequest> requests) throws IOException {
+    super.readState(in, requests);
+    targetLocation = Snapshot.readString(in);
+    route.clear();
+    Snapshot.readStrings(in, route);
   }
 
 }
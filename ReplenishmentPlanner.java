@@ -0,0 +1,383 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A ReplenishmentPlanner decides when a level should be replenished, so replenishers are sent out
+ * before pickers find the level empty. For each SKU it keeps:
+ *
+ * <ul>
+ *   <li>its pick rate: the share of the last picks (a sliding window of picks across all SKUs)
+ *       that were of this SKU. Until the window is full, the picks missing from it count as picks
+ *       of other SKUs, so the first few picks do not make their SKUs look picked all the time,
+ *       and
+ *   <li>its committed demand: the fascia of the pick requests that are being picked or are among
+ *       the next few in the queue, and that have not been picked yet. Requests further back are
+ *       left to the pick rate, or a long queue would make every level look due at once.
+ * </ul>
+ *
+ * <p>A level is due for replenishment once its stock, less its committed demand and less the picks
+ * expected while a replenisher is on the way, is at or below Level.RESTOCK_THRESHOLD. The tasks are
+ * ordered by how many picks are expected before the level is empty, so the most urgent level is
+ * replenished first.
+ *
+ * <p>The planner only counts picks, not time, so the same events always give the same tasks. The
+ * settings are read from replenishment.csv in the configuration directory, one "key,value" pair
+ * per line: window (the number of picks the pick rate is measured over), lead_picks (the number
+ * of picks expected while a replenisher is on the way) and lookahead_requests (the number of
+ * queued pick requests whose fascia count as committed).
+ */
+public class ReplenishmentPlanner {
+
+  /** The warehouse the levels are in. */
+  private final Warehouse warehouse;
+
+  /** The ids of the SKUs of the last picks, as a ring. */
+  private int[] window;
+
+  /** The number of picks in the window so far, up to its length. */
+  private int filled;
+
+  /** Where the next pick goes in the window. */
+  private int position;
+
+  /** The number of picks of each SKU in the window, by SKU id. */
+  private int[] picks;
+
+  /** The fascia of each SKU that are requested but not picked yet, by SKU id. */
+  private int[] committed;
+
+  /** The number of picks expected while a replenisher is on the way. */
+  private int leadPicks = 32;
+
+  /** The number of pick requests at the head of the queue whose fascia count as committed. */
+  private int lookahead = 8;
+
+  /** The number given to the next task, so tasks that are equally urgent keep their order. */
+  private long nextSequence;
+
+  /**
+   * Instantiate a planner with the default settings: a window of 256 picks, a lead of 32 picks and
+   * a lookahead of 8 pick requests.
+   *
+   * @param warehouse the warehouse the levels are in
+   */
+  public ReplenishmentPlanner(Warehouse warehouse) {
+    this.warehouse = warehouse;
+    this.picks = new int[warehouse.getSkuCount()];
+    this.committed = new int[warehouse.getSkuCount()];
+    setWindow(256);
+  }
+
+  /**
+   * Read the settings of a planner from a replenishment file. Lines that cannot be read are
+   * skipped.
+   *
+   * @param file the replenishment file
+   * @param warehouse the warehouse the levels are in
+   * @return the planner, with the default settings if the file does not exist
+   */
+  public static ReplenishmentPlanner load(File file, Warehouse warehouse) {
+    ReplenishmentPlanner planner = new ReplenishmentPlanner(warehouse);
+    if (!file.exists()) {
+      return planner;
+    }
+
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] chars = line.split(",");
+        if (chars.length < 2) {
+          continue;
+        }
+        String value = chars[1].trim();
+        try {
+          switch (chars[0].trim()) {
+            case "window":
+              planner.setWindow(Integer.parseInt(value));
+              break;
+            case "lead_picks":
+              planner.setLeadPicks(Integer.parseInt(value));
+              break;
+            case "lookahead_requests":
+              planner.setLookahead(Integer.parseInt(value));
+              break;
+            default:
+              break;
+          }
+        } catch (NumberFormatException ex) {
+          ex.printStackTrace();
+        }
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+    return planner;
+  }
+
+  /**
+   * Set the number of picks the pick rate is measured over. The picks seen so far are forgotten.
+   *
+   * @param length the number of picks
+   */
+  public void setWindow(int length) {
+    window = new int[Math.max(length, 1)];
+    filled = 0;
+    position = 0;
+    Arrays.fill(picks, 0);
+  }
+
+  /**
+   * Set the number of picks expected while a replenisher is on the way.
+   *
+   * @param leadPicks the number of picks
+   */
+  public void setLeadPicks(int leadPicks) {
+    this.leadPicks = Math.max(leadPicks, 0);
+  }
+
+  /**
+   * Set the number of pick requests at the head of the queue whose fascia count as committed. The
+   * request at the head always counts, so it is committed before it is picked.
+   *
+   * @param lookahead the number of pick requests
+   */
+  public void setLookahead(int lookahead) {
+    this.lookahead = Math.max(lookahead, 1);
+  }
+
+  /**
+   * Return the number of pick requests at the head of the queue whose fascia count as committed.
+   *
+   * @return the number of pick requests
+   */
+  public int getLookahead() {
+    return lookahead;
+  }
+
+  /**
+   * Return the committed demand of a SKU: its fascia in the requests within the lookahead, or being
+   * picked, that have not been picked yet.
+   *
+   * @param skuId the id of the SKU
+   * @return the number of fascia
+   */
+  public int getCommitted(int skuId) {
+    return committed[skuId];
+  }
+
+  /**
+   * Count the fascia of a pick request as committed demand, because it has come within the
+   * lookahead of the queue.
+   *
+   * @param request the pick request
+   */
+  public void commit(PickRequest request) {
+    for (String sku : request.getFaxOrder()) {
+      int skuId = warehouse.getSkuId(sku);
+      if (skuId >= 0) {
+        committed[skuId]++;
+      }
+    }
+  }
+
+  /**
+   * Record that a fascia was picked: it is no longer committed, and it counts towards the pick
+   * rate of its SKU.
+   *
+   * @param skuId the id of the SKU picked
+   */
+  public void picked(int skuId) {
+    if (skuId < 0) {
+      return;
+    }
+    if (committed[skuId] > 0) {
+      committed[skuId]--;
+    }
+    if (filled == window.length) {
+      picks[window[position]]--;
+    } else {
+      filled++;
+    }
+    window[position] = skuId;
+    picks[skuId]++;
+    position = (position + 1) % window.length;
+  }
+
+  /**
+   * Check whether the level of a SKU is due for replenishment, and claim it if so. A level is
+   * claimed once until it has been replenished.
+   *
+   * @param skuId the id of the SKU
+   * @return the task of replenishing the level, or null if it is not due or already claimed
+   */
+  public Task check(int skuId) {
+    Level level = warehouse.getLevel(skuId);
+    if (level == null || level.isRestockRequested()) {
+      return null;
+    }
+    double rate = picks[skuId] / (double) window.length;
+    double available = level.getCurrentStock() - committed[skuId];
+    boolean due = level.isNeedRestock()
+        || available - rate * leadPicks <= Level.RESTOCK_THRESHOLD;
+    if (!due || !level.claimRestock()) {
+      return null;
+    }
+
+    double picksLeft;
+    if (available <= 0) {
+      picksLeft = available;
+    } else {
+      picksLeft = rate > 0 ? available / rate : Double.MAX_VALUE;
+    }
+    return new Task(level.getSku(), picksLeft, nextSequence++);
+  }
+
+  /**
+   * Claim the level of a SKU for replenishment because a pick request is waiting for it. The task
+   * goes before the tasks of levels that no request is waiting for.
+   *
+   * @param skuId the id of the SKU
+   * @return the task of replenishing the level, or null if it is already claimed
+   */
+  public Task expedite(int skuId) {
+    Level level = warehouse.getLevel(skuId);
+    if (level == null || !level.claimRestock()) {
+      return null;
+    }
+    return new Task(level.getSku(), Double.NEGATIVE_INFINITY, nextSequence++);
+  }
+
+  /**
+   * Write the window, the committed demand and the task numbering to a snapshot.
+   *
+   * @param out where the state is written
+   * @throws IOException if the state cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(window.length);
+    out.writeInt(filled);
+    out.writeInt(position);
+    for (int i = 0; i < filled; i++) {
+      out.writeInt(window[i]);
+    }
+    out.writeInt(committed.length);
+    for (int demand : committed) {
+      out.writeInt(demand);
+    }
+    out.writeLong(nextSequence);
+  }
+
+  /**
+   * Replace the state of this planner with a state written by writeState().
+   *
+   * @param in where the state is read from
+   * @throws IOException if the state cannot be read
+   */
+  void readState(DataInput in) throws IOException {
+    setWindow(in.readInt());
+    filled = in.readInt();
+    position = in.readInt();
+    for (int i = 0; i < filled; i++) {
+      window[i] = in.readInt();
+      picks[window[i]]++;
+    }
+    committed = new int[in.readInt()];
+    for (int i = 0; i < committed.length; i++) {
+      committed[i] = in.readInt();
+    }
+    nextSequence = in.readLong();
+  }
+
+  /**
+   * The task of replenishing one level. Tasks are ordered by urgency: the fewest picks expected
+   * before the level is empty first, and in the order they were created when that is equal (then
+   * by SKU, so two tasks are only equal if they are for the same level).
+   */
+  public static final class Task implements Comparable<Task> {
+
+    /** The SKU of the level. */
+    private final String sku;
+
+    /**
+     * The number of picks expected before the level is empty, or, if the committed demand is more
+     * than the stock, the number of fascia it is short (as a negative number), or negative
+     * infinity if a pick request is waiting for the level.
+     */
+    private final double picksLeft;
+
+    /** The order the task was created in. */
+    private final long sequence;
+
+    /**
+     * Instantiate a task.
+     *
+     * @param sku the SKU of the level
+     * @param picksLeft the number of picks expected before the level is empty
+     * @param sequence the order the task was created in
+     */
+    Task(String sku, double picksLeft, long sequence) {
+      this.sku = sku;
+      this.picksLeft = picksLeft;
+      this.sequence = sequence;
+    }
+
+    /**
+     * Return the SKU of the level.
+     *
+     * @return the SKU
+     */
+    public String getSku() {
+      return sku;
+    }
+
+    /**
+     * Return the number of picks expected before the level is empty.
+     *
+     * @return the number of picks
+     */
+    public double getPicksLeft() {
+      return picksLeft;
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      int byUrgency = Double.compare(picksLeft, other.picksLeft);
+      if (byUrgency != 0) {
+        return byUrgency;
+      }
+      int bySequence = Long.compare(sequence, other.sequence);
+      return bySequence != 0 ? bySequence : sku.compareTo(other.sku);
+    }
+
+    /**
+     * Write the task to a snapshot.
+     *
+     * @param out where the task is written
+     * @throws IOException if the task cannot be written
+     */
+    void writeState(DataOutput out) throws IOException {
+      out.writeUTF(sku);
+      out.writeDouble(picksLeft);
+      out.writeLong(sequence);
+    }
+
+    /**
+     * Read a task written by writeState().
+     *
+     * @param in where the task is read from
+     * @return the task
+     * @throws IOException if the task cannot be read
+     */
+    static Task readState(DataInput in) throws IOException {
+      return new Task(in.readUTF(), in.readDouble(), in.readLong());
+    }
+  }
+
+}
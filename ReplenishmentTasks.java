@@ -0,0 +1,258 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * ReplenishmentTasks holds the levels waiting for a replenisher, at most one task per SKU, ordered
+ * by urgency (see ReplenishmentPlanner.Task). Adding a SKU that is already waiting keeps a single
+ * task, the more urgent of the two.
+ *
+ * <p>A replenisher is handed a trip rather than a single level: the most urgent level, plus up to
+ * a few more waiting levels that are close to it, visited in the order of the traversal table.
+ * Distances are measured with the warehouse's route optimizer, or with the default
+ * distances if there is none. The size of a trip is read from replenishment.csv in the
+ * configuration directory: max_stops (1 sends replenishers to one level at a time) and max_detour.
+ */
+public class ReplenishmentTasks {
+
+  /** The warehouse the levels are in. */
+  private final Warehouse warehouse;
+
+  /** Measures distances when the warehouse has no route optimizer. */
+  private final RouteOptimizer traversal;
+
+  /** The waiting tasks, by SKU. */
+  private Map<String, ReplenishmentPlanner.Task> bySku =
+      new HashMap<String, ReplenishmentPlanner.Task>();
+
+  /** The waiting tasks, the most urgent first. */
+  private TreeSet<ReplenishmentPlanner.Task> byUrgency = new TreeSet<ReplenishmentPlanner.Task>();
+
+  /** The largest number of levels in one trip. */
+  private int maxStops = 4;
+
+  /** How far (in the distance model) another level may be from the most urgent one of a trip. */
+  private double maxDetour = 20;
+
+  /** The number of tasks put back so far; they go before new tasks that are equally urgent. */
+  private long requeued;
+
+  /**
+   * Instantiate an empty task store.
+   *
+   * @param warehouse the warehouse the levels are in
+   */
+  public ReplenishmentTasks(Warehouse warehouse) {
+    this.warehouse = warehouse;
+    this.traversal = new RouteOptimizer(warehouse.getTopology(), RouteOptimizer.Strategy.TRAVERSAL);
+  }
+
+  /**
+   * Read the size of a trip from a replenishment file. Lines that cannot be read are skipped.
+   *
+   * @param file the replenishment file
+   * @param warehouse the warehouse the levels are in
+   * @return the task store, with the default trip size if the file does not exist
+   */
+  public static ReplenishmentTasks load(File file, Warehouse warehouse) {
+    ReplenishmentTasks tasks = new ReplenishmentTasks(warehouse);
+    if (!file.exists()) {
+      return tasks;
+    }
+
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] chars = line.split(",");
+        if (chars.length < 2) {
+          continue;
+        }
+        String value = chars[1].trim();
+        try {
+          switch (chars[0].trim()) {
+            case "max_stops":
+              tasks.setMaxStops(Integer.parseInt(value));
+              break;
+            case "max_detour":
+              tasks.setMaxDetour(Double.parseDouble(value));
+              break;
+            default:
+              break;
+          }
+        } catch (NumberFormatException ex) {
+          ex.printStackTrace();
+        }
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+    return tasks;
+  }
+
+  /**
+   * Set the largest number of levels in one trip.
+   *
+   * @param maxStops the number of levels; 1 sends replenishers to one level at a time
+   */
+  public void setMaxStops(int maxStops) {
+    this.maxStops = Math.max(maxStops, 1);
+  }
+
+  /**
+   * Set how far another level may be from the most urgent level of a trip.
+   *
+   * @param maxDetour the distance
+   */
+  public void setMaxDetour(double maxDetour) {
+    this.maxDetour = maxDetour;
+  }
+
+  /**
+   * Add a task, unless a task for the same SKU is already waiting and is at least as urgent.
+   *
+   * @param task the task
+   */
+  public void add(ReplenishmentPlanner.Task task) {
+    ReplenishmentPlanner.Task waiting = bySku.get(task.getSku());
+    if (waiting != null) {
+      if (waiting.compareTo(task) <= 0) {
+        return;
+      }
+      byUrgency.remove(waiting);
+    }
+    bySku.put(task.getSku(), task);
+    byUrgency.add(task);
+  }
+
+  /**
+   * Put back a level that a replenisher was sent to but did not refill. It is claimed already, so
+   * it is treated as about to run out.
+   *
+   * @param sku the SKU of the level
+   */
+  public void requeue(String sku) {
+    add(new ReplenishmentPlanner.Task(sku, 0, Long.MIN_VALUE + requeued++));
+  }
+
+  /**
+   * Return whether no level is waiting.
+   *
+   * @return true, if there are no tasks
+   */
+  public boolean isEmpty() {
+    return byUrgency.isEmpty();
+  }
+
+  /**
+   * Return the number of levels waiting.
+   *
+   * @return the number of tasks
+   */
+  public int size() {
+    return byUrgency.size();
+  }
+
+  /**
+   * Take the next trip out of the store: the most urgent level and the waiting levels closest to
+   * it, within the detour and the number of stops.
+   *
+   * @return the SKUs of the levels, in the order of the traversal table, or an empty list if no
+   *         level is waiting
+   */
+  public List<String> pollTrip() {
+    if (byUrgency.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    ReplenishmentPlanner.Task first = byUrgency.pollFirst();
+    bySku.remove(first.getSku());
+    List<String> trip = new ArrayList<String>(maxStops);
+    trip.add(first.getSku());
+
+    if (maxStops > 1 && !byUrgency.isEmpty()) {
+      RouteOptimizer router = warehouse.getPicking().getRouteOptimizer();
+      if (router == null) {
+        router = traversal;
+      }
+      String origin = warehouse.getLocation(first.getSku());
+
+      // The nearby levels, the closest first; equally close ones by urgency.
+      final Map<ReplenishmentPlanner.Task, Double> distances =
+          new HashMap<ReplenishmentPlanner.Task, Double>();
+      List<ReplenishmentPlanner.Task> nearby = new ArrayList<ReplenishmentPlanner.Task>();
+      for (ReplenishmentPlanner.Task task : byUrgency) {
+        double distance = router.distance(origin, warehouse.getLocation(task.getSku()));
+        if (distance <= maxDetour) {
+          distances.put(task, distance);
+          nearby.add(task);
+        }
+      }
+      Collections.sort(nearby, new Comparator<ReplenishmentPlanner.Task>() {
+        @Override
+        public int compare(ReplenishmentPlanner.Task a, ReplenishmentPlanner.Task b) {
+          int byDistance = Double.compare(distances.get(a), distances.get(b));
+          return byDistance != 0 ? byDistance : a.compareTo(b);
+        }
+      });
+
+      for (int i = 0; i < nearby.size() && trip.size() < maxStops; i++) {
+        ReplenishmentPlanner.Task task = nearby.get(i);
+        byUrgency.remove(task);
+        bySku.remove(task.getSku());
+        trip.add(task.getSku());
+      }
+    }
+
+    final TraversalIndex index = warehouse.getPicking().getIndex();
+    if (trip.size() > 1 && index != null) {
+      Collections.sort(trip, new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+          return Integer.compare(index.getRank(a), index.getRank(b));
+        }
+      });
+    }
+    return trip;
+  }
+
+  /**
+   * Write the waiting tasks to a snapshot.
+   *
+   * @param out where the tasks are written
+   * @throws IOException if the tasks cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(byUrgency.size());
+    for (ReplenishmentPlanner.Task task : byUrgency) {
+      task.writeState(out);
+    }
+  }
+
+  /**
+   * Replace the waiting tasks with those written by writeState().
+   *
+   * @param in where the tasks are read from
+   * @throws IOException if the tasks cannot be read
+   */
+  void readState(DataInput in) throws IOException {
+    bySku.clear();
+    byUrgency.clear();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      add(ReplenishmentPlanner.Task.readState(in));
+    }
+  }
+
+}
@@ -0,0 +1,381 @@
+package warehouse_system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A RequestArchive keeps pick requests that have left the warehouse on a truck in an append-only
+ * file, so they no longer take up memory. Each request is stored as a short record: its number,
+ * for each of its orders the model, color and SKUs (which, in order, are its fascia order), its
+ * pick path and the length of the path. A request read back is rebuilt from its record as it was,
+ * without building its pick path again. Only the position of each request's latest
+ * record is kept in memory, so a request can be read back cheaply if its pallets come off a truck
+ * again, and the orders that were shipped can be listed from the file afterwards.
+ *
+ * <p>The file is only ever appended to. Records written by earlier runs are kept, but only the
+ * records written since the archive was opened belong to this run. With a journal, the positions
+ * and the length of the file are part of each snapshot; recovery cuts the file back to that
+ * length, so the events replayed after the snapshot archive their requests once.
+ */
+public class RequestArchive {
+
+  /** The archive file. */
+  private final File file;
+
+  /** The file the records are appended to. */
+  private final FileOutputStream fileOutput;
+
+  /** Appends records to the file, through fileOutput. */
+  private final OutputStream output;
+
+  /** Reads single records back; opened the first time a request is restored. */
+  private RandomAccessFile reader;
+
+  /** The length of the file when it was opened; records of this run start here. */
+  private long start;
+
+  /** The length of the file, including records not yet flushed. */
+  private long length;
+
+  /** Whether records have been appended since the output was last flushed. */
+  private boolean dirty;
+
+  /**
+   * The position of the latest record of each pick request, plus one, indexed by request number; 0
+   * if the request is not archived (any more).
+   */
+  private long[] positions = new long[1024];
+
+  /** The number of pick requests currently archived. */
+  private int size;
+
+  /** A record is built here before it is appended. */
+  private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+
+  /** Writes the fields of a record into recordBytes. */
+  private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+  /**
+   * Open an archive, creating its file if needed.
+   *
+   * @param file the archive file
+   * @throws IOException if the file cannot be opened
+   */
+  public RequestArchive(File file) throws IOException {
+    this.file = file;
+    this.start = file.length();
+    this.length = start;
+    this.fileOutput = new FileOutputStream(file, true);
+    this.output = new BufferedOutputStream(fileOutput, 1 << 16);
+  }
+
+  /**
+   * Append a pick request to the archive. If it was archived before, the new record replaces the old
+   * one.
+   *
+   * @param request the pick request
+   * @throws IOException if the record cannot be written
+   */
+  public synchronized void append(PickRequest request) throws IOException {
+    int number = PickRequest.parseNumber(request.getId());
+    if (number < 0) {
+      return;
+    }
+
+    recordBytes.reset();
+    record.writeInt(number);
+    Order[] orders = request.getOrders();
+    record.writeByte(orders.length);
+    for (Order order : orders) {
+      record.writeUTF(order.getModel());
+      record.writeUTF(order.getColor());
+      String[] skus = order.getSkus();
+      record.writeByte(skus.length);
+      for (String sku : skus) {
+        record.writeUTF(sku);
+      }
+    }
+    List<String> locations = request.getLocations();
+    record.writeShort(locations.size());
+    for (String location : locations) {
+      record.writeUTF(location);
+    }
+    record.writeDouble(request.getPathLength());
+    recordBytes.writeTo(output);
+    dirty = true;
+
+    if (number >= positions.length) {
+      positions = Arrays.copyOf(positions, Math.max(number + 1, positions.length * 2));
+    }
+    if (positions[number] == 0) {
+      size++;
+    }
+    positions[number] = length + 1;
+    length += recordBytes.size();
+  }
+
+  /**
+   * Check whether a pick request is archived.
+   *
+   * @param number the pick request number
+   * @return true, if the request is in the archive
+   */
+  public synchronized boolean contains(int number) {
+    return number >= 0 && number < positions.length && positions[number] != 0;
+  }
+
+  /**
+   * Take a pick request back out of the archive, e.g. because its pallets were unloaded. Its record
+   * stays in the file but no longer counts as shipped.
+   *
+   * @param number the pick request number
+   * @return the request, with its pick path, or null if it is not archived
+   * @throws IOException if the record cannot be read
+   */
+  public synchronized PickRequest restore(int number) throws IOException {
+    if (!contains(number)) {
+      return null;
+    }
+    flush();
+    if (reader == null) {
+      reader = new RandomAccessFile(file, "r");
+    }
+    reader.seek(positions[number] - 1);
+    reader.readInt();
+    PickRequest request = new PickRequest(readOrders(reader), number, readPath(reader));
+    request.setPathLength(reader.readDouble());
+
+    positions[number] = 0;
+    size--;
+    return request;
+  }
+
+  /**
+   * Pass the orders of every archived pick request to a visitor, in the order the requests were
+   * archived.
+   *
+   * @param visitor receives each order
+   * @throws IOException if the archive cannot be read
+   */
+  public synchronized void forEachOrder(OrderVisitor visitor) throws IOException {
+    flush();
+    try (CountingInputStream counter = new CountingInputStream(
+        new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+      DataInputStream input = new DataInputStream(counter);
+      while (counter.count < start) {
+        if (counter.skip(start - counter.count) <= 0) {
+          return;
+        }
+      }
+
+      while (counter.count < length) {
+        long position = counter.count;
+        int number;
+        try {
+          number = input.readInt();
+        } catch (EOFException ex) {
+          break;
+        }
+        Order[] orders = readOrders(input);
+        readPath(input);
+        input.readDouble();
+        // Only the latest record of a request that is still archived counts.
+        if (number < positions.length && positions[number] == position + 1) {
+          for (Order order : orders) {
+            visitor.visit(order);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the number of pick requests currently archived.
+   *
+   * @return the number of pick requests
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Write any buffered records to the file.
+   *
+   * @throws IOException if the records cannot be written
+   */
+  public synchronized void flush() throws IOException {
+    if (dirty) {
+      output.flush();
+      dirty = false;
+    }
+  }
+
+  /**
+   * Force the records archived so far to disk and write where they are to a snapshot.
+   *
+   * @param out where the state is written
+   * @throws IOException if the records cannot be forced or the state cannot be written
+   */
+  synchronized void writeState(DataOutput out) throws IOException {
+    flush();
+    fileOutput.getFD().sync();
+    out.writeLong(start);
+    out.writeLong(length);
+    out.writeInt(size);
+    for (int number = 0; number < positions.length; number++) {
+      if (positions[number] != 0) {
+        out.writeInt(number);
+        out.writeLong(positions[number]);
+      }
+    }
+  }
+
+  /**
+   * Replace the state of this archive with a state written by writeState(), and cut the file back
+   * to the length it had then. The records after it were archived by events that are replayed.
+   *
+   * @param in where the state is read from
+   * @throws IOException if the state cannot be read, or the file is shorter than the snapshot says
+   */
+  synchronized void readState(DataInput in) throws IOException {
+    long snapshotStart = in.readLong();
+    long snapshotLength = in.readLong();
+    flush();
+    if (file.length() < snapshotLength) {
+      throw new IOException("The archive " + file + " is shorter than the snapshot says.");
+    }
+    fileOutput.getChannel().truncate(snapshotLength);
+    start = snapshotStart;
+    length = snapshotLength;
+
+    size = in.readInt();
+    Arrays.fill(positions, 0);
+    for (int i = 0; i < size; i++) {
+      int number = in.readInt();
+      if (number >= positions.length) {
+        positions = Arrays.copyOf(positions, Math.max(number + 1, positions.length * 2));
+      }
+      positions[number] = in.readLong();
+    }
+  }
+
+  /**
+   * Flush and close the archive file.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  public synchronized void close() throws IOException {
+    output.close();
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  /**
+   * Read the orders of one record, after its number.
+   *
+   * @param input where the record is read from
+   * @return the orders
+   * @throws IOException if the record cannot be read
+   */
+  private static Order[] readOrders(DataInput input) throws IOException {
+    Order[] orders = new Order[input.readUnsignedByte()];
+    for (int i = 0; i < orders.length; i++) {
+      String model = input.readUTF();
+      String color = input.readUTF();
+      String[] skus = new String[input.readUnsignedByte()];
+      for (int j = 0; j < skus.length; j++) {
+        skus[j] = input.readUTF();
+      }
+      orders[i] = new Order(model, color, skus);
+    }
+    return orders;
+  }
+
+  /**
+   * Read the pick path of one record, after its orders.
+   *
+   * @param input where the record is read from
+   * @return the locations of the pick path
+   * @throws IOException if the record cannot be read
+   */
+  private static List<String> readPath(DataInput input) throws IOException {
+    int count = input.readUnsignedShort();
+    List<String> locations = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      locations.add(input.readUTF());
+    }
+    return locations;
+  }
+
+  /** Counts the bytes read from a stream, so the position of each record is known. */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    /** The number of bytes read or skipped so far. */
+    long count;
+
+    /**
+     * Count the bytes read from a stream.
+     *
+     * @param in the stream
+     */
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+
+  /** Receives the orders of archived pick requests. */
+  public interface OrderVisitor {
+
+    /**
+     * Handle one order.
+     *
+     * @param order the order
+     * @throws IOException if the order cannot be handled
+     */
+    void visit(Order order) throws IOException;
+  }
+
+}
@@ -0,0 +1,21 @@
+package warehouse_system;
+
+/**
+ * The stages a pick request goes through on its way from the orders to a truck, in order.
+ */
+public enum RequestStage {
+
+  /** The first of its orders was received. */
+  ORDERED,
+  /** The orders were batched into the pick request. */
+  CREATED,
+  /** A picker was assigned the pick request. */
+  ASSIGNED,
+  /** The picker dropped the fascia off in the marshalling area. */
+  PICKED,
+  /** A sequencer sequenced the pallets and sent them to loading. */
+  SEQUENCED,
+  /** A loader loaded the pallets onto a truck. */
+  LOADED
+
+}
@@ -0,0 +1,637 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A RouteOptimizer orders the locations of a pick request so the picker walks as short a route as
+ * it can, starting and ending at the marshalling area.
+ *
+ * <p>Distances follow a model of a parallel-aisle warehouse. The zones stand side by side, each
+ * with its aisles next to each other, and a cross-aisle runs along the front and the back of every
+ * aisle. The racks of an aisle are spaced evenly along it, and the levels of a rack are at the
+ * same spot. The marshalling area (the depot) is on the front cross-aisle. Going from one aisle
+ * to another means walking to the front or the back of the aisle (whichever is shorter), along the
+ * cross-aisle, and into the other aisle.
+ *
+ * <p>Routes are built with one of these strategies:
+ *
+ * <ul>
+ *   <li>TRAVERSAL: the order of the traversal table, as before;
+ *   <li>S_SHAPE: every aisle with a pick is walked from end to end, in alternating directions;
+ *   <li>LARGEST_GAP: the first and last aisles are walked through, and the others are entered
+ *       from the front and from the back up to the largest gap between their picks;
+ *   <li>TSP: a nearest-neighbour route (or the largest-gap route, if that is shorter) improved by
+ *       2-opt moves until no move helps or the budget runs out.
+ * </ul>
+ *
+ * <p>TSP has two budgets: a number of 2-opt moves and, optionally, a time budget. The time budget
+ * makes routes depend on how fast the machine is, so events recorded against one run (by the
+ * WorkloadGenerator, or in a journal) may no longer match the routes of another. It is off unless
+ * it is configured; the move budget alone always gives the same route for the same picks.
+ *
+ * <p>The model and strategy are read from routing.csv in the configuration directory, one
+ * "key,value" pair per line: strategy, aisle_width, rack_length, zone_gap, depot_x, max_moves
+ * and time_budget_ms.
+ */
+public class RouteOptimizer {
+
+  /** The ways a route can be built. */
+  public enum Strategy {
+    /** The order of the traversal table. */
+    TRAVERSAL,
+    /** Walk every aisle with a pick from end to end. */
+    S_SHAPE,
+    /** Walk the first and last aisle through; enter the others up to their largest gap. */
+    LARGEST_GAP,
+    /** Improve a short route with 2-opt moves, within the time budget. */
+    TSP;
+
+    /**
+     * Return the strategy with a name, ignoring case, dashes and underscores.
+     *
+     * @param name the name, e.g. "largest-gap"
+     * @return the strategy, or null if there is no such strategy
+     */
+    public static Strategy of(String name) {
+      String key = name.trim().replace("-", "").replace("_", "");
+      for (Strategy strategy : values()) {
+        if (strategy.name().replace("_", "").equalsIgnoreCase(key)) {
+          return strategy;
+        }
+      }
+      return null;
+    }
+  }
+
+  /** The layout of the warehouse. */
+  private final Topology topology;
+
+  /** How routes are built. */
+  private Strategy strategy;
+
+  /** The distance between two neighbouring aisles. */
+  private double aisleWidth = 3;
+
+  /** The length of a rack along its aisle. */
+  private double rackLength = 1;
+
+  /** The extra distance between the last aisle of a zone and the first aisle of the next one. */
+  private double zoneGap = 3;
+
+  /** Where the depot is on the front cross-aisle; 0 is the first aisle of the first zone. */
+  private double depotX;
+
+  /** The largest number of 2-opt moves TSP makes on one route. */
+  private int maxMoves = 1000;
+
+  /** How long (in nanoseconds) TSP may improve one route, or 0 for no time limit. */
+  private long timeBudgetNanos;
+
+  /** The x position of the first aisle of each zone. */
+  private double[] zoneX;
+
+  /** The number of the first aisle of each zone, counting aisles across all zones. */
+  private int[] zoneAisles;
+
+  /** The length of the longest aisle; the back cross-aisle runs at this distance from the front. */
+  private double aisleLength;
+
+  /**
+   * Instantiate an optimizer for a layout with the default distances.
+   *
+   * @param topology the layout of the warehouse
+   * @param strategy how routes are built
+   */
+  public RouteOptimizer(Topology topology, Strategy strategy) {
+    this.topology = topology;
+    this.strategy = strategy;
+    layOut();
+  }
+
+  /**
+   * Read an optimizer from a routing file. Lines that cannot be read are skipped.
+   *
+   * @param file the routing file
+   * @param topology the layout of the warehouse
+   * @return the optimizer, or null if the file does not exist or asks for the traversal order
+   */
+  public static RouteOptimizer load(File file, Topology topology) {
+    if (!file.exists()) {
+      return null;
+    }
+
+    RouteOptimizer optimizer = new RouteOptimizer(topology, Strategy.TRAVERSAL);
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] chars = line.split(",");
+        if (chars.length < 2) {
+          continue;
+        }
+        String key = chars[0].trim();
+        String value = chars[1].trim();
+        try {
+          switch (key) {
+            case "strategy":
+              Strategy chosen = Strategy.of(value);
+              if (chosen == null) {
+                System.err.println("Unknown routing strategy " + value + ".");
+              } else {
+                optimizer.strategy = chosen;
+              }
+              break;
+            case "aisle_width":
+              optimizer.setAisleWidth(Double.parseDouble(value));
+              break;
+            case "rack_length":
+              optimizer.setRackLength(Double.parseDouble(value));
+              break;
+            case "zone_gap":
+              optimizer.setZoneGap(Double.parseDouble(value));
+              break;
+            case "depot_x":
+              optimizer.setDepotX(Double.parseDouble(value));
+              break;
+            case "max_moves":
+              optimizer.setMaxMoves(Integer.parseInt(value));
+              break;
+            case "time_budget_ms":
+              optimizer.setTimeBudgetNanos((long) (Double.parseDouble(value) * 1e6));
+              break;
+            default:
+              break;
+          }
+        } catch (NumberFormatException ex) {
+          ex.printStackTrace();
+        }
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+    return optimizer.strategy == Strategy.TRAVERSAL ? null : optimizer;
+  }
+
+  /**
+   * Set the distance between two neighbouring aisles.
+   *
+   * @param aisleWidth the distance
+   */
+  public void setAisleWidth(double aisleWidth) {
+    this.aisleWidth = aisleWidth;
+    layOut();
+  }
+
+  /**
+   * Set the length of a rack along its aisle.
+   *
+   * @param rackLength the length
+   */
+  public void setRackLength(double rackLength) {
+    this.rackLength = rackLength;
+    layOut();
+  }
+
+  /**
+   * Set the extra distance between the last aisle of a zone and the first aisle of the next.
+   *
+   * @param zoneGap the distance
+   */
+  public void setZoneGap(double zoneGap) {
+    this.zoneGap = zoneGap;
+    layOut();
+  }
+
+  /**
+   * Set where the depot is on the front cross-aisle.
+   *
+   * @param depotX the distance from the first aisle of the first zone
+   */
+  public void setDepotX(double depotX) {
+    this.depotX = depotX;
+  }
+
+  /**
+   * Set the largest number of 2-opt moves TSP makes on one route.
+   *
+   * @param maxMoves the number of moves
+   */
+  public void setMaxMoves(int maxMoves) {
+    this.maxMoves = maxMoves;
+  }
+
+  /**
+   * Set how long TSP may spend improving one route.
+   *
+   * @param timeBudgetNanos the time budget in nanoseconds, or 0 for no time limit
+   */
+  public void setTimeBudgetNanos(long timeBudgetNanos) {
+    this.timeBudgetNanos = timeBudgetNanos;
+  }
+
+  /**
+   * Return how routes are built.
+   *
+   * @return the strategy
+   */
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * Work out where each zone starts and how long the aisles are.
+   */
+  private void layOut() {
+    int zones = topology.getZoneCount();
+    zoneX = new double[zones];
+    zoneAisles = new int[zones];
+    double x = 0;
+    int aisles = 0;
+    int racks = 0;
+    for (int zone = 0; zone < zones; zone++) {
+      zoneX[zone] = x;
+      zoneAisles[zone] = aisles;
+      x += topology.getAisles(zone) * aisleWidth + zoneGap;
+      aisles += topology.getAisles(zone);
+      racks = Math.max(racks, topology.getRacks(zone));
+    }
+    aisleLength = racks * rackLength;
+  }
+
+  /**
+   * Build the route for a list of SKUs: one location per SKU, in the order they should be picked.
+   * SKUs that are not in the traversal table are skipped, as in TraversalIndex.path().
+   *
+   * @param index the traversal table
+   * @param skus the SKUs to pick
+   * @return the locations to visit, in order
+   */
+  public List<String> route(TraversalIndex index, List<String> skus) {
+    List<String> inOrder = index.path(skus);
+    if (strategy == Strategy.TRAVERSAL || inOrder.size() < 2) {
+      return inOrder;
+    }
+
+    // Locations outside the layout cannot be placed, so they go last, in traversal order.
+    List<String> outside = new ArrayList<String>();
+    Stop[] stops = new Stop[inOrder.size()];
+    int count = 0;
+    for (String location : inOrder) {
+      int slot = topology.getSlot(location);
+      if (slot < 0) {
+        outside.add(location);
+      } else {
+        stops[count++] = stopAt(slot, location);
+      }
+    }
+    stops = Arrays.copyOf(stops, count);
+
+    Stop[] ordered;
+    switch (strategy) {
+      case S_SHAPE:
+        ordered = sShape(stops);
+        break;
+      case LARGEST_GAP:
+        ordered = largestGap(stops);
+        break;
+      default:
+        ordered = tsp(stops);
+        break;
+    }
+
+    List<String> route = new ArrayList<String>(inOrder.size());
+    for (Stop stop : ordered) {
+      route.add(stop.location);
+    }
+    route.addAll(outside);
+    return route;
+  }
+
+  /**
+   * Return the length of the route that starts at the depot, visits locations in order and returns
+   * to the depot. Locations outside the layout are left out.
+   *
+   * @param locations the locations, in the order they are visited
+   * @return the length of the route
+   */
+  public double length(List<String> locations) {
+    List<Stop> stops = new ArrayList<Stop>(locations.size());
+    for (String location : locations) {
+      int slot = topology.getSlot(location);
+      if (slot >= 0) {
+        stops.add(stopAt(slot, location));
+      }
+    }
+    return length(stops.toArray(new Stop[stops.size()]));
+  }
+
+  /**
+   * Return the walking distance between two locations. A location that is null or outside the
+   * layout counts as the depot.
+   *
+   * @param from the location walked from
+   * @param to the location walked to
+   * @return the distance
+   */
+  public double distance(String from, String to) {
+    return distance(stopAt(from), stopAt(to));
+  }
+
+  /**
+   * Return the stop at a location, or the depot if the location is null or outside the layout.
+   *
+   * @param location the location
+   * @return the stop
+   */
+  private Stop stopAt(String location) {
+    int slot = topology.getSlot(location);
+    return slot < 0 ? depot() : stopAt(slot, location);
+  }
+
+  /**
+   * Return the length of a route from the depot through stops and back.
+   *
+   * @param stops the stops, in order
+   * @return the length of the route
+   */
+  private double length(Stop[] stops) {
+    Stop depot = depot();
+    double total = 0;
+    Stop previous = depot;
+    for (Stop stop : stops) {
+      total += distance(previous, stop);
+      previous = stop;
+    }
+    return total + distance(previous, depot);
+  }
+
+  /**
+   * Return the stop at a slot.
+   *
+   * @param slot the slot
+   * @param location the location of the slot
+   * @return the stop
+   */
+  private Stop stopAt(int slot, String location) {
+    int zone = topology.getZone(slot);
+    int aisle = topology.getAisle(slot);
+    return new Stop(location, zoneAisles[zone] + aisle, zoneX[zone] + aisle * aisleWidth,
+        (topology.getRack(slot) + 0.5) * rackLength);
+  }
+
+  /**
+   * Return the depot, as a stop on the front cross-aisle that is in no aisle.
+   *
+   * @return the depot
+   */
+  private Stop depot() {
+    return new Stop(null, -1, depotX, 0);
+  }
+
+  /**
+   * Return the walking distance between two stops.
+   *
+   * @param from the first stop
+   * @param to the second stop
+   * @return the distance
+   */
+  private double distance(Stop from, Stop to) {
+    if (from.aisle == to.aisle && from.aisle >= 0) {
+      return Math.abs(from.y - to.y);
+    }
+    double viaFront = from.y + to.y;
+    double viaBack = 2 * aisleLength - from.y - to.y;
+    return Math.abs(from.x - to.x) + Math.min(viaFront, viaBack);
+  }
+
+  /**
+   * Sort stops by aisle and, within an aisle, from front to back.
+   *
+   * @param stops the stops; sorted in place
+   */
+  private static void sortByAisle(Stop[] stops) {
+    Arrays.sort(stops, new Comparator<Stop>() {
+      @Override
+      public int compare(Stop a, Stop b) {
+        if (a.aisle != b.aisle) {
+          return Integer.compare(a.aisle, b.aisle);
+        }
+        return Double.compare(a.y, b.y);
+      }
+    });
+  }
+
+  /**
+   * Build an S-shape route: aisles from left to right, walked front to back and back to front in
+   * turn.
+   *
+   * @param stops the stops
+   * @return the stops in route order
+   */
+  private Stop[] sShape(Stop[] stops) {
+    sortByAisle(stops);
+    Stop[] route = new Stop[stops.length];
+    int count = 0;
+    boolean backwards = false;
+    int start = 0;
+    while (start < stops.length) {
+      int end = start;
+      while (end < stops.length && stops[end].aisle == stops[start].aisle) {
+        end++;
+      }
+      for (int i = 0; i < end - start; i++) {
+        route[count++] = backwards ? stops[end - 1 - i] : stops[start + i];
+      }
+      backwards = !backwards;
+      start = end;
+    }
+    return route;
+  }
+
+  /**
+   * Build a largest-gap route. The first aisle is walked front to back, the picks past the largest
+   * gap of each middle aisle are taken from the back cross-aisle on the way right, the last aisle
+   * is walked back to front, and the picks before the largest gap of each middle aisle are taken
+   * from the front cross-aisle on the way back left.
+   *
+   * @param stops the stops
+   * @return the stops in route order
+   */
+  private Stop[] largestGap(Stop[] stops) {
+    sortByAisle(stops);
+    List<int[]> aisles = new ArrayList<int[]>(); // {start, end, split} of each aisle's stops.
+    int start = 0;
+    while (start < stops.length) {
+      int end = start;
+      while (end < stops.length && stops[end].aisle == stops[start].aisle) {
+        end++;
+      }
+      aisles.add(new int[] {start, end, largestGapSplit(stops, start, end)});
+      start = end;
+    }
+
+    Stop[] route = new Stop[stops.length];
+    int count = 0;
+    int[] first = aisles.get(0);
+    for (int i = first[0]; i < first[1]; i++) {
+      route[count++] = stops[i];
+    }
+    if (aisles.size() == 1) {
+      return route;
+    }
+    for (int a = 1; a < aisles.size() - 1; a++) { // Back portions, left to right.
+      int[] aisle = aisles.get(a);
+      for (int i = aisle[1] - 1; i >= aisle[2]; i--) {
+        route[count++] = stops[i];
+      }
+    }
+    int[] last = aisles.get(aisles.size() - 1);
+    for (int i = last[1] - 1; i >= last[0]; i--) {
+      route[count++] = stops[i];
+    }
+    for (int a = aisles.size() - 2; a >= 1; a--) { // Front portions, right to left.
+      int[] aisle = aisles.get(a);
+      for (int i = aisle[0]; i < aisle[2]; i++) {
+        route[count++] = stops[i];
+      }
+    }
+    return route;
+  }
+
+  /**
+   * Find the largest gap in an aisle, counting the gaps to the front and back cross-aisles.
+   *
+   * @param stops the stops, sorted front to back within the aisle
+   * @param start the first stop of the aisle
+   * @param end one past the last stop of the aisle
+   * @return the first stop past the gap; the stops before it are taken from the front
+   */
+  private int largestGapSplit(Stop[] stops, int start, int end) {
+    int split = start;
+    double largest = stops[start].y; // The gap from the front cross-aisle.
+    for (int i = start + 1; i < end; i++) {
+      double gap = stops[i].y - stops[i - 1].y;
+      if (gap > largest) {
+        largest = gap;
+        split = i;
+      }
+    }
+    if (aisleLength - stops[end - 1].y > largest) {
+      split = end;
+    }
+    return split;
+  }
+
+  /**
+   * Build a short route through the stops: start from the nearest-neighbour route or the
+   * largest-gap route, whichever is shorter, and apply 2-opt moves (reversing a stretch of the
+   * route) while one makes the route shorter and the budget lasts.
+   *
+   * @param stops the stops
+   * @return the stops in route order
+   */
+  private Stop[] tsp(Stop[] stops) {
+    long deadline = timeBudgetNanos > 0 ? System.nanoTime() + timeBudgetNanos : Long.MAX_VALUE;
+    Stop[] gap = largestGap(stops.clone());
+    Stop[] neighbours = nearestNeighbour(stops);
+    Stop[] route = length(gap) <= length(neighbours) ? gap : neighbours;
+
+    // The tour is depot, route..., depot; position 0 and n + 1 are the depot.
+    int n = route.length;
+    Stop[] tour = new Stop[n + 2];
+    tour[0] = depot();
+    tour[n + 1] = tour[0];
+    System.arraycopy(route, 0, tour, 1, n);
+
+    boolean improved = true;
+    for (int moves = 0; improved && moves < maxMoves; moves++) {
+      if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+        break;
+      }
+      improved = false;
+      for (int i = 1; i < n && !improved; i++) {
+        for (int j = i + 1; j <= n; j++) {
+          double before = distance(tour[i - 1], tour[i]) + distance(tour[j], tour[j + 1]);
+          double after = distance(tour[i - 1], tour[j]) + distance(tour[i], tour[j + 1]);
+          if (after < before - 1e-9) {
+            for (int lo = i, hi = j; lo < hi; lo++, hi--) {
+              Stop swap = tour[lo];
+              tour[lo] = tour[hi];
+              tour[hi] = swap;
+            }
+            improved = true;
+            break;
+          }
+        }
+      }
+    }
+    return Arrays.copyOfRange(tour, 1, n + 1);
+  }
+
+  /**
+   * Build a route by always walking to the nearest stop not visited yet, starting at the depot.
+   *
+   * @param stops the stops
+   * @return the stops in route order
+   */
+  private Stop[] nearestNeighbour(Stop[] stops) {
+    Stop[] left = stops.clone();
+    Stop[] route = new Stop[stops.length];
+    Stop current = depot();
+    for (int count = 0; count < route.length; count++) {
+      int nearest = count;
+      double best = distance(current, left[count]);
+      for (int i = count + 1; i < left.length; i++) {
+        double d = distance(current, left[i]);
+        if (d < best) {
+          best = d;
+          nearest = i;
+        }
+      }
+      Stop swap = left[count];
+      left[count] = left[nearest];
+      left[nearest] = swap;
+      route[count] = left[count];
+      current = left[count];
+    }
+    return route;
+  }
+
+  /** A location to visit, placed in the distance model. */
+  private static final class Stop {
+
+    /** The location, as "zone aisle rack level"; null for the depot. */
+    final String location;
+
+    /** The number of the aisle, counting across zones; -1 for the depot. */
+    final int aisle;
+
+    /** The position of the aisle along the cross-aisles. */
+    final double x;
+
+    /** The distance from the front cross-aisle. */
+    final double y;
+
+    /**
+     * Instantiate a stop.
+     *
+     * @param location the location
+     * @param aisle the number of the aisle
+     * @param x the position of the aisle along the cross-aisles
+     * @param y the distance from the front cross-aisle
+     */
+    Stop(String location, int aisle, double x, double y) {
+      this.location = location;
+      this.aisle = aisle;
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+}
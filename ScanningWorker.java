@@ -1,6 +1,10 @@
 package warehouse_system;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
 
 public abstract class ScanningWorker extends Worker {
 
@@ -56,6 +60,24 @@ public abstract class ScanningWorker extends Worker {
     return true;
   }
 
+  /**
+   * Check the order of fascia in the pallets, reading the scanned SKUs straight from the tokens of
+   * an event.
+   *
+   * @param tokens the tokenized scan event
+   * @param from the index of the first scanned SKU
+   * @return true, if the pallets were sequenced in the correct order
+   */
+  public boolean scans(EventTokenizer tokens, int from) {
+    ArrayList<String> correctSeqeunce = currentRequest.getFaxOrder();
+    for (int i = from; i < tokens.count(); i++) {
+      if (i - from >= correctSeqeunce.size() || !tokens.matches(i, correctSeqeunce.get(i - from))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Indicate whether or not this worker has tried to scan their current request once incorrectly.
    */
@@ -72,4 +94,27 @@ public abstract class ScanningWorker extends Worker {
     return triedOnce;
   }
 
+  /**
+   * Gets the current pick request.
+   *
+   * @return the current pick request, or null if the worker has none
+   */
+  public PickRequest getCurrentRequest() {
+    return currentRequest;
+  }
+
+  @Override
+  void writeState(DataOutput out) throws IOException {
+    super.writeState(out);
+    Snapshot.writeRequest(out, currentRequest);
+    out.writeBoolean(triedOnce);
+  }
+
+  @Override
+  void readState(DataInput in, Map<Integer, PickRequest> requests) throws IOException {
+    super.readState(in, requests);
+    currentRequest = Snapshot.readRequest(in, requests);
+    triedOnce = in.readBoolean();
+  }
+
 }
@@ -19,21 +19,18 @@ public class Sequencer extends ScanningWorker {
   /**
    * Tell the organizer that that a pair of pallets have been sent to the loading area. Update the
    * warehouse system model accordingly.
-   * 
-   * @return a message for printing by the system upon completion of the order
    */
-  public String sendToLoading() {
+  public void sendToLoading() {
 
     String id = this.getPrId();
     String name = this.getName();
 
-    // Move the pallets' ID from the marshalling area to the loading area.
-    // in the model.
-    warehouse.loadingIds.add(id);
-    warehouse.marshallingIds.remove(id);
+    // Take the pallets' ID out of the marshalling area in the model; the
+    // organizer adds it to the loading area.
+    warehouse.removeMarshallingId(id);
 
-    return "Pallets for request " + id + " have been processed by " + name
-        + " and sent to the loading area.";
+    out.send("Pallets for request {} have been processed by {} and sent to the loading area.", id,
+        name);
   }
 
 }
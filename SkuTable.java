@@ -0,0 +1,74 @@
+package warehouse_system;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A SkuTable interns SKUs: every distinct SKU is given a dense int id (0, 1, 2, ...) the first time
+ * it is seen. Data about SKUs can then be stored in flat arrays indexed by id instead of maps keyed
+ * by strings.
+ */
+public class SkuTable {
+
+  /** A map of each SKU to its id. */
+  private Map<String, Integer> ids;
+
+  /** The SKUs, indexed by id. */
+  private ArrayList<String> skus;
+
+  /**
+   * Instantiate an empty SkuTable.
+   */
+  public SkuTable() {
+    this.ids = new HashMap<String, Integer>();
+    this.skus = new ArrayList<String>();
+  }
+
+  /**
+   * Return the id of a SKU, giving it the next free id if it has not been seen before.
+   *
+   * @param sku the SKU to intern
+   * @return the id of the SKU
+   */
+  public int intern(String sku) {
+    Integer id = ids.get(sku);
+    if (id == null) {
+      id = skus.size();
+      ids.put(sku, id);
+      skus.add(sku);
+    }
+    return id;
+  }
+
+  /**
+   * Return the id of a SKU, or -1 if the SKU has never been interned. This does not allocate.
+   *
+   * @param sku the SKU to look up
+   * @return the id of the SKU
+   */
+  public int getId(String sku) {
+    Integer id = ids.get(sku);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Return the SKU with the given id.
+   *
+   * @param id the id of the SKU
+   * @return the SKU
+   */
+  public String getSku(int id) {
+    return skus.get(id);
+  }
+
+  /**
+   * Return the number of SKUs that have been interned; every id is smaller than this.
+   *
+   * @return the number of SKUs
+   */
+  public int size() {
+    return skus.size();
+  }
+
+}
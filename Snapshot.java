@@ -0,0 +1,246 @@
+package warehouse_system;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A Snapshot is a compact binary copy of everything an Organizer and its Warehouse have built up
+ * from the events so far: the stock of every level, the pick requests, the queues, the workers and
+ * the docks. Together with an EventJournal it makes recovery fast: a restart reads the latest
+ * snapshot and only replays the events journaled after it.
+ *
+ * <p>A snapshot file holds a header (a magic number, a version and the number of events it covers),
+ * a table of every pick request it refers to, the state of the warehouse and the organizer, and a
+ * CRC32 of all of that. It is written to a temporary file and then renamed over the previous
+ * snapshot, so a crash while writing leaves the previous snapshot in place.
+ */
+final class Snapshot {
+
+  /** The name of the snapshot file in the journal directory. */
+  static final String FILE_NAME = "snapshot.bin";
+
+  /** The first bytes of a snapshot file ("WSNP"). */
+  private static final int MAGIC = 0x57534e50;
+
+  /** The version of the snapshot format. */
+  private static final int VERSION = 8;
+
+  /** Snapshots are only read and written through the static methods. */
+  private Snapshot() {}
+
+  /**
+   * Write a snapshot of an organizer and its warehouse to a directory, replacing the previous one.
+   * No events may be handled while the snapshot is written.
+   *
+   * @param dir the journal directory
+   * @param organizer the organizer
+   * @param eventCount the number of events the organizer has handled
+   * @throws IOException if the snapshot cannot be written
+   */
+  static void write(File dir, Organizer organizer, long eventCount) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(eventCount);
+    organizer.writeState(out);
+    out.flush();
+
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray(), 0, bytes.size());
+    out.writeLong(crc.getValue());
+    out.flush();
+
+    File temporary = new File(dir, FILE_NAME + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temporary)) {
+      bytes.writeTo(file);
+      file.getFD().sync();
+    }
+    Files.move(temporary.toPath(), new File(dir, FILE_NAME).toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Read the snapshot in a directory into an organizer and its warehouse, which must have been set
+   * up from the same configuration.
+   *
+   * @param dir the journal directory
+   * @param organizer the organizer
+   * @return the number of events the snapshot covers, or 0 if there is no snapshot
+   * @throws IOException if the snapshot cannot be read or is damaged
+   */
+  static long read(File dir, Organizer organizer) throws IOException {
+    File file = new File(dir, FILE_NAME);
+    if (!file.isFile()) {
+      return 0;
+    }
+
+    // The whole file is checked before any state is replaced.
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    if (bytes.length < 24) {
+      throw new IOException("Snapshot " + file + " is damaged.");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length - 8);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    in.skipBytes(bytes.length - 8);
+    if (in.readLong() != crc.getValue()) {
+      throw new IOException("Snapshot " + file + " is damaged.");
+    }
+
+    in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException(file + " is not a snapshot this version can read.");
+    }
+    long eventCount = in.readLong();
+    organizer.readState(in);
+    return eventCount;
+  }
+
+  /**
+   * Add a pick request to a table of requests by number, unless it is null.
+   *
+   * @param table the table
+   * @param request the pick request
+   */
+  static void collect(Map<Integer, PickRequest> table, PickRequest request) {
+    if (request != null) {
+      table.put(PickRequest.parseNumber(request.getId()), request);
+    }
+  }
+
+  /**
+   * Write a table of pick requests.
+   *
+   * @param out where the table is written
+   * @param table the pick requests, by number
+   * @throws IOException if the table cannot be written
+   */
+  static void writeTable(DataOutput out, Map<Integer, PickRequest> table) throws IOException {
+    out.writeInt(table.size());
+    for (PickRequest request : table.values()) {
+      request.writeState(out);
+    }
+  }
+
+  /**
+   * Read a table of pick requests written by writeTable().
+   *
+   * @param in where the table is read from
+   * @param warehouse the warehouse the requests are picked in
+   * @return the pick requests, by number
+   * @throws IOException if the table cannot be read
+   */
+  static Map<Integer, PickRequest> readTable(DataInput in, Warehouse warehouse)
+      throws IOException {
+    int count = in.readInt();
+    Map<Integer, PickRequest> table = new HashMap<Integer, PickRequest>(count * 2);
+    for (int i = 0; i < count; i++) {
+      PickRequest request = PickRequest.readState(in, warehouse);
+      table.put(PickRequest.parseNumber(request.getId()), request);
+    }
+    return table;
+  }
+
+  /**
+   * Return an empty table of pick requests by number, which keeps the order requests were added.
+   *
+   * @return the table
+   */
+  static Map<Integer, PickRequest> newTable() {
+    return new LinkedHashMap<Integer, PickRequest>();
+  }
+
+  /**
+   * Write a reference to a pick request in the snapshot's table.
+   *
+   * @param out where the reference is written
+   * @param request the pick request, or null
+   * @throws IOException if the reference cannot be written
+   */
+  static void writeRequest(DataOutput out, PickRequest request) throws IOException {
+    out.writeInt(request == null ? 0 : PickRequest.parseNumber(request.getId()));
+  }
+
+  /**
+   * Read a reference written by writeRequest().
+   *
+   * @param in where the reference is read from
+   * @param table the pick requests of the snapshot, by number
+   * @return the pick request, or null
+   * @throws IOException if the reference cannot be read
+   */
+  static PickRequest readRequest(DataInput in, Map<Integer, PickRequest> table)
+      throws IOException {
+    int number = in.readInt();
+    return number == 0 ? null : table.get(number);
+  }
+
+  /**
+   * Write a string that may be null.
+   *
+   * @param out where the string is written
+   * @param text the string, or null
+   * @throws IOException if the string cannot be written
+   */
+  static void writeString(DataOutput out, String text) throws IOException {
+    out.writeBoolean(text != null);
+    if (text != null) {
+      out.writeUTF(text);
+    }
+  }
+
+  /**
+   * Read a string written by writeString().
+   *
+   * @param in where the string is read from
+   * @return the string, or null
+   * @throws IOException if the string cannot be read
+   */
+  static String readString(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  /**
+   * Write a collection of strings, in order.
+   *
+   * @param out where the strings are written
+   * @param texts the strings
+   * @throws IOException if the strings cannot be written
+   */
+  static void writeStrings(DataOutput out, Collection<String> texts) throws IOException {
+    out.writeInt(texts.size());
+    for (String text : texts) {
+      out.writeUTF(text);
+    }
+  }
+
+  /**
+   * Read strings written by writeStrings() into a collection.
+   *
+   * @param in where the strings are read from
+   * @param texts the collection the strings are added to
+   * @throws IOException if the strings cannot be read
+   */
+  static void readStrings(DataInput in, Collection<String> texts) throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      texts.add(in.readUTF());
+    }
+  }
+
+}
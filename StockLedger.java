@@ -0,0 +1,219 @@
+package warehouse_system;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A StockLedger reserves the fascia of each pick request against the stock of its levels before
+ * the request is queued, so pickers are only sent to levels that hold their fascia. A request is
+ * reserved all at once or not at all. A request that cannot be reserved is blocked until the level
+ * it is short of has been replenished, and is then reserved again.
+ *
+ * <p>The reservations are counted by the levels themselves (see Level.reserve()), which update them
+ * atomically, so a level can be replenished on one thread while pick requests reserve from it on
+ * another. The blocked requests belong to whoever handles the pickers.
+ */
+public class StockLedger {
+
+  /** The warehouse the levels are in. */
+  private final Warehouse warehouse;
+
+  /** The blocked pick requests, by the SKU they are waiting for, in the order they were blocked. */
+  private Map<String, Queue<PickRequest>> blocked = new HashMap<String, Queue<PickRequest>>();
+
+  /** The number of blocked pick requests. */
+  private int waiting;
+
+  /** The number of pick requests reserved so far. */
+  private long reservations;
+
+  /** The number of times a pick request was blocked so far. */
+  private long blocks;
+
+  /**
+   * Instantiate a ledger with no blocked requests.
+   *
+   * @param warehouse the warehouse the levels are in
+   */
+  public StockLedger(Warehouse warehouse) {
+    this.warehouse = warehouse;
+  }
+
+  /**
+   * Reserve the fascia of a pick request. If a level does not have enough stock left that is not
+   * reserved, nothing is reserved and the request is blocked until that level is replenished.
+   *
+   * @param request the pick request
+   * @return null if the fascia were reserved, or the SKU the request is blocked on
+   */
+  public String reserve(PickRequest request) {
+    Map<String, Integer> counts = countSkus(request);
+    List<Level> levels = new ArrayList<Level>(counts.size());
+    for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+      Level level = warehouse.getLevel(entry.getKey());
+      if (level == null) {
+        continue;
+      }
+      if (!level.reserve(entry.getValue())) {
+        // Give back what was reserved so far, and wait for this level.
+        for (Level reservedLevel : levels) {
+          reservedLevel.unreserve(counts.get(reservedLevel.getSku()));
+        }
+        block(entry.getKey(), request);
+        return entry.getKey();
+      }
+      levels.add(level);
+    }
+    reservations++;
+    return null;
+  }
+
+  /**
+   * Take out the pick requests that were blocked on a SKU, because its level was replenished. They
+   * should be reserved again, in the order they are returned.
+   *
+   * @param sku the SKU of the level
+   * @return the pick requests, in the order they were blocked
+   */
+  public List<PickRequest> unblock(String sku) {
+    Queue<PickRequest> queue = blocked.remove(sku);
+    if (queue == null) {
+      return Collections.emptyList();
+    }
+    waiting -= queue.size();
+    return new ArrayList<PickRequest>(queue);
+  }
+
+  /**
+   * Return whether a pick request is blocked on a SKU and would be reserved if its level were
+   * replenished now. A level whose stock is mostly reserved is not worth replenishing until some of
+   * its reserved fascia have been picked.
+   *
+   * @param sku the SKU of the level
+   * @return true, if replenishing the level would unblock the first request waiting for it
+   */
+  public boolean needsRefill(String sku) {
+    Queue<PickRequest> queue = blocked.get(sku);
+    Level level = warehouse.getLevel(sku);
+    if (queue == null || level == null) {
+      return false;
+    }
+    Integer needed = countSkus(queue.peek()).get(sku);
+    return level.getCurrentStock() < Level.FULL_STOCK
+        && level.getReserved() + needed <= Level.FULL_STOCK;
+  }
+
+  /**
+   * Return the number of blocked pick requests.
+   *
+   * @return the number of requests waiting for stock
+   */
+  public int getWaiting() {
+    return waiting;
+  }
+
+  /**
+   * Return a one-line report of the reservations made so far.
+   *
+   * @return the report
+   */
+  public String report() {
+    return String.format("Stock: %d pick requests reserved, %d times blocked, %d waiting.",
+        reservations, blocks, waiting);
+  }
+
+  /**
+   * Add a pick request to the end of the requests blocked on a SKU.
+   *
+   * @param sku the SKU of the level the request is short of
+   * @param request the pick request
+   */
+  private void block(String sku, PickRequest request) {
+    Queue<PickRequest> queue = blocked.get(sku);
+    if (queue == null) {
+      queue = new ArrayDeque<PickRequest>();
+      blocked.put(sku, queue);
+    }
+    queue.add(request);
+    waiting++;
+    blocks++;
+  }
+
+  /**
+   * Count how many fascia of each SKU a pick request needs.
+   *
+   * @param request the pick request
+   * @return the number of fascia by SKU, in the order the SKUs first appear in the request
+   */
+  private static Map<String, Integer> countSkus(PickRequest request) {
+    Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+    for (String sku : request.getFaxOrder()) {
+      Integer count = counts.get(sku);
+      counts.put(sku, count == null ? 1 : count + 1);
+    }
+    return counts;
+  }
+
+  /**
+   * Add the blocked pick requests to a snapshot's table of requests.
+   *
+   * @param table the table of requests
+   */
+  void collectRequests(Map<Integer, PickRequest> table) {
+    for (Queue<PickRequest> queue : blocked.values()) {
+      for (PickRequest request : queue) {
+        Snapshot.collect(table, request);
+      }
+    }
+  }
+
+  /**
+   * Write the blocked pick requests to a snapshot.
+   *
+   * @param out where the requests are written
+   * @throws IOException if the requests cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(blocked.size());
+    for (Map.Entry<String, Queue<PickRequest>> entry : blocked.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (PickRequest request : entry.getValue()) {
+        Snapshot.writeRequest(out, request);
+      }
+    }
+  }
+
+  /**
+   * Replace the blocked pick requests with those written by writeState().
+   *
+   * @param in where the requests are read from
+   * @param table the pick requests of the snapshot, by number
+   * @throws IOException if the requests cannot be read
+   */
+  void readState(DataInput in, Map<Integer, PickRequest> table) throws IOException {
+    blocked.clear();
+    waiting = 0;
+    int skus = in.readInt();
+    for (int i = 0; i < skus; i++) {
+      String sku = in.readUTF();
+      Queue<PickRequest> queue = new ArrayDeque<PickRequest>();
+      int count = in.readInt();
+      for (int j = 0; j < count; j++) {
+        queue.add(Snapshot.readRequest(in, table));
+      }
+      blocked.put(sku, queue);
+      waiting += count;
+    }
+  }
+
+}
@@ -0,0 +1,318 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Topology describes the physical layout of a warehouse: its zones, and for every zone how many
+ * aisles it has, how many racks each aisle has and how many levels each rack has. Every level in
+ * the warehouse is given a slot number, so that data about locations can be kept in flat arrays.
+ * Slots are numbered zone by zone, then aisle by aisle, rack by rack and level by level, which is
+ * the same order the locations are written in.
+ */
+public class Topology {
+
+  /** The name of every zone, in the order they were described. */
+  private String[] zoneNames;
+
+  /** A map of each zone name to its index in zoneNames. */
+  private Map<String, Integer> zoneIndices;
+
+  /** The number of aisles in each zone. */
+  private int[] aisles;
+
+  /** The number of racks per aisle in each zone. */
+  private int[] racks;
+
+  /** The number of levels per rack in each zone. */
+  private int[] levels;
+
+  /** The first slot of each zone; the last entry is the total number of slots. */
+  private int[] zoneStarts;
+
+  /**
+   * Instantiate a topology from the dimensions of each zone.
+   *
+   * @param zoneNames the names of the zones
+   * @param aisles the number of aisles in each zone
+   * @param racks the number of racks per aisle in each zone
+   * @param levels the number of levels per rack in each zone
+   */
+  public Topology(String[] zoneNames, int[] aisles, int[] racks, int[] levels) {
+    this.zoneNames = zoneNames;
+    this.aisles = aisles;
+    this.racks = racks;
+    this.levels = levels;
+
+    this.zoneIndices = new HashMap<String, Integer>();
+    this.zoneStarts = new int[zoneNames.length + 1];
+    for (int zone = 0; zone < zoneNames.length; zone++) {
+      zoneIndices.put(zoneNames[zone], zone);
+      zoneStarts[zone + 1] = zoneStarts[zone] + aisles[zone] * racks[zone] * levels[zone];
+    }
+  }
+
+  /**
+   * Return the original layout of the warehouse: 2 zones (A and B), 2 aisles per zone, 3 racks per
+   * aisle and 4 levels per rack.
+   *
+   * @return the default topology
+   */
+  public static Topology defaultTopology() {
+    return new Topology(new String[] {"A", "B"}, new int[] {2, 2}, new int[] {3, 3},
+        new int[] {4, 4});
+  }
+
+  /**
+   * Read a topology from a file with one zone per line, in the form zone,aisles,racks,levels. If the
+   * file does not exist, the default topology is used.
+   *
+   * @param file the file this method will read
+   * @return the topology described by the file
+   */
+  public static Topology load(File file) {
+    if (!file.exists()) {
+      return defaultTopology();
+    }
+
+    List<String> zoneNames = new ArrayList<String>();
+    List<int[]> dimensions = new ArrayList<int[]>();
+
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] chars = line.split(",");
+        if (chars.length < 4) {
+          continue;
+        }
+        zoneNames.add(chars[0].trim());
+        dimensions.add(new int[] {Integer.parseInt(chars[1].trim()),
+            Integer.parseInt(chars[2].trim()), Integer.parseInt(chars[3].trim())});
+      }
+    } catch (IOException | NumberFormatException ex) {
+      ex.printStackTrace();
+      return defaultTopology();
+    }
+
+    int zones = zoneNames.size();
+    int[] aisles = new int[zones];
+    int[] racks = new int[zones];
+    int[] levels = new int[zones];
+    for (int zone = 0; zone < zones; zone++) {
+      aisles[zone] = dimensions.get(zone)[0];
+      racks[zone] = dimensions.get(zone)[1];
+      levels[zone] = dimensions.get(zone)[2];
+    }
+    return new Topology(zoneNames.toArray(new String[zones]), aisles, racks, levels);
+  }
+
+  /**
+   * Return the total number of slots (levels) in the warehouse. Slots are numbered from 0 up to,
+   * but not including, this number.
+   *
+   * @return the number of slots
+   */
+  public int size() {
+    return zoneStarts[zoneNames.length];
+  }
+
+  /**
+   * Return the number of zones in the warehouse.
+   *
+   * @return the number of zones
+   */
+  public int getZoneCount() {
+    return zoneNames.length;
+  }
+
+  /**
+   * Return the name of a zone.
+   *
+   * @param zone the index of the zone
+   * @return the name of the zone
+   */
+  public String getNameOfZone(int zone) {
+    return zoneNames[zone];
+  }
+
+  /**
+   * Return the number of aisles in a zone.
+   *
+   * @param zone the index of the zone
+   * @return the number of aisles
+   */
+  public int getAisles(int zone) {
+    return aisles[zone];
+  }
+
+  /**
+   * Return the number of racks per aisle in a zone.
+   *
+   * @param zone the index of the zone
+   * @return the number of racks
+   */
+  public int getRacks(int zone) {
+    return racks[zone];
+  }
+
+  /**
+   * Return the number of levels per rack in a zone.
+   *
+   * @param zone the index of the zone
+   * @return the number of levels
+   */
+  public int getLevels(int zone) {
+    return levels[zone];
+  }
+
+  /**
+   * Return the slot of a location, or -1 if the location is not in this warehouse.
+   *
+   * @param zone the name of the zone
+   * @param aisle the aisle number
+   * @param rack the rack number
+   * @param level the level number
+   * @return the slot of the location
+   */
+  public int getSlot(String zone, int aisle, int rack, int level) {
+    Integer zoneIndex = zoneIndices.get(zone);
+    if (zoneIndex == null) {
+      return -1;
+    }
+    return getSlot(zoneIndex, aisle, rack, level);
+  }
+
+  /**
+   * Return the slot of a location given the index of its zone, or -1 if the location is not in
+   * this warehouse.
+   *
+   * @param zone the index of the zone
+   * @param aisle the aisle number
+   * @param rack the rack number
+   * @param level the level number
+   * @return the slot of the location
+   */
+  public int getSlot(int zone, int aisle, int rack, int level) {
+    if (zone < 0 || zone >= zoneNames.length || aisle < 0 || aisle >= aisles[zone] || rack < 0
+        || rack >= racks[zone] || level < 0 || level >= levels[zone]) {
+      return -1;
+    }
+    return zoneStarts[zone] + (aisle * racks[zone] + rack) * levels[zone] + level;
+  }
+
+  /**
+   * Return the slot of a location written as "zone aisle rack level", or -1 if the location is
+   * malformed or not in this warehouse. The location is parsed without being split.
+   *
+   * @param location the location
+   * @return the slot of the location
+   */
+  public int getSlot(String location) {
+    if (location == null) {
+      return -1;
+    }
+    int end = location.indexOf(' ');
+    if (end < 0) {
+      return -1;
+    }
+    Integer zone = zoneIndices.get(location.substring(0, end));
+    if (zone == null) {
+      return -1;
+    }
+
+    int[] numbers = new int[3];
+    int index = end + 1;
+    for (int i = 0; i < 3; i++) {
+      int value = 0;
+      int start = index;
+      while (index < location.length() && location.charAt(index) != ' ') {
+        char digit = location.charAt(index);
+        if (digit < '0' || digit > '9') {
+          return -1;
+        }
+        value = value * 10 + (digit - '0');
+        index++;
+      }
+      if (index == start) {
+        return -1;
+      }
+      numbers[i] = value;
+      index++;
+    }
+    return getSlot(zone, numbers[0], numbers[1], numbers[2]);
+  }
+
+  /**
+   * Return the index of the zone a slot is in.
+   *
+   * @param slot the slot
+   * @return the index of the zone
+   */
+  public int getZone(int slot) {
+    int zone = 0;
+    while (slot >= zoneStarts[zone + 1]) {
+      zone++;
+    }
+    return zone;
+  }
+
+  /**
+   * Return the name of the zone a slot is in.
+   *
+   * @param slot the slot
+   * @return the name of the zone
+   */
+  public String getZoneName(int slot) {
+    return zoneNames[getZone(slot)];
+  }
+
+  /**
+   * Return the aisle a slot is in.
+   *
+   * @param slot the slot
+   * @return the aisle number
+   */
+  public int getAisle(int slot) {
+    int zone = getZone(slot);
+    return (slot - zoneStarts[zone]) / (racks[zone] * levels[zone]);
+  }
+
+  /**
+   * Return the rack a slot is in.
+   *
+   * @param slot the slot
+   * @return the rack number
+   */
+  public int getRack(int slot) {
+    int zone = getZone(slot);
+    return (slot - zoneStarts[zone]) / levels[zone] % racks[zone];
+  }
+
+  /**
+   * Return the level of a slot on its rack.
+   *
+   * @param slot the slot
+   * @return the level number
+   */
+  public int getLevel(int slot) {
+    int zone = getZone(slot);
+    return (slot - zoneStarts[zone]) % levels[zone];
+  }
+
+  /**
+   * Return the location of a slot, written as "zone aisle rack level".
+   *
+   * @param slot the slot
+   * @return the location of the slot
+   */
+  public String getLocation(int slot) {
+    return getZoneName(slot) + " " + getAisle(slot) + " " + getRack(slot) + " " + getLevel(slot);
+  }
+
+}
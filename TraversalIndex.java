@@ -0,0 +1,161 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TraversalIndex is an immutable, in-memory copy of the traversal table. Every SKU in the table
+ * is given its traversal rank (the row it appears on) and its location, so a pick path can be built
+ * without touching the disk. Once built, an index is never modified, which means it can be shared
+ * freely between threads and swapped out for a newer one without locking.
+ */
+public final class TraversalIndex {
+
+  /** A map of each SKU to its rank (row number) in the traversal table. */
+  private final Map<String, Integer> ranks;
+
+  /** The location of every row of the traversal table, indexed by rank. */
+  private final String[] locations;
+
+  /** The last modification time of the file this index was read from. */
+  private final long lastModified;
+
+  /**
+   * Instantiate an index from already parsed traversal rows.
+   *
+   * @param skus the SKUs of the traversal table, in traversal order
+   * @param locations the location of each SKU, in traversal order
+   * @param lastModified the modification time of the source file
+   */
+  private TraversalIndex(List<String> skus, List<String> locations, long lastModified) {
+    this.ranks = new HashMap<String, Integer>(skus.size() * 2);
+    for (int rank = 0; rank < skus.size(); rank++) {
+      ranks.put(skus.get(rank), rank);
+    }
+    this.locations = locations.toArray(new String[locations.size()]);
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Build an index from traversal rows that were already parsed, e.g. from a config image.
+   *
+   * @param skus the SKUs of the traversal table, in traversal order
+   * @param locations the location of each SKU, in traversal order
+   * @param lastModified the modification time of the traversal table they came from
+   * @return the index
+   */
+  public static TraversalIndex of(List<String> skus, List<String> locations, long lastModified) {
+    return new TraversalIndex(skus, locations, lastModified);
+  }
+
+  /**
+   * Read a traversal table (zone,aisle,rack,level,sku on every line) into a new index.
+   *
+   * @param file the traversal table
+   * @return the index of the traversal table
+   * @throws IOException if the file could not be read
+   */
+  public static TraversalIndex load(File file) throws IOException {
+    long lastModified = file.lastModified();
+    List<String> skus = new ArrayList<String>();
+    List<String> locations = new ArrayList<String>();
+
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] values = line.split(",");
+        if (values.length < 5) {
+          continue;
+        }
+        skus.add(values[4]);
+        locations.add(values[0] + " " + values[1] + " " + values[2] + " " + values[3]);
+      }
+    }
+
+    return new TraversalIndex(skus, locations, lastModified);
+  }
+
+  /**
+   * Return the traversal rank of a SKU, or -1 if the SKU is not in the traversal table.
+   *
+   * @param sku the SKU to look up
+   * @return the rank of the SKU
+   */
+  public int getRank(String sku) {
+    Integer rank = ranks.get(sku);
+    return rank == null ? -1 : rank;
+  }
+
+  /**
+   * Return the location of a SKU, or null if the SKU is not in the traversal table.
+   *
+   * @param sku the SKU to look up
+   * @return the location of the SKU
+   */
+  public String getLocation(String sku) {
+    int rank = getRank(sku);
+    return rank < 0 ? null : locations[rank];
+  }
+
+  /**
+   * Return the location at the given traversal rank.
+   *
+   * @param rank the row of the traversal table
+   * @return the location on that row
+   */
+  public String getLocationAt(int rank) {
+    return locations[rank];
+  }
+
+  /**
+   * Return the number of rows in the traversal table.
+   *
+   * @return the number of rows
+   */
+  public int size() {
+    return locations.length;
+  }
+
+  /**
+   * Return the modification time of the file this index was read from.
+   *
+   * @return the modification time in milliseconds
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Build the pick path for a list of SKUs: one location per SKU, in traversal order. SKUs that are
+   * not in the traversal table are skipped. This sorts the ranks of the k SKUs, so it runs in
+   * O(k log k) no matter how large the traversal table is.
+   *
+   * @param skus the SKUs to pick
+   * @return the locations to visit, in traversal order
+   */
+  public List<String> path(List<String> skus) {
+    int[] order = new int[skus.size()];
+    int count = 0;
+    for (String sku : skus) {
+      int rank = getRank(sku);
+      if (rank >= 0) {
+        order[count++] = rank;
+      }
+    }
+    Arrays.sort(order, 0, count);
+
+    List<String> path = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      path.add(locations[order[i]]);
+    }
+    return path;
+  }
+
+}
@@ -1,29 +1,42 @@
 package warehouse_system;
 
 import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A Warehouse represents the static state of a real warehouse system. In other words, the Warehouse
  * class models what physical workers and physical inventory are actually doing in real time, as
  * opposed to what they ought to be doing.
+ *
+ * <p>The state that changes while events are handled (workers, pick requests, the marshalling area,
+ * the docks and the stock of each level) is kept in concurrent structures behind methods, so the
+ * warehouse can be updated from several threads at once.
  */
 public class Warehouse {
 
   /**
-   * A map of the names of each initialized worker to a reference of its actual object.
+   * A map of the names of each initialized worker to a reference of its actual object. Workers may
+   * be added from several threads, so the map is concurrent.
    */
   private Map<String, Worker> workers;
   /**
    * A map of the IDs of each pick request to a reference of its the actual PickRequest object.
+   * Pick requests may be added from several threads, so the map is concurrent.
    */
   private Map<String, PickRequest> requests;
   /**
@@ -32,69 +45,198 @@ public class Warehouse {
   private Map<String, String[]> translationMap;
 
   /**
-   * The distinct levels within the warehouse (there are 48) each containing a unique type of fascia
-   * (unique SKU). The 4D array represents the warehouse's layout: 2 zones (A or B represented as
-   * indices 0 and 1, respectively), 2 aisles per zone (0, 1), 3 racks per aisles (0..2), 4 levels
-   * per rack (0..3).
+   * Every minivan that can be ordered from this warehouse as {model, color}, in the order of the
+   * translation table. A minivan can be ordered if both of its fascia have a level.
    */
-  private Level[][][][] levels;
+  private List<String[]> minivans;
 
-  /** A map of the SKUs to a string representation of their locations. */
-  private Map<String, String> locations;
+  /** Gives every SKU in the warehouse a dense int id. */
+  private SkuTable skuTable;
 
-  /** The inverse mapping of the above; maps locations to skus. */
-  private Map<String, String> inverseLocations;
+  /**
+   * The distinct levels within the warehouse, each containing a unique type of fascia (unique SKU),
+   * indexed by the id skuTable gives that SKU.
+   */
+  private Level[] levels;
+
+  /** The layout of the warehouse; every level in it is identified by a slot number. */
+  private Topology topology;
+
+  /** The slot of each SKU, indexed by SKU id. */
+  private int[] skuSlots;
+
+  /** The id of the SKU stored in each slot, or -1 if the slot is empty. */
+  private int[] slotSkus;
+
+  /** The string representation of each slot's location, indexed by slot. */
+  private String[] slotLocations;
 
   /**
    * A string of IDs corresponding to the pick request orders in the marshalling area.
    */
-  public Queue<String> marshallingIds;
+  private Queue<String> marshallingIds;
   /**
-   * An ArrayList of IDs corresponding to the pick request orders in the loading area.
+   * The docks where pallets are loaded onto trucks; each has its own loading area and loading
+   * sequence.
    */
-  public ArrayList<String> loadingIds;
-  /** A representation of the next pick request ID that needs to be loaded. */
-  public int loadingCounter;
+  private Dock[] docks;
+
+  /** The number the next pick request will be given; pick requests are numbered from 1. */
+  private AtomicInteger nextRequestNumber;
 
   /** PickRequests that have been finally loaded are stored here. */
-  private ArrayList<PickRequest> loadedRequests;
+  private List<PickRequest> loadedRequests;
 
   /**
-   * Initialize a warehouse with it's initial conditions.
+   * Where pick requests go once their truck has left, or null to keep every pick request in
+   * memory.
+   */
+  private volatile RequestArchive archive;
+
+  /** The directory the configuration of this warehouse was read from. */
+  private File configDir;
+
+  /** Builds the pick paths of this warehouse, from its traversal table and route optimizer. */
+  private WarehousePicking picking;
+
+  /**
+   * Initialize a warehouse with it's initial conditions, read from the warehouse_config directory.
    */
   public Warehouse() {
+    this(new File("warehouse_config"));
+  }
+
+  /**
+   * Initialize a warehouse with the initial conditions in a configuration directory. Pick paths are
+   * built from the traversal table in the same directory. If the directory holds a compiled
+   * ConfigImage that is up to date, it is read instead of the CSV files.
+   *
+   * @param configDir the directory holding the warehouse's configuration files
+   */
+  public Warehouse(File configDir) {
+
+    this.configDir = configDir;
+    this.requests = new ConcurrentHashMap<String, PickRequest>();
+    this.workers = new ConcurrentHashMap<String, Worker>();
+    this.skuTable = new SkuTable();
+    this.marshallingIds = new ConcurrentLinkedQueue<String>();
+    this.loadedRequests = Collections.synchronizedList(new ArrayList<PickRequest>());
+    this.nextRequestNumber = new AtomicInteger(1);
+
+    ConfigImage image = ConfigImage.open(configDir);
+    if (image != null) {
+      loadImage(image, new File(configDir, "traversal_table.csv"));
+    } else {
+      // The files must be read in this order, since they rely on each other.
+      createTopology(new File(configDir, "topology.csv"));
+      createLocationMap(new File(configDir, "traversal_table.csv"));
+      createTranslationMap(new File(configDir, "translation.csv"));
+      picking = new WarehousePicking(new File(configDir, "traversal_table.csv"));
+      this.docks = Dock.load(new File(configDir, "docks.csv"));
+      adjustLevels(new File(configDir, "initial.csv"));
+    }
+
+    // Pick paths keep the order of the traversal table unless routing.csv
+    // asks for a route optimizer.
+    picking.setRouteOptimizer(RouteOptimizer.load(new File(configDir, "routing.csv"), topology));
+
+  }
 
-    this.requests = new HashMap<String, PickRequest>();
-    this.workers = new HashMap<String, Worker>();
-    this.levels = new Level[2][2][3][4];
+  /**
+   * Set up the warehouse from a compiled config image, in the same order as from the CSV files.
+   * The traversal rows also become the index pick paths are built from, so the traversal table is
+   * not read again.
+   *
+   * @param image the config image
+   * @param traversalTable the traversal table the image was compiled from
+   */
+  private void loadImage(ConfigImage image, File traversalTable) {
+
+    ConfigImage.Rows rows = image.rows(ConfigImage.TOPOLOGY);
+    String[] zoneNames = new String[rows.remaining()];
+    int[] aisles = new int[zoneNames.length];
+    int[] racks = new int[zoneNames.length];
+    int[] levelCounts = new int[zoneNames.length];
+    for (int zone = 0; rows.next(); zone++) {
+      zoneNames[zone] = rows.text(0);
+      aisles[zone] = rows.number(1);
+      racks[zone] = rows.number(2);
+      levelCounts[zone] = rows.number(3);
+    }
+    setTopology(new Topology(zoneNames, aisles, racks, levelCounts));
+
+    rows = image.rows(ConfigImage.TRAVERSAL);
+    List<String> traversalSkus = new ArrayList<String>(rows.remaining());
+    List<String> traversalLocations = new ArrayList<String>(rows.remaining());
+    skuSlots = new int[0];
+    while (rows.next()) {
+      addLocation(rows.text(0), rows.number(1), rows.number(2), rows.number(3), rows.text(4));
+      traversalSkus.add(rows.text(4));
+      traversalLocations.add(rows.text(0) + " " + rows.number(1) + " " + rows.number(2) + " "
+          + rows.number(3));
+    }
+    finishLocationMap();
+
+    translationMap = new HashMap<String, String[]>();
+    minivans = new ArrayList<String[]>();
+    rows = image.rows(ConfigImage.TRANSLATION);
+    while (rows.next()) {
+      addTranslation(rows.text(0), rows.text(1), rows.text(2), rows.text(3));
+    }
+    picking = new WarehousePicking(traversalTable, TraversalIndex.of(traversalSkus,
+        traversalLocations, image.getLastModified(ConfigImage.TRAVERSAL)));
 
-    // The files must be read in this order, since they rely on each other.
-    createLocationMap(new File("warehouse_config/traversal_table.csv"));
-    createTranslationMap(new File("warehouse_config/translation.csv"));
+    rows = image.rows(ConfigImage.DOCKS);
+    docks = new Dock[rows.remaining()];
+    for (int i = 0; rows.next(); i++) {
+      docks[i] = new Dock(rows.text(0), i, docks.length, rows.number(1));
+    }
 
-    // Create the inversemap from <locations>
-    this.inverseLocations = new HashMap<String, String>();
-    for (Entry<String, String> entry : locations.entrySet()) {
-      inverseLocations.put(entry.getValue(), entry.getKey());
+    rows = image.rows(ConfigImage.INITIAL);
+    while (rows.next()) {
+      adjustLevel(topology.getSlot(rows.text(0), rows.number(1), rows.number(2), rows.number(3)),
+          rows.number(4));
     }
 
-    this.marshallingIds = new LinkedList<String>();
-    this.loadingIds = new ArrayList<String>();
-    this.loadedRequests = new ArrayList<PickRequest>();
-    this.loadingCounter = 1;
+  }
+
+  /**
+   * Reads the layout of the warehouse and sizes the location store to fit it.
+   *
+   * @param file the file this method will read; the original layout is used if it does not exist
+   */
+  public void createTopology(File file) {
+    setTopology(Topology.load(file));
+  }
+
+  /**
+   * Use a layout for the warehouse and size the location store to fit it.
+   *
+   * @param layout the layout of the warehouse
+   */
+  private void setTopology(Topology layout) {
 
-    adjustLevels(new File("warehouse_config/initial.csv"));
+    topology = layout;
+
+    slotSkus = new int[topology.size()];
+    slotLocations = new String[topology.size()];
+    for (int slot = 0; slot < topology.size(); slot++) {
+      slotSkus[slot] = -1;
+      slotLocations[slot] = topology.getLocation(slot);
+    }
 
   }
 
   /**
-   * Makes a map of SKUs to locations by reading the traversal map.
+   * Makes a map of SKUs to locations by reading the traversal map. Rows whose location is not part
+   * of the topology are skipped.
    * 
    * @param file the file this method will read
    */
   public void createLocationMap(File file) {
 
-    locations = new HashMap<String, String>();
+    skuSlots = new int[0];
+    levels = new Level[0];
 
     try {
       BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
@@ -102,8 +244,12 @@ public class Warehouse {
       String line;
       while ((line = bufferedReader.readLine()) != null) {
         String[] chars = line.split(",");
-        String location = chars[0] + " " + chars[1] + " " + chars[2] + " " + chars[3];
-        locations.put(chars[4], location);
+        if (chars.length < 5) {
+          continue;
+        }
+
+        addLocation(chars[0], Integer.parseInt(chars[1]), Integer.parseInt(chars[2]),
+            Integer.parseInt(chars[3]), chars[4]);
       }
 
       bufferedReader.close();
@@ -111,17 +257,53 @@ public class Warehouse {
     } catch (IOException ex) {
       ex.printStackTrace();
     }
+    finishLocationMap();
+
+  }
+
+  /**
+   * Record the location of a SKU from a row of the traversal table, unless the location is not part
+   * of the topology.
+   *
+   * @param zone the zone of the location
+   * @param aisle the aisle of the location
+   * @param rack the rack of the location
+   * @param level the level of the location
+   * @param sku the SKU stored there
+   */
+  private void addLocation(String zone, int aisle, int rack, int level, String sku) {
+    int slot = topology.getSlot(zone, aisle, rack, level);
+    if (slot < 0) {
+      System.err.println("Location of SKU " + sku + " is outside the warehouse.");
+      return;
+    }
+
+    int skuId = skuTable.intern(sku);
+    if (skuId >= skuSlots.length) {
+      skuSlots = Arrays.copyOf(skuSlots, Math.max(16, skuSlots.length * 2));
+    }
+    skuSlots[skuId] = slot;
+    slotSkus[slot] = skuId;
+  }
 
+  /**
+   * Size the SKU arrays once every location has been recorded.
+   */
+  private void finishLocationMap() {
+    skuSlots = Arrays.copyOf(skuSlots, skuTable.size());
+    levels = new Level[skuTable.size()];
   }
 
   /**
-   * Makes a map of colours and models to SKUs by reading the translation map.
+   * Makes a map of colours and models to SKUs by reading the translation map. Only SKUs that have a
+   * location in the traversal table get a level.
    * 
    * @param file the file this method will read
    */
   public void createTranslationMap(File file) {
 
     translationMap = new HashMap<String, String[]>();
+    minivans = new ArrayList<String[]>();
 
     try {
       BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
@@ -129,44 +311,13 @@ public class Warehouse {
       String line = bufferedReader.readLine(); // Skip first line of
                                                // headings
 
-      int counter = 0; // For now, we only want to read the first 24
-                       // translation lines
-
-      while ((line = bufferedReader.readLine()) != null && counter < 24) {
+      while ((line = bufferedReader.readLine()) != null) {
 
         String[] chars = line.split(",");
-        String color = chars[0];
-        String model = chars[1];
-        String[] skus = {chars[2], chars[3]};
-        String[] locationFront = getLocation(skus[0]).split(" ");
-        String[] locationBack = getLocation(skus[1]).split(" ");
-
-        // Create the level object for the front fascia.
-        int aisle = Integer.valueOf(locationFront[1]);
-        int rack = Integer.valueOf(locationFront[2]);
-        int level = Integer.valueOf(locationFront[3]);
-
-        if (locationFront[0].equals("A")) {
-          levels[0][aisle][rack][level] = new Level(skus[0], color, model, 30);
-        } else { // If chars[0].equals("B)
-          levels[1][aisle][rack][level] = new Level(skus[0], color, model, 30);
-        }
-
-        // Create the level object for the front fascia.
-        aisle = Integer.valueOf(locationBack[1]);
-        rack = Integer.valueOf(locationBack[2]);
-        level = Integer.valueOf(locationBack[3]);
-        if (locationBack[0].equals("A")) {
-          levels[0][aisle][rack][level] = new Level(skus[1], color, model, 30);
-        } else { // If chars[0].equals("B)
-          levels[1][aisle][rack][level] = new Level(skus[1], color, model, 30);
+        if (chars.length < 4) {
+          continue;
         }
-
-        // Create the translation map.
-        String order = color + " " + model;
-        translationMap.put(order, skus);
-
-        counter++;
+        addTranslation(chars[0], chars[1], chars[2], chars[3]);
       }
 
       bufferedReader.close();
@@ -177,6 +328,43 @@ public class Warehouse {
 
   }
 
+  /**
+   * Record the fascia of a minivan from a row of the translation table, and create their levels.
+   *
+   * @param color the color of the minivan
+   * @param model the model of the minivan
+   * @param front the SKU of the front fascia
+   * @param back the SKU of the back fascia
+   */
+  private void addTranslation(String color, String model, String front, String back) {
+    String[] skus = {front, back};
+
+    // Create the level objects for the front and back fascia.
+    addLevel(skus[0], color, model);
+    addLevel(skus[1], color, model);
+
+    // Create the translation map.
+    String order = color + " " + model;
+    translationMap.put(order, skus);
+    if (getLevel(skus[0]) != null && getLevel(skus[1]) != null) {
+      minivans.add(new String[] {model, color});
+    }
+  }
+
+  /**
+   * Create the level that stores a SKU, if the SKU has a location in the traversal table.
+   *
+   * @param sku the SKU of the fascia
+   * @param color the color of the car
+   * @param model the model of the car
+   */
+  private void addLevel(String sku, String color, String model) {
+    int skuId = skuTable.getId(sku);
+    if (skuId >= 0) {
+      levels[skuId] = new Level(sku, color, model, Level.FULL_STOCK);
+    }
+  }
+
   /**
    * Adjusts the stock of the warehouse levels.
    * 
@@ -192,11 +380,8 @@ public class Warehouse {
       while ((line = bufferedReader.readLine()) != null) {
 
         String[] chars = line.split(",");
-        String sku =
-            getSkuFromLocation(chars[0] + " " + chars[1] + " " + chars[2] + " " + chars[3]);
-        Level level = getLevel(sku);
-        int amnt = Integer.valueOf(chars[4]);
-        level.setStock(amnt);
+        int slot = topology.getSlot(chars[0] + " " + chars[1] + " " + chars[2] + " " + chars[3]);
+        adjustLevel(slot, Integer.valueOf(chars[4]));
 
       }
 
@@ -208,6 +393,19 @@ public class Warehouse {
 
   }
 
+  /**
+   * Set the stock of the level in a slot, from a row of the initial stock file.
+   *
+   * @param slot the slot, or -1 if the location is not in the warehouse
+   * @param amount the stock of the level
+   */
+  private void adjustLevel(int slot, int amount) {
+    Level level = slot < 0 ? null : getLevelAt(slot);
+    if (level != null) {
+      level.setStock(amount);
+    }
+  }
+
   /**
    * Return a reference to a Level object by specifying its unique SKU.
    * 
@@ -215,39 +413,132 @@ public class Warehouse {
    * @return the level that stores the SKU
    */
   public Level getLevel(String sku) {
+    return getLevel(skuTable.getId(sku));
+  }
 
-    int zone;
-
-    String[] location = getLocation(sku).split(" ");
-    if (location[0] == "A") {
-      zone = 0;
-    } else {
-      zone = 1;
+  /**
+   * Return a reference to a Level object by specifying the id of its SKU. This is a single array
+   * access, so it is safe to call as often as needed.
+   *
+   * @param skuId the id of the SKU of the fascia the level stores
+   * @return the level that stores the SKU, or null if there is no such level
+   */
+  public Level getLevel(int skuId) {
+    if (skuId < 0 || skuId >= levels.length) {
+      return null;
     }
+    return levels[skuId];
+  }
 
-    int aisle = Integer.parseInt(location[1]);
-    int rack = Integer.parseInt(location[2]);
-    int lev = Integer.parseInt(location[3]);
-
-    Level level = levels[zone][aisle][rack][lev];
+  /**
+   * Return the number of SKUs stored in this warehouse; their ids run from 0 to this number.
+   *
+   * @return the number of SKUs
+   */
+  public int getSkuCount() {
+    return levels.length;
+  }
 
-    return level;
+  /**
+   * Return the dense int id of a SKU, or -1 if the SKU is not stored in this warehouse.
+   *
+   * @param sku the SKU
+   * @return the id of the SKU
+   */
+  public int getSkuId(String sku) {
+    return skuTable.getId(sku);
   }
 
   public String[] getSkus(String model, String color) {
     return translationMap.get(color + " " + model);
   }
 
+  /**
+   * Return every minivan that can be ordered from this warehouse.
+   *
+   * @return the minivans, each as {model, color}
+   */
+  public List<String[]> getMinivans() {
+    return minivans;
+  }
+
   public String getSkuFromLocation(String loc) {
-    return inverseLocations.get(loc);
+    int slot = topology.getSlot(loc);
+    if (slot < 0 || slotSkus[slot] < 0) {
+      return null;
+    }
+    return skuTable.getSku(slotSkus[slot]);
+  }
+
+  /**
+   * Return the directory the configuration of this warehouse was read from.
+   *
+   * @return the configuration directory
+   */
+  public File getConfigDir() {
+    return configDir;
+  }
+
+  /**
+   * Return the layout of this warehouse.
+   *
+   * @return the topology
+   */
+  public Topology getTopology() {
+    return topology;
   }
 
+  /**
+   * Return what builds the pick paths of this warehouse.
+   *
+   * @return the traversal table and route optimizer of this warehouse
+   */
+  public WarehousePicking getPicking() {
+    return picking;
+  }
+
+  /**
+   * Return the level stored in a slot, or null if the slot is empty.
+   *
+   * @param slot the slot
+   * @return the level in the slot
+   */
+  public Level getLevelAt(int slot) {
+    return slotSkus[slot] < 0 ? null : levels[slotSkus[slot]];
+  }
+
+  /**
+   * Return the pick request with an ID. A request that was archived when its truck left is read
+   * back from the archive and kept in memory again.
+   *
+   * @param id the pick request ID
+   * @return the pick request, or null if there is no such request
+   */
   public PickRequest getPickRequest(String id) {
-    return requests.get(id);
+    PickRequest request = requests.get(id);
+    RequestArchive currentArchive = archive;
+    if (request != null || currentArchive == null) {
+      return request;
+    }
+
+    synchronized (currentArchive) {
+      request = requests.get(id);
+      int number = PickRequest.parseNumber(id);
+      if (request == null && currentArchive.contains(number)) {
+        try {
+          request = currentArchive.restore(number);
+          requests.put(id, request);
+        } catch (IOException ex) {
+          ex.printStackTrace();
+        }
+      }
+    }
+    return request;
   }
 
   public String getLocation(String se) {
-    return locations.get(se);
+    int skuId = skuTable.getId(se);
+    return skuId < 0 ? null : slotLocations[skuSlots[skuId]];
   }
 
   public Worker getWorker(String name) {
@@ -258,6 +549,24 @@ public class Warehouse {
     workers.put(wo.getName(), wo);
   }
 
+  /**
+   * Return every worker of the warehouse.
+   *
+   * @return the workers
+   */
+  public Collection<Worker> getWorkers() {
+    return workers.values();
+  }
+
+  /**
+   * Return the number of the next pick request to be created in this warehouse, and reserve it.
+   *
+   * @return the request number
+   */
+  public int nextRequestNumber() {
+    return nextRequestNumber.getAndIncrement();
+  }
+
   public void addPickRequest(PickRequest pr) {
     requests.put(pr.getId(), pr);
   }
@@ -270,12 +579,319 @@ public class Warehouse {
     loadedRequests.remove(pr);
   }
 
-  public ArrayList<PickRequest> getLoadedRequests() {
-    return loadedRequests;
+  /**
+   * Return the pick requests that are on a truck, in the order they were loaded.
+   *
+   * @return a copy of the loaded pick requests
+   */
+  public List<PickRequest> getLoadedRequests() {
+    synchronized (loadedRequests) {
+      return new ArrayList<PickRequest>(loadedRequests);
+    }
   }
 
   public void removePickRequest(PickRequest pr) {
-    requests.remove(pr);
+    requests.remove(pr.getId());
+  }
+
+  /**
+   * Archive pick requests once their truck has left, instead of keeping them in memory.
+   *
+   * @param archive where departed pick requests go, or null to keep them in memory
+   */
+  public void setArchive(RequestArchive archive) {
+    this.archive = archive;
+  }
+
+  /**
+   * Return where departed pick requests go.
+   *
+   * @return the archive, or null if pick requests are kept in memory
+   */
+  public RequestArchive getArchive() {
+    return archive;
+  }
+
+  /**
+   * Record that the truck at a dock has left. With an archive, the pick requests on it are written
+   * to the archive and dropped from memory.
+   *
+   * @param dock the dock
+   */
+  public void truckDeparted(Dock dock) {
+    List<PickRequest> departed = dock.recordDeparture();
+    RequestArchive currentArchive = archive;
+    if (currentArchive == null) {
+      return;
+    }
+    for (PickRequest request : departed) {
+      try {
+        currentArchive.append(request);
+      } catch (IOException ex) {
+        ex.printStackTrace();
+        continue; // Keep the request in memory.
+      }
+      requests.remove(request.getId());
+      loadedRequests.remove(request);
+    }
+  }
+
+  /**
+   * Add the ID of pallets that have reached the marshalling area.
+   *
+   * @param id the pick request ID
+   */
+  public void addMarshallingId(String id) {
+    marshallingIds.add(id);
+  }
+
+  /**
+   * Take the ID of the pallets that have waited longest in the marshalling area.
+   *
+   * @return the pick request ID, or null if the marshalling area is empty
+   */
+  public String pollMarshallingId() {
+    return marshallingIds.poll();
+  }
+
+  /**
+   * Remove the ID of pallets from the marshalling area.
+   *
+   * @param id the pick request ID
+   * @return true, if the pallets were in the marshalling area
+   */
+  public boolean removeMarshallingId(String id) {
+    return marshallingIds.remove(id);
+  }
+
+  /**
+   * Check if any pallets are waiting in the marshalling area.
+   *
+   * @return true, if the marshalling area is not empty
+   */
+  public boolean hasMarshallingIds() {
+    return !marshallingIds.isEmpty();
+  }
+
+  /**
+   * Return the number of pallets waiting in the marshalling area.
+   *
+   * @return the number of pick request IDs waiting to be sequenced
+   */
+  public int getMarshallingCount() {
+    return marshallingIds.size();
+  }
+
+  /**
+   * Add the ID of pallets that have reached the loading area of their dock.
+   *
+   * @param id the pick request ID
+   */
+  public void addLoadingId(String id) {
+    int number = PickRequest.parseNumber(id);
+    Dock dock = getDockFor(number);
+    if (dock != null) {
+      dock.getLoadingArea().stage(dock.positionOf(number));
+    }
+  }
+
+  /**
+   * Remove the ID of pallets from the loading area of their dock.
+   *
+   * @param id the pick request ID
+   * @return true, if the pallets were in the loading area
+   */
+  public boolean removeLoadingId(String id) {
+    int number = PickRequest.parseNumber(id);
+    Dock dock = getDockFor(number);
+    return dock != null && dock.getLoadingArea().unstage(dock.positionOf(number));
+  }
+
+  /**
+   * Check if pallets are waiting in the loading area of their dock.
+   *
+   * @param id the pick request ID
+   * @return true, if the pallets are in the loading area
+   */
+  public boolean hasLoadingId(String id) {
+    int number = PickRequest.parseNumber(id);
+    Dock dock = getDockFor(number);
+    return dock != null && dock.getLoadingArea().isStaged(dock.positionOf(number));
+  }
+
+  /**
+   * Return the docks of the warehouse.
+   *
+   * @return the docks
+   */
+  public Dock[] getDocks() {
+    return docks;
+  }
+
+  /**
+   * Return the dock a pick request is loaded at. Requests are spread over the docks round-robin by
+   * number.
+   *
+   * @param number the pick request number
+   * @return the dock, or null if the number is not a valid pick request number
+   */
+  public Dock getDockFor(int number) {
+    return number < 1 ? null : docks[(number - 1) % docks.length];
+  }
+
+  /**
+   * Add every pick request the warehouse refers to (known requests, loaded requests, requests on a
+   * truck and the requests workers are busy with) to a map, by number.
+   *
+   * @param table the map
+   */
+  void collectRequests(Map<Integer, PickRequest> table) {
+    for (PickRequest request : requests.values()) {
+      Snapshot.collect(table, request);
+    }
+    for (PickRequest request : getLoadedRequests()) {
+      Snapshot.collect(table, request);
+    }
+    for (Dock dock : docks) {
+      dock.collectRequests(table);
+    }
+    for (Worker worker : workers.values()) {
+      if (worker instanceof Picker) {
+        Snapshot.collect(table, ((Picker) worker).getCurrentRequest());
+      } else if (worker instanceof ScanningWorker) {
+        Snapshot.collect(table, ((ScanningWorker) worker).getCurrentRequest());
+      }
+    }
+  }
+
+  /**
+   * Write the state that events change to a snapshot: the stock of every level, the pick requests,
+   * the marshalling area, the docks and the workers. Pick requests are written as references to
+   * the snapshot's table of requests. Archived requests are not written, only where they are in the
+   * archive.
+   *
+   * @param out where the state is written
+   * @throws IOException if the state cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(nextRequestNumber.get());
+
+    out.writeInt(levels.length);
+    for (Level level : levels) {
+      out.writeBoolean(level != null);
+      if (level != null) {
+        out.writeInt(level.getCurrentStock());
+        out.writeBoolean(level.isNeedRestock());
+        out.writeBoolean(level.isRestockRequested());
+        out.writeInt(level.getReserved());
+      }
+    }
+
+    List<PickRequest> known = new ArrayList<PickRequest>(requests.values());
+    out.writeInt(known.size());
+    for (PickRequest request : known) {
+      Snapshot.writeRequest(out, request);
+    }
+    List<PickRequest> loaded = getLoadedRequests();
+    out.writeInt(loaded.size());
+    for (PickRequest request : loaded) {
+      Snapshot.writeRequest(out, request);
+    }
+    Snapshot.writeStrings(out, new ArrayList<String>(marshallingIds));
+    out.writeBoolean(archive != null);
+    if (archive != null) {
+      archive.writeState(out);
+    }
+
+    out.writeInt(docks.length);
+    for (Dock dock : docks) {
+      dock.writeState(out);
+    }
+
+    List<Worker> staff = new ArrayList<Worker>(workers.values());
+    out.writeInt(staff.size());
+    for (Worker worker : staff) {
+      out.writeByte(WorkerType.of(worker).ordinal());
+      out.writeUTF(worker.getName());
+      worker.writeState(out);
+    }
+  }
+
+  /**
+   * Replace the state that events change with a state written by writeState(). The warehouse must
+   * have been set up from the same configuration as the one that wrote the snapshot.
+   *
+   * @param in where the state is read from
+   * @param table the pick requests of the snapshot, by number
+   * @param out where restored workers send their messages
+   * @throws IOException if the state cannot be read, or does not fit this warehouse
+   */
+  void readState(DataInput in, Map<Integer, PickRequest> table, CommandSink out)
+      throws IOException {
+    nextRequestNumber.set(in.readInt());
+
+    if (in.readInt() != levels.length) {
+      throw new IOException("The snapshot was taken with a different warehouse layout.");
+    }
+    for (Level level : levels) {
+      if (in.readBoolean() != (level != null)) {
+        throw new IOException("The snapshot was taken with a different warehouse layout.");
+      }
+      if (level != null) {
+        level.restore(in.readInt(), in.readBoolean(), in.readBoolean(), in.readInt());
+      }
+    }
+
+    requests.clear();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      addPickRequest(Snapshot.readRequest(in, table));
+    }
+    loadedRequests.clear();
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      loadedRequests.add(Snapshot.readRequest(in, table));
+    }
+    marshallingIds.clear();
+    Snapshot.readStrings(in, marshallingIds);
+    if (in.readBoolean()) {
+      if (archive == null) {
+        throw new IOException("The snapshot was taken with an archive of pick requests.");
+      }
+      archive.readState(in);
+    }
+
+    if (in.readInt() != docks.length) {
+      throw new IOException("The snapshot was taken with different docks.");
+    }
+    for (Dock dock : docks) {
+      dock.readState(in, table);
+    }
+
+    workers.clear();
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      WorkerType type = WorkerType.values()[in.readUnsignedByte()];
+      String name = in.readUTF();
+      Worker worker;
+      switch (type) {
+        case PICKER:
+          worker = new Picker(name, this, false);
+          break;
+        case SEQUENCER:
+          worker = new Sequencer(name, this, false);
+          break;
+        case LOADER:
+          worker = new Loader(name, this, false);
+          break;
+        default:
+          worker = new Replenisher(name, this, false);
+          break;
+      }
+      worker.readState(in, table);
+      worker.setCommandSink(out);
+      addWorker(worker);
+    }
   }
 
 }
@@ -1,55 +1,138 @@
 package warehouse_system;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * WarehousePicking builds the pick paths of one warehouse, from its traversal table and its route
+ * optimizer. Each Warehouse has its own, so warehouses with different layouts can be used side by
+ * side.
+ */
 public class WarehousePicking {
+
+  /** How often (in milliseconds) the traversal table is checked for changes. */
+  private static final long RELOAD_CHECK_INTERVAL = 1000;
+
+  /** The traversal table that pick paths are built from. */
+  private final File traversalTable;
+
+  /**
+   * The index currently in use. Requests read it once and keep using that snapshot, so a reload
+   * never changes an index out from under a request that is being built.
+   */
+  private volatile TraversalIndex index;
+
+  /** The next time (in milliseconds) the traversal table should be checked for changes. */
+  private volatile long nextReloadCheck;
+
+  /** Orders the locations of each pick path, or null to keep the order of the traversal table. */
+  private volatile RouteOptimizer optimizer;
+
+  /** Set while a thread is rebuilding the index, so only one thread reads the file at a time. */
+  private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+  /**
+   * Build pick paths from a traversal table. The table is read the first time a path is needed.
+   *
+   * @param traversalTable the traversal table
+   */
+  public WarehousePicking(File traversalTable) {
+    this(traversalTable, null);
+  }
+
+  /**
+   * Build pick paths from a traversal table, starting with an index that was already built from
+   * it. The table is only read again once it changes.
+   *
+   * @param traversalTable the traversal table
+   * @param preloaded the index of the traversal table, or null to read it when it is first needed
+   */
+  public WarehousePicking(File traversalTable, TraversalIndex preloaded) {
+    this.traversalTable = traversalTable;
+    this.index = preloaded;
+  }
+
   /**
    * Based on the Integer SKUs in List 'skus', return a List of locations, where each location is a
    * String containing 5 pieces of information: the zone character (in the range ['A'..'B']), the
    * aisle number (an integer in the range [0..1]), the rack number (an integer in the range
    * ([0..2]), and the level on the rack (an integer in the range [0..3]), and the SKU number.
-   * 
+   *
    * @param skus the list of SKUs to retrieve.
    * @return the List of locations.
    */
-  public static List<String> optimize(List<String> skus) {
-    List<String> path = new ArrayList<String>();
+  public List<String> optimize(List<String> skus) {
+    TraversalIndex current = getIndex();
+    if (current == null) {
+      return new ArrayList<String>();
+    }
+    RouteOptimizer router = optimizer;
+    return router == null ? current.path(skus) : router.route(current, skus);
+  }
 
-    try {
-      BufferedReader bufferedReader =
-          new BufferedReader(new FileReader("warehouse_config/traversal_table.csv"));
+  /**
+   * Order pick paths with a route optimizer from now on.
+   *
+   * @param router the route optimizer, or null to keep the order of the traversal table
+   */
+  public void setRouteOptimizer(RouteOptimizer router) {
+    optimizer = router;
+  }
 
-      String line;
-      while ((line = bufferedReader.readLine()) != null) {
-        String[] values = line.split(",");
-        int frequency = countFrequency(skus, values[4]);
+  /**
+   * Return the route optimizer pick paths are ordered with.
+   *
+   * @return the route optimizer, or null if the order of the traversal table is kept
+   */
+  public RouteOptimizer getRouteOptimizer() {
+    return optimizer;
+  }
 
-        for (int i = 0; i < frequency; i++) {
-          path.add(values[0] + " " + values[1] + " " + values[2] + " " + values[3]);
+  /**
+   * Return the traversal index, loading it the first time it is needed. Afterwards the traversal
+   * table is checked for changes at most once every RELOAD_CHECK_INTERVAL milliseconds; when it has
+   * changed, one caller rebuilds the index while everyone else keeps using the old one.
+   *
+   * @return the current traversal index, or null if the traversal table could not be read
+   */
+  public TraversalIndex getIndex() {
+    TraversalIndex current = index;
+    if (current == null) {
+      synchronized (this) {
+        if (index == null) {
+          reload();
         }
+        return index;
+      }
+    }
 
+    long now = System.currentTimeMillis();
+    if (now >= nextReloadCheck && reloading.compareAndSet(false, true)) {
+      try {
+        nextReloadCheck = now + RELOAD_CHECK_INTERVAL;
+        if (traversalTable.lastModified() != current.getLastModified()) {
+          reload();
+        }
+      } finally {
+        reloading.set(false);
       }
+    }
+    return index;
+  }
 
-      bufferedReader.close();
+  /**
+   * Read the traversal table from disk and publish it as the new index. If the file cannot be read,
+   * the old index (if any) stays in use.
+   */
+  public void reload() {
+    try {
+      index = TraversalIndex.load(traversalTable);
     } catch (IOException ex) {
-      // TODO Auto-generated catch block
       ex.printStackTrace();
     }
-
-    return path;
   }
 
-  private static int countFrequency(List<String> list, String element) {
-    int count = 0;
-    for (String item : list) {
-      if (item.equals(element)) {
-        count++;
-      }
-    }
-    return count;
-  }
 }
@@ -0,0 +1,780 @@
+package warehouse_system;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * A WarehouseSimulator runs a shift of the warehouse on a virtual clock, to see how many workers
+ * a warehouse needs before they are hired. Like the WorkloadGenerator it runs its own Organizer on
+ * a private copy of the warehouse and plays every worker, but each thing a worker does takes time:
+ * walking between locations (measured with the distance model of the route optimizer, at a
+ * walking speed), picking, dropping fascia off at marshalling, scanning, loading and refilling a
+ * level. Orders arrive at random, pickers occasionally pick the wrong fascia, and every worker
+ * takes a break every so often, once it is idle.
+ *
+ * <p>What happens next is kept on an agenda, ordered by virtual time: the next order, and the
+ * next thing each worker will have done. The clock jumps from one to the next, and each is handed
+ * to the Organizer as an event that starts with its time stamp, so the Organizer's commands (and
+ * its LifecycleTracer) follow virtual time. Orders stop arriving at the end of the shift; the
+ * simulation then runs until every worker has nothing left to do. It reports the makespan, the
+ * pick requests loaded per hour, how busy each type of worker was, and how long stock ran out.
+ * Orders that never made up a batch are reported as left waiting; a batching window in
+ * batching.csv lets them go out in a short batch.
+ *
+ * <p>The simulation is read from simulation.csv in the configuration directory, one "key,value"
+ * pair per line: pickers, sequencers, loaders, replenishers, shift_s, order_interval_s,
+ * walk_speed, pick_s, drop_s, scan_s, load_s, replenish_s, mis_pick, break_every_s,
+ * break_length_s and seed. Times are in seconds, and the walking speed in units of the distance
+ * model per second.
+ */
+public class WarehouseSimulator {
+
+  /** What an entry of the agenda is. */
+  private enum Kind {
+    /** A new order arrives. */
+    ORDER,
+    /** A worker finishes the next thing it was told to do. */
+    STEP,
+    /** A worker is due a break. */
+    BREAK_DUE,
+    /** A worker comes back from a break. */
+    BREAK_END
+  }
+
+  /** Chooses when orders arrive, what is ordered and which picks go wrong. */
+  private Random random;
+
+  /** The simulator's private copy of the warehouse. */
+  private Warehouse warehouse;
+
+  /** The simulator's private organizer, which tells the simulated workers what to do. */
+  private Organizer organizer;
+
+  /** Collects the commands the private organizer gives. */
+  private WorkloadGenerator.CapturingSink commands = new WorkloadGenerator.CapturingSink();
+
+  /** Used to read the commands. */
+  private EventTokenizer tokens = new EventTokenizer();
+
+  /** Measures how long the pick requests spend in each stage, in virtual milliseconds. */
+  private LifecycleTracer tracer = new LifecycleTracer();
+
+  /** Measures walking distances when the warehouse has no route optimizer. */
+  private RouteOptimizer traversal;
+
+  /** Every minivan that can be ordered, as {model, color}. */
+  private List<String[]> minivans;
+
+  /** The number of workers of each type. */
+  private Map<WorkerType, Integer> staff = new EnumMap<WorkerType, Integer>(WorkerType.class);
+
+  /** How long orders arrive for, in milliseconds. */
+  private long shiftMillis = 8 * 3_600_000L;
+
+  /** The mean time between two orders, in milliseconds. */
+  private double orderInterval = 30_000;
+
+  /** How far a worker walks per second, in units of the distance model. */
+  private double walkSpeed = 1.0;
+
+  /** How long picking one fascia takes, in milliseconds. */
+  private long pickMillis = 10_000;
+
+  /** How long dropping fascia off at the marshalling area takes, in milliseconds. */
+  private long dropMillis = 20_000;
+
+  /** How long scanning a pallet takes, in milliseconds. */
+  private long scanMillis = 15_000;
+
+  /** How long loading pallets onto a truck takes, in milliseconds. */
+  private long loadMillis = 30_000;
+
+  /** How long refilling one level takes, in milliseconds. */
+  private long replenishMillis = 60_000;
+
+  /** The chance that a picker picks the wrong fascia. */
+  private double misPickProbability = 0.02;
+
+  /** How long a worker works between two breaks, in milliseconds; 0 for no breaks. */
+  private long breakEvery = 2 * 3_600_000L;
+
+  /** How long a break lasts, in milliseconds. */
+  private long breakLength = 15 * 60_000L;
+
+  /** The workers, in the order they reported ready. */
+  private List<Actor> actors = new ArrayList<Actor>();
+
+  /** The workers, by name. */
+  private Map<String, Actor> byName = new HashMap<String, Actor>();
+
+  /** What happens next, the earliest first. */
+  private PriorityQueue<Activity> agenda = new PriorityQueue<Activity>(64, Activity.ORDER);
+
+  /** Pickers standing at an empty level, waiting for it to be refilled. */
+  private List<Actor> waiting = new ArrayList<Actor>();
+
+  /** The virtual time, in milliseconds since the start of the shift. */
+  private long clock;
+
+  /** The number of entries put on the agenda so far; breaks ties between equal times. */
+  private long scheduled;
+
+  /** Where the events are written, or null. */
+  private Writer events;
+
+  /** The number of events handed to the organizer. */
+  private long handled;
+
+  /** The number of orders that arrived. */
+  private long ordersReceived;
+
+  /** The number of pick requests loaded onto trucks. */
+  private long requestsLoaded;
+
+  /** The number of picks that went wrong. */
+  private long misPicks;
+
+  /** The number of times a picker found a level empty. */
+  private long stockOuts;
+
+  /** The time pickers spent waiting at empty levels, in milliseconds. */
+  private long stockOutMillis;
+
+  /** The time during which some pick request was waiting for stock, in milliseconds. */
+  private long blockedMillis;
+
+  /** The time the last event happened, in milliseconds. */
+  private long makespan;
+
+  /**
+   * Instantiate a simulator for the warehouse configured in a directory, with the settings of
+   * simulation.csv in that directory if there is one.
+   *
+   * @param configDir the directory holding the warehouse's configuration files
+   */
+  public WarehouseSimulator(File configDir) {
+    this.warehouse = new Warehouse(configDir);
+    this.organizer = new Organizer(warehouse, commands);
+    this.organizer.setTracer(tracer);
+    this.traversal = new RouteOptimizer(warehouse.getTopology(), RouteOptimizer.Strategy.TRAVERSAL);
+    this.minivans = warehouse.getMinivans();
+    staff.put(WorkerType.PICKER, 4);
+    staff.put(WorkerType.SEQUENCER, 1);
+    staff.put(WorkerType.LOADER, 1);
+    staff.put(WorkerType.REPLENISHER, 1);
+    this.random = new Random(1);
+    load(new File(configDir, "simulation.csv"));
+  }
+
+  /**
+   * Read settings from a simulation file. Lines that cannot be read are skipped.
+   *
+   * @param file the simulation file; nothing is read if it does not exist
+   */
+  private void load(File file) {
+    if (!file.exists()) {
+      return;
+    }
+
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] chars = line.split(",");
+        if (chars.length >= 2) {
+          set(chars[0].trim(), chars[1].trim());
+        }
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Change a setting, as it would be written in simulation.csv. Must be called before run().
+   *
+   * @param key the name of the setting, e.g. "pickers"
+   * @param value its value
+   * @return true, if the setting exists and its value could be read
+   */
+  public boolean set(String key, String value) {
+    try {
+      switch (key) {
+        case "pickers":
+          staff.put(WorkerType.PICKER, Integer.parseInt(value));
+          break;
+        case "sequencers":
+          staff.put(WorkerType.SEQUENCER, Integer.parseInt(value));
+          break;
+        case "loaders":
+          staff.put(WorkerType.LOADER, Integer.parseInt(value));
+          break;
+        case "replenishers":
+          staff.put(WorkerType.REPLENISHER, Integer.parseInt(value));
+          break;
+        case "shift_s":
+          shiftMillis = millis(value);
+          break;
+        case "order_interval_s":
+          orderInterval = Double.parseDouble(value) * 1000;
+          break;
+        case "walk_speed":
+          walkSpeed = Double.parseDouble(value);
+          break;
+        case "pick_s":
+          pickMillis = millis(value);
+          break;
+        case "drop_s":
+          dropMillis = millis(value);
+          break;
+        case "scan_s":
+          scanMillis = millis(value);
+          break;
+        case "load_s":
+          loadMillis = millis(value);
+          break;
+        case "replenish_s":
+          replenishMillis = millis(value);
+          break;
+        case "mis_pick":
+          misPickProbability = Double.parseDouble(value);
+          break;
+        case "break_every_s":
+          breakEvery = millis(value);
+          break;
+        case "break_length_s":
+          breakLength = millis(value);
+          break;
+        case "seed":
+          random = new Random(Long.parseLong(value));
+          break;
+        default:
+          return false;
+      }
+    } catch (NumberFormatException ex) {
+      ex.printStackTrace();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Convert a number of seconds to milliseconds.
+   *
+   * @param seconds the seconds, possibly with a fraction
+   * @return the milliseconds
+   */
+  private static long millis(String seconds) {
+    return Math.max(0, Math.round(Double.parseDouble(seconds) * 1000));
+  }
+
+  /**
+   * Write every event handed to the organizer to a file as well, with its time stamp, so the shift
+   * can be replayed by Organizer.main. Must be called before run().
+   *
+   * @param writer where the events are written
+   */
+  public void setEventWriter(Writer writer) {
+    this.events = writer;
+  }
+
+  /**
+   * Return the organizer the simulated workers work for.
+   *
+   * @return the organizer
+   */
+  public Organizer getOrganizer() {
+    return organizer;
+  }
+
+  /**
+   * Run the shift: the workers report ready, orders arrive until the end of the shift, and the
+   * workers carry on until they have nothing left to do.
+   *
+   * @throws IOException if the events could not be written
+   */
+  public void run() throws IOException {
+    for (WorkerType type : WorkerType.values()) {
+      for (int i = 0; i < staff.get(type); i++) {
+        Actor actor = new Actor(type, type.getLabel().substring(0, 1).toLowerCase() + i);
+        actors.add(actor);
+        byName.put(actor.name, actor);
+        if (breakEvery > 0 && breakEvery < shiftMillis) {
+          schedule(breakEvery, Kind.BREAK_DUE, actor);
+        }
+      }
+    }
+    for (Actor actor : actors) {
+      handle(actor.type.getLabel() + " " + actor.name + " ready");
+    }
+    scheduleOrder();
+
+    Activity activity;
+    while ((activity = agenda.poll()) != null) {
+      if (organizer.getStockLedger().getWaiting() > 0) {
+        blockedMillis += activity.time - clock;
+      }
+      clock = activity.time;
+      Actor actor = activity.actor;
+      switch (activity.kind) {
+        case ORDER:
+          String[] minivan = minivans.get(random.nextInt(minivans.size()));
+          ordersReceived++;
+          handle("Order " + minivan[0] + " " + minivan[1]);
+          scheduleOrder();
+          break;
+        case STEP:
+          actor.active = false;
+          Step step = actor.steps.poll();
+          if (step.sku != null && warehouse.getLevel(step.sku).getCurrentStock() == 0) {
+            // The level ran out before the picker got there; it waits for a replenisher.
+            stockOuts++;
+            actor.waitingSince = clock;
+            actor.steps.addFirst(new Step(pickMillis, step.event, step.sku));
+            waiting.add(actor);
+            break;
+          }
+          actor.busy += step.millis;
+          handle(step.event);
+          if (actor.type == WorkerType.LOADER && step.event.contains(" loads ")) {
+            requestsLoaded++;
+          }
+          if (!actor.active && actor.waitingSince < 0) {
+            scheduleStep(actor);
+          }
+          if (actor.isIdle() && actor.breakDue) {
+            takeBreak(actor);
+          }
+          break;
+        case BREAK_DUE:
+          if (actor.isIdle()) {
+            takeBreak(actor);
+          } else {
+            actor.breakDue = true;
+          }
+          break;
+        case BREAK_END:
+          actor.onBreak = false;
+          actor.breaks += breakLength;
+          handle(actor.type.getLabel() + " " + actor.name + " ready");
+          if (clock + breakEvery < shiftMillis) {
+            schedule(clock + breakEvery, Kind.BREAK_DUE, actor);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    if (events != null) {
+      events.flush();
+    }
+  }
+
+  /**
+   * Put the next order on the agenda, unless it would arrive after the end of the shift. The time
+   * between orders is drawn from an exponential distribution.
+   */
+  private void scheduleOrder() {
+    long next = clock + Math.round(-orderInterval * Math.log(1 - random.nextDouble()));
+    if (next < shiftMillis) {
+      schedule(next, Kind.ORDER, null);
+    }
+  }
+
+  /**
+   * Put an entry on the agenda.
+   *
+   * @param time when it happens, in milliseconds
+   * @param kind what it is
+   * @param actor the worker it concerns, or null for an order; a step is the head of its steps
+   */
+  private void schedule(long time, Kind kind, Actor actor) {
+    agenda.add(new Activity(time, scheduled++, kind, actor));
+  }
+
+  /**
+   * Send an idle worker on a break, and put its return on the agenda.
+   *
+   * @param actor the worker
+   * @throws IOException if the event could not be written
+   */
+  private void takeBreak(Actor actor) throws IOException {
+    actor.breakDue = false;
+    actor.onBreak = true;
+    handle(actor.type.getLabel() + " " + actor.name + " takes a break");
+    schedule(clock + breakLength, Kind.BREAK_END, actor);
+  }
+
+  /**
+   * Hand an event to the organizer at the current time, then queue up what the workers it
+   * commanded will do and let pickers at levels that were refilled carry on.
+   *
+   * @param event the event, without a time stamp
+   * @throws IOException if the event could not be written
+   */
+  private void handle(String event) throws IOException {
+    String line = clock + " " + event;
+    organizer.handle(line);
+    if (events != null) {
+      events.write(line);
+      events.write('\n');
+    }
+    handled++;
+    makespan = clock;
+    readCommands();
+
+    for (Iterator<Actor> iterator = waiting.iterator(); iterator.hasNext();) {
+      Actor actor = iterator.next();
+      if (warehouse.getLevel(actor.steps.peek().sku).getCurrentStock() > 0) {
+        iterator.remove();
+        stockOutMillis += clock - actor.waitingSince;
+        actor.waitingSince = -1;
+        scheduleStep(actor);
+      }
+    }
+  }
+
+  /**
+   * Read the commands the private organizer gave while handling the last event, and queue up what
+   * each commanded worker will do and how long it takes.
+   */
+  private void readCommands() {
+    for (String command : commands.drain()) {
+      tokens.reset(command);
+      WorkerType type = WorkerType.of(tokens, 0);
+      if (type == null || tokens.count() < 3) {
+        continue;
+      }
+      Actor actor = byName.get(tokens.text(1));
+      if (actor == null) {
+        continue;
+      }
+      String name = actor.name;
+
+      switch (type) {
+        case PICKER:
+          if (tokens.matches(2, "go")) {
+            Picker picker = (Picker) warehouse.getWorker(name);
+            PickRequest request = picker.getCurrentRequest();
+            actor.steps.clear();
+            if (request.isDone()) {
+              actor.steps.add(new Step(walk(picker.getLocation(), null) + dropMillis,
+                  "Picker " + name + " goes to marshalling", null));
+            } else {
+              String location = request.getLocation();
+              String sku = warehouse.getSkuFromLocation(location);
+              long millis = walk(picker.getLocation(), location) + pickMillis;
+              String wrongSku = random.nextDouble() < misPickProbability ? wrongSku(sku) : null;
+              if (wrongSku != null) {
+                // Pick the wrong fascia; the organizer will repeat the command.
+                misPicks++;
+                actor.steps.add(new Step(millis, "Picker " + name + " picks " + wrongSku, null));
+              } else {
+                actor.steps.add(new Step(millis, "Picker " + name + " picks " + sku, sku));
+              }
+            }
+          }
+          break;
+        case SEQUENCER:
+          if (tokens.matches(2, "sequence")) {
+            String id = ((ScanningWorker) warehouse.getWorker(name)).getPrId();
+            actor.steps.add(new Step(scanMillis, "Sequencer " + name + " scans " + faxOrder(id),
+                null));
+          }
+          break;
+        case LOADER:
+          if (tokens.matches(2, "load")) {
+            String id = ((ScanningWorker) warehouse.getWorker(name)).getPrId();
+            actor.steps.add(new Step(scanMillis, "Loader " + name + " scans " + faxOrder(id),
+                null));
+            actor.steps.add(new Step(loadMillis, "Loader " + name + " loads " + id, null));
+          }
+          break;
+        case REPLENISHER:
+          if (tokens.matches(2, "go")) {
+            // Walk from the depot to each level of the trip in turn, and back.
+            String from = null;
+            for (String location : ((Replenisher) warehouse.getWorker(name)).getRoute()) {
+              actor.steps.add(new Step(walk(from, location) + replenishMillis,
+                  "Replenisher " + name + " replenishes " + location, null));
+              from = location;
+            }
+            actor.steps.add(new Step(walk(from, null), "Replenisher " + name + " ready", null));
+          }
+          break;
+        default:
+          break;
+      }
+      if (!actor.active && actor.waitingSince < 0) {
+        scheduleStep(actor);
+      }
+    }
+  }
+
+  /**
+   * Put the next step of a worker on the agenda, if it has one.
+   *
+   * @param actor the worker
+   */
+  private void scheduleStep(Actor actor) {
+    Step step = actor.steps.peek();
+    if (step != null) {
+      actor.active = true;
+      schedule(clock + step.millis, Kind.STEP, actor);
+    }
+  }
+
+  /**
+   * Return how long walking from one location to another takes.
+   *
+   * @param from the location walked from, or null for the marshalling area
+   * @param to the location walked to, or null for the marshalling area
+   * @return the time in milliseconds
+   */
+  private long walk(String from, String to) {
+    RouteOptimizer router = warehouse.getPicking().getRouteOptimizer();
+    if (router == null) {
+      router = traversal;
+    }
+    return Math.round(router.distance(from, to) / walkSpeed * 1000);
+  }
+
+  /**
+   * Return a SKU a picker might pick by mistake instead of another.
+   *
+   * @param sku the SKU it should pick
+   * @return a different SKU, or null if the one drawn happens to be the right one
+   */
+  private String wrongSku(String sku) {
+    String[] minivan = minivans.get(random.nextInt(minivans.size()));
+    String wrong = warehouse.getSkus(minivan[0], minivan[1])[random.nextInt(2)];
+    return wrong.equals(sku) ? null : wrong;
+  }
+
+  /**
+   * Return the SKUs of a pick request in fax order, separated by spaces.
+   *
+   * @param id the ID of the pick request
+   * @return the SKUs
+   */
+  private String faxOrder(String id) {
+    StringBuilder builder = new StringBuilder();
+    for (String sku : warehouse.getPickRequest(id).getFaxOrder()) {
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      builder.append(sku);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Return a report of the shift: the makespan, the orders left without a pick request, the
+   * throughput, how busy each type of worker was (on shift, breaks excluded), how long stock ran
+   * out, and the time pick requests spent in each stage.
+   *
+   * @return the report
+   */
+  public String report() {
+    double hours = makespan / 3_600_000.0;
+    StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+        "Simulated a %.1f h shift: makespan %.2f h, %d events, %d orders received, %d left "
+            + "waiting for a batch.", shiftMillis / 3_600_000.0, hours, handled, ordersReceived,
+        organizer.getOrderBatcher().size()));
+    report.append(String.format(Locale.ROOT,
+        "%nThroughput: %d pick requests loaded, %.1f per hour; %d mis-picks.", requestsLoaded,
+        hours > 0 ? requestsLoaded / hours : 0, misPicks));
+    for (WorkerType type : WorkerType.values()) {
+      int count = 0;
+      long busy = 0;
+      long breaks = 0;
+      for (Actor actor : actors) {
+        if (actor.type == type) {
+          count++;
+          busy += actor.busy;
+          breaks += actor.breaks;
+        }
+      }
+      long available = count * makespan - breaks;
+      report.append(String.format(Locale.ROOT,
+          "%n  %-12s %3d workers, utilization %5.1f%%, %.2f h on break", type.getLabel(), count,
+          available > 0 ? 100.0 * busy / available : 0, breaks / 3_600_000.0));
+    }
+    report.append(String.format(Locale.ROOT,
+        "%nStock-outs: requests waited for stock during %.2f h; pickers found %d empty levels and"
+            + " waited %.2f h.", blockedMillis / 3_600_000.0, stockOuts,
+        stockOutMillis / 3_600_000.0));
+    report.append(String.format("%n")).append(tracer.report());
+    return report.toString();
+  }
+
+  /** A worker of the simulation. */
+  private static final class Actor {
+
+    /** The type of the worker. */
+    final WorkerType type;
+
+    /** The name of the worker. */
+    final String name;
+
+    /** What the worker was told to do and has not done yet, in order. */
+    final ArrayDeque<Step> steps = new ArrayDeque<Step>();
+
+    /** Whether the first of the steps is on the agenda. */
+    boolean active;
+
+    /** Whether the worker is on a break. */
+    boolean onBreak;
+
+    /** Whether the worker goes on a break as soon as it is idle. */
+    boolean breakDue;
+
+    /** When the worker started waiting at an empty level, or -1 if it is not waiting. */
+    long waitingSince = -1;
+
+    /** The time the worker spent walking and working, in milliseconds. */
+    long busy;
+
+    /** The time the worker spent on breaks, in milliseconds. */
+    long breaks;
+
+    /**
+     * Instantiate a worker.
+     *
+     * @param type the type of the worker
+     * @param name the name of the worker
+     */
+    Actor(WorkerType type, String name) {
+      this.type = type;
+      this.name = name;
+    }
+
+    /**
+     * Check whether the worker has nothing to do and is not on a break.
+     *
+     * @return true, if the worker is idle
+     */
+    boolean isIdle() {
+      return !active && !onBreak && waitingSince < 0 && steps.isEmpty();
+    }
+  }
+
+  /** Something a worker was told to do, and how long it takes. */
+  private static final class Step {
+
+    /** How long the step takes, walking included, in milliseconds. */
+    final long millis;
+
+    /** The event that reports the step done. */
+    final String event;
+
+    /** The SKU of the level picked from, or null if the step is not a pick of the right SKU. */
+    final String sku;
+
+    /**
+     * Instantiate a step.
+     *
+     * @param millis how long it takes, in milliseconds
+     * @param event the event that reports it done
+     * @param sku the SKU of the level picked from, or null
+     */
+    Step(long millis, String event, String sku) {
+      this.millis = millis;
+      this.event = event;
+      this.sku = sku;
+    }
+  }
+
+  /** An entry of the agenda. */
+  private static final class Activity {
+
+    /** Orders entries by time, and entries at the same time in the order they were scheduled. */
+    static final Comparator<Activity> ORDER = new Comparator<Activity>() {
+      @Override
+      public int compare(Activity a, Activity b) {
+        int byTime = Long.compare(a.time, b.time);
+        return byTime != 0 ? byTime : Long.compare(a.sequence, b.sequence);
+      }
+    };
+
+    /** When it happens, in milliseconds. */
+    final long time;
+
+    /** The number of entries scheduled before this one. */
+    final long sequence;
+
+    /** What it is. */
+    final Kind kind;
+
+    /** The worker it concerns, or null for an order. */
+    final Actor actor;
+
+    /**
+     * Instantiate an entry.
+     *
+     * @param time when it happens, in milliseconds
+     * @param sequence the number of entries scheduled before this one
+     * @param kind what it is
+     * @param actor the worker it concerns, or null
+     */
+    Activity(long time, long sequence, Kind kind, Actor actor) {
+      this.time = time;
+      this.sequence = sequence;
+      this.kind = kind;
+      this.actor = actor;
+    }
+  }
+
+  /**
+   * Simulate a shift and print its report. Usage: WarehouseSimulator configDir [key=value ...]
+   * [events=file], where the keys are those of simulation.csv and override it, and events names a
+   * file to write the time-stamped events to.
+   *
+   * @param args the configuration directory and options
+   * @throws IOException if the events could not be written
+   */
+  public static void main(String[] args) throws IOException {
+    WarehouseSimulator simulator = new WarehouseSimulator(new File(args[0]));
+    String eventsFile = null;
+    for (int i = 1; i < args.length; i++) {
+      String[] option = args[i].split("=", 2);
+      if (option[0].equals("events") && option.length > 1) {
+        eventsFile = option[1];
+      } else if (option.length < 2 || !simulator.set(option[0], option[1])) {
+        System.err.println("Unknown option: " + args[i]);
+      }
+    }
+
+    long start = System.nanoTime();
+    if (eventsFile != null) {
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(eventsFile), StandardCharsets.UTF_8), 1 << 16)) {
+        simulator.setEventWriter(writer);
+        simulator.run();
+      }
+    } else {
+      simulator.run();
+    }
+    System.out.println(simulator.report());
+    System.out.println(String.format(Locale.ROOT, "Simulated in %.2f s.",
+        (System.nanoTime() - start) / 1e9));
+  }
+
+}
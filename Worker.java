@@ -1,5 +1,10 @@
 package warehouse_system;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
 // TODO: Auto-generated Javadoc
 /**
  * a worker in the Warehouse.
@@ -20,6 +25,9 @@ public abstract class Worker {
   /** The wants break. */
   protected boolean wantsBreak;
 
+  /** Where the worker's messages are sent. */
+  protected CommandSink out;
+
   /**
    * creates an instance of a worker.
    *
@@ -33,6 +41,7 @@ public abstract class Worker {
     this.warehouse = war;
     this.isReady = ready;
     this.wantsBreak = false;
+    this.out = PrintStreamSink.STDOUT;
   }
 
   /**
@@ -71,6 +80,15 @@ public abstract class Worker {
     this.wantsBreak = wantsBreak;
   }
 
+  /**
+   * Sets where the worker's messages are sent.
+   *
+   * @param out the command sink
+   */
+  public void setCommandSink(CommandSink out) {
+    this.out = out;
+  }
+
   /**
    * Gets the name of the worker.
    * 
@@ -80,6 +98,29 @@ public abstract class Worker {
     return name;
   }
 
+  /**
+   * Write the state of the worker to a snapshot.
+   *
+   * @param out where the state is written
+   * @throws IOException if the state cannot be written
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeBoolean(isReady);
+    out.writeBoolean(wantsBreak);
+  }
+
+  /**
+   * Read the state of the worker written by writeState().
+   *
+   * @param in where the state is read from
+   * @param requests the pick requests of the snapshot, by number
+   * @throws IOException if the state cannot be read
+   */
+  void readState(DataInput in, Map<Integer, PickRequest> requests) throws IOException {
+    isReady = in.readBoolean();
+    wantsBreak = in.readBoolean();
+  }
+
   @Override
   public String toString() {
     return this.getClass().getSimpleName() + " " + this.name;
@@ -0,0 +1,76 @@
+package warehouse_system;
+
+/**
+ * The kinds of workers in the warehouse, as they are named in the events file.
+ */
+public enum WorkerType {
+
+  /** A worker who picks fascia from the racks. */
+  PICKER("Picker"),
+  /** A worker who sequences pallets in the marshalling area. */
+  SEQUENCER("Sequencer"),
+  /** A worker who loads pallets onto trucks. */
+  LOADER("Loader"),
+  /** A worker who refills levels that are low in stock. */
+  REPLENISHER("Replenisher");
+
+  /** The name of this type of worker in the events file. */
+  private final String label;
+
+  /**
+   * Instantiate a worker type.
+   *
+   * @param label the name of the worker type in the events file
+   */
+  private WorkerType(String label) {
+    this.label = label;
+  }
+
+  /**
+   * Return the name of this worker type in the events file.
+   *
+   * @return the label
+   */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Return the worker type named by a token of an event, or null if the token does not name one.
+   *
+   * @param tokens the tokenized event
+   * @param index the index of the token
+   * @return the worker type
+   */
+  public static WorkerType of(EventTokenizer tokens, int index) {
+    switch (tokens.length(index)) {
+      case 6:
+        return tokens.matches(index, "Picker") ? PICKER : tokens.matches(index, "Loader") ? LOADER
+            : null;
+      case 9:
+        return tokens.matches(index, "Sequencer") ? SEQUENCER : null;
+      case 11:
+        return tokens.matches(index, "Replenisher") ? REPLENISHER : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Return the type of a worker.
+   *
+   * @param worker the worker
+   * @return the type of the worker
+   */
+  public static WorkerType of(Worker worker) {
+    if (worker instanceof Picker) {
+      return PICKER;
+    } else if (worker instanceof Sequencer) {
+      return SEQUENCER;
+    } else if (worker instanceof Loader) {
+      return LOADER;
+    }
+    return REPLENISHER;
+  }
+
+}
@@ -0,0 +1,514 @@
+package warehouse_system;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A WorkloadGenerator produces an endless, valid stream of events for a warehouse, in exactly the
+ * form Organizer.handle accepts. It runs its own Organizer on a private copy of the warehouse, and
+ * plays every worker: when that Organizer gives a worker a command, the worker carries it out in a
+ * later event, just as a real worker would. Orders arrive, pickers occasionally pick the wrong
+ * fascia, idle workers take breaks and loaders occasionally unload a pallet, all at configurable
+ * rates. The stream only depends on the configuration and the seed, so it can be reproduced.
+ */
+public class WorkloadGenerator {
+
+  /** Chooses what happens next. */
+  private Random random;
+
+  /** The generator's private copy of the warehouse. */
+  private Warehouse warehouse;
+
+  /** The generator's private organizer, which tells the simulated workers what to do. */
+  private Organizer organizer;
+
+  /** Collects the commands the private organizer gives. */
+  private CapturingSink commands = new CapturingSink();
+
+  /** Used to read the commands. */
+  private EventTokenizer tokens = new EventTokenizer();
+
+  /** Every minivan that can be ordered, as {model, color}. */
+  private List<String[]> minivans;
+
+  /** The number of pickers. */
+  private int pickers = 4;
+
+  /** The number of sequencers. */
+  private int sequencers = 1;
+
+  /** The number of loaders. */
+  private int loaders = 1;
+
+  /** The number of replenishers. */
+  private int replenishers = 1;
+
+  /** The chance that any event is a new order. */
+  private double orderRate = 0.15;
+
+  /** The chance that a picker picks the wrong fascia. */
+  private double misPickProbability = 0.02;
+
+  /** The chance, per event, that one idle worker takes a break. */
+  private double breakProbability = 0.002;
+
+  /** How many events a break lasts. */
+  private int breakLength = 200;
+
+  /** The chance that a loader unloads the pallets it just loaded. */
+  private double unloadProbability = 0.005;
+
+  /** The type of each worker. */
+  private List<WorkerType> types = new ArrayList<WorkerType>();
+
+  /** The name of each worker. */
+  private List<String> names = new ArrayList<String>();
+
+  /** The index of each worker, by name. */
+  private Map<String, Integer> indices = new HashMap<String, Integer>();
+
+  /** The events each worker will produce next, in order. */
+  private List<ArrayDeque<String>> pending = new ArrayList<ArrayDeque<String>>();
+
+  /** The event number at which each worker's break ends, or -1 if it is not on a break. */
+  private List<Long> breakEnds = new ArrayList<Long>();
+
+  /** Events that must come next, before anything random happens. */
+  private ArrayDeque<String> queued = new ArrayDeque<String>();
+
+  /** The loader that will unload the pallets it is loading now, or -1. */
+  private int unloadAfter = -1;
+
+  /** The ID of the pallets that will be unloaded. */
+  private String unloadId;
+
+  /** Whether the workers have been created yet. */
+  private boolean started;
+
+  /** The number of events produced so far. */
+  private long produced;
+
+  /**
+   * Instantiate a generator for the warehouse configured in a directory.
+   *
+   * @param configDir the directory holding the warehouse's configuration files
+   * @param seed the seed for every random choice
+   */
+  public WorkloadGenerator(File configDir, long seed) {
+    this.random = new Random(seed);
+    this.warehouse = new Warehouse(configDir);
+    this.organizer = new Organizer(warehouse, commands);
+    this.minivans = warehouse.getMinivans();
+  }
+
+  /**
+   * Set the number of workers of each type. Must be called before the first event is produced.
+   *
+   * @param pickers the number of pickers
+   * @param sequencers the number of sequencers
+   * @param loaders the number of loaders
+   * @param replenishers the number of replenishers
+   */
+  public void setWorkers(int pickers, int sequencers, int loaders, int replenishers) {
+    this.pickers = pickers;
+    this.sequencers = sequencers;
+    this.loaders = loaders;
+    this.replenishers = replenishers;
+  }
+
+  /**
+   * Set the chance that any event is a new order.
+   *
+   * @param orderRate a probability between 0 and 1
+   */
+  public void setOrderRate(double orderRate) {
+    this.orderRate = orderRate;
+  }
+
+  /**
+   * Set the chance that a picker picks the wrong fascia.
+   *
+   * @param misPickProbability a probability between 0 and 1
+   */
+  public void setMisPickProbability(double misPickProbability) {
+    this.misPickProbability = misPickProbability;
+  }
+
+  /**
+   * Set how often idle workers take breaks, and for how long.
+   *
+   * @param breakProbability the chance, per event, that one idle worker takes a break
+   * @param breakLength how many events a break lasts
+   */
+  public void setBreaks(double breakProbability, int breakLength) {
+    this.breakProbability = breakProbability;
+    this.breakLength = breakLength;
+  }
+
+  /**
+   * Set the chance that a loader unloads the pallets it just loaded.
+   *
+   * @param unloadProbability a probability between 0 and 1
+   */
+  public void setUnloadProbability(double unloadProbability) {
+    this.unloadProbability = unloadProbability;
+  }
+
+  /**
+   * Return the next event of the stream.
+   *
+   * @return the event
+   */
+  public String next() {
+    if (!started) {
+      start();
+    }
+
+    String event = queued.poll();
+    if (event == null) {
+      event = chooseEvent();
+    }
+    produced++;
+
+    organizer.handle(event);
+    readCommands();
+    return event;
+  }
+
+  /**
+   * Pass the next events of the stream to an organizer.
+   *
+   * @param target the organizer that handles the events
+   * @param count the number of events
+   */
+  public void feed(Organizer target, long count) {
+    for (long i = 0; i < count; i++) {
+      target.handle(next());
+    }
+  }
+
+  /**
+   * Write the next events of the stream, one per line.
+   *
+   * @param writer where the events are written
+   * @param count the number of events
+   * @throws IOException if the events could not be written
+   */
+  public void writeTo(Writer writer, long count) throws IOException {
+    for (long i = 0; i < count; i++) {
+      writer.write(next());
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * Create the workers; each of them reports ready before anything else happens.
+   */
+  private void start() {
+    started = true;
+    addWorkers(WorkerType.PICKER, "p", pickers);
+    addWorkers(WorkerType.SEQUENCER, "s", sequencers);
+    addWorkers(WorkerType.LOADER, "l", loaders);
+    addWorkers(WorkerType.REPLENISHER, "r", replenishers);
+  }
+
+  /**
+   * Create workers of one type, named by a prefix and a number.
+   *
+   * @param type the type of the workers
+   * @param prefix the first letter of their names
+   * @param count the number of workers
+   */
+  private void addWorkers(WorkerType type, String prefix, int count) {
+    for (int i = 0; i < count; i++) {
+      String name = prefix + i;
+      indices.put(name, names.size());
+      types.add(type);
+      names.add(name);
+      pending.add(new ArrayDeque<String>());
+      breakEnds.add(-1L);
+      queued.add(type.getLabel() + " " + name + " ready");
+    }
+  }
+
+  /**
+   * Choose what happens next: a worker comes back from a break, a worker takes a break, a new order
+   * arrives, or a worker carries out a command.
+   *
+   * @return the event
+   */
+  private String chooseEvent() {
+    List<Integer> returning = new ArrayList<Integer>();
+    List<Integer> idle = new ArrayList<Integer>();
+    List<Integer> working = new ArrayList<Integer>();
+    for (int worker = 0; worker < names.size(); worker++) {
+      long breakEnd = breakEnds.get(worker);
+      if (breakEnd >= 0) {
+        if (breakEnd <= produced) {
+          returning.add(worker);
+        }
+      } else if (pending.get(worker).isEmpty()) {
+        idle.add(worker);
+      } else if (canAct(worker)) {
+        working.add(worker);
+      }
+    }
+
+    if (!returning.isEmpty()) {
+      int worker = returning.get(random.nextInt(returning.size()));
+      breakEnds.set(worker, -1L);
+      return types.get(worker).getLabel() + " " + names.get(worker) + " ready";
+    }
+
+    if (!idle.isEmpty() && random.nextDouble() < breakProbability) {
+      int worker = idle.get(random.nextInt(idle.size()));
+      breakEnds.set(worker, produced + breakLength);
+      return types.get(worker).getLabel() + " " + names.get(worker) + " takes a break";
+    }
+
+    if (working.isEmpty() || random.nextDouble() < orderRate) {
+      String[] minivan = minivans.get(random.nextInt(minivans.size()));
+      return "Order " + minivan[0] + " " + minivan[1];
+    }
+
+    int worker = working.get(random.nextInt(working.size()));
+    String event = pending.get(worker).poll();
+
+    if (types.get(worker) == WorkerType.PICKER && event.contains(" picks ")
+        && random.nextDouble() < misPickProbability) {
+      // Pick the wrong fascia; the organizer will repeat the command.
+      String[] minivan = minivans.get(random.nextInt(minivans.size()));
+      String[] skus = warehouse.getSkus(minivan[0], minivan[1]);
+      String wrongSku = skus[random.nextInt(2)];
+      if (!event.endsWith(" " + wrongSku)) {
+        return "Picker " + names.get(worker) + " picks " + wrongSku;
+      }
+    }
+
+    if (types.get(worker) == WorkerType.LOADER && event.contains(" loads ")
+        && random.nextDouble() < unloadProbability && othersIdle(worker)) {
+      // Unload right after loading, unless loading moves on first.
+      String id = event.substring(event.lastIndexOf(' ') + 1);
+      unloadAfter = worker;
+      unloadId = id;
+    }
+    return event;
+  }
+
+  /**
+   * Check whether every other worker of the same type has nothing to do. Pallets are only unloaded
+   * when no other loader is busy, so the unloaded pallets are next in line to be loaded again.
+   *
+   * @param worker the index of the worker
+   * @return true, if the other workers of its type are idle
+   */
+  private boolean othersIdle(int worker) {
+    for (int other = 0; other < names.size(); other++) {
+      if (other != worker && types.get(other) == types.get(worker)
+          && !pending.get(other).isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check whether a worker can carry out its next command now. A picker waits for an empty level
+   * to be restocked before picking from it.
+   *
+   * @param worker the index of the worker
+   * @return true, if the worker can act
+   */
+  private boolean canAct(int worker) {
+    if (types.get(worker) != WorkerType.PICKER) {
+      return true;
+    }
+    Picker picker = (Picker) warehouse.getWorker(names.get(worker));
+    PickRequest request = picker.getCurrentRequest();
+    if (request.isDone()) {
+      return true;
+    }
+    Level level = warehouse.getLevel(warehouse.getSkuFromLocation(request.getLocation()));
+    return level.getCurrentStock() > 0;
+  }
+
+  /**
+   * Read the commands the private organizer gave while handling the last event, and queue up what
+   * each commanded worker will do.
+   */
+  private void readCommands() {
+    for (String command : commands.drain()) {
+      tokens.reset(command);
+      WorkerType type = WorkerType.of(tokens, 0);
+      if (type == null || tokens.count() < 3) {
+        continue;
+      }
+      Integer worker = indices.get(tokens.text(1));
+      if (worker == null) {
+        continue;
+      }
+      String name = names.get(worker);
+
+      switch (type) {
+        case PICKER:
+          if (tokens.matches(2, "go")) {
+            PickRequest request = ((Picker) warehouse.getWorker(name)).getCurrentRequest();
+            pending.get(worker).clear();
+            if (request.isDone()) {
+              pending.get(worker).add("Picker " + name + " goes to marshalling");
+            } else {
+              String sku = warehouse.getSkuFromLocation(request.getLocation());
+              pending.get(worker).add("Picker " + name + " picks " + sku);
+            }
+          }
+          break;
+        case SEQUENCER:
+          if (tokens.matches(2, "sequence")) {
+            String id = ((ScanningWorker) warehouse.getWorker(name)).getPrId();
+            pending.get(worker).add("Sequencer " + name + " scans " + faxOrder(id));
+          }
+          break;
+        case LOADER:
+          if (tokens.matches(2, "load")) {
+            String id = ((ScanningWorker) warehouse.getWorker(name)).getPrId();
+            pending.get(worker).add("Loader " + name + " scans " + faxOrder(id));
+            pending.get(worker).add("Loader " + name + " loads " + id);
+          }
+          break;
+        case REPLENISHER:
+          if (tokens.matches(2, "go")) {
+            for (String location : ((Replenisher) warehouse.getWorker(name)).getRoute()) {
+              pending.get(worker).add("Replenisher " + name + " replenishes " + location);
+            }
+            pending.get(worker).add("Replenisher " + name + " ready");
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    if (unloadAfter >= 0) {
+      // Only unload if loading has not moved on: neither this loader nor any other one was handed
+      // the next pallets. The unload is the very next event, so no event in between can stage the
+      // next pallets and hand them to a loader before the loading sequence is rewound.
+      if (pending.get(unloadAfter).isEmpty() && othersIdle(unloadAfter)) {
+        queued.addFirst("Loader " + names.get(unloadAfter) + " unloads " + unloadId);
+      }
+      unloadAfter = -1;
+    }
+  }
+
+  /**
+   * Return the SKUs of a pick request in fax order, separated by spaces.
+   *
+   * @param id the ID of the pick request
+   * @return the SKUs
+   */
+  private String faxOrder(String id) {
+    StringBuilder builder = new StringBuilder();
+    for (String sku : warehouse.getPickRequest(id).getFaxOrder()) {
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      builder.append(sku);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * A CommandSink that keeps every message until it is drained.
+   */
+  static class CapturingSink implements CommandSink {
+
+    /** The messages sent since the last drain. */
+    private List<String> messages = new ArrayList<String>();
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    @Override
+    public void send(String message) {
+      messages.add(message);
+    }
+
+    /**
+     * Return the messages sent since the last drain, and forget them.
+     *
+     * @return the messages
+     */
+    public List<String> drain() {
+      List<String> drained = messages;
+      messages = new ArrayList<String>();
+      return drained;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+  }
+
+  /**
+   * Write a generated event stream to a file. Usage: WorkloadGenerator configDir events outputFile
+   * [seed=N] [pickers=N] [sequencers=N] [loaders=N] [replenishers=N] [orderRate=P] [misPick=P]
+   * [breaks=P] [breakLength=N] [unloads=P].
+   *
+   * @param args the configuration directory, the number of events, the output file and options
+   * @throws IOException if the events could not be written
+   */
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<String, String>();
+    for (int i = 3; i < args.length; i++) {
+      String[] option = args[i].split("=", 2);
+      options.put(option[0], option.length > 1 ? option[1] : "");
+    }
+
+    WorkloadGenerator generator =
+        new WorkloadGenerator(new File(args[0]), Long.parseLong(get(options, "seed", "1")));
+    generator.setWorkers(Integer.parseInt(get(options, "pickers", "4")),
+        Integer.parseInt(get(options, "sequencers", "1")),
+        Integer.parseInt(get(options, "loaders", "1")),
+        Integer.parseInt(get(options, "replenishers", "1")));
+    generator.setOrderRate(Double.parseDouble(get(options, "orderRate", "0.15")));
+    generator.setMisPickProbability(Double.parseDouble(get(options, "misPick", "0.02")));
+    generator.setBreaks(Double.parseDouble(get(options, "breaks", "0.002")),
+        Integer.parseInt(get(options, "breakLength", "200")));
+    generator.setUnloadProbability(Double.parseDouble(get(options, "unloads", "0.005")));
+
+    try (Writer writer = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(args[2]), StandardCharsets.UTF_8), 1 << 16)) {
+      generator.writeTo(writer, Long.parseLong(args[1]));
+    }
+  }
+
+  /**
+   * Return an option, or its default if it was not given.
+   *
+   * @param options the options
+   * @param key the name of the option
+   * @param defaultValue the default
+   * @return the value of the option
+   */
+  private static String get(Map<String, String> options, String key, String defaultValue) {
+    String value = options.get(key);
+    return value == null ? defaultValue : value;
+  }
+
+}
@@ -0,0 +1,33 @@
+package warehouse_system.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result includes the allocation rate
+ * (gc.alloc.rate and gc.alloc.rate.norm) next to the throughput. Any standard JMH command line
+ * arguments (a benchmark regex, -p zones=20, -f 2, ...) are passed through.
+ */
+public class BenchmarkRunner {
+
+  /**
+   * Run the benchmarks.
+   *
+   * @param args JMH command line arguments
+   * @throws RunnerException if a benchmark fails
+   * @throws CommandLineOptionException if the arguments are not valid
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,62 @@
+package warehouse_system.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.LoadingArea;
+
+/**
+ * Measures one loader cycle of the loading area (a pallet arrives, the next pallet is checked, taken
+ * and loaded) with different numbers of pallets already waiting on the dock.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingBenchmark {
+
+  /** The number of pallets waiting in the loading area. */
+  @Param({"16", "512"})
+  public int staged;
+
+  /** The loading area under test. */
+  private LoadingArea area;
+
+  /**
+   * Fill the loading area with the pallets of the first pick requests.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    area = new LoadingArea(1);
+    for (int number = 1; number <= staged; number++) {
+      area.stage(number);
+    }
+  }
+
+  /**
+   * Stage the pallets of one more pick request, then take and load the next ones.
+   *
+   * @return whether the next pallets were waiting
+   */
+  @Benchmark
+  public boolean cycle() {
+    area.stage(area.getNext() + staged);
+    boolean ready = area.isNextStaged();
+    area.takeReady(1);
+    area.advance();
+    return ready;
+  }
+
+}
@@ -0,0 +1,110 @@
+package warehouse_system.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.NullSink;
+import warehouse_system.Organizer;
+import warehouse_system.OrganizerMetrics;
+import warehouse_system.Warehouse;
+import warehouse_system.WorkloadGenerator;
+
+/**
+ * Measures Organizer.handle on a steady mix of events (orders, picks, marshalling, scans, loads and
+ * replenishments) with output disabled. Each operation is one event. The events are produced ahead
+ * of each iteration so producing them is not measured. With metrics, every event is timed and the
+ * queues are sampled as they would be with -Dwarehouse.metrics=true (without JMX or a CSV file).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrganizerBenchmark {
+
+  /** The number of events produced ahead of each iteration. */
+  private static final int BATCH = 1 << 20;
+
+  /** The number of zones in the warehouse. */
+  @Param({"2"})
+  public int zones;
+
+  /** Whether the organizer records latencies and queue depths. */
+  @Param({"false", "true"})
+  public boolean metrics;
+
+  /** The organizer under test. */
+  private Organizer organizer;
+
+  /** The stream the events come from. */
+  private WorkloadGenerator stream;
+
+  /** The events of the current iteration. */
+  private String[] events;
+
+  /** The index of the next event. */
+  private int next;
+
+  /**
+   * Build the warehouse and organizer once per fork.
+   *
+   * @throws IOException if the configuration could not be written
+   */
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    SyntheticWarehouse layout = new SyntheticWarehouse(zones);
+    organizer = new Organizer(new Warehouse(layout.getConfigDir()), NullSink.INSTANCE);
+    if (metrics) {
+      organizer.setMetrics(new OrganizerMetrics(64));
+    }
+    stream = new WorkloadGenerator(layout.getConfigDir(), 42);
+  }
+
+  /**
+   * Produce the events of the next iteration.
+   */
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    events = next(BATCH);
+    next = 0;
+  }
+
+  /**
+   * Handle one event.
+   */
+  @Benchmark
+  public void handle() {
+    if (next == events.length) { // Ran out within an iteration; rare and cheap.
+      events = next(BATCH);
+      next = 0;
+    }
+    organizer.handle(events[next++]);
+  }
+
+  /**
+   * Produce the next events of the stream.
+   *
+   * @param count the number of events
+   * @return the events
+   */
+  private String[] next(int count) {
+    String[] events = new String[count];
+    for (int i = 0; i < count; i++) {
+      events[i] = stream.next();
+    }
+    return events;
+  }
+
+}
@@ -0,0 +1,81 @@
+package warehouse_system.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.Warehouse;
+
+/**
+ * Measures WarehousePicking.optimize on random pick requests of eight SKUs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PickingBenchmark {
+
+  /** The number of different requests cycled through. */
+  private static final int REQUESTS = 1024;
+
+  /** The number of zones in the warehouse (24 levels each). */
+  @Param({"2", "200"})
+  public int zones;
+
+  /** The warehouse, which builds the pick paths. */
+  private Warehouse warehouse;
+
+  /** The requests, as lists of SKUs in fax order. */
+  private List<List<String>> requests;
+
+  /** The index of the next request. */
+  private int next;
+
+  /**
+   * Build the warehouse (which selects its traversal table) and the requests.
+   *
+   * @throws IOException if the configuration could not be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    SyntheticWarehouse layout = new SyntheticWarehouse(zones);
+    warehouse = new Warehouse(layout.getConfigDir());
+
+    Random random = new Random(42);
+    requests = new ArrayList<List<String>>();
+    for (int i = 0; i < REQUESTS; i++) {
+      List<String> skus = new ArrayList<String>();
+      for (int sku = 0; sku < 8; sku++) {
+        skus.add(String.valueOf(random.nextInt(layout.getSlots()) + 1));
+      }
+      requests.add(skus);
+    }
+  }
+
+  /**
+   * Build the pick path of one request.
+   *
+   * @return the path
+   */
+  @Benchmark
+  public List<String> optimize() {
+    next = (next + 1) & (REQUESTS - 1);
+    return warehouse.getPicking().optimize(requests.get(next));
+  }
+
+}
@@ -0,0 +1,119 @@
+package warehouse_system.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.NullSink;
+import warehouse_system.Organizer;
+import warehouse_system.Warehouse;
+import warehouse_system.WorkloadGenerator;
+
+/**
+ * End-to-end throughput: replays a synthetic event stream through a fresh Organizer at different
+ * warehouse sizes and numbers of pickers, with events handled one at a time or by one lane per type
+ * of worker. Each invocation replays a block of events, and the score is reported per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+  /** The number of events replayed per invocation. */
+  private static final int BLOCK = 10_000;
+
+  /** The number of zones in the warehouse (24 levels each). */
+  @Param({"2", "20", "200"})
+  public int zones;
+
+  /** The number of pickers. */
+  @Param({"1", "8", "64"})
+  public int pickers;
+
+  /** Whether the organizer handles events with one lane per type of worker. */
+  @Param({"false", "true"})
+  public boolean lanes;
+
+  /** The organizer under test. */
+  private Organizer organizer;
+
+  /** The stream the events come from. */
+  private WorkloadGenerator stream;
+
+  /** The block of events replayed by the next invocation. */
+  private String[] block;
+
+  /**
+   * Build the warehouse and organizer once per fork.
+   *
+   * @throws IOException if the configuration could not be written
+   */
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    SyntheticWarehouse layout = new SyntheticWarehouse(zones);
+    organizer = new Organizer(new Warehouse(layout.getConfigDir()), NullSink.INSTANCE);
+    stream = new WorkloadGenerator(layout.getConfigDir(), 42);
+    stream.setWorkers(pickers, 1 + pickers / 8, 1 + pickers / 16, 1 + pickers / 8);
+    if (lanes) {
+      organizer.startLanes();
+    }
+  }
+
+  /**
+   * Stop the organizer's lanes, if it has any.
+   */
+  @TearDown(Level.Trial)
+  public void tearDownTrial() {
+    organizer.stopLanes();
+  }
+
+  /**
+   * Produce the block of events replayed by the next invocation.
+   */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    block = next(BLOCK);
+  }
+
+  /**
+   * Replay one block of events.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BLOCK)
+  public void replay() {
+    for (String event : block) {
+      organizer.handle(event);
+    }
+    organizer.awaitHandled();
+  }
+
+  /**
+   * Produce the next events of the stream.
+   *
+   * @param count the number of events
+   * @return the events
+   */
+  private String[] next(int count) {
+    String[] events = new String[count];
+    for (int i = 0; i < count; i++) {
+      events[i] = stream.next();
+    }
+    return events;
+  }
+
+}
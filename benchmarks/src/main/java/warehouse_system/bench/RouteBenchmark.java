@@ -0,0 +1,107 @@
+package warehouse_system.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.RouteOptimizer;
+import warehouse_system.Topology;
+import warehouse_system.TraversalIndex;
+
+/**
+ * Measures how long RouteOptimizer takes to route random pick requests in one zone of 20 aisles
+ * of 30 racks, for each strategy. The mean length of the routes is printed after each trial, so
+ * the time each strategy takes can be weighed against how much walking it saves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+
+  /** The number of different requests cycled through. */
+  private static final int REQUESTS = 1024;
+
+  /** The routing strategy. */
+  @Param({"traversal", "sshape", "largestgap", "tsp"})
+  public String strategy;
+
+  /** The number of SKUs in each request. */
+  @Param({"8", "40"})
+  public int picks;
+
+  /** The optimizer under test. */
+  private RouteOptimizer optimizer;
+
+  /** The traversal order of the zone. */
+  private TraversalIndex index;
+
+  /** The requests, as lists of SKUs. */
+  private List<List<String>> requests;
+
+  /** The index of the next request. */
+  private int next;
+
+  /** Build the zone, its traversal order and the requests. */
+  @Setup(Level.Trial)
+  public void setUp() {
+    Topology topology = new Topology(new String[] {"A"}, new int[] {20}, new int[] {30},
+        new int[] {4});
+    List<String> skus = new ArrayList<String>();
+    List<String> locations = new ArrayList<String>();
+    for (int slot = 0; slot < topology.size(); slot++) {
+      skus.add(String.valueOf(slot + 1));
+      locations.add(topology.getLocation(slot));
+    }
+    index = TraversalIndex.of(skus, locations, 0);
+    optimizer = new RouteOptimizer(topology, RouteOptimizer.Strategy.of(strategy));
+
+    Random random = new Random(42);
+    requests = new ArrayList<List<String>>();
+    for (int i = 0; i < REQUESTS; i++) {
+      List<String> request = new ArrayList<String>();
+      for (int sku = 0; sku < picks; sku++) {
+        request.add(String.valueOf(random.nextInt(topology.size()) + 1));
+      }
+      requests.add(request);
+    }
+  }
+
+  /**
+   * Route one request.
+   *
+   * @return the route
+   */
+  @Benchmark
+  public List<String> route() {
+    next = (next + 1) & (REQUESTS - 1);
+    return optimizer.route(index, requests.get(next));
+  }
+
+  /** Print the mean length of the routes of the requests, outside the measured time. */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    double total = 0;
+    for (List<String> request : requests) {
+      total += optimizer.length(optimizer.route(index, request));
+    }
+    System.out.printf("%n%s, %d picks: mean route length %.1f%n", strategy, picks,
+        total / REQUESTS);
+  }
+
+}
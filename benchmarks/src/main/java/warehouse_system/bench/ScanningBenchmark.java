@@ -0,0 +1,89 @@
+package warehouse_system.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.EventTokenizer;
+import warehouse_system.Order;
+import warehouse_system.PickRequest;
+import warehouse_system.Sequencer;
+import warehouse_system.Warehouse;
+
+/**
+ * Measures ScanningWorker.scans on a correctly sequenced pallet, both from a tokenized event (as
+ * the Organizer does it) and from an array of SKUs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanningBenchmark {
+
+  /** The sequencer doing the scanning. */
+  private Sequencer sequencer;
+
+  /** The scan event, tokenized. */
+  private EventTokenizer tokens;
+
+  /** The scanned SKUs. */
+  private String[] scanned;
+
+  /**
+   * Build a pick request and hand it to a sequencer.
+   *
+   * @throws IOException if the configuration could not be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    SyntheticWarehouse layout = new SyntheticWarehouse(2);
+    Warehouse warehouse = new Warehouse(layout.getConfigDir());
+
+    Order[] orders = new Order[4];
+    for (int i = 0; i < 4; i++) {
+      String[] modelColor = layout.getMinivans().get(3 * i);
+      orders[i] = new Order(modelColor[0], modelColor[1],
+          warehouse.getSkus(modelColor[0], modelColor[1]));
+    }
+    PickRequest request = new PickRequest(orders, warehouse.nextRequestNumber(), warehouse);
+
+    sequencer = new Sequencer("s0", warehouse, true);
+    sequencer.setCurrentRequest(request);
+
+    scanned = request.getFaxOrder().toArray(new String[0]);
+    tokens = new EventTokenizer();
+    tokens.reset("Sequencer s0 scans " + String.join(" ", scanned));
+  }
+
+  /**
+   * Scan from a tokenized event.
+   *
+   * @return whether the scan matched
+   */
+  @Benchmark
+  public boolean scansTokens() {
+    return sequencer.scans(tokens, 3);
+  }
+
+  /**
+   * Scan from an array of SKUs.
+   *
+   * @return whether the scan matched
+   */
+  @Benchmark
+  public boolean scansArray() {
+    return sequencer.scans(scanned);
+  }
+
+}
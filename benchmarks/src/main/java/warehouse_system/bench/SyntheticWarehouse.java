@@ -0,0 +1,121 @@
+package warehouse_system.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SyntheticWarehouse writes a complete warehouse configuration (topology, traversal table,
+ * translation table and initial stock) of any size into a temporary directory. Every zone has 2
+ * aisles of 3 racks of 4 levels, like the original layout. The SKU in slot i is i + 1, so the
+ * traversal rank of a SKU is its number minus one, and each pair of neighbouring slots holds the
+ * front and back fascia of one kind of minivan.
+ */
+public class SyntheticWarehouse {
+
+  /** The number of slots in every zone. */
+  public static final int SLOTS_PER_ZONE = 2 * 3 * 4;
+
+  /** The configuration directory. */
+  private File configDir;
+
+  /** The number of zones. */
+  private int zones;
+
+  /** Every kind of minivan that can be ordered, as "model color". */
+  private List<String[]> minivans = new ArrayList<String[]>();
+
+  /**
+   * Write the configuration of a warehouse with the given number of zones.
+   *
+   * @param zones the number of zones
+   * @throws IOException if the configuration could not be written
+   */
+  public SyntheticWarehouse(int zones) throws IOException {
+    this.zones = zones;
+    this.configDir = Files.createTempDirectory("warehouse_config").toFile();
+    configDir.deleteOnExit();
+
+    try (PrintWriter topology = writer("topology.csv");
+        PrintWriter traversal = writer("traversal_table.csv");
+        PrintWriter translation = writer("translation.csv")) {
+
+      translation.println("Colour,Model,SKU (front),SKU (back)");
+      int slot = 0;
+      for (int zone = 0; zone < zones; zone++) {
+        String name = zoneName(zone);
+        topology.println(name + ",2,3,4");
+        for (int aisle = 0; aisle < 2; aisle++) {
+          for (int rack = 0; rack < 3; rack++) {
+            for (int level = 0; level < 4; level++) {
+              traversal.println(name + "," + aisle + "," + rack + "," + level + "," + (slot + 1));
+              if (slot % 2 == 1) {
+                String color = "C" + (slot / 2);
+                minivans.add(new String[] {"SE", color});
+                translation.println(color + ",SE," + slot + "," + (slot + 1));
+              }
+              slot++;
+            }
+          }
+        }
+      }
+    }
+    // Every level starts full, so initial.csv has nothing to adjust.
+    writer("initial.csv").close();
+  }
+
+  /**
+   * Return the name of a zone: A to Z, then Z26, Z27 and so on.
+   *
+   * @param zone the index of the zone
+   * @return the name of the zone
+   */
+  public static String zoneName(int zone) {
+    return zone < 26 ? String.valueOf((char) ('A' + zone)) : "Z" + zone;
+  }
+
+  /**
+   * Return the configuration directory.
+   *
+   * @return the directory
+   */
+  public File getConfigDir() {
+    return configDir;
+  }
+
+  /**
+   * Return the number of slots in the warehouse.
+   *
+   * @return the number of slots
+   */
+  public int getSlots() {
+    return zones * SLOTS_PER_ZONE;
+  }
+
+  /**
+   * Return every kind of minivan that can be ordered, as {model, color}. The front SKU of minivan k
+   * is 2k + 1 and the back SKU is 2k + 2.
+   *
+   * @return the minivans
+   */
+  public List<String[]> getMinivans() {
+    return minivans;
+  }
+
+  /**
+   * Open a writer for a file in the configuration directory.
+   *
+   * @param name the name of the file
+   * @return the writer
+   * @throws IOException if the file could not be created
+   */
+  private PrintWriter writer(String name) throws IOException {
+    File file = new File(configDir, name);
+    file.deleteOnExit();
+    return new PrintWriter(file, "UTF-8");
+  }
+
+}
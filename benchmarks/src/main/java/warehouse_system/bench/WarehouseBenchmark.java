@@ -0,0 +1,91 @@
+package warehouse_system.bench;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import warehouse_system.Warehouse;
+
+/**
+ * Measures Warehouse.getLevel, by SKU and by interned SKU id.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarehouseBenchmark {
+
+  /** The number of different SKUs cycled through. */
+  private static final int LOOKUPS = 1024;
+
+  /** The number of zones in the warehouse (24 levels each). */
+  @Param({"2", "200"})
+  public int zones;
+
+  /** The warehouse under test. */
+  private Warehouse warehouse;
+
+  /** The SKUs looked up. */
+  private String[] skus;
+
+  /** The ids of the SKUs looked up. */
+  private int[] skuIds;
+
+  /** The index of the next lookup. */
+  private int next;
+
+  /**
+   * Build the warehouse and choose the SKUs.
+   *
+   * @throws IOException if the configuration could not be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    SyntheticWarehouse layout = new SyntheticWarehouse(zones);
+    warehouse = new Warehouse(layout.getConfigDir());
+
+    Random random = new Random(42);
+    skus = new String[LOOKUPS];
+    skuIds = new int[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      skus[i] = String.valueOf(random.nextInt(layout.getSlots()) + 1);
+      skuIds[i] = warehouse.getSkuId(skus[i]);
+    }
+  }
+
+  /**
+   * Look up a level by SKU.
+   *
+   * @return the level
+   */
+  @Benchmark
+  public Object getLevelBySku() {
+    next = (next + 1) & (LOOKUPS - 1);
+    return warehouse.getLevel(skus[next]);
+  }
+
+  /**
+   * Look up a level by interned SKU id.
+   *
+   * @return the level
+   */
+  @Benchmark
+  public Object getLevelById() {
+    next = (next + 1) & (LOOKUPS - 1);
+    return warehouse.getLevel(skuIds[next]);
+  }
+
+}
@@ -0,0 +1,162 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Replay the same generated events one at a time and on lanes, and check that every worker is sent
+ * the same commands in the same order.
+ */
+public class DispatchLanesTest {
+
+  /** The number of events of the run. */
+  private static final int EVENTS = 20_000;
+
+  /** A worker's name as WorkloadGenerator makes it. */
+  private static final Pattern WORKER = Pattern.compile("\\b[pslr]\\d+\\b");
+
+  /** Holds the configuration. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The configuration directory. */
+  private File configDir;
+
+  /** The events of the run. */
+  private List<String> events = new ArrayList<String>();
+
+  /**
+   * Write the configuration of a warehouse of two zones, and generate the events of the run.
+   *
+   * @throws IOException if the configuration cannot be written
+   */
+  @Before
+  public void setUp() throws IOException {
+    configDir = folder.newFolder("warehouse_config");
+    try (PrintWriter topology = new PrintWriter(new File(configDir, "topology.csv"));
+        PrintWriter traversal = new PrintWriter(new File(configDir, "traversal_table.csv"));
+        PrintWriter translation = new PrintWriter(new File(configDir, "translation.csv"))) {
+      translation.println("Colour,Model,SKU (front),SKU (back)");
+      int slot = 0;
+      for (String zone : new String[] {"A", "B"}) {
+        topology.println(zone + ",2,3,4");
+        for (int aisle = 0; aisle < 2; aisle++) {
+          for (int rack = 0; rack < 3; rack++) {
+            for (int level = 0; level < 4; level++) {
+              traversal.println(zone + "," + aisle + "," + rack + "," + level + "," + (slot + 1));
+              if (slot % 2 == 1) {
+                translation.println("C" + (slot / 2) + ",SE," + slot + "," + (slot + 1));
+              }
+              slot++;
+            }
+          }
+        }
+      }
+    }
+    // Every level starts full.
+    new File(configDir, "initial.csv").createNewFile();
+
+    WorkloadGenerator generator = new WorkloadGenerator(configDir, 7);
+    generator.setWorkers(6, 2, 2, 2);
+    for (int i = 0; i < EVENTS; i++) {
+      events.add(generator.next());
+    }
+  }
+
+  /**
+   * Every worker gets the same commands in the same order with lanes as without, and the commands
+   * that name no worker are the same, in any order.
+   */
+  @Test
+  public void lanesKeepEachWorkersCommands() {
+    List<String> sequential = replay(false);
+    List<String> laned = replay(true);
+
+    assertEquals(byWorker(sequential), byWorker(laned));
+    Collections.sort(sequential);
+    Collections.sort(laned);
+    assertEquals(sequential, laned);
+  }
+
+  /**
+   * Handle every event with a new warehouse and return the commands sent.
+   *
+   * @param lanes whether to handle the events on lanes
+   * @return the commands, in the order they were sent
+   */
+  private List<String> replay(boolean lanes) {
+    SynchronizedSink out = new SynchronizedSink();
+    Organizer organizer = new Organizer(new Warehouse(configDir), out);
+    if (lanes) {
+      organizer.startLanes();
+    }
+    for (String event : events) {
+      organizer.handle(event);
+    }
+    organizer.stopLanes();
+    return out.messages;
+  }
+
+  /**
+   * Split commands by the first worker each names, keeping their order.
+   *
+   * @param messages the commands
+   * @return the commands of each worker
+   */
+  private static Map<String, List<String>> byWorker(List<String> messages) {
+    Map<String, List<String>> byWorker = new HashMap<String, List<String>>();
+    for (String message : messages) {
+      Matcher matcher = WORKER.matcher(message);
+      if (matcher.find()) {
+        List<String> commands = byWorker.get(matcher.group());
+        if (commands == null) {
+          commands = new ArrayList<String>();
+          byWorker.put(matcher.group(), commands);
+        }
+        commands.add(message);
+      }
+    }
+    return byWorker;
+  }
+
+  /**
+   * A CommandSink that keeps every message, and can be sent to from several lanes at once.
+   */
+  private static class SynchronizedSink implements CommandSink {
+
+    /** The messages sent, in order. */
+    private final List<String> messages = new ArrayList<String>();
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    @Override
+    public synchronized void send(String message) {
+      messages.add(message);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+  }
+
+}
@@ -0,0 +1,100 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+import org.junit.Test;
+
+/**
+ * Check how an EventTokenizer splits events into tokens, takes off their time stamps and interns
+ * the tokens it hands out.
+ */
+public class EventTokenizerTest {
+
+  /** The tokenizer under test. */
+  private EventTokenizer tokens = new EventTokenizer();
+
+  /**
+   * Runs of spaces separate tokens, and leading, trailing and carriage return characters are not
+   * part of any token.
+   */
+  @Test
+  public void splitsOnRunsOfSpaces() {
+    tokens.reset("  Picker  Alice picks   12 \r");
+    assertEquals(4, tokens.count());
+    assertTrue(tokens.matches(0, "Picker"));
+    assertTrue(tokens.matches(1, "Alice"));
+    assertTrue(tokens.matches(2, "picks"));
+    assertTrue(tokens.matches(3, "12"));
+    assertEquals(2, tokens.length(3));
+    assertFalse(tokens.matches(4, "12"));
+    assertFalse(tokens.matches(2, "pick"));
+    assertEquals(-1, tokens.getTime());
+
+    tokens.reset("");
+    assertEquals(0, tokens.count());
+    tokens.reset("   ");
+    assertEquals(0, tokens.count());
+  }
+
+  /**
+   * A leading number is the time stamp and not a token; a number that is too long for one, or that
+   * is not first, stays a token.
+   */
+  @Test
+  public void takesOffTheTimeStamp() {
+    tokens.reset("1200 Picker Alice picks 1");
+    assertEquals(1200, tokens.getTime());
+    assertEquals(4, tokens.count());
+    assertTrue(tokens.matches(0, "Picker"));
+    assertTrue(tokens.matches(3, "1"));
+
+    tokens.reset("1234567890123456789 Picker");
+    assertEquals(-1, tokens.getTime());
+    assertEquals(2, tokens.count());
+
+    tokens.reset("Order SE White");
+    assertEquals(-1, tokens.getTime());
+    assertEquals(3, tokens.count());
+  }
+
+  /**
+   * Events with more tokens than the arrays first hold are split in full.
+   */
+  @Test
+  public void growsForLongEvents() {
+    StringBuilder event = new StringBuilder("Sequencer s0 scans");
+    for (int sku = 1; sku <= 40; sku++) {
+      event.append(' ').append(sku);
+    }
+    tokens.reset(event);
+    assertEquals(43, tokens.count());
+    assertTrue(tokens.matches(42, "40"));
+    assertEquals("1 2 3", tokens.join(3, 6));
+  }
+
+  /**
+   * The same text is handed out as the same String, in later events and from a reused buffer.
+   */
+  @Test
+  public void internsTokens() {
+    CharBuffer line = CharBuffer.allocate(64);
+    line.put("Picker Alice ready").flip();
+    tokens.reset(line);
+    String name = tokens.text(1);
+    assertEquals("Alice", name);
+
+    line.clear();
+    line.put("Picker Alice picks 7").flip();
+    tokens.reset(line);
+    assertSame(name, tokens.text(1));
+    assertEquals("7", tokens.text(3));
+
+    tokens.reset("Picker Alicia ready");
+    assertEquals("Alicia", tokens.text(1));
+  }
+
+}
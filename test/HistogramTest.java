@@ -0,0 +1,101 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Check that a Histogram keeps small values exact, puts every percentile within an eighth of the
+ * exact one, and counts every value recorded from several threads at once.
+ */
+public class HistogramTest {
+
+  /**
+   * Nothing recorded reads as 0; values below 16 have a bucket each; negative values count as 0.
+   */
+  @Test
+  public void keepsSmallValuesExact() {
+    Histogram histogram = new Histogram("ns");
+    assertEquals(0, histogram.getP50());
+    assertEquals(0, histogram.getMean(), 0);
+
+    for (int value = 0; value < 16; value++) {
+      histogram.record(value);
+    }
+    assertEquals(17, histogram.record(-5));
+    assertEquals(17, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(0));
+    assertEquals(7, histogram.getP50());
+    assertEquals(15, histogram.getPercentile(1));
+    assertEquals(15, histogram.getMax());
+    assertEquals(0, histogram.getLast());
+    assertEquals(120 / 17.0, histogram.getMean(), 1e-9);
+    assertEquals("ns", histogram.getUnit());
+  }
+
+  /**
+   * Over values spread across many powers of two, each percentile is within an eighth of the exact
+   * one and never above the largest value.
+   */
+  @Test
+  public void boundsThePercentiles() {
+    Random random = new Random(22);
+    for (int trial = 0; trial < 20; trial++) {
+      Histogram histogram = new Histogram("ns");
+      long[] values = new long[1 + random.nextInt(5000)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = random.nextLong() >>> (1 + random.nextInt(63));
+        histogram.record(values[i]);
+      }
+      Arrays.sort(values);
+      assertEquals(values[values.length - 1], histogram.getMax());
+      for (double share : new double[] {0, 0.1, 0.5, 0.9, 0.99, 0.999, 1}) {
+        long exact = values[(int) Math.max(0, Math.ceil(share * values.length) - 1)];
+        long estimate = histogram.getPercentile(share);
+        assertTrue(share + ": " + estimate + " for " + exact,
+            Math.abs(estimate - exact) <= exact / 8 && estimate <= histogram.getMax());
+      }
+    }
+
+    Histogram histogram = new Histogram("ns");
+    histogram.record(Long.MAX_VALUE);
+    assertTrue(Long.MAX_VALUE - histogram.getP99() <= Long.MAX_VALUE / 8);
+  }
+
+  /**
+   * Threads recording at the same time lose no values.
+   *
+   * @throws InterruptedException if the test is interrupted
+   */
+  @Test
+  public void countsConcurrentValues() throws InterruptedException {
+    final Histogram histogram = new Histogram("events");
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int value = 0; value < 100_000; value++) {
+            histogram.record(value * threads.length + offset);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    long values = 100_000L * threads.length;
+    assertEquals(values, histogram.getCount());
+    assertEquals((values - 1) / 2.0, histogram.getMean(), 1e-6);
+    assertEquals(values - 1, histogram.getMax());
+    long median = histogram.getP50();
+    assertTrue(String.valueOf(median), Math.abs(median - values / 2) <= values / 16);
+  }
+
+}
@@ -0,0 +1,131 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Check the bit window of a LoadingArea against a plain set of staged pick request numbers, as the
+ * window moves, grows and is compacted.
+ */
+public class LoadingAreaTest {
+
+  /**
+   * Pallets staged across word boundaries are counted and taken as one run, up to the first gap.
+   */
+  @Test
+  public void countsRunsAcrossWords() {
+    LoadingArea area = new LoadingArea(60);
+    for (int number = 60; number < 200; number++) {
+      area.stage(number);
+    }
+    area.unstage(150);
+    assertEquals(90, area.countReady(1000));
+    assertEquals(10, area.countReady(10));
+    assertEquals(10, area.takeReady(10));
+    assertFalse(area.isStaged(69));
+    assertTrue(area.isStaged(70));
+    assertEquals(60, area.getNext());
+    assertEquals(129, area.size());
+  }
+
+  /**
+   * Pallets of a request before the window, e.g. unloaded from a truck, are staged in front of it.
+   */
+  @Test
+  public void stagesBeforeTheWindow() {
+    LoadingArea area = new LoadingArea(1);
+    for (int number = 1; number <= 5000; number++) {
+      area.stage(number);
+      area.takeReady(1);
+      area.advance();
+    }
+    assertEquals(5001, area.getNext());
+    area.stage(4000);
+    area.rewind();
+    assertTrue(area.isStaged(4000));
+    assertFalse(area.isNextStaged());
+    assertEquals(1, area.size());
+  }
+
+  /**
+   * Random stages, unstages, takes, advances and rewinds leave the area as a set of numbers would.
+   *
+   * @throws IOException if a snapshot cannot be written or read
+   */
+  @Test
+  public void matchesASetOfNumbers() throws IOException {
+    Random random = new Random(11);
+    LoadingArea area = new LoadingArea(1);
+    Set<Integer> staged = new HashSet<Integer>();
+    int next = 1;
+    for (int step = 0; step < 200_000; step++) {
+      int number = Math.max(0, next - 100 + random.nextInt(400));
+      switch (random.nextInt(6)) {
+        case 0:
+        case 1:
+          area.stage(number);
+          staged.add(number);
+          break;
+        case 2:
+          assertEquals(staged.remove(number), area.unstage(number));
+          break;
+        case 3:
+          int limit = 1 + random.nextInt(8);
+          int taken = area.takeReady(limit);
+          int expected = 0;
+          while (expected < limit && staged.remove(next + expected)) {
+            expected++;
+          }
+          assertEquals(expected, taken);
+          break;
+        case 4:
+          next = area.advance();
+          break;
+        default:
+          if (next > 1) {
+            next = area.rewind();
+          }
+          break;
+      }
+      assertEquals(staged.size(), area.size());
+      assertEquals(staged.contains(next), area.isNextStaged());
+      assertEquals(staged.contains(number), area.isStaged(number));
+      int run = 0;
+      while (staged.contains(next + run)) {
+        run++;
+      }
+      assertEquals(run, area.countReady(Integer.MAX_VALUE));
+
+      if (step % 10_000 == 0) {
+        area = copy(area);
+      }
+    }
+  }
+
+  /**
+   * Copy a loading area through a snapshot.
+   *
+   * @param area the loading area
+   * @return the copy
+   * @throws IOException if the snapshot cannot be written or read
+   */
+  private static LoadingArea copy(LoadingArea area) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    area.writeState(new DataOutputStream(bytes));
+    LoadingArea copy = new LoadingArea(1);
+    copy.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    return copy;
+  }
+
+}
@@ -0,0 +1,70 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Check the Hungarian method of the PickerScheduler against trying every assignment, on small
+ * random cost matrices with as many or more columns than rows.
+ */
+public class PickerSchedulerTest {
+
+  /**
+   * Each row gets its own column, and no assignment costs less in total, whether the costs are
+   * spread out or full of ties.
+   */
+  @Test
+  public void findsTheCheapestAssignment() {
+    Random random = new Random(18);
+    for (int trial = 0; trial < 2000; trial++) {
+      int rows = 1 + random.nextInt(6);
+      int columns = rows + random.nextInt(3);
+      boolean ties = trial % 2 == 0;
+      double[][] cost = new double[rows][columns];
+      for (int row = 0; row < rows; row++) {
+        for (int column = 0; column < columns; column++) {
+          cost[row][column] = ties ? random.nextInt(4) : random.nextDouble() * 100;
+        }
+      }
+
+      int[] assignment = PickerScheduler.hungarian(cost, rows, columns);
+      assertEquals(rows, assignment.length);
+      boolean[] taken = new boolean[columns];
+      double total = 0;
+      for (int row = 0; row < rows; row++) {
+        assertFalse("trial " + trial, taken[assignment[row]]);
+        taken[assignment[row]] = true;
+        total += cost[row][assignment[row]];
+      }
+      assertEquals("trial " + trial, cheapest(cost, 0, new boolean[columns]), total, 1e-9);
+    }
+  }
+
+  /**
+   * Return the lowest total cost of assigning the rows from a given row on to distinct columns that
+   * are not used yet.
+   *
+   * @param cost the cost of assigning each row to each column
+   * @param row the first row still to be assigned
+   * @param used the columns already used; put back as they were
+   * @return the lowest total cost
+   */
+  private static double cheapest(double[][] cost, int row, boolean[] used) {
+    if (row == cost.length) {
+      return 0;
+    }
+    double best = Double.POSITIVE_INFINITY;
+    for (int column = 0; column < used.length; column++) {
+      if (!used[column]) {
+        used[column] = true;
+        best = Math.min(best, cost[row][column] + cheapest(cost, row + 1, used));
+        used[column] = false;
+      }
+    }
+    return best;
+  }
+
+}
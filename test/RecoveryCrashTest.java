@@ -0,0 +1,166 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Crash a run that journals its events and archives departed pick requests, recover it, and check
+ * that it ends up with the same orders shipped and the same stock as a run that did not crash.
+ */
+public class RecoveryCrashTest {
+
+  /** The number of events of the run. */
+  private static final int EVENTS = 20_000;
+
+  /** The number of events handled before the crash. */
+  private static final int CRASH_AFTER = 10_777;
+
+  /** The number of events between two snapshots. */
+  private static final int SNAPSHOT_INTERVAL = 1_000;
+
+  /** Holds the configuration, the journal and the archives. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The configuration directory. */
+  private File configDir;
+
+  /** The events of the run. */
+  private List<String> events = new ArrayList<String>();
+
+  /**
+   * Write the configuration of a warehouse of two zones, and generate the events of the run. The
+   * loaders unload often, so archived pick requests are read back.
+   *
+   * @throws IOException if the configuration cannot be written
+   */
+  @Before
+  public void setUp() throws IOException {
+    configDir = folder.newFolder("warehouse_config");
+    try (PrintWriter topology = new PrintWriter(new File(configDir, "topology.csv"));
+        PrintWriter traversal = new PrintWriter(new File(configDir, "traversal_table.csv"));
+        PrintWriter translation = new PrintWriter(new File(configDir, "translation.csv"))) {
+      translation.println("Colour,Model,SKU (front),SKU (back)");
+      int slot = 0;
+      for (String zone : new String[] {"A", "B"}) {
+        topology.println(zone + ",2,3,4");
+        for (int aisle = 0; aisle < 2; aisle++) {
+          for (int rack = 0; rack < 3; rack++) {
+            for (int level = 0; level < 4; level++) {
+              traversal.println(zone + "," + aisle + "," + rack + "," + level + "," + (slot + 1));
+              if (slot % 2 == 1) {
+                translation.println("C" + (slot / 2) + ",SE," + slot + "," + (slot + 1));
+              }
+              slot++;
+            }
+          }
+        }
+      }
+    }
+    // Every level starts full.
+    new File(configDir, "initial.csv").createNewFile();
+
+    WorkloadGenerator generator = new WorkloadGenerator(configDir, 42);
+    generator.setUnloadProbability(0.05);
+    for (int i = 0; i < EVENTS; i++) {
+      events.add(generator.next());
+    }
+  }
+
+  /**
+   * Recover a crashed run that used both an archive and a journal. The archive has records written
+   * after the last snapshot, which the recovered run writes again.
+   *
+   * @throws IOException if the journal or an archive cannot be used
+   */
+  @Test
+  public void recoversArchivedRequests() throws IOException {
+    Warehouse expected = new Warehouse(configDir);
+    expected.setArchive(new RequestArchive(folder.newFile("expected.bin")));
+    Organizer reference = new Organizer(expected, NullSink.INSTANCE);
+    for (String event : events) {
+      reference.handle(event);
+    }
+
+    File journalDir = folder.newFolder("journal");
+    File archiveFile = folder.newFile("archive.bin");
+    Warehouse crashed = new Warehouse(configDir);
+    crashed.setArchive(new RequestArchive(archiveFile));
+    Organizer beforeCrash = new Organizer(crashed, NullSink.INSTANCE);
+    beforeCrash.openJournal(journalDir, 256, 5, SNAPSHOT_INTERVAL);
+    for (String event : events.subList(0, CRASH_AFTER)) {
+      beforeCrash.handle(event);
+    }
+    // The crash: the journal and the archive records reached the disk, but no snapshot was taken
+    // after the last of them.
+    beforeCrash.closeJournal();
+    crashed.getArchive().close();
+
+    Warehouse recovered = new Warehouse(configDir);
+    recovered.setArchive(new RequestArchive(archiveFile));
+    Organizer afterCrash = new Organizer(recovered, NullSink.INSTANCE);
+    int skip = (int) afterCrash.openJournal(journalDir, 256, 5, SNAPSHOT_INTERVAL);
+    assertEquals(CRASH_AFTER, skip);
+    for (String event : events.subList(skip, EVENTS)) {
+      afterCrash.handle(event);
+    }
+    afterCrash.closeJournal();
+
+    assertEquals(shippedOrders(expected), shippedOrders(recovered));
+    assertEquals(stock(expected), stock(recovered));
+    assertEquals(expected.getArchive().size(), recovered.getArchive().size());
+    assertEquals(new File(folder.getRoot(), "expected.bin").length(), archiveFile.length());
+    for (PickRequest request : expected.getLoadedRequests()) {
+      assertNotNull(recovered.getPickRequest(request.getId()));
+    }
+  }
+
+  /**
+   * List the orders that were loaded onto trucks, archived or not, as orders.csv would.
+   *
+   * @param warehouse the warehouse
+   * @return the orders
+   * @throws IOException if the archive cannot be read
+   */
+  private static List<String> shippedOrders(Warehouse warehouse) throws IOException {
+    final List<String> orders = new ArrayList<String>();
+    warehouse.getArchive().forEachOrder(new RequestArchive.OrderVisitor() {
+      @Override
+      public void visit(Order order) {
+        orders.add(order.toString());
+      }
+    });
+    for (PickRequest request : warehouse.getLoadedRequests()) {
+      for (Order order : request.getOrders()) {
+        orders.add(order.toString());
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * List the stock of every level, by slot.
+   *
+   * @param warehouse the warehouse
+   * @return the stock of each level
+   */
+  private static List<Integer> stock(Warehouse warehouse) {
+    List<Integer> stock = new ArrayList<Integer>();
+    for (int slot = 0; slot < warehouse.getTopology().size(); slot++) {
+      Level level = warehouse.getLevelAt(slot);
+      stock.add(level == null ? -1 : level.getCurrentStock());
+    }
+    return stock;
+  }
+
+}
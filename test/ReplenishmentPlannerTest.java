@@ -0,0 +1,182 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Check the committed demand of the ReplenishmentPlanner as pick requests are taken from the queue,
+ * picked, queued again after a discard, and unblocked by a replenishment. The lookahead is one
+ * request, so only the request at the head of the queue and the requests being picked count.
+ * Minivan Ck of model SE has the fascia 2k + 1 and 2k + 2, and four orders of one minivan make a
+ * pick request.
+ */
+public class ReplenishmentPlannerTest {
+
+  /** Holds the configuration. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The warehouse. */
+  private Warehouse warehouse;
+
+  /** The organizer the events are handled by. */
+  private Organizer organizer;
+
+  /**
+   * Write the configuration of a warehouse of two zones, in which the level of SKU 5 holds two
+   * fascia, and set up an organizer with a lookahead of one request.
+   *
+   * @throws IOException if the configuration cannot be written
+   */
+  @Before
+  public void setUp() throws IOException {
+    File configDir = folder.newFolder("warehouse_config");
+    try (PrintWriter topology = new PrintWriter(new File(configDir, "topology.csv"));
+        PrintWriter traversal = new PrintWriter(new File(configDir, "traversal_table.csv"));
+        PrintWriter translation = new PrintWriter(new File(configDir, "translation.csv"));
+        PrintWriter initial = new PrintWriter(new File(configDir, "initial.csv"));
+        PrintWriter replenishment = new PrintWriter(new File(configDir, "replenishment.csv"))) {
+      translation.println("Colour,Model,SKU (front),SKU (back)");
+      int slot = 0;
+      for (String zone : new String[] {"A", "B"}) {
+        topology.println(zone + ",2,3,4");
+        for (int aisle = 0; aisle < 2; aisle++) {
+          for (int rack = 0; rack < 3; rack++) {
+            for (int level = 0; level < 4; level++) {
+              traversal.println(zone + "," + aisle + "," + rack + "," + level + "," + (slot + 1));
+              if (slot % 2 == 1) {
+                translation.println("C" + (slot / 2) + ",SE," + slot + "," + (slot + 1));
+              }
+              slot++;
+            }
+          }
+        }
+      }
+      initial.println("A,0,1,0,2");
+      replenishment.println("lookahead_requests,1");
+    }
+
+    warehouse = new Warehouse(configDir);
+    organizer = new Organizer(warehouse, NullSink.INSTANCE);
+  }
+
+  /**
+   * A request counts once it reaches the head of the queue, and each fascia picked stops counting.
+   */
+  @Test
+  public void commitsRequestsAsTheyReachTheHead() {
+    order("C0", 4);
+    order("C1", 4);
+    assertCommitted(4, 4, 0, 0);
+
+    organizer.handle("Picker p0 ready");
+    assertCommitted(4, 4, 4, 4);
+
+    organizer.handle("Picker p0 picks 1");
+    organizer.handle("Picker p0 picks 1");
+    assertCommitted(2, 4, 4, 4);
+  }
+
+  /**
+   * A discarded request counts again, once it is back at the head of the queue.
+   */
+  @Test
+  public void commitsRequeuedRequestsAgain() {
+    order("C0", 4);
+    organizer.handle("Picker p0 ready");
+    pickAll("p0", "1", "2");
+    assertCommitted(0, 0);
+    order("C1", 4);
+    organizer.handle("Picker p0 goes to marshalling");
+    order("C3", 4);
+    assertEquals(4, committed("7"));
+
+    // The sequencer scans the wrong fascia twice, so 1pr is picked again, after 3pr.
+    organizer.handle("Sequencer s0 ready");
+    organizer.handle("Sequencer s0 scans 9");
+    organizer.handle("Sequencer s0 scans 9");
+    assertCommitted(0, 0);
+
+    organizer.handle("Picker p1 ready");
+    assertCommitted(4, 4);
+    assertEquals(4, committed("7"));
+  }
+
+  /**
+   * A request that could not be reserved does not count until a replenishment unblocks it and it
+   * reaches the head of the queue.
+   */
+  @Test
+  public void commitsUnblockedRequestsAtTheHead() {
+    order("C0", 4);
+    order("C2", 4);
+    assertEquals(1, organizer.getStockLedger().getWaiting());
+    assertEquals(0, committed("5"));
+    assertEquals(0, committed("6"));
+
+    organizer.handle("Replenisher r0 ready");
+    organizer.handle("Replenisher r0 replenishes A 0 1 0");
+    assertEquals(0, organizer.getStockLedger().getWaiting());
+    assertEquals(0, committed("5"));
+
+    organizer.handle("Picker p0 ready");
+    assertEquals(4, committed("5"));
+    assertEquals(4, committed("6"));
+  }
+
+  /**
+   * Order minivans of model SE.
+   *
+   * @param color the color of the minivans
+   * @param count the number of minivans
+   */
+  private void order(String color, int count) {
+    for (int i = 0; i < count; i++) {
+      organizer.handle("Order SE " + color);
+    }
+  }
+
+  /**
+   * Pick the fascia of a request of four minivans of one color.
+   *
+   * @param picker the name of the picker
+   * @param front the SKU of the front fascia
+   * @param back the SKU of the back fascia
+   */
+  private void pickAll(String picker, String front, String back) {
+    for (String sku : new String[] {front, back}) {
+      for (int i = 0; i < 4; i++) {
+        organizer.handle("Picker " + picker + " picks " + sku);
+      }
+    }
+  }
+
+  /**
+   * Check the committed demand of the SKUs 1, 2 and so on.
+   *
+   * @param expected the committed demand of each SKU, from SKU 1
+   */
+  private void assertCommitted(int... expected) {
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("SKU " + (i + 1), expected[i], committed(String.valueOf(i + 1)));
+    }
+  }
+
+  /**
+   * Return the committed demand of a SKU.
+   *
+   * @param sku the SKU
+   * @return the number of fascia
+   */
+  private int committed(String sku) {
+    return organizer.getReplenishmentPlanner().getCommitted(warehouse.getSkuId(sku));
+  }
+
+}
@@ -0,0 +1,167 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Check the distance model of a RouteOptimizer, and that each strategy visits exactly the
+ * locations of the traversal order, no shorter than the best route and, for TSP, no longer than
+ * the largest-gap route. The layout has two zones of four aisles of five racks of two levels, and
+ * SKU n + 1 is stored in slot n.
+ */
+public class RouteOptimizerTest {
+
+  /** Holds the routing files. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The layout of the warehouse. */
+  private Topology topology;
+
+  /** The traversal table, one SKU per slot in slot order. */
+  private TraversalIndex index;
+
+  /** Set up the layout and its traversal table. */
+  @Before
+  public void setUp() {
+    topology = new Topology(new String[] {"A", "B"}, new int[] {4, 4}, new int[] {5, 5},
+        new int[] {2, 2});
+    List<String> skus = new ArrayList<String>();
+    List<String> locations = new ArrayList<String>();
+    for (int slot = 0; slot < topology.size(); slot++) {
+      skus.add(String.valueOf(slot + 1));
+      locations.add(topology.getLocation(slot));
+    }
+    index = TraversalIndex.of(skus, locations, 0);
+  }
+
+  /**
+   * Within an aisle the distance is along it; between aisles it is across the front or the back,
+   * whichever is shorter; null is the depot, in front of the first aisle.
+   */
+  @Test
+  public void measuresDistances() {
+    RouteOptimizer router = new RouteOptimizer(topology, RouteOptimizer.Strategy.S_SHAPE);
+    assertEquals(4.0, router.distance("A 0 0 0", "A 0 4 1"), 1e-9);
+    assertEquals(3.5, router.distance(null, "A 1 0 0"), 1e-9);
+    assertEquals(4.0, router.distance("A 0 4 0", "A 1 4 0"), 1e-9);
+    // Zone B starts after the four aisles of zone A and the gap between zones.
+    assertEquals(15.5, router.distance(null, "B 0 0 1"), 1e-9);
+    assertEquals(router.distance("A 2 1 0", "B 3 3 1"), router.distance("B 3 3 1", "A 2 1 0"),
+        1e-9);
+    assertEquals(2 * 3.5, router.length(Collections.singletonList("A 1 0 0")), 1e-9);
+  }
+
+  /**
+   * Every strategy visits the locations of the traversal order, skipping unknown SKUs, and the
+   * routes of the other strategies are never shorter than the best route.
+   */
+  @Test
+  public void routesVisitEveryLocation() {
+    Random random = new Random(5);
+    RouteOptimizer.Strategy[] strategies = RouteOptimizer.Strategy.values();
+    for (int trial = 0; trial < 60; trial++) {
+      List<String> skus = new ArrayList<String>();
+      for (int i = 0; i < 7; i++) {
+        skus.add(String.valueOf(1 + random.nextInt(topology.size())));
+      }
+      skus.add("unknown");
+      List<String> expected = new ArrayList<String>(index.path(skus));
+      Collections.sort(expected);
+      double best = shortest(new RouteOptimizer(topology, RouteOptimizer.Strategy.TRAVERSAL),
+          index.path(skus));
+
+      double[] lengths = new double[strategies.length];
+      for (RouteOptimizer.Strategy strategy : strategies) {
+        RouteOptimizer router = new RouteOptimizer(topology, strategy);
+        List<String> route = router.route(index, skus);
+        assertEquals(route, router.route(index, skus));
+        List<String> visited = new ArrayList<String>(route);
+        Collections.sort(visited);
+        assertEquals(strategy.name(), expected, visited);
+        lengths[strategy.ordinal()] = router.length(route);
+        assertTrue(strategy.name(), lengths[strategy.ordinal()] >= best - 1e-9);
+      }
+      assertTrue(lengths[RouteOptimizer.Strategy.TSP.ordinal()]
+          <= lengths[RouteOptimizer.Strategy.LARGEST_GAP.ordinal()] + 1e-9);
+    }
+  }
+
+  /**
+   * routing.csv chooses the strategy; the traversal order needs no optimizer at all.
+   *
+   * @throws IOException if a routing file cannot be written
+   */
+  @Test
+  public void loadsTheStrategy() throws IOException {
+    assertNull(RouteOptimizer.load(new File(folder.getRoot(), "missing.csv"), topology));
+    assertNull(RouteOptimizer.load(routing("strategy,traversal"), topology));
+    assertSame(RouteOptimizer.Strategy.LARGEST_GAP,
+        RouteOptimizer.load(routing("strategy,largest-gap"), topology).getStrategy());
+    assertSame(RouteOptimizer.Strategy.TSP,
+        RouteOptimizer.load(routing("strategy, TSP\nmax_moves,50"), topology).getStrategy());
+  }
+
+  /**
+   * Return the length of the shortest route through locations, trying every order.
+   *
+   * @param router measures the routes
+   * @param locations the locations
+   * @return the length of the shortest route
+   */
+  private static double shortest(RouteOptimizer router, List<String> locations) {
+    return shortest(router, new ArrayList<String>(locations), 0);
+  }
+
+  /**
+   * Return the length of the shortest route that keeps the locations before an index in place and
+   * visits the others in any order.
+   *
+   * @param router measures the routes
+   * @param locations the locations; reordered and put back
+   * @param from the index of the first location still to be placed
+   * @return the length of the shortest such route
+   */
+  private static double shortest(RouteOptimizer router, List<String> locations, int from) {
+    if (from == locations.size()) {
+      return router.length(locations);
+    }
+    double best = Double.MAX_VALUE;
+    for (int i = from; i < locations.size(); i++) {
+      Collections.swap(locations, from, i);
+      best = Math.min(best, shortest(router, locations, from + 1));
+      Collections.swap(locations, from, i);
+    }
+    return best;
+  }
+
+  /**
+   * Write a routing file.
+   *
+   * @param text the lines of the file
+   * @return the file
+   * @throws IOException if the file cannot be written
+   */
+  private File routing(String text) throws IOException {
+    File file = folder.newFile();
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println(text);
+    }
+    return file;
+  }
+
+}
@@ -0,0 +1,156 @@
+package warehouse_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Check that a StockLedger reserves a pick request all at once or not at all, keeps the requests
+ * it blocks in a queue per SKU, and hands them back in the order they were blocked. Minivan Ck of
+ * model SE has the fascia 2k + 1 and 2k + 2, so a request of four Ck needs four of each.
+ */
+public class StockLedgerTest {
+
+  /** Holds the configuration. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The warehouse. */
+  private Warehouse warehouse;
+
+  /** The ledger under test. */
+  private StockLedger ledger;
+
+  /** The number of the next pick request. */
+  private int nextNumber = 1;
+
+  /**
+   * Write the configuration of a warehouse of two zones, in which the level of SKU 2 holds six
+   * fascia and the level of SKU 4 holds two, and set up a ledger.
+   *
+   * @throws IOException if the configuration cannot be written
+   */
+  @Before
+  public void setUp() throws IOException {
+    File configDir = folder.newFolder("warehouse_config");
+    try (PrintWriter topology = new PrintWriter(new File(configDir, "topology.csv"));
+        PrintWriter traversal = new PrintWriter(new File(configDir, "traversal_table.csv"));
+        PrintWriter translation = new PrintWriter(new File(configDir, "translation.csv"));
+        PrintWriter initial = new PrintWriter(new File(configDir, "initial.csv"))) {
+      translation.println("Colour,Model,SKU (front),SKU (back)");
+      int slot = 0;
+      for (String zone : new String[] {"A", "B"}) {
+        topology.println(zone + ",2,3,4");
+        for (int aisle = 0; aisle < 2; aisle++) {
+          for (int rack = 0; rack < 3; rack++) {
+            for (int level = 0; level < 4; level++) {
+              traversal.println(zone + "," + aisle + "," + rack + "," + level + "," + (slot + 1));
+              if (slot % 2 == 1) {
+                translation.println("C" + (slot / 2) + ",SE," + slot + "," + (slot + 1));
+              }
+              slot++;
+            }
+          }
+        }
+      }
+      initial.println("A,0,0,1,6");
+      initial.println("A,0,0,3,2");
+    }
+
+    warehouse = new Warehouse(configDir);
+    ledger = new StockLedger(warehouse);
+  }
+
+  /**
+   * A request that one level cannot cover reserves nothing, not even from the levels that could.
+   */
+  @Test
+  public void reservesAllOrNothing() {
+    assertNull(ledger.reserve(request("C0")));
+    assertEquals(4, warehouse.getLevel("1").getReserved());
+    assertEquals(4, warehouse.getLevel("2").getReserved());
+
+    // Only two fascia of SKU 2 are not reserved yet.
+    assertEquals("2", ledger.reserve(request("C0")));
+    assertEquals(4, warehouse.getLevel("1").getReserved());
+    assertEquals(4, warehouse.getLevel("2").getReserved());
+    assertEquals(30, warehouse.getLevel("1").getCurrentStock());
+    assertEquals(1, ledger.getWaiting());
+
+    // Each fascia taken uses up its reservation.
+    warehouse.getLevel("1").takeFascia();
+    assertEquals(3, warehouse.getLevel("1").getReserved());
+    assertEquals(29, warehouse.getLevel("1").getCurrentStock());
+  }
+
+  /**
+   * Blocked requests wait for the SKU they are short of, each SKU with its own queue.
+   */
+  @Test
+  public void blocksRequestsBySku() {
+    assertNull(ledger.reserve(request("C0")));
+    PickRequest first = request("C0");
+    PickRequest second = request("C0");
+    PickRequest third = request("C1");
+    assertEquals("2", ledger.reserve(first));
+    assertEquals("2", ledger.reserve(second));
+    assertEquals("4", ledger.reserve(third));
+    assertEquals(0, warehouse.getLevel("3").getReserved());
+    assertEquals(3, ledger.getWaiting());
+
+    assertEquals(Arrays.asList(third), ledger.unblock("4"));
+    assertEquals(2, ledger.getWaiting());
+    assertTrue(ledger.unblock("4").isEmpty());
+    assertTrue(ledger.unblock("1").isEmpty());
+    assertEquals(2, ledger.getWaiting());
+  }
+
+  /**
+   * A replenished level hands back its requests in the order they were blocked, and they can then
+   * be reserved again.
+   */
+  @Test
+  public void unblocksInOrder() {
+    assertNull(ledger.reserve(request("C0")));
+    PickRequest first = request("C0");
+    PickRequest second = request("C0");
+    assertEquals("2", ledger.reserve(first));
+    assertEquals("2", ledger.reserve(second));
+
+    // Refilling the level would let the first request waiting for it be reserved.
+    assertTrue(ledger.needsRefill("2"));
+    warehouse.getLevel("2").replenish();
+    assertEquals(Arrays.asList(first, second), ledger.unblock("2"));
+    assertEquals(0, ledger.getWaiting());
+    assertFalse(ledger.needsRefill("2"));
+
+    assertNull(ledger.reserve(first));
+    assertNull(ledger.reserve(second));
+    assertEquals(12, warehouse.getLevel("2").getReserved());
+  }
+
+  /**
+   * Make a pick request of four minivans of model SE and one color.
+   *
+   * @param color the color
+   * @return the pick request
+   */
+  private PickRequest request(String color) {
+    Order[] orders = new Order[4];
+    for (int i = 0; i < orders.length; i++) {
+      orders[i] = new Order("SE", color, warehouse.getSkus("SE", color));
+    }
+    return new PickRequest(orders, nextNumber++, warehouse);
+  }
+
+}